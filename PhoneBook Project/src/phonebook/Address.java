@@ -263,31 +263,35 @@ public class Address {
 	 * @return boolean - true if the address information is valid, otherwise false.
 	 */
 	public boolean isValidAddress(boolean isNewAddress) {
-		if (this.street1.isBlank() || this.street1.isEmpty()) {
-			System.out.println("isValidAddress - address has no street information.");
+		String problem = findAddressProblem(isNewAddress);
+		if (problem != null) {
+			System.out.println("isValidAddress - " + problem);
 			return false;
 		}
-		if (this.city.isBlank() || this.city.isEmpty()) {
-			System.out.println("isValidAddress - address has no city information.");
-			return false;
+		return true;
+	}
+	
+	/** Method findAddressProblem makes the same checks as isValidAddress without printing anything.
+	 * @param isNewAddress - true if the Address is new so it does not check for a address ID.
+	 * @return String - the first reason the address is invalid, or null if it is valid.
+	 */
+	public String findAddressProblem(boolean isNewAddress) {
+		if (this.street1.isBlank() || this.street1.isEmpty()) {
+			return "address has no street information.";
 		}
-		if (this.state.isBlank() || this.state.isEmpty()) {
-			System.out.println("isValidAddress - address has no state information.");
-			return false;
+		if (this.city.isBlank() || this.city.isEmpty()) {
+			return "address has no city information.";
 		}
 		if (this.state.isBlank() || this.state.isEmpty() || !isStateAbbreviation(this.state)) {
-			System.out.println("isValidAddress - address has no state information.");
-			return false;
+			return "address has no state information.";
 		}
 		if (this.zip == 0 || String.format("%05d", this.zip).length() != 5) {
-			System.out.println("isValidAddress - address zip code information is invalid.");
-			return false;
+			return "address zip code information is invalid.";
 		}
 		if (this.zipPlus4 != 0 && String.format("%04d", this.zipPlus4).length() != 4) {
-			System.out.println("isValidAddress - address zip code +4 information is invalid.");
-			return false;
+			return "address zip code +4 information is invalid.";
 		}
-		return true;
+		return null;
 	}
 	
 	/** Method isStateAbbreviation returns true if the input String represents a two letter US state, 
@@ -0,0 +1,336 @@
+package phonebook;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/** This class maps the values of a field with few distinct values, such as state, city, or zip code, to the
+ * 	PersonStore slots that hold them, as one compressed bitmap per value. Finding everyone with a value is a
+ * 	single bitmap fetch, and a "contains" search checks each distinct value once and joins the bitmaps of
+ * 	the values that match, instead of checking every Person.
+ * 	The bitmaps are split the way Roaring bitmaps are: the slots are cut into chunks of 65536, and each chunk
+ * 	holding a slot of the value is a container of its own. A container with up to 4096 slots keeps their low
+ * 	16 bits as a sorted char array, and a fuller one is a bitmap of 1024 longs, so a bitmap never takes more
+ * 	than two bytes per slot it holds, nor more than one bit per slot of a chunk. Since slots are handed out
+ * 	from 0, the chunks are kept in an array indexed by the high bits of the slot rather than a sorted key list.
+ * @param <K> - the key type, such as a lowercased String or an Integer zip code
+ */
+public class BitmapIndex<K> {
+
+	private final HashMap<K, SlotBitmap> bitmapsByKey = new HashMap<K, SlotBitmap>();
+
+	/** Method add records that slot holds key. Adding the same key and slot twice has no effect.
+	 * @param key
+	 * @param slot
+	 */
+	public void add(K key, int slot) {
+		SlotBitmap bitmap = bitmapsByKey.get(key);
+		if (bitmap == null) {
+			bitmap = new SlotBitmap();
+			bitmapsByKey.put(key, bitmap);
+		}
+		bitmap.add(slot);
+	}
+
+	/** Method remove forgets that slot holds key. A key with no slots left is dropped.
+	 * @param key
+	 * @param slot
+	 */
+	public void remove(K key, int slot) {
+		SlotBitmap bitmap = bitmapsByKey.get(key);
+		if (bitmap == null) {
+			return;
+		}
+		bitmap.remove(slot);
+		if (bitmap.cardinality == 0) {
+			bitmapsByKey.remove(key);
+		}
+	}
+
+	/** Method get returns the slots that hold key.
+	 * @param key
+	 * @return SlotSet
+	 */
+	public SlotSet get(K key) {
+		SlotBitmap bitmap = bitmapsByKey.get(key);
+		if (bitmap == null) {
+			return SlotSet.EMPTY;
+		}
+		return bitmap.toSlotSet();
+	}
+
+	/** Method getMatching returns the slots that hold any key for which keyMatches is true, such as every
+	 * 	city containing a search term. Each distinct key is tested once.
+	 * @param keyMatches
+	 * @return SlotSet
+	 */
+	public SlotSet getMatching(Predicate<? super K> keyMatches) {
+		SlotBitmap onlyBitmap = null;
+		long[] words = null;
+		for (Map.Entry<K, SlotBitmap> entry : bitmapsByKey.entrySet()) {
+			if (!keyMatches.test(entry.getKey())) {
+				continue;
+			}
+			if (onlyBitmap == null && words == null) {
+				onlyBitmap = entry.getValue();
+				continue;
+			}
+			if (words == null) {
+				words = new long[maxWordCount()];
+				onlyBitmap.orInto(words);
+			}
+			entry.getValue().orInto(words);
+		}
+		if (words != null) {
+			return SlotSet.ofWords(words);
+		}
+		return onlyBitmap == null ? SlotSet.EMPTY : onlyBitmap.toSlotSet();
+	}
+
+	/** Method count returns the number of slots that hold key without copying them.
+	 * @param key
+	 * @return int
+	 */
+	public int count(K key) {
+		SlotBitmap bitmap = bitmapsByKey.get(key);
+		return bitmap == null ? 0 : bitmap.cardinality;
+	}
+
+	/** Method keyCount returns the number of distinct keys in the index.
+	 * @return int
+	 */
+	public int keyCount() {
+		return bitmapsByKey.size();
+	}
+
+	private int maxWordCount() {
+		int wordCount = 0;
+		for (SlotBitmap bitmap : bitmapsByKey.values()) {
+			wordCount = Math.max(wordCount, bitmap.wordCount());
+		}
+		return wordCount;
+	}
+
+	/** This class is the compressed bitmap of the slots of one key.
+	 */
+	private static final class SlotBitmap {
+
+		private Container[] containers = new Container[1];
+		private int cardinality = 0;
+
+		void add(int slot) {
+			int high = slot >>> 16;
+			if (high >= containers.length) {
+				Container[] grownArray = new Container[Math.max(high + 1, containers.length * 2)];
+				System.arraycopy(containers, 0, grownArray, 0, containers.length);
+				containers = grownArray;
+			}
+			if (containers[high] == null) {
+				containers[high] = new Container();
+			}
+			if (containers[high].add((char) slot)) {
+				cardinality++;
+			}
+		}
+
+		void remove(int slot) {
+			int high = slot >>> 16;
+			if (high >= containers.length || containers[high] == null) {
+				return;
+			}
+			if (containers[high].remove((char) slot)) {
+				cardinality--;
+				if (containers[high].count == 0) {
+					containers[high] = null;
+				}
+			}
+		}
+
+		/** Method wordCount returns the number of longs a flat bitmap needs to reach the highest slot.
+		 * @return int
+		 */
+		int wordCount() {
+			for (int high = containers.length - 1; high >= 0; high--) {
+				if (containers[high] != null) {
+					return (high << 10) + (containers[high].maxValue() >>> 6) + 1;
+				}
+			}
+			return 0;
+		}
+
+		/** Method orInto sets the bits of this bitmap's slots in words, a flat bitmap of all slots.
+		 * @param words
+		 */
+		void orInto(long[] words) {
+			for (int high = 0; high < containers.length; high++) {
+				if (containers[high] != null) {
+					containers[high].orInto(words, high << 10);
+				}
+			}
+		}
+
+		/** Method toSlotSet copies the slots into a SlotSet, as a flat bitmap if they are dense enough for
+		 * 	the SlotSet to keep one, otherwise as a sorted array.
+		 * @return SlotSet
+		 */
+		SlotSet toSlotSet() {
+			int wordCount = wordCount();
+			if (cardinality >= wordCount * 2) {
+				long[] words = new long[wordCount];
+				orInto(words);
+				return SlotSet.ofWords(words);
+			}
+			int[] slots = new int[cardinality];
+			int count = 0;
+			for (int high = 0; high < containers.length; high++) {
+				if (containers[high] != null) {
+					count = containers[high].copyTo(slots, count, high << 16);
+				}
+			}
+			return SlotSet.ofSorted(slots, count);
+		}
+	}
+
+	/** This class holds the slots of one key within one chunk of 65536 slots, by their low 16 bits.
+	 * 	It is a sorted array until it holds more than ARRAY_LIMIT slots, then a bitmap, and goes back to an
+	 * 	array once it falls to half of that, so adding and removing around the limit does not convert it
+	 * 	every time.
+	 */
+	private static final class Container {
+
+		private static final int ARRAY_LIMIT = 4096;
+		private static final int BITMAP_WORDS = 1024;
+
+		// One of values and words is null.
+		private char[] values = new char[4];
+		private long[] words = null;
+		private int count = 0;
+
+		boolean add(char value) {
+			if (words != null) {
+				long bit = 1L << value;
+				if ((words[value >>> 6] & bit) != 0L) {
+					return false;
+				}
+				words[value >>> 6] |= bit;
+				count++;
+				return true;
+			}
+			int position = binarySearch(value);
+			if (position >= 0) {
+				return false;
+			}
+			if (count == ARRAY_LIMIT) {
+				toBitmap();
+				return add(value);
+			}
+			position = -(position + 1);
+			if (count == values.length) {
+				char[] grownArray = new char[Math.min(ARRAY_LIMIT, values.length * 2)];
+				System.arraycopy(values, 0, grownArray, 0, count);
+				values = grownArray;
+			}
+			System.arraycopy(values, position, values, position + 1, count - position);
+			values[position] = value;
+			count++;
+			return true;
+		}
+
+		boolean remove(char value) {
+			if (words != null) {
+				long bit = 1L << value;
+				if ((words[value >>> 6] & bit) == 0L) {
+					return false;
+				}
+				words[value >>> 6] &= ~bit;
+				count--;
+				if (count <= ARRAY_LIMIT / 2) {
+					toArray();
+				}
+				return true;
+			}
+			int position = binarySearch(value);
+			if (position < 0) {
+				return false;
+			}
+			System.arraycopy(values, position + 1, values, position, count - position - 1);
+			count--;
+			return true;
+		}
+
+		int maxValue() {
+			if (words == null) {
+				return values[count - 1];
+			}
+			for (int index = BITMAP_WORDS - 1; index >= 0; index--) {
+				if (words[index] != 0L) {
+					return (index << 6) + 63 - Long.numberOfLeadingZeros(words[index]);
+				}
+			}
+			return 0;
+		}
+
+		void orInto(long[] flatWords, int wordBase) {
+			if (words != null) {
+				int wordCount = Math.min(BITMAP_WORDS, flatWords.length - wordBase);
+				for (int index = 0; index < wordCount; index++) {
+					flatWords[wordBase + index] |= words[index];
+				}
+				return;
+			}
+			for (int index = 0; index < count; index++) {
+				flatWords[wordBase + (values[index] >>> 6)] |= 1L << values[index];
+			}
+		}
+
+		int copyTo(int[] slots, int position, int slotBase) {
+			if (words == null) {
+				for (int index = 0; index < count; index++) {
+					slots[position++] = slotBase + values[index];
+				}
+				return position;
+			}
+			for (int index = 0; index < BITMAP_WORDS; index++) {
+				for (long word = words[index]; word != 0L; word &= word - 1) {
+					slots[position++] = slotBase + (index << 6) + Long.numberOfTrailingZeros(word);
+				}
+			}
+			return position;
+		}
+
+		private void toBitmap() {
+			words = new long[BITMAP_WORDS];
+			for (int index = 0; index < count; index++) {
+				words[values[index] >>> 6] |= 1L << values[index];
+			}
+			values = null;
+		}
+
+		private void toArray() {
+			values = new char[count];
+			int position = 0;
+			for (int index = 0; index < BITMAP_WORDS; index++) {
+				for (long word = words[index]; word != 0L; word &= word - 1) {
+					values[position++] = (char) ((index << 6) + Long.numberOfTrailingZeros(word));
+				}
+			}
+			words = null;
+		}
+
+		private int binarySearch(char value) {
+			int low = 0;
+			int high = count - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				if (values[middle] < value) {
+					low = middle + 1;
+				} else if (values[middle] > value) {
+					high = middle - 1;
+				} else {
+					return middle;
+				}
+			}
+			return -(low + 1);
+		}
+	}
+}
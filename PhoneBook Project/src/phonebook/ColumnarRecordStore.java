@@ -0,0 +1,228 @@
+package phonebook;
+
+/** This class is a RecordStore that keeps each Person field in its own column instead of keeping Person objects.
+ * 	personID and phone are stored in long[] columns, zip and zip+4 in int[] columns, and the text fields
+ * 	as int codes into a StringDictionary per field. A directory of millions of people is then a handful of
+ * 	large primitive arrays, which the garbage collector does not have to trace, rather than millions of
+ * 	small objects. A Person is only built when get is called, and scans by personID, phone, zip, or
+ * 	state read the columns directly.
+ * 	Deleted slots are marked dead and reused by the next append, like PersonStore.
+ */
+public class ColumnarRecordStore implements RecordStore {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] personIDColumn;
+	private long[] phoneColumn;
+	private int[] zipColumn;
+	private int[] zipPlus4Column;
+	private int[] nameColumn;
+	private int[] street1Column;
+	private int[] street2Column;
+	private int[] cityColumn;
+	private int[] stateColumn;
+	private boolean[] liveColumn;
+
+	private StringDictionary nameDictionary = new StringDictionary();
+	private StringDictionary streetDictionary = new StringDictionary();
+	private StringDictionary cityDictionary = new StringDictionary();
+	private StringDictionary stateDictionary = new StringDictionary();
+
+	private int slotCount = 0;
+	private int liveCount = 0;
+	private int[] freeSlotArray = new int[INITIAL_CAPACITY];
+	private int freeSlotCount = 0;
+
+	/** Constructor to build an empty ColumnarRecordStore with the default initial capacity.
+	 */
+	public ColumnarRecordStore() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/** Constructor to build an empty ColumnarRecordStore with room for initialCapacity people before it grows.
+	 * @param initialCapacity
+	 */
+	public ColumnarRecordStore(int initialCapacity) {
+		allocateColumns(Math.max(initialCapacity, INITIAL_CAPACITY));
+	}
+
+	@Override
+	public int append(Person newPerson) {
+		int slot;
+		if (freeSlotCount > 0) {
+			freeSlotCount--;
+			slot = freeSlotArray[freeSlotCount];
+		} else {
+			ensureCapacity(slotCount + 1);
+			slot = slotCount;
+			slotCount++;
+		}
+		writeColumns(slot, newPerson);
+		liveColumn[slot] = true;
+		liveCount++;
+		return slot;
+	}
+
+	@Override
+	public int[] appendAll(Person[] newPeople, int count) {
+		int[] slots = new int[count];
+		ensureCapacity(slotCount + Math.max(0, count - freeSlotCount));
+		for (int index = 0; index < count; index++) {
+			slots[index] = append(newPeople[index]);
+		}
+		return slots;
+	}
+
+	@Override
+	public boolean set(int slot, Person updatedPerson) {
+		if (!isLive(slot) || updatedPerson == null) {
+			System.out.println("ColumnarRecordStore.set - slot " + slot + " is not in use.");
+			return false;
+		}
+		// Acquire the new codes before releasing the old ones so an unchanged String keeps its code.
+		int oldName = nameColumn[slot];
+		int oldStreet1 = street1Column[slot];
+		int oldStreet2 = street2Column[slot];
+		int oldCity = cityColumn[slot];
+		int oldState = stateColumn[slot];
+		writeColumns(slot, updatedPerson);
+		nameDictionary.release(oldName);
+		streetDictionary.release(oldStreet1);
+		streetDictionary.release(oldStreet2);
+		cityDictionary.release(oldCity);
+		stateDictionary.release(oldState);
+		return true;
+	}
+
+	@Override
+	public boolean delete(int slot) {
+		if (!isLive(slot)) {
+			System.out.println("ColumnarRecordStore.delete - slot " + slot + " is not in use.");
+			return false;
+		}
+		nameDictionary.release(nameColumn[slot]);
+		streetDictionary.release(street1Column[slot]);
+		streetDictionary.release(street2Column[slot]);
+		cityDictionary.release(cityColumn[slot]);
+		stateDictionary.release(stateColumn[slot]);
+		liveColumn[slot] = false;
+		liveCount--;
+		if (freeSlotCount == freeSlotArray.length) {
+			int[] grownArray = new int[freeSlotArray.length * 2];
+			System.arraycopy(freeSlotArray, 0, grownArray, 0, freeSlotCount);
+			freeSlotArray = grownArray;
+		}
+		freeSlotArray[freeSlotCount] = slot;
+		freeSlotCount++;
+		return true;
+	}
+
+	/** Method get builds a new Person from the columns of the slot, or returns null if the slot is not live.
+	 * @param slot
+	 * @return Person
+	 */
+	@Override
+	public Person get(int slot) {
+		if (!isLive(slot)) {
+			return null;
+		}
+		return new Person(personIDColumn[slot], nameDictionary.lookup(nameColumn[slot]),
+				streetDictionary.lookup(street1Column[slot]), streetDictionary.lookup(street2Column[slot]),
+				cityDictionary.lookup(cityColumn[slot]), stateDictionary.lookup(stateColumn[slot]),
+				zipColumn[slot], zipPlus4Column[slot], phoneColumn[slot]);
+	}
+
+	@Override
+	public boolean isLive(int slot) {
+		return slot >= 0 && slot < slotCount && liveColumn[slot];
+	}
+
+	@Override
+	public int slotCount() {
+		return slotCount;
+	}
+
+	@Override
+	public int liveCount() {
+		return liveCount;
+	}
+
+	@Override
+	public long getPersonID(int slot) {
+		return personIDColumn[slot];
+	}
+
+	@Override
+	public long getPersonPhone(int slot) {
+		return phoneColumn[slot];
+	}
+
+	@Override
+	public int getAddressZip(int slot) {
+		return zipColumn[slot];
+	}
+
+	@Override
+	public String getAddressState(int slot) {
+		return stateDictionary.lookup(stateColumn[slot]);
+	}
+
+	private void writeColumns(int slot, Person currentPerson) {
+		personIDColumn[slot] = currentPerson.getPersonID();
+		phoneColumn[slot] = currentPerson.getPersonPhone();
+		zipColumn[slot] = currentPerson.getAddressZip();
+		zipPlus4Column[slot] = currentPerson.getAddressZipPlus4();
+		nameColumn[slot] = nameDictionary.acquire(currentPerson.getPersonName());
+		street1Column[slot] = streetDictionary.acquire(currentPerson.getAddressStreet1());
+		street2Column[slot] = streetDictionary.acquire(currentPerson.getAddressStreet2());
+		cityColumn[slot] = cityDictionary.acquire(currentPerson.getAddressCity());
+		stateColumn[slot] = stateDictionary.acquire(currentPerson.getAddressState());
+	}
+
+	private void allocateColumns(int capacity) {
+		personIDColumn = new long[capacity];
+		phoneColumn = new long[capacity];
+		zipColumn = new int[capacity];
+		zipPlus4Column = new int[capacity];
+		nameColumn = new int[capacity];
+		street1Column = new int[capacity];
+		street2Column = new int[capacity];
+		cityColumn = new int[capacity];
+		stateColumn = new int[capacity];
+		liveColumn = new boolean[capacity];
+	}
+
+	/** Method ensureCapacity doubles every column until they can hold requiredSlots slots.
+	 * @param requiredSlots
+	 */
+	private void ensureCapacity(int requiredSlots) {
+		if (requiredSlots <= liveColumn.length) {
+			return;
+		}
+		int newCapacity = liveColumn.length;
+		while (newCapacity < requiredSlots) {
+			newCapacity = newCapacity * 2;
+		}
+		long[] oldPersonIDColumn = personIDColumn;
+		long[] oldPhoneColumn = phoneColumn;
+		int[] oldZipColumn = zipColumn;
+		int[] oldZipPlus4Column = zipPlus4Column;
+		int[] oldNameColumn = nameColumn;
+		int[] oldStreet1Column = street1Column;
+		int[] oldStreet2Column = street2Column;
+		int[] oldCityColumn = cityColumn;
+		int[] oldStateColumn = stateColumn;
+		boolean[] oldLiveColumn = liveColumn;
+		allocateColumns(newCapacity);
+		System.arraycopy(oldPersonIDColumn, 0, personIDColumn, 0, slotCount);
+		System.arraycopy(oldPhoneColumn, 0, phoneColumn, 0, slotCount);
+		System.arraycopy(oldZipColumn, 0, zipColumn, 0, slotCount);
+		System.arraycopy(oldZipPlus4Column, 0, zipPlus4Column, 0, slotCount);
+		System.arraycopy(oldNameColumn, 0, nameColumn, 0, slotCount);
+		System.arraycopy(oldStreet1Column, 0, street1Column, 0, slotCount);
+		System.arraycopy(oldStreet2Column, 0, street2Column, 0, slotCount);
+		System.arraycopy(oldCityColumn, 0, cityColumn, 0, slotCount);
+		System.arraycopy(oldStateColumn, 0, stateColumn, 0, slotCount);
+		System.arraycopy(oldLiveColumn, 0, liveColumn, 0, slotCount);
+	}
+}
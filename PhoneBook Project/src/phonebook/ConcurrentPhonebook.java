@@ -0,0 +1,535 @@
+package phonebook;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/** This class is a Phonebook that many threads can search while other threads add, update, and delete people.
+ * 	Changes are serialized by the write lock of a StampedLock and personIDs are handed out by an AtomicLong.
+ * 	Searches hold the read lock, so many run at once and none sees a half made change. The query cache is
+ * 	read and filled outside the lock. numberOfPeople, isPersonInPhonebook, and the phone number search, which
+ * 	read a count or probe one hash table for a few people, first run with an optimistic read stamp and no
+ * 	lock. The stamp is checked once the people found are copied out, before they are returned, and the lookup
+ * 	runs again holding the read lock if a change was made meanwhile, so a read torn by the change, such as a
+ * 	string length in an off-heap chunk being compacted, is never returned. Searches that check many people
+ * 	hold the read lock, since any change made while they run would make them start over.
+ * 	The read lock of a StampedLock does not wait for a writer that is waiting, so a steady stream of searches
+ * 	could hold off changes for good. A writer therefore counts itself as waiting before it asks for the write
+ * 	lock, and a search that starts while writers are waiting lets them take the lock first. It waits only
+ * 	until those writers have the lock, not for their changes or for writers that come later, so a steady
+ * 	stream of changes cannot hold off searches either.
+ * 	The prompts of addPerson, updatePerson, and deletePerson are answered before the write lock is taken,
+ * 	and checkpoint writes the current snapshot holding no lock, so searches and changes go on meanwhile.
+ * 	A change is appended to the PhonebookLog and made holding the write lock, and the writer waits for the log
+ * 	to be forced to the disk only after the lock is released, so the changes of many threads share a force.
+ * 	Searches may see a change before it is forced, but its writer is not told it was made until then. If the
+ * 	force fails, the change stays made and the writer is told it failed, since it may not survive a restart.
+ * 	Every change also publishes the next version of an immutable PhonebookSnapshot. getSnapshot returns the
+ * 	current one with a single volatile read, and a long report can read it without any lock while changes
+ * 	go on, seeing the phonebook as it was when the report started. toString lists the current snapshot.
+ */
+public class ConcurrentPhonebook extends Phonebook {
+
+	private final StampedLock phonebookLock = new StampedLock();
+	private final Object checkpointMonitor = new Object();
+	// A search that finds waitingWriters is not 0 waits on this until as many writers have taken the lock as
+	// had asked for it when the search started, so a waiting change goes before new searches. The counts are
+	// guarded by writerGate; waitingWriters is also read without it.
+	private final Object writerGate = new Object();
+	private volatile int waitingWriters = 0;
+	private long requestedWriters = 0;
+	private long admittedWriters = 0;
+	// StampedLock is not reentrant, so methods called while the current thread holds a lock skip locking.
+	private volatile Thread writerThread = null;
+	private final ThreadLocal<Boolean> holdsReadLock = new ThreadLocal<Boolean>();
+	// Only replaced while the write lock is held, and read by anyone without a lock.
+	private volatile PhonebookSnapshot currentSnapshot;
+	// The log entries of the change being made, which its writer waits for once the write lock is released.
+	// Guarded by the write lock.
+	private PhonebookLog pendingLog = null;
+	private long pendingSequence = 0;
+
+	/** Constructor to build an empty ConcurrentPhonebook with just the name.
+	 * @param phonebookName
+	 */
+	public ConcurrentPhonebook(String phonebookName) {
+		super(phonebookName);
+		this.currentSnapshot = PhonebookSnapshot.of(phonebookName, super.getPhonebookPersonArray(true),
+				super.getNextPersonID());
+	}
+
+	/** Constructor to build a ConcurrentPhonebook with a name and the storage engine to keep the people in.
+	 * 	Any people already in personStore are indexed.
+	 * @param phonebookName
+	 * @param personStore
+	 */
+	public ConcurrentPhonebook(String phonebookName, RecordStore personStore) {
+		super(phonebookName, personStore);
+		this.currentSnapshot = PhonebookSnapshot.of(phonebookName, super.getPhonebookPersonArray(true),
+				super.getNextPersonID());
+	}
+
+	/** Constructor to build a ConcurrentPhonebook with a name and an array of People.
+	 * @param phonebookName
+	 * @param phonebookPersonArray
+	 */
+	public ConcurrentPhonebook(String phonebookName, Person[] phonebookPersonArray) {
+		super(phonebookName, phonebookPersonArray);
+		this.currentSnapshot = PhonebookSnapshot.of(phonebookName, super.getPhonebookPersonArray(true),
+				super.getNextPersonID());
+	}
+
+	/** Method getSnapshot returns the immutable snapshot of the phonebook as of the last change. It never blocks.
+	 * @return PhonebookSnapshot
+	 */
+	public PhonebookSnapshot getSnapshot() {
+		return currentSnapshot;
+	}
+
+	@Override
+	public void setPhonebookName(String phonebookName) {
+		writeLocked(() -> {
+			super.setPhonebookName(phonebookName);
+			currentSnapshot = currentSnapshot.withPhonebookName(phonebookName);
+			return true;
+		});
+	}
+
+	@Override
+	public void setPhonebookLog(PhonebookLog phonebookLog) {
+		writeLocked(() -> {
+			super.setPhonebookLog(phonebookLog);
+			return true;
+		});
+	}
+
+	@Override
+	public void setPhonebookCheckpoint(PhonebookCheckpoint phonebookCheckpoint, long logEntriesPerCheckpoint) {
+		writeLocked(() -> {
+			super.setPhonebookCheckpoint(phonebookCheckpoint, logEntriesPerCheckpoint);
+			return true;
+		});
+	}
+
+	/** Method setQueryCache swaps the cache holding the write lock, so no change is half reported to either cache.
+	 * 	Searches are run holding the read lock, and a search that starts before a change is finished does not
+	 * 	keep its result, so the cache never holds a result older than the phonebook.
+	 * @param queryCache
+	 */
+	@Override
+	public void setQueryCache(QueryCache queryCache) {
+		writeLocked(() -> {
+			super.setQueryCache(queryCache);
+			return true;
+		});
+	}
+
+	/** Method checkpoint writes the current PhonebookSnapshot without holding any lock on the phonebook, so
+	 * 	searches and changes go on while it is written. A change appends to the log and publishes its snapshot
+	 * 	holding the write lock, so the snapshot and a mark of the end of the log are taken together holding it,
+	 * 	which takes no I/O. Once the snapshot is on the disk, only the log entries before the mark are
+	 * 	discarded, and those appended while it was written are kept. Only one snapshot is written at a time.
+	 * @return boolean - true if the snapshot was written, false if there is no checkpoint or it failed.
+	 */
+	@Override
+	public boolean checkpoint() {
+		synchronized (checkpointMonitor) {
+			PhonebookCheckpoint[] checkpointHolder = new PhonebookCheckpoint[1];
+			PhonebookLog[] logHolder = new PhonebookLog[1];
+			PhonebookLog.Mark[] markHolder = new PhonebookLog.Mark[1];
+			PhonebookSnapshot[] snapshotHolder = new PhonebookSnapshot[1];
+			if (!writeLocked(() -> {
+				checkpointHolder[0] = getPhonebookCheckpoint();
+				logHolder[0] = getPhonebookLog();
+				snapshotHolder[0] = currentSnapshot;
+				try {
+					markHolder[0] = logHolder[0] == null ? null : logHolder[0].mark();
+					return true;
+				} catch (IOException exception) {
+					System.out.println("checkpoint - could not read the end of the log: " + exception.getMessage());
+					return false;
+				}
+			})) {
+				return false;
+			}
+			if (checkpointHolder[0] == null) {
+				System.out.println("checkpoint - no checkpoint file is set.");
+				return false;
+			}
+			try {
+				checkpointHolder[0].write(snapshotHolder[0]);
+				if (logHolder[0] != null) {
+					logHolder[0].truncateBefore(markHolder[0]);
+				}
+				return true;
+			} catch (IOException exception) {
+				System.out.println("checkpoint - could not write the snapshot: " + exception.getMessage());
+				return false;
+			}
+		}
+	}
+
+	@Override
+	public Person[] getPhonebookPersonArray() {
+		return readLocked(() -> super.getPhonebookPersonArray());
+	}
+
+	@Override
+	public Person[] getPhonebookPersonArray(boolean alphabeticalOrder) {
+		return readLocked(() -> super.getPhonebookPersonArray(alphabeticalOrder));
+	}
+
+	@Override
+	Person getPersonAtRank(int rank) {
+		return readLocked(() -> super.getPersonAtRank(rank));
+	}
+
+	@Override
+	public boolean isPersonInPhonebook(Person currentPerson) {
+		return optimisticRead(() -> super.isPersonInPhonebook(currentPerson));
+	}
+
+	@Override
+	Person[] runSearch(Supplier<Person[]> search) {
+		return readLocked(search);
+	}
+
+	@Override
+	Person[] runLookup(Supplier<Person[]> lookup) {
+		return optimisticRead(lookup);
+	}
+
+	@Override
+	public SlotSet findSlots(String searchString, int searchType) {
+		return readLocked(() -> super.findSlots(searchString, searchType));
+	}
+
+	@Override
+	public SlotSet findSlots(long searchPhone) {
+		return readLocked(() -> super.findSlots(searchPhone));
+	}
+
+	@Override
+	public SlotSet findSlots(int searchZip) {
+		return readLocked(() -> super.findSlots(searchZip));
+	}
+
+	@Override
+	public SlotSet allSlots() {
+		return readLocked(() -> super.allSlots());
+	}
+
+	/** Method getPeople returns the people in slots sorted by PersonName. A set refers to the phonebook as of
+	 * 	its search, so a set found before another thread deleted or added people may skip a deleted Person or
+	 * 	name a slot that has since been reused. Combine searches when no changes are being made.
+	 * @param slots
+	 * @return Person[]
+	 */
+	@Override
+	public Person[] getPeople(SlotSet slots) {
+		return readLocked(() -> super.getPeople(slots));
+	}
+
+	@Override
+	public Person[] suggest(String prefix, int limit) {
+		return readLocked(() -> super.suggest(prefix, limit));
+	}
+
+	@Override
+	public Integer numberOfPeople() {
+		return optimisticRead(() -> super.numberOfPeople());
+	}
+
+	/** Method toString lists the people in the current snapshot without taking any lock.
+	 * @return String with the salient details of the phonebook
+	 */
+	@Override
+	public String toString() {
+		StringWriter outputWriter = new StringWriter();
+		try {
+			new PhonebookExporter(currentSnapshot).export(outputWriter, PhonebookExporter.Format.HUMAN);
+		} catch (IOException exception) {
+			// A StringWriter does not throw.
+		}
+		return outputWriter.toString();
+	}
+
+	@Override
+	boolean storeNewPerson(Person newPerson) {
+		return writeLocked(() -> super.storeNewPerson(newPerson));
+	}
+
+	@Override
+	boolean storeNewPeople(Person[] newPeople, int count) {
+		return writeLocked(() -> super.storeNewPeople(newPeople, count));
+	}
+
+	@Override
+	boolean storeNewPersonWithID(Person newPerson) {
+		return writeLocked(() -> super.storeNewPersonWithID(newPerson));
+	}
+
+	@Override
+	boolean storeNewPeopleWithIDs(Person[] newPeople, int count) {
+		return writeLocked(() -> super.storeNewPeopleWithIDs(newPeople, count));
+	}
+
+	@Override
+	boolean storeUpdatedPerson(Person updatedPerson) {
+		return writeLocked(() -> super.storeUpdatedPerson(updatedPerson));
+	}
+
+	@Override
+	boolean storeDeletedPerson(Person existingPerson) {
+		return writeLocked(() -> super.storeDeletedPerson(existingPerson));
+	}
+
+	@Override
+	boolean storeDeletedPeople(Person[] existingPeople, int count) {
+		return writeLocked(() -> super.storeDeletedPeople(existingPeople, count));
+	}
+
+	@Override
+	PhonebookBatch.Result[] storeBatch(PhonebookBatch batch) {
+		PhonebookBatch.Result[][] resultsHolder = new PhonebookBatch.Result[1][];
+		boolean isForced = writeLocked(() -> {
+			resultsHolder[0] = super.storeBatch(batch);
+			return true;
+		});
+		if (resultsHolder[0] == null) {
+			PhonebookBatch.Result[] results = new PhonebookBatch.Result[batch.size()];
+			for (int operation = 0; operation < results.length; operation++) {
+				results[operation] = PhonebookBatch.Result.problem(PhonebookBatch.Status.FAILED,
+						"a change cannot be made while this thread holds the read lock.");
+			}
+			return results;
+		}
+		PhonebookBatch.Result[] results = resultsHolder[0];
+		if (!isForced) {
+			// The changes were made, but the log could not be forced, so they may not survive a restart.
+			for (int operation = 0; operation < results.length; operation++) {
+				PhonebookBatch.Status status = results[operation].getStatus();
+				if (status == PhonebookBatch.Status.ADDED || status == PhonebookBatch.Status.UPDATED
+						|| status == PhonebookBatch.Status.DELETED) {
+					results[operation] = PhonebookBatch.Result.problem(PhonebookBatch.Status.FAILED,
+							"made, but the phonebook log could not be forced to the disk.");
+				}
+			}
+		}
+		return results;
+	}
+
+	@Override
+	void loadCheckpointPeople(Person[] loadedPeople, long savedNextPersonID) {
+		writeLocked(() -> {
+			super.loadCheckpointPeople(loadedPeople, savedNextPersonID);
+			return true;
+		});
+	}
+
+	@Override
+	void applyLoggedAdd(Person loggedPerson) {
+		writeLocked(() -> {
+			super.applyLoggedAdd(loggedPerson);
+			return true;
+		});
+	}
+
+	@Override
+	void applyLoggedAdds(Person[] loggedPeople, int count) {
+		writeLocked(() -> {
+			super.applyLoggedAdds(loggedPeople, count);
+			return true;
+		});
+	}
+
+	@Override
+	void applyLoggedUpdate(Person loggedPerson) {
+		writeLocked(() -> {
+			super.applyLoggedUpdate(loggedPerson);
+			return true;
+		});
+	}
+
+	@Override
+	void applyLoggedDelete(long personID) {
+		writeLocked(() -> {
+			super.applyLoggedDelete(personID);
+			return true;
+		});
+	}
+
+	/** Method awaitLogged leaves the wait for the log entries of a change to writeLocked, which waits once the
+	 * 	write lock is released. Called without the write lock, it waits at once.
+	 * @param phonebookLog
+	 * @param sequence
+	 * @throws IOException if the entries could not be forced
+	 */
+	@Override
+	void awaitLogged(PhonebookLog phonebookLog, long sequence) throws IOException {
+		if (writerThread != Thread.currentThread()) {
+			super.awaitLogged(phonebookLog, sequence);
+			return;
+		}
+		pendingLog = phonebookLog;
+		pendingSequence = Math.max(pendingSequence, sequence);
+	}
+
+	// The base class calls these while the write lock is held, or from a constructor before the first snapshot.
+	@Override
+	void personStored(Person newPerson) {
+		if (currentSnapshot != null) {
+			currentSnapshot = currentSnapshot.withPersonAdded(newPerson);
+		}
+	}
+
+	@Override
+	void peopleStored(Person[] newPeople, int count) {
+		if (currentSnapshot != null) {
+			currentSnapshot = currentSnapshot.withPeopleAdded(newPeople, count);
+		}
+	}
+
+	@Override
+	void personReplaced(Person updatedPerson) {
+		if (currentSnapshot != null) {
+			currentSnapshot = currentSnapshot.withPersonReplaced(updatedPerson);
+		}
+	}
+
+	@Override
+	void personRemoved(Person existingPerson) {
+		if (currentSnapshot != null) {
+			currentSnapshot = currentSnapshot.withPersonRemoved(existingPerson.getPersonID());
+		}
+	}
+
+	/** Method optimisticRead runs reader without locking and returns its result if no change was made while it
+	 * 	ran. Otherwise the result is discarded and reader is run again holding the read lock. reader must not
+	 * 	change anything, since it may run against a half made change, and must only probe an index for a few
+	 * 	people, since the work it does on a torn read is thrown away. Its result must be a copy, so checking
+	 * 	the stamp after reader returns covers everything the caller will see.
+	 * @param <T>
+	 * @param reader
+	 * @return T - the result of reader
+	 */
+	private <T> T optimisticRead(Supplier<T> reader) {
+		if (writerThread == Thread.currentThread()) {
+			return reader.get();
+		}
+		long stamp = phonebookLock.tryOptimisticRead();
+		if (stamp != 0L) {
+			try {
+				T result = reader.get();
+				if (phonebookLock.validate(stamp)) {
+					return result;
+				}
+			} catch (RuntimeException exception) {
+				// An array resized or an index moved by the writer part way through. Retry below under the lock.
+				if (phonebookLock.validate(stamp)) {
+					throw exception;
+				}
+			}
+		}
+		return readLocked(reader);
+	}
+
+	/** Method readLocked runs reader holding the read lock, or directly if this thread already holds a lock.
+	 * @param <T>
+	 * @param reader
+	 * @return T - the result of reader
+	 */
+	private <T> T readLocked(Supplier<T> reader) {
+		if (writerThread == Thread.currentThread() || holdsReadLock.get() != null) {
+			return reader.get();
+		}
+		if (waitingWriters != 0) {
+			waitForWriters();
+		}
+		long stamp = phonebookLock.readLock();
+		holdsReadLock.set(Boolean.TRUE);
+		try {
+			return reader.get();
+		} finally {
+			holdsReadLock.remove();
+			phonebookLock.unlockRead(stamp);
+		}
+	}
+
+	/** Method writeLocked runs writer holding the write lock, or directly if this thread already holds it.
+	 * 	Once the lock is released, it waits for the log entries writer appended to be forced to the disk.
+	 * @param writer
+	 * @return boolean - the result of writer, or false if its log entries could not be forced
+	 */
+	private boolean writeLocked(Supplier<Boolean> writer) {
+		if (writerThread == Thread.currentThread()) {
+			return writer.get();
+		}
+		if (holdsReadLock.get() != null) {
+			System.out.println("writeLocked - a change cannot be made while this thread holds the read lock.");
+			return false;
+		}
+		synchronized (writerGate) {
+			waitingWriters++;
+			requestedWriters++;
+		}
+		boolean wasSuccessful;
+		PhonebookLog forceLog;
+		long forceSequence;
+		long stamp;
+		try {
+			stamp = phonebookLock.writeLock();
+		} finally {
+			synchronized (writerGate) {
+				waitingWriters--;
+				admittedWriters++;
+				writerGate.notifyAll();
+			}
+		}
+		writerThread = Thread.currentThread();
+		try {
+			wasSuccessful = writer.get();
+			if (currentSnapshot != null && currentSnapshot.getNextPersonID() != super.getNextPersonID()) {
+				// Such as a snapshot loaded with a nextPersonID past its last Person.
+				currentSnapshot = currentSnapshot.withNextPersonID(super.getNextPersonID());
+			}
+		} finally {
+			forceLog = pendingLog;
+			forceSequence = pendingSequence;
+			pendingLog = null;
+			pendingSequence = 0;
+			writerThread = null;
+			phonebookLock.unlockWrite(stamp);
+		}
+		if (forceLog != null) {
+			try {
+				forceLog.awaitForce(forceSequence);
+			} catch (IOException exception) {
+				System.out.println("writeLocked - the change was made, but the phonebook log could not be forced: "
+						+ exception.getMessage());
+				return false;
+			}
+		}
+		return wasSuccessful;
+	}
+
+	/** Method waitForWriters waits until the writers that are waiting for the write lock have taken it. It
+	 * 	does not wait for their changes to be made, which the read lock does, or for writers that ask for the
+	 * 	lock meanwhile, so a search waits for each writer at most once. An interrupt stops the wait, and the
+	 * 	interrupt status is kept for the caller.
+	 */
+	private void waitForWriters() {
+		synchronized (writerGate) {
+			long writersAhead = requestedWriters;
+			while (admittedWriters < writersAhead) {
+				try {
+					writerGate.wait();
+				} catch (InterruptedException exception) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package phonebook;
+
+/** This class maps long keys (such as phone numbers) to the PersonStore slots that hold them.
+ * 	It is an open-addressing hash table with linear probing, so keys are never boxed into Long objects.
+ * 	Each key keeps its slots in a small sorted int array, since several people can share a key.
+ * 	Removing the last slot of a key shifts the following entries back, so no tombstones are left behind.
+ */
+public class LongSlotIndex {
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int[] NO_SLOTS = new int[0];
+
+	private long[] keyArray = new long[INITIAL_CAPACITY];
+	private int[][] slotListArray = new int[INITIAL_CAPACITY][];
+	private int[] slotCountArray = new int[INITIAL_CAPACITY];
+	private int keyCount = 0;
+
+	/** Method add records that slot holds key. Adding the same key and slot twice has no effect.
+	 * @param key
+	 * @param slot
+	 */
+	public void add(long key, int slot) {
+		if ((keyCount + 1) * 4 > keyArray.length * 3) {
+			rehash(keyArray.length * 2);
+		}
+		int bucket = findBucket(key);
+		if (slotListArray[bucket] == null) {
+			keyArray[bucket] = key;
+			slotListArray[bucket] = new int[2];
+			slotCountArray[bucket] = 0;
+			keyCount++;
+		}
+		int[] slotList = slotListArray[bucket];
+		int count = slotCountArray[bucket];
+		int position = count;
+		// Slots are usually added in ascending order, such as when a snapshot is loaded, so check the end first.
+		if (count > 0 && slotList[count - 1] >= slot) {
+			position = binarySearch(slotList, count, slot);
+			if (position >= 0) {
+				return;
+			}
+			position = -(position + 1);
+		}
+		if (count == slotList.length) {
+			int[] grownList = new int[count * 2];
+			System.arraycopy(slotList, 0, grownList, 0, count);
+			slotList = grownList;
+			slotListArray[bucket] = slotList;
+		}
+		System.arraycopy(slotList, position, slotList, position + 1, count - position);
+		slotList[position] = slot;
+		slotCountArray[bucket] = count + 1;
+	}
+
+	/** Method remove removes slot from the slots recorded for key.
+	 * @param key
+	 * @param slot
+	 * @return boolean - true if the slot was recorded for key and was removed, otherwise false.
+	 */
+	public boolean remove(long key, int slot) {
+		int bucket = findBucket(key);
+		if (slotListArray[bucket] == null) {
+			return false;
+		}
+		int[] slotList = slotListArray[bucket];
+		int count = slotCountArray[bucket];
+		int position = binarySearch(slotList, count, slot);
+		if (position < 0) {
+			return false;
+		}
+		System.arraycopy(slotList, position + 1, slotList, position, count - position - 1);
+		slotCountArray[bucket] = count - 1;
+		if (count == 1) {
+			deleteBucket(bucket);
+		}
+		return true;
+	}
+
+	/** Method get returns a new array of the slots recorded for key in ascending slot order.
+	 * @param key
+	 * @return int[] - the slots, or an empty array if there are none
+	 */
+	public int[] get(long key) {
+		int bucket = findBucket(key);
+		if (slotListArray[bucket] == null) {
+			return NO_SLOTS;
+		}
+		int[] outputArray = new int[slotCountArray[bucket]];
+		System.arraycopy(slotListArray[bucket], 0, outputArray, 0, outputArray.length);
+		return outputArray;
+	}
+
+	/** Method firstSlot returns the lowest slot recorded for key without copying the slots, for keys such as
+	 * 	personIDs that are normally held by a single slot.
+	 * @param key
+	 * @return int - the slot, or -1 if there is none
+	 */
+	public int firstSlot(long key) {
+		int bucket = findBucket(key);
+		if (slotListArray[bucket] == null) {
+			return -1;
+		}
+		return slotListArray[bucket][0];
+	}
+
+	/** Method count returns the number of slots recorded for key without copying them.
+	 * @param key
+	 * @return int
+	 */
+	public int count(long key) {
+		int bucket = findBucket(key);
+		if (slotListArray[bucket] == null) {
+			return 0;
+		}
+		return slotCountArray[bucket];
+	}
+
+	/** Method keyCount returns the number of distinct keys in the index.
+	 * @return int
+	 */
+	public int keyCount() {
+		return keyCount;
+	}
+
+	/** Method findBucket returns the bucket holding key, or the empty bucket where it would be added.
+	 * @param key
+	 * @return int
+	 */
+	private int findBucket(long key) {
+		int mask = keyArray.length - 1;
+		int bucket = hash(key) & mask;
+		while (slotListArray[bucket] != null && keyArray[bucket] != key) {
+			bucket = (bucket + 1) & mask;
+		}
+		return bucket;
+	}
+
+	/** Method deleteBucket empties the bucket, then moves any following entries of the same probe run
+	 * 	back into the gap so lookups never stop early.
+	 * @param bucket
+	 */
+	private void deleteBucket(int bucket) {
+		int mask = keyArray.length - 1;
+		slotListArray[bucket] = null;
+		keyCount--;
+		int gap = bucket;
+		int next = (gap + 1) & mask;
+		while (slotListArray[next] != null) {
+			int home = hash(keyArray[next]) & mask;
+			// Move the entry if its home bucket is not between the gap and its current bucket.
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				keyArray[gap] = keyArray[next];
+				slotListArray[gap] = slotListArray[next];
+				slotCountArray[gap] = slotCountArray[next];
+				slotListArray[next] = null;
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+	}
+
+	private void rehash(int newCapacity) {
+		long[] oldKeyArray = keyArray;
+		int[][] oldSlotListArray = slotListArray;
+		int[] oldSlotCountArray = slotCountArray;
+		keyArray = new long[newCapacity];
+		slotListArray = new int[newCapacity][];
+		slotCountArray = new int[newCapacity];
+		for (int index = 0; index < oldKeyArray.length; index++) {
+			if (oldSlotListArray[index] != null) {
+				int bucket = findBucket(oldKeyArray[index]);
+				keyArray[bucket] = oldKeyArray[index];
+				slotListArray[bucket] = oldSlotListArray[index];
+				slotCountArray[bucket] = oldSlotCountArray[index];
+			}
+		}
+	}
+
+	/** Method hash spreads the bits of key so nearby phone numbers land in different buckets.
+	 * @param key
+	 * @return int
+	 */
+	static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private static int binarySearch(int[] slotList, int count, int slot) {
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (slotList[middle] < slot) {
+				low = middle + 1;
+			} else if (slotList[middle] > slot) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+}
@@ -0,0 +1,664 @@
+package phonebook;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** This class is a read-only phonebook served straight from a memory-mapped file, for lookup nodes that do
+ * 	not change the directory. Opening the file only reads the header and maps the sections, so startup takes
+ * 	the same time however many people the file holds, and the operating system loads pages as they are used.
+ * 	Every JVM that maps the same file shares the same page cache instead of holding its own copy of the people.
+ * 	The file is built from a Phonebook by write and has these sections after a 96 byte header -
+ * 	Records - one 56 byte record per Person in PersonName order, so a record number is also the name rank and
+ * 		matches sorted by record number are sorted by PersonName. A record holds personID, phone, zip, zip+4,
+ * 		and the offsets of its text in the string section, including the lowercased full, first, and last names.
+ * 	Strings - each text value as a 2 byte length and UTF-8 bytes. Street 2, city, and state values are shared.
+ * 	Phone index - the phone numbers sorted, then the record number of each.
+ * 	Zip index - the zip codes sorted, then the record number of each.
+ * 	Trigram index - the sorted trigrams of the lowercased full names, the start of each trigram's postings,
+ * 		and the postings: the record numbers whose name contains the trigram, in ascending order. First and last
+ * 		names are part of the full name, so name searches of three or more characters start from the postings.
+ * 	Street, city, and state searches check the records in place without an index, split over the processors
+ * 	by a ParallelScan once the file holds enough people.
+ */
+public class MappedPhonebook {
+
+	private static final int FILE_MAGIC = 0x50424D50;
+	private static final int FILE_VERSION = 1;
+	private static final int HEADER_SIZE = 96;
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private static final int RECORD_SIZE = 56;
+	private static final int PERSON_ID_OFFSET = 0;
+	private static final int PHONE_OFFSET = 8;
+	private static final int ZIP_OFFSET = 16;
+	private static final int ZIP_PLUS_4_OFFSET = 20;
+	private static final int NAME_OFFSET = 24;
+	private static final int STREET_1_OFFSET = 28;
+	private static final int STREET_2_OFFSET = 32;
+	private static final int CITY_OFFSET = 36;
+	private static final int STATE_OFFSET = 40;
+	private static final int FOLDED_NAME_OFFSET = 44;
+	private static final int FOLDED_FIRST_NAME_OFFSET = 48;
+	private static final int FOLDED_LAST_NAME_OFFSET = 52;
+
+	private static final int[] NO_RECORDS = new int[0];
+
+	private final Path filePath;
+	private final String phonebookName;
+	private final int personCount;
+	private final int trigramCount;
+	private final long nextPersonID;
+	private final MappedByteBuffer recordSection;
+	private final MappedByteBuffer stringSection;
+	private final MappedByteBuffer phoneSection;
+	private final MappedByteBuffer zipSection;
+	private final MappedByteBuffer trigramSection;
+	private final MappedByteBuffer postingSection;
+	private volatile ParallelScan parallelScan = new ParallelScan();
+
+	/** Constructor to map the phonebook file at filePath. Only the header is read; the sections are loaded
+	 * 	by the operating system as they are searched.
+	 * @param filePath - a file built by write
+	 * @throws IOException if the file cannot be mapped or is not a mapped phonebook file
+	 */
+	public MappedPhonebook(Path filePath) throws IOException {
+		this.filePath = filePath;
+		try (FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+			long fileSize = fileChannel.size();
+			if (fileSize < HEADER_SIZE) {
+				throw new IOException(filePath + " is not a mapped phonebook file.");
+			}
+			MappedByteBuffer header = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt(0) != FILE_MAGIC || header.getInt(4) != FILE_VERSION) {
+				throw new IOException(filePath + " is not a mapped phonebook file.");
+			}
+			this.personCount = header.getInt(8);
+			this.trigramCount = header.getInt(12);
+			this.nextPersonID = header.getLong(16);
+			long recordOffset = header.getLong(24);
+			long stringOffset = header.getLong(32);
+			long phoneOffset = header.getLong(40);
+			long zipOffset = header.getLong(48);
+			long trigramOffset = header.getLong(56);
+			long postingOffset = header.getLong(64);
+			int phonebookNameReference = header.getInt(72);
+			if (postingOffset > fileSize) {
+				throw new IOException(filePath + " is cut short.");
+			}
+			this.recordSection = fileChannel.map(FileChannel.MapMode.READ_ONLY, recordOffset,
+					stringOffset - recordOffset);
+			this.stringSection = fileChannel.map(FileChannel.MapMode.READ_ONLY, stringOffset, phoneOffset - stringOffset);
+			this.phoneSection = fileChannel.map(FileChannel.MapMode.READ_ONLY, phoneOffset, zipOffset - phoneOffset);
+			this.zipSection = fileChannel.map(FileChannel.MapMode.READ_ONLY, zipOffset, trigramOffset - zipOffset);
+			this.trigramSection = fileChannel.map(FileChannel.MapMode.READ_ONLY, trigramOffset,
+					postingOffset - trigramOffset);
+			this.postingSection = fileChannel.map(FileChannel.MapMode.READ_ONLY, postingOffset,
+					fileSize - postingOffset);
+			this.phonebookName = readString(phonebookNameReference);
+		}
+	}
+
+	public String getPhonebookName() {
+		return phonebookName;
+	}
+
+	public Path getFilePath() {
+		return filePath;
+	}
+
+	/** Method setParallelScan sets the scan engine used by the searches that check every record.
+	 * @param parallelScan
+	 */
+	public void setParallelScan(ParallelScan parallelScan) {
+		if (parallelScan == null) {
+			System.out.println("setParallelScan - the scan engine cannot be null.");
+			return;
+		}
+		this.parallelScan = parallelScan;
+	}
+
+	/** Method getNextPersonID returns the nextPersonID of the Phonebook the file was built from.
+	 * @return long
+	 */
+	public long getNextPersonID() {
+		return nextPersonID;
+	}
+
+	/** Method numberOfPeople returns the number of people in the file.
+	 * @return int
+	 */
+	public int numberOfPeople() {
+		return personCount;
+	}
+
+	/** Method getPerson builds the Person at position rank in PersonName order.
+	 * @param rank - 0 to numberOfPeople() - 1
+	 * @return Person
+	 */
+	public Person getPerson(int rank) {
+		int offset = rank * RECORD_SIZE;
+		return new Person(recordSection.getLong(offset + PERSON_ID_OFFSET),
+				readString(recordSection.getInt(offset + NAME_OFFSET)),
+				readString(recordSection.getInt(offset + STREET_1_OFFSET)),
+				readString(recordSection.getInt(offset + STREET_2_OFFSET)),
+				readString(recordSection.getInt(offset + CITY_OFFSET)),
+				readString(recordSection.getInt(offset + STATE_OFFSET)),
+				recordSection.getInt(offset + ZIP_OFFSET), recordSection.getInt(offset + ZIP_PLUS_4_OFFSET),
+				recordSection.getLong(offset + PHONE_OFFSET));
+	}
+
+	/** Method findPeople returns an array of People sorted by PersonName based on the integer search criteria,
+	 * 	with the same meaning as Phonebook.findPeople:
+	 * 		1. First Name
+	 * 		2. Last Name
+	 * 		3. Full Name
+	 * 		4. Street number and/or street name
+	 * 		5. City
+	 * 		6. State
+	 * @param searchString - matched anywhere in the field, ignoring case
+	 * @param searchType
+	 * @return Person[]
+	 */
+	public Person[] findPeople(String searchString, int searchType) {
+		String foldedTerm = searchString.trim().toLowerCase();
+		switch (searchType) {
+		case 1:
+			return toPersonArray(findNameRecords(foldedTerm, FOLDED_FIRST_NAME_OFFSET));
+		case 2:
+			return toPersonArray(findNameRecords(foldedTerm, FOLDED_LAST_NAME_OFFSET));
+		case 3:
+			return toPersonArray(findNameRecords(foldedTerm, FOLDED_NAME_OFFSET));
+		case 4:
+			return toPersonArray(scanTextRecords(foldedTerm, STREET_1_OFFSET));
+		case 5:
+			return toPersonArray(scanTextRecords(foldedTerm, CITY_OFFSET));
+		case 6:
+			return toPersonArray(scanTextRecords(foldedTerm, STATE_OFFSET));
+		default:
+			System.out.println("findPeople - not a valid search type");
+			return new Person[0];
+		}
+	}
+
+	/** Method findPeople returns an array of People sorted by PersonName based on their phone number,
+	 * 	found by a binary search of the phone index.
+	 * @param searchPhone
+	 * @return Person[]
+	 */
+	public Person[] findPeople(long searchPhone) {
+		int low = 0;
+		int high = personCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (phoneSection.getLong(middle * 8) < searchPhone) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		int end = low;
+		while (end < personCount && phoneSection.getLong(end * 8) == searchPhone) {
+			end++;
+		}
+		int[] records = new int[end - low];
+		int recordBase = personCount * 8;
+		for (int index = 0; index < records.length; index++) {
+			records[index] = phoneSection.getInt(recordBase + (low + index) * 4);
+		}
+		return toPersonArray(records);
+	}
+
+	/** Method findPeople returns an array of People sorted by PersonName based on their zip code,
+	 * 	found by a binary search of the zip index.
+	 * @param searchZip
+	 * @return Person[]
+	 */
+	public Person[] findPeople(int searchZip) {
+		int low = 0;
+		int high = personCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (zipSection.getInt(middle * 4) < searchZip) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		int end = low;
+		while (end < personCount && zipSection.getInt(end * 4) == searchZip) {
+			end++;
+		}
+		int[] records = new int[end - low];
+		int recordBase = personCount * 4;
+		for (int index = 0; index < records.length; index++) {
+			records[index] = zipSection.getInt(recordBase + (low + index) * 4);
+		}
+		return toPersonArray(records);
+	}
+
+	/** Method findNameRecords returns the records whose lowercased name field, at fieldOffset in the record,
+	 * 	contains foldedTerm. Terms of three or more characters only check the records in the postings of the
+	 * 	term's rarest trigram.
+	 * @param foldedTerm
+	 * @param fieldOffset
+	 * @return int[] - the matching records in ascending order
+	 */
+	private int[] findNameRecords(String foldedTerm, int fieldOffset) {
+		byte[] termBytes = foldedTerm.getBytes(StandardCharsets.UTF_8);
+		if (foldedTerm.length() < 3) {
+			return parallelScan.scan(personCount,
+					record -> containsBytes(recordSection.getInt(record * RECORD_SIZE + fieldOffset), termBytes));
+		}
+		int rarestStart = 0;
+		int rarestEnd = Integer.MAX_VALUE;
+		for (int index = 0; index + 3 <= foldedTerm.length(); index++) {
+			int trigram = findTrigram(TrigramIndex.trigramKey(foldedTerm, index));
+			if (trigram < 0) {
+				return NO_RECORDS;
+			}
+			int start = trigramSection.getInt(trigramCount * 8 + trigram * 4);
+			int end = trigramSection.getInt(trigramCount * 8 + (trigram + 1) * 4);
+			if (end - start < rarestEnd - rarestStart) {
+				rarestStart = start;
+				rarestEnd = end;
+			}
+		}
+		int[] matches = new int[Math.min(16, rarestEnd - rarestStart)];
+		int matchCount = 0;
+		for (int posting = rarestStart; posting < rarestEnd; posting++) {
+			int record = postingSection.getInt(posting * 4);
+			if (containsBytes(recordSection.getInt(record * RECORD_SIZE + fieldOffset), termBytes)) {
+				matches = appendRecord(matches, matchCount, record);
+				matchCount++;
+			}
+		}
+		return Arrays.copyOf(matches, matchCount);
+	}
+
+	/** Method scanTextRecords returns the records whose text field at fieldOffset contains foldedTerm,
+	 * 	ignoring case, checking every record in place.
+	 * @param foldedTerm
+	 * @param fieldOffset
+	 * @return int[] - the matching records in ascending order
+	 */
+	private int[] scanTextRecords(String foldedTerm, int fieldOffset) {
+		byte[] termBytes = foldedTerm.getBytes(StandardCharsets.UTF_8);
+		return parallelScan.scan(personCount, record -> containsBytesIgnoreCase(
+				recordSection.getInt(record * RECORD_SIZE + fieldOffset), foldedTerm, termBytes));
+	}
+
+	/** Method findTrigram binary searches the trigram index for key.
+	 * @param key
+	 * @return int - the position of key in the trigram index, or -1 if no name contains it
+	 */
+	private int findTrigram(long key) {
+		int low = 0;
+		int high = trigramCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long middleKey = trigramSection.getLong(middle * 8);
+			if (middleKey < key) {
+				low = middle + 1;
+			} else if (middleKey > key) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/** Method containsBytes returns true if the string stored at reference contains termBytes. Both are
+	 * 	UTF-8, so a byte match is a character match, and the text is checked in place without decoding it.
+	 * @param reference
+	 * @param termBytes
+	 * @return boolean
+	 */
+	private boolean containsBytes(int reference, byte[] termBytes) {
+		int length = stringSection.getShort(reference) & 0xFFFF;
+		int start = reference + 2;
+		for (int position = 0; position + termBytes.length <= length; position++) {
+			int index = 0;
+			while (index < termBytes.length && stringSection.get(start + position + index) == termBytes[index]) {
+				index++;
+			}
+			if (index == termBytes.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Method containsBytesIgnoreCase returns true if the string stored at reference contains foldedTerm,
+	 * 	ignoring case. ASCII text, which is nearly all street, city, and state text, is compared byte by byte
+	 * 	in place with A to Z folded to lowercase, so nothing is allocated. Text with other characters is decoded
+	 * 	and lowercased the same way as the Phonebook searches.
+	 * @param reference
+	 * @param foldedTerm - the lowercased search term
+	 * @param termBytes - foldedTerm as UTF-8
+	 * @return boolean
+	 */
+	private boolean containsBytesIgnoreCase(int reference, String foldedTerm, byte[] termBytes) {
+		int length = stringSection.getShort(reference) & 0xFFFF;
+		int start = reference + 2;
+		for (int index = 0; index < length; index++) {
+			if (stringSection.get(start + index) < 0) {
+				return readString(reference).toLowerCase().contains(foldedTerm);
+			}
+		}
+		for (int position = 0; position + termBytes.length <= length; position++) {
+			int index = 0;
+			while (index < termBytes.length && foldAscii(stringSection.get(start + position + index)) == termBytes[index]) {
+				index++;
+			}
+			if (index == termBytes.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static byte foldAscii(byte value) {
+		return value >= 'A' && value <= 'Z' ? (byte) (value + ('a' - 'A')) : value;
+	}
+
+	private String readString(int reference) {
+		byte[] bytes = new byte[stringSection.getShort(reference) & 0xFFFF];
+		stringSection.get(reference + 2, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private Person[] toPersonArray(int[] records) {
+		Person[] personArray = new Person[records.length];
+		for (int index = 0; index < records.length; index++) {
+			personArray[index] = getPerson(records[index]);
+		}
+		return personArray;
+	}
+
+	private static int[] appendRecord(int[] records, int count, int record) {
+		if (count == records.length) {
+			records = Arrays.copyOf(records, Math.max(16, count * 2));
+		}
+		records[count] = record;
+		return records;
+	}
+
+	/** Method write builds a mapped phonebook file from the people in sourcePhonebook, replacing any file at
+	 * 	filePath. The file is written to a temporary file first and moved into place, so nodes that open
+	 * 	filePath never see a half-written file.
+	 * @param sourcePhonebook
+	 * @param filePath
+	 * @return int - the number of people written
+	 * @throws IOException if the file cannot be written or its text is larger than 2 GB
+	 */
+	public static int write(Phonebook sourcePhonebook, Path filePath) throws IOException {
+		Person[] phonebookPersonArray = sourcePhonebook.getPhonebookPersonArray();
+		int count = phonebookPersonArray.length;
+		long recordOffset = HEADER_SIZE;
+		long stringOffset = recordOffset + (long) count * RECORD_SIZE;
+		Path temporaryPath = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+		try (FileChannel outputChannel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			// Records and strings are written together, each through its own buffer at its own file position.
+			SectionWriter records = new SectionWriter(outputChannel, recordOffset);
+			SectionWriter strings = new SectionWriter(outputChannel, stringOffset);
+			HashMap<String, Integer> sharedStrings = new HashMap<String, Integer>();
+			int phonebookNameReference = strings.writeString(sourcePhonebook.getPhonebookName());
+			for (Person currentPerson:phonebookPersonArray) {
+				ByteBuffer record = records.reserve(RECORD_SIZE);
+				record.putLong(currentPerson.getPersonID());
+				record.putLong(currentPerson.getPersonPhone());
+				record.putInt(currentPerson.getAddressZip());
+				record.putInt(currentPerson.getAddressZipPlus4());
+				record.putInt(strings.writeString(currentPerson.getPersonName()));
+				record.putInt(strings.writeString(currentPerson.getAddressStreet1()));
+				record.putInt(strings.writeSharedString(currentPerson.getAddressStreet2(), sharedStrings));
+				record.putInt(strings.writeSharedString(currentPerson.getAddressCity(), sharedStrings));
+				record.putInt(strings.writeSharedString(currentPerson.getAddressState(), sharedStrings));
+				record.putInt(strings.writeString(fold(currentPerson.getPersonName())));
+				record.putInt(strings.writeString(fold(currentPerson.getFirstName())));
+				record.putInt(strings.writeString(fold(currentPerson.getLastName())));
+			}
+			records.flush();
+			strings.flush();
+
+			long phoneOffset = stringOffset + strings.size();
+			long[] phoneKeys = new long[count];
+			int[] phoneRecords = new int[count];
+			long[] zipKeys = new long[count];
+			int[] zipRecords = new int[count];
+			for (int record = 0; record < count; record++) {
+				phoneKeys[record] = phonebookPersonArray[record].getPersonPhone();
+				phoneRecords[record] = record;
+				zipKeys[record] = phonebookPersonArray[record].getAddressZip();
+				zipRecords[record] = record;
+			}
+			sortByKey(phoneKeys, phoneRecords, count);
+			sortByKey(zipKeys, zipRecords, count);
+			SectionWriter phones = new SectionWriter(outputChannel, phoneOffset);
+			for (int index = 0; index < count; index++) {
+				phones.reserve(8).putLong(phoneKeys[index]);
+			}
+			for (int index = 0; index < count; index++) {
+				phones.reserve(4).putInt(phoneRecords[index]);
+			}
+			phones.flush();
+
+			long zipOffset = phoneOffset + phones.size();
+			SectionWriter zips = new SectionWriter(outputChannel, zipOffset);
+			for (int index = 0; index < count; index++) {
+				zips.reserve(4).putInt((int) zipKeys[index]);
+			}
+			for (int index = 0; index < count; index++) {
+				zips.reserve(4).putInt(zipRecords[index]);
+			}
+			zips.flush();
+
+			// Pair every distinct trigram of each lowercased name with its record, then sort the pairs by trigram.
+			// The sort is stable and the records go in ascending order, so each posting list is ascending.
+			long[] trigramKeys = new long[Math.max(16, count * 8)];
+			int[] trigramRecords = new int[trigramKeys.length];
+			int pairCount = 0;
+			for (int record = 0; record < count; record++) {
+				String foldedName = fold(phonebookPersonArray[record].getPersonName());
+				int nameTrigramCount = Math.max(0, foldedName.length() - 2);
+				long[] nameTrigrams = new long[nameTrigramCount];
+				for (int index = 0; index < nameTrigramCount; index++) {
+					nameTrigrams[index] = TrigramIndex.trigramKey(foldedName, index);
+				}
+				Arrays.sort(nameTrigrams);
+				for (int index = 0; index < nameTrigramCount; index++) {
+					if (index > 0 && nameTrigrams[index] == nameTrigrams[index - 1]) {
+						continue;
+					}
+					if (pairCount == trigramKeys.length) {
+						trigramKeys = Arrays.copyOf(trigramKeys, pairCount * 2);
+						trigramRecords = Arrays.copyOf(trigramRecords, pairCount * 2);
+					}
+					trigramKeys[pairCount] = nameTrigrams[index];
+					trigramRecords[pairCount] = record;
+					pairCount++;
+				}
+			}
+			sortByKey(trigramKeys, trigramRecords, pairCount);
+			int distinctCount = 0;
+			for (int index = 0; index < pairCount; index++) {
+				if (index == 0 || trigramKeys[index] != trigramKeys[index - 1]) {
+					distinctCount++;
+				}
+			}
+			long trigramOffset = zipOffset + zips.size();
+			SectionWriter trigrams = new SectionWriter(outputChannel, trigramOffset);
+			for (int index = 0; index < pairCount; index++) {
+				if (index == 0 || trigramKeys[index] != trigramKeys[index - 1]) {
+					trigrams.reserve(8).putLong(trigramKeys[index]);
+				}
+			}
+			for (int index = 0; index < pairCount; index++) {
+				if (index == 0 || trigramKeys[index] != trigramKeys[index - 1]) {
+					trigrams.reserve(4).putInt(index);
+				}
+			}
+			trigrams.reserve(4).putInt(pairCount);
+			trigrams.flush();
+
+			long postingOffset = trigramOffset + trigrams.size();
+			SectionWriter postings = new SectionWriter(outputChannel, postingOffset);
+			for (int index = 0; index < pairCount; index++) {
+				postings.reserve(4).putInt(trigramRecords[index]);
+			}
+			postings.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(FILE_MAGIC);
+			header.putInt(FILE_VERSION);
+			header.putInt(count);
+			header.putInt(distinctCount);
+			header.putLong(sourcePhonebook.getNextPersonID());
+			header.putLong(recordOffset);
+			header.putLong(stringOffset);
+			header.putLong(phoneOffset);
+			header.putLong(zipOffset);
+			header.putLong(trigramOffset);
+			header.putLong(postingOffset);
+			header.putInt(phonebookNameReference);
+			header.clear();
+			while (header.hasRemaining()) {
+				outputChannel.write(header, header.position());
+			}
+			outputChannel.force(true);
+		}
+		Files.move(temporaryPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return count;
+	}
+
+	private static String fold(String text) {
+		if (text == null) {
+			return "";
+		}
+		return text.toLowerCase();
+	}
+
+	/** Method sortByKey sorts the first count keys, and the records alongside them, by key with a stable
+	 * 	merge sort, so records with equal keys stay in ascending order.
+	 * @param keys
+	 * @param records
+	 * @param count
+	 */
+	private static void sortByKey(long[] keys, int[] records, int count) {
+		long[] keyBuffer = new long[count];
+		int[] recordBuffer = new int[count];
+		for (int width = 1; width < count; width = width * 2) {
+			for (int start = 0; start < count - width; start += width * 2) {
+				int middle = start + width;
+				int end = Math.min(start + width * 2, count);
+				if (keys[middle - 1] <= keys[middle]) {
+					continue;
+				}
+				int left = start;
+				int right = middle;
+				int output = start;
+				while (left < middle && right < end) {
+					if (keys[left] <= keys[right]) {
+						keyBuffer[output] = keys[left];
+						recordBuffer[output++] = records[left++];
+					} else {
+						keyBuffer[output] = keys[right];
+						recordBuffer[output++] = records[right++];
+					}
+				}
+				while (left < middle) {
+					keyBuffer[output] = keys[left];
+					recordBuffer[output++] = records[left++];
+				}
+				while (right < end) {
+					keyBuffer[output] = keys[right];
+					recordBuffer[output++] = records[right++];
+				}
+				System.arraycopy(keyBuffer, start, keys, start, end - start);
+				System.arraycopy(recordBuffer, start, records, start, end - start);
+			}
+		}
+	}
+
+	/** This class writes one section of the file through its own buffer, starting at a fixed file position.
+	 */
+	private static class SectionWriter {
+
+		private final FileChannel outputChannel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		private long filePosition;
+		private long size = 0;
+
+		SectionWriter(FileChannel outputChannel, long filePosition) {
+			this.outputChannel = outputChannel;
+			this.filePosition = filePosition;
+		}
+
+		/** Method reserve makes room for length bytes and returns the buffer to put them in.
+		 * @param length
+		 * @return ByteBuffer
+		 * @throws IOException
+		 */
+		ByteBuffer reserve(int length) throws IOException {
+			if (buffer.remaining() < length) {
+				flush();
+			}
+			size += length;
+			return buffer;
+		}
+
+		/** Method writeString writes value as a 2 byte length and UTF-8 bytes.
+		 * @param value
+		 * @return int - the offset of the value in the section
+		 * @throws IOException if the section would be larger than 2 GB
+		 */
+		int writeString(String value) throws IOException {
+			int stringSize = PersonCodec.stringSize(value);
+			if (size + stringSize > Integer.MAX_VALUE) {
+				throw new IOException("the text of the phonebook is larger than 2 GB.");
+			}
+			int reference = (int) size;
+			PersonCodec.writeString(reserve(stringSize), value);
+			return reference;
+		}
+
+		/** Method writeSharedString writes value once and returns the same offset for every later equal value.
+		 * @param value
+		 * @param sharedStrings - the offsets of the values written so far
+		 * @return int - the offset of the value in the section
+		 * @throws IOException
+		 */
+		int writeSharedString(String value, HashMap<String, Integer> sharedStrings) throws IOException {
+			String key = value == null ? "" : value;
+			Integer reference = sharedStrings.get(key);
+			if (reference == null) {
+				reference = writeString(key);
+				sharedStrings.put(key, reference);
+			}
+			return reference;
+		}
+
+		long size() {
+			return size;
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				filePosition += outputChannel.write(buffer, filePosition);
+			}
+			buffer.clear();
+		}
+	}
+}
@@ -0,0 +1,292 @@
+package phonebook;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** This class finds people whose first name, last name, or full name starts with a prefix.
+ * 	It keeps a sorted array of lowercase name keys with the slot each key belongs to, so all keys that start
+ * 	with a prefix sit next to each other and are found with two binary searches. Only the matching entries
+ * 	are read. Keys are added and removed by binary search and one System.arraycopy, like PersonNameOrder.
+ */
+public class NamePrefixIndex {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private String[] keyArray = new String[INITIAL_CAPACITY];
+	private int[] slotArray = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	/** Method add records the first name, last name, and full name of the Person stored in slot.
+	 * @param slot - the PersonStore slot of the Person
+	 * @param currentPerson - the Person stored in the slot
+	 */
+	public void add(int slot, Person currentPerson) {
+		String[] keys = nameKeys(currentPerson);
+		for (int index = 0; index < keys.length; index++) {
+			if (keys[index] != null) {
+				insertEntry(keys[index], slot);
+			}
+		}
+	}
+
+	/** Method addAll records the names of the first count people with one sort of the new keys and one merge
+	 * 	with the existing keys, rather than moving the existing keys once per name.
+	 * 	Many people share a first or last name, so only the distinct keys are sorted as strings. Each entry is
+	 * 	then packed as the rank of its key and its slot into one long, and the longs are sorted as numbers.
+	 * 	Equal keys also share one String.
+	 * @param slots - the PersonStore slots of the people
+	 * @param people - the people stored in those slots, in the same order as slots
+	 * @param count - the number of people to add
+	 */
+	public void addAll(int[] slots, Person[] people, int count) {
+		HashMap<String, Integer> rankByKey = new HashMap<>();
+		long[] packedEntries = new long[count * 3];
+		int batchSize = 0;
+		for (int index = 0; index < count; index++) {
+			String[] keys = nameKeys(people[index]);
+			for (int keyIndex = 0; keyIndex < keys.length; keyIndex++) {
+				if (keys[keyIndex] != null) {
+					Integer keyNumber = rankByKey.get(keys[keyIndex]);
+					if (keyNumber == null) {
+						keyNumber = rankByKey.size();
+						rankByKey.put(keys[keyIndex], keyNumber);
+					}
+					packedEntries[batchSize] = ((long) keyNumber << 32) | slots[index];
+					batchSize++;
+				}
+			}
+		}
+		// Sort the distinct keys and renumber the entries by the rank of their key.
+		String[] distinctKeys = rankByKey.keySet().toArray(new String[0]);
+		Arrays.sort(distinctKeys);
+		int[] rankByKeyNumber = new int[distinctKeys.length];
+		for (int rank = 0; rank < distinctKeys.length; rank++) {
+			rankByKeyNumber[rankByKey.get(distinctKeys[rank])] = rank;
+		}
+		for (int index = 0; index < batchSize; index++) {
+			packedEntries[index] = ((long) rankByKeyNumber[(int) (packedEntries[index] >>> 32)] << 32)
+					| (packedEntries[index] & 0xFFFFFFFFL);
+		}
+		Arrays.sort(packedEntries, 0, batchSize);
+		String[] batchKeys = new String[batchSize];
+		int[] batchSlots = new int[batchSize];
+		for (int index = 0; index < batchSize; index++) {
+			batchKeys[index] = distinctKeys[(int) (packedEntries[index] >>> 32)];
+			batchSlots[index] = (int) packedEntries[index];
+		}
+		if (size + batchSize > keyArray.length) {
+			int newCapacity = Math.max(size + batchSize, keyArray.length * 2);
+			String[] grownKeyArray = new String[newCapacity];
+			int[] grownSlotArray = new int[newCapacity];
+			System.arraycopy(keyArray, 0, grownKeyArray, 0, size);
+			System.arraycopy(slotArray, 0, grownSlotArray, 0, size);
+			keyArray = grownKeyArray;
+			slotArray = grownSlotArray;
+		}
+		// Merge from the back so the existing entries can be moved in place.
+		int existingIndex = size - 1;
+		int batchIndex = batchSize - 1;
+		int outputIndex = size + batchSize - 1;
+		while (batchIndex >= 0) {
+			if (existingIndex >= 0 && compareEntries(keyArray[existingIndex], slotArray[existingIndex],
+					batchKeys[batchIndex], batchSlots[batchIndex]) > 0) {
+				keyArray[outputIndex] = keyArray[existingIndex];
+				slotArray[outputIndex] = slotArray[existingIndex];
+				existingIndex--;
+			} else {
+				keyArray[outputIndex] = batchKeys[batchIndex];
+				slotArray[outputIndex] = batchSlots[batchIndex];
+				batchIndex--;
+			}
+			outputIndex--;
+		}
+		size += batchSize;
+	}
+
+	/** Method remove forgets the names recorded for the Person stored in slot.
+	 * @param slot - the PersonStore slot of the Person
+	 * @param currentPerson - the Person that was recorded for the slot
+	 */
+	public void remove(int slot, Person currentPerson) {
+		String[] keys = nameKeys(currentPerson);
+		for (int index = 0; index < keys.length; index++) {
+			if (keys[index] != null) {
+				removeEntry(keys[index], slot);
+			}
+		}
+	}
+
+	/** Method removeAll forgets every name recorded for the first count slots with one pass over the index,
+	 * 	rather than moving the remaining keys once per name.
+	 * @param slots - the PersonStore slots of the people
+	 * @param count - the number of slots to remove
+	 */
+	public void removeAll(int[] slots, int count) {
+		int slotLimit = 0;
+		for (int index = 0; index < count; index++) {
+			slotLimit = Math.max(slotLimit, slots[index] + 1);
+		}
+		boolean[] isRemoved = new boolean[slotLimit];
+		for (int index = 0; index < count; index++) {
+			isRemoved[slots[index]] = true;
+		}
+		int keptCount = 0;
+		for (int position = 0; position < size; position++) {
+			if (slotArray[position] >= slotLimit || !isRemoved[slotArray[position]]) {
+				keyArray[keptCount] = keyArray[position];
+				slotArray[keptCount] = slotArray[position];
+				keptCount++;
+			}
+		}
+		Arrays.fill(keyArray, keptCount, size, null);
+		size = keptCount;
+	}
+
+	/** Method findSlots returns the distinct slots with a name that starts with prefix, ignoring case.
+	 * @param prefix
+	 * @return int[] - the matching slots in ascending slot order
+	 */
+	public int[] findSlots(String prefix) {
+		String foldedPrefix = prefix.trim().toLowerCase();
+		int start = lowerBound(foldedPrefix);
+		int end = start;
+		int high = size;
+		// Find the end of the run of keys that start with the prefix.
+		while (end < high) {
+			int middle = (end + high) >>> 1;
+			if (keyArray[middle].startsWith(foldedPrefix)) {
+				end = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		int[] slots = new int[end - start];
+		System.arraycopy(slotArray, start, slots, 0, slots.length);
+		// A Person can match through more than one name, so keep each slot once.
+		Arrays.sort(slots);
+		int distinctCount = 0;
+		for (int index = 0; index < slots.length; index++) {
+			if (distinctCount == 0 || slots[distinctCount - 1] != slots[index]) {
+				slots[distinctCount] = slots[index];
+				distinctCount++;
+			}
+		}
+		int[] distinctSlots = new int[distinctCount];
+		System.arraycopy(slots, 0, distinctSlots, 0, distinctCount);
+		return distinctSlots;
+	}
+
+	/** Method size returns the number of name keys in the index.
+	 * @return int
+	 */
+	public int size() {
+		return size;
+	}
+
+	/** Method nameKeys returns the lowercase first name, last name, and full name of currentPerson.
+	 * 	Blank names and names equal to an earlier key are returned as null so they are recorded once.
+	 * @param currentPerson
+	 * @return String[]
+	 */
+	private static String[] nameKeys(Person currentPerson) {
+		String[] keys = {fold(currentPerson.getFirstName()), fold(currentPerson.getLastName()),
+				fold(currentPerson.getPersonName())};
+		for (int index = 0; index < keys.length; index++) {
+			if (keys[index] != null && keys[index].isEmpty()) {
+				keys[index] = null;
+			}
+			for (int earlier = 0; earlier < index && keys[index] != null; earlier++) {
+				if (keys[index].equals(keys[earlier])) {
+					keys[index] = null;
+				}
+			}
+		}
+		return keys;
+	}
+
+	private static String fold(String name) {
+		if (name == null) {
+			return null;
+		}
+		return name.trim().toLowerCase();
+	}
+
+	private void insertEntry(String key, int slot) {
+		if (size == keyArray.length) {
+			String[] grownKeyArray = new String[size * 2];
+			int[] grownSlotArray = new int[size * 2];
+			System.arraycopy(keyArray, 0, grownKeyArray, 0, size);
+			System.arraycopy(slotArray, 0, grownSlotArray, 0, size);
+			keyArray = grownKeyArray;
+			slotArray = grownSlotArray;
+		}
+		int position = findEntry(key, slot);
+		if (position >= 0) {
+			return;
+		}
+		position = -(position + 1);
+		System.arraycopy(keyArray, position, keyArray, position + 1, size - position);
+		System.arraycopy(slotArray, position, slotArray, position + 1, size - position);
+		keyArray[position] = key;
+		slotArray[position] = slot;
+		size++;
+	}
+
+	private void removeEntry(String key, int slot) {
+		int position = findEntry(key, slot);
+		if (position < 0) {
+			return;
+		}
+		System.arraycopy(keyArray, position + 1, keyArray, position, size - position - 1);
+		System.arraycopy(slotArray, position + 1, slotArray, position, size - position - 1);
+		size--;
+		keyArray[size] = null;
+	}
+
+	/** Method findEntry binary searches for the entry ordered by key, then slot.
+	 * @param key
+	 * @param slot
+	 * @return int - the position of the entry, or -(insertion point + 1) if it is not in the index
+	 */
+	private int findEntry(String key, int slot) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = keyArray[middle].compareTo(key);
+			if (comparison == 0) {
+				comparison = Integer.compare(slotArray[middle], slot);
+			}
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	private static int compareEntries(String firstKey, int firstSlot, String secondKey, int secondSlot) {
+		int comparison = firstKey.compareTo(secondKey);
+		if (comparison == 0) {
+			comparison = Integer.compare(firstSlot, secondSlot);
+		}
+		return comparison;
+	}
+
+	private int lowerBound(String key) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (keyArray[middle].compareTo(key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,290 @@
+package phonebook;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** This class is a RecordStore that keeps the people outside the Java heap in direct ByteBuffers, so the heap
+ * 	used by the store stays flat however large the directory grows. Direct memory is limited by the JVM option
+ * 	-XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+ * 	Each slot is a fixed-width record holding personID, phone, zip, and zip+4, plus a reference for each text
+ * 	field into a separate string arena where the text is stored as a length and UTF-8 bytes. Records and
+ * 	strings are kept in fixed-size chunks so the store can grow without copying what is already stored.
+ * 	The numeric and state accessors read a single field in place, and a Person is only built when get is called.
+ * 	Text replaced by an update or delete is left in the arena as garbage until it makes up half of the arena,
+ * 	then the live strings are copied into fresh chunks.
+ */
+public class OffHeapRecordStore implements RecordStore {
+
+	private static final int RECORD_SIZE = 72;
+	private static final int PERSON_ID_OFFSET = 0;
+	private static final int PHONE_OFFSET = 8;
+	private static final int ZIP_OFFSET = 16;
+	private static final int ZIP_PLUS_4_OFFSET = 20;
+	private static final int NAME_OFFSET = 24;
+	private static final int STREET_1_OFFSET = 32;
+	private static final int STREET_2_OFFSET = 40;
+	private static final int CITY_OFFSET = 48;
+	private static final int STATE_OFFSET = 56;
+	private static final int LIVE_OFFSET = 64;
+	private static final int[] STRING_OFFSETS = {NAME_OFFSET, STREET_1_OFFSET, STREET_2_OFFSET, CITY_OFFSET,
+			STATE_OFFSET};
+
+	private static final int RECORDS_PER_CHUNK = 1 << 16;
+	private static final int STRING_CHUNK_SIZE = 1 << 22;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private ByteBuffer[] recordChunks = new ByteBuffer[INITIAL_CAPACITY];
+	private int recordChunkCount = 0;
+	private ByteBuffer[] stringChunks = new ByteBuffer[INITIAL_CAPACITY];
+	private int stringChunkCount = 0;
+	private int stringChunkPosition = STRING_CHUNK_SIZE;
+	private long stringBytesUsed = 0;
+	private long stringBytesGarbage = 0;
+
+	private int slotCount = 0;
+	private int liveCount = 0;
+	private int[] freeSlotArray = new int[INITIAL_CAPACITY];
+	private int freeSlotCount = 0;
+
+	@Override
+	public int append(Person newPerson) {
+		int slot;
+		if (freeSlotCount > 0) {
+			freeSlotCount--;
+			slot = freeSlotArray[freeSlotCount];
+		} else {
+			if (slotCount == recordChunkCount * RECORDS_PER_CHUNK) {
+				addRecordChunk();
+			}
+			slot = slotCount;
+			slotCount++;
+		}
+		writeRecord(slot, newPerson);
+		recordChunk(slot).putInt(recordOffset(slot) + LIVE_OFFSET, 1);
+		liveCount++;
+		return slot;
+	}
+
+	@Override
+	public int[] appendAll(Person[] newPeople, int count) {
+		int[] slots = new int[count];
+		for (int index = 0; index < count; index++) {
+			slots[index] = append(newPeople[index]);
+		}
+		return slots;
+	}
+
+	@Override
+	public boolean set(int slot, Person updatedPerson) {
+		if (!isLive(slot) || updatedPerson == null) {
+			System.out.println("OffHeapRecordStore.set - slot " + slot + " is not in use.");
+			return false;
+		}
+		releaseStrings(slot);
+		writeRecord(slot, updatedPerson);
+		compactStringsIfNeeded();
+		return true;
+	}
+
+	@Override
+	public boolean delete(int slot) {
+		if (!isLive(slot)) {
+			System.out.println("OffHeapRecordStore.delete - slot " + slot + " is not in use.");
+			return false;
+		}
+		releaseStrings(slot);
+		recordChunk(slot).putInt(recordOffset(slot) + LIVE_OFFSET, 0);
+		liveCount--;
+		if (freeSlotCount == freeSlotArray.length) {
+			int[] grownArray = new int[freeSlotArray.length * 2];
+			System.arraycopy(freeSlotArray, 0, grownArray, 0, freeSlotCount);
+			freeSlotArray = grownArray;
+		}
+		freeSlotArray[freeSlotCount] = slot;
+		freeSlotCount++;
+		compactStringsIfNeeded();
+		return true;
+	}
+
+	/** Method get decodes the record in the slot into a new Person, or returns null if the slot is not live.
+	 * @param slot
+	 * @return Person
+	 */
+	@Override
+	public Person get(int slot) {
+		if (!isLive(slot)) {
+			return null;
+		}
+		ByteBuffer chunk = recordChunk(slot);
+		int offset = recordOffset(slot);
+		return new Person(chunk.getLong(offset + PERSON_ID_OFFSET), readString(chunk.getLong(offset + NAME_OFFSET)),
+				readString(chunk.getLong(offset + STREET_1_OFFSET)), readString(chunk.getLong(offset + STREET_2_OFFSET)),
+				readString(chunk.getLong(offset + CITY_OFFSET)), readString(chunk.getLong(offset + STATE_OFFSET)),
+				chunk.getInt(offset + ZIP_OFFSET), chunk.getInt(offset + ZIP_PLUS_4_OFFSET),
+				chunk.getLong(offset + PHONE_OFFSET));
+	}
+
+	@Override
+	public boolean isLive(int slot) {
+		return slot >= 0 && slot < slotCount && recordChunk(slot).getInt(recordOffset(slot) + LIVE_OFFSET) == 1;
+	}
+
+	@Override
+	public int slotCount() {
+		return slotCount;
+	}
+
+	@Override
+	public int liveCount() {
+		return liveCount;
+	}
+
+	@Override
+	public long getPersonID(int slot) {
+		return recordChunk(slot).getLong(recordOffset(slot) + PERSON_ID_OFFSET);
+	}
+
+	@Override
+	public long getPersonPhone(int slot) {
+		return recordChunk(slot).getLong(recordOffset(slot) + PHONE_OFFSET);
+	}
+
+	@Override
+	public int getAddressZip(int slot) {
+		return recordChunk(slot).getInt(recordOffset(slot) + ZIP_OFFSET);
+	}
+
+	@Override
+	public String getAddressState(int slot) {
+		return readString(recordChunk(slot).getLong(recordOffset(slot) + STATE_OFFSET));
+	}
+
+	/** Method offHeapBytes returns the number of bytes of direct memory the store has allocated.
+	 * @return long
+	 */
+	public long offHeapBytes() {
+		return (long) recordChunkCount * RECORDS_PER_CHUNK * RECORD_SIZE + (long) stringChunkCount * STRING_CHUNK_SIZE;
+	}
+
+	private void writeRecord(int slot, Person currentPerson) {
+		ByteBuffer chunk = recordChunk(slot);
+		int offset = recordOffset(slot);
+		chunk.putLong(offset + PERSON_ID_OFFSET, currentPerson.getPersonID());
+		chunk.putLong(offset + PHONE_OFFSET, currentPerson.getPersonPhone());
+		chunk.putInt(offset + ZIP_OFFSET, currentPerson.getAddressZip());
+		chunk.putInt(offset + ZIP_PLUS_4_OFFSET, currentPerson.getAddressZipPlus4());
+		chunk.putLong(offset + NAME_OFFSET, writeString(currentPerson.getPersonName()));
+		chunk.putLong(offset + STREET_1_OFFSET, writeString(currentPerson.getAddressStreet1()));
+		chunk.putLong(offset + STREET_2_OFFSET, writeString(currentPerson.getAddressStreet2()));
+		chunk.putLong(offset + CITY_OFFSET, writeString(currentPerson.getAddressCity()));
+		chunk.putLong(offset + STATE_OFFSET, writeString(currentPerson.getAddressState()));
+	}
+
+	/** Method writeString copies value into the string arena as a length followed by UTF-8 bytes and returns
+	 * 	a reference to it: the chunk number in the high 32 bits and the position in the chunk in the low 32 bits.
+	 * @param value
+	 * @return long - the reference to the stored string
+	 */
+	private long writeString(String value) {
+		byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+		int storedLength = 4 + bytes.length;
+		if (storedLength > STRING_CHUNK_SIZE) {
+			System.out.println("OffHeapRecordStore.writeString - text too long, storing it blank.");
+			bytes = new byte[0];
+			storedLength = 4;
+		}
+		if (stringChunkPosition + storedLength > STRING_CHUNK_SIZE) {
+			addStringChunk();
+		}
+		ByteBuffer chunk = stringChunks[stringChunkCount - 1];
+		int position = stringChunkPosition;
+		chunk.putInt(position, bytes.length);
+		for (int index = 0; index < bytes.length; index++) {
+			chunk.put(position + 4 + index, bytes[index]);
+		}
+		stringChunkPosition += storedLength;
+		stringBytesUsed += storedLength;
+		return ((long) (stringChunkCount - 1) << 32) | position;
+	}
+
+	private String readString(long reference) {
+		ByteBuffer chunk = stringChunks[(int) (reference >>> 32)];
+		int position = (int) reference;
+		byte[] bytes = new byte[chunk.getInt(position)];
+		for (int index = 0; index < bytes.length; index++) {
+			bytes[index] = chunk.get(position + 4 + index);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/** Method releaseStrings counts the text of the slot as garbage before the slot is overwritten or deleted.
+	 * @param slot
+	 */
+	private void releaseStrings(int slot) {
+		ByteBuffer chunk = recordChunk(slot);
+		int offset = recordOffset(slot);
+		for (int stringOffset:STRING_OFFSETS) {
+			long reference = chunk.getLong(offset + stringOffset);
+			stringBytesGarbage += 4 + stringChunks[(int) (reference >>> 32)].getInt((int) reference);
+		}
+	}
+
+	/** Method compactStringsIfNeeded copies the text of every live slot into fresh chunks once at least half
+	 * 	of the arena is garbage, so a directory with many updates and deletes does not keep growing.
+	 */
+	private void compactStringsIfNeeded() {
+		if (stringBytesGarbage * 2 < stringBytesUsed || stringBytesUsed < STRING_CHUNK_SIZE) {
+			return;
+		}
+		ByteBuffer[] oldStringChunks = stringChunks;
+		stringChunks = new ByteBuffer[INITIAL_CAPACITY];
+		stringChunkCount = 0;
+		stringChunkPosition = STRING_CHUNK_SIZE;
+		stringBytesUsed = 0;
+		stringBytesGarbage = 0;
+		for (int slot = 0; slot < slotCount; slot++) {
+			if (isLive(slot)) {
+				ByteBuffer chunk = recordChunk(slot);
+				int offset = recordOffset(slot);
+				for (int stringOffset:STRING_OFFSETS) {
+					long reference = chunk.getLong(offset + stringOffset);
+					ByteBuffer oldChunk = oldStringChunks[(int) (reference >>> 32)];
+					byte[] bytes = new byte[oldChunk.getInt((int) reference)];
+					for (int index = 0; index < bytes.length; index++) {
+						bytes[index] = oldChunk.get((int) reference + 4 + index);
+					}
+					chunk.putLong(offset + stringOffset, writeString(new String(bytes, StandardCharsets.UTF_8)));
+				}
+			}
+		}
+	}
+
+	private void addRecordChunk() {
+		if (recordChunkCount == recordChunks.length) {
+			ByteBuffer[] grownArray = new ByteBuffer[recordChunkCount * 2];
+			System.arraycopy(recordChunks, 0, grownArray, 0, recordChunkCount);
+			recordChunks = grownArray;
+		}
+		recordChunks[recordChunkCount] = ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * RECORD_SIZE);
+		recordChunkCount++;
+	}
+
+	private void addStringChunk() {
+		if (stringChunkCount == stringChunks.length) {
+			ByteBuffer[] grownArray = new ByteBuffer[stringChunkCount * 2];
+			System.arraycopy(stringChunks, 0, grownArray, 0, stringChunkCount);
+			stringChunks = grownArray;
+		}
+		stringChunks[stringChunkCount] = ByteBuffer.allocateDirect(STRING_CHUNK_SIZE);
+		stringChunkCount++;
+		stringChunkPosition = 0;
+	}
+
+	private ByteBuffer recordChunk(int slot) {
+		return recordChunks[slot / RECORDS_PER_CHUNK];
+	}
+
+	private static int recordOffset(int slot) {
+		return (slot % RECORDS_PER_CHUNK) * RECORD_SIZE;
+	}
+}
@@ -0,0 +1,272 @@
+package phonebook;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/** This class loads the same file format as PhonebookImporter, but parses and checks the lines on several
+ * 	threads. The file is cut into chunks that end at a line break, and each chunk is parsed by a task on a
+ * 	ForkJoinPool with its own PhonebookImporter.LineParser. The chunk results are then taken in file order,
+ * 	so personIDs are handed out from nextPersonID in the order of the lines, the same as a single threaded
+ * 	import of the same file, and rejected lines are reported with their line number in the file.
+ * 	While one chunk is merged into the Phonebook, the following chunks are already being parsed, and only
+ * 	a few chunks per thread are read ahead so memory use does not depend on the size of the file.
+ */
+public class ParallelPhonebookImporter {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 23;
+
+	private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+
+	private final Phonebook targetPhonebook;
+	private final int parallelism;
+	private final int chunkSize;
+	private long lineCount = 0;
+	private long importedCount = 0;
+	private long rejectedCount = 0;
+
+	/** Constructor to import into targetPhonebook using one parsing thread per processor.
+	 * @param targetPhonebook
+	 */
+	public ParallelPhonebookImporter(Phonebook targetPhonebook) {
+		this(targetPhonebook, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/** Constructor to import into targetPhonebook using parallelism parsing threads and chunks of about
+	 * 	chunkSize bytes.
+	 * @param targetPhonebook
+	 * @param parallelism
+	 * @param chunkSize
+	 */
+	public ParallelPhonebookImporter(Phonebook targetPhonebook, int parallelism, int chunkSize) {
+		this.targetPhonebook = targetPhonebook;
+		this.parallelism = Math.max(1, parallelism);
+		this.chunkSize = Math.max(1 << 10, chunkSize);
+	}
+
+	/** Method importFile adds every valid line of inputPath to the phonebook.
+	 * @param inputPath - the file to read, UTF-8
+	 * @param rejectPath - the file to write rejected lines to, or null to only count them.
+	 * 	The file is only created if a line is rejected.
+	 * @return long - the number of people added
+	 * @throws IOException if a file cannot be read or written
+	 */
+	public long importFile(Path inputPath, Path rejectPath) throws IOException {
+		long importedBefore = importedCount;
+		BufferedWriter rejectWriter = null;
+		ForkJoinPool parserPool = new ForkJoinPool(parallelism);
+		ArrayDeque<CompletableFuture<ChunkResult>> pendingChunks = new ArrayDeque<CompletableFuture<ChunkResult>>();
+		try (FileChannel inputChannel = FileChannel.open(inputPath, StandardOpenOption.READ)) {
+			long fileSize = inputChannel.size();
+			long chunkStart = 0;
+			while (chunkStart < fileSize || !pendingChunks.isEmpty()) {
+				// Keep a few chunks per thread in flight, then merge the oldest one.
+				while (chunkStart < fileSize && pendingChunks.size() < parallelism * CHUNKS_AHEAD_PER_THREAD) {
+					long chunkEnd = findChunkEnd(inputChannel, chunkStart + chunkSize, fileSize);
+					long start = chunkStart;
+					pendingChunks.add(CompletableFuture.supplyAsync(() -> parseChunk(inputChannel, start, chunkEnd),
+							parserPool));
+					chunkStart = chunkEnd;
+				}
+				ChunkResult chunkResult = joinChunk(pendingChunks.remove());
+				for (int index = 0; index < chunkResult.rejectCount; index++) {
+					if (rejectPath != null) {
+						if (rejectWriter == null) {
+							rejectWriter = Files.newBufferedWriter(rejectPath, StandardCharsets.UTF_8);
+						}
+						rejectWriter.write("Line " + (lineCount + chunkResult.rejectLineNumbers[index]) + ": "
+								+ chunkResult.rejectReasons[index] + ": " + chunkResult.rejectLines[index]);
+						rejectWriter.newLine();
+					}
+				}
+				rejectedCount += chunkResult.rejectCount;
+				lineCount += chunkResult.lineCount;
+				if (chunkResult.personCount > 0) {
+					if (!targetPhonebook.addPeople(chunkResult.people, chunkResult.personCount)) {
+						throw new IOException("the phonebook log could not be written, so the import was stopped at line "
+								+ lineCount + ".");
+					}
+					importedCount += chunkResult.personCount;
+				}
+			}
+		} finally {
+			for (CompletableFuture<ChunkResult> pendingChunk:pendingChunks) {
+				pendingChunk.cancel(false);
+			}
+			parserPool.shutdown();
+			if (rejectWriter != null) {
+				rejectWriter.close();
+			}
+		}
+		return importedCount - importedBefore;
+	}
+
+	/** Method getLineCount returns the number of lines read by this importer.
+	 * @return long
+	 */
+	public long getLineCount() {
+		return lineCount;
+	}
+
+	/** Method getImportedCount returns the number of people added by this importer.
+	 * @return long
+	 */
+	public long getImportedCount() {
+		return importedCount;
+	}
+
+	/** Method getRejectedCount returns the number of lines rejected by this importer.
+	 * @return long
+	 */
+	public long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	/** Method findChunkEnd returns the position just after the first line break at or after position, or the
+	 * 	end of the file. A line break byte never occurs inside a UTF-8 character, so chunks split cleanly.
+	 * 	A "\r" followed by "\n" is one line break, so the chunk ends after the "\n".
+	 * @param inputChannel
+	 * @param position
+	 * @param fileSize
+	 * @return long
+	 * @throws IOException
+	 */
+	private static long findChunkEnd(FileChannel inputChannel, long position, long fileSize) throws IOException {
+		ByteBuffer scanBuffer = ByteBuffer.allocate(1 << 12);
+		while (position < fileSize) {
+			scanBuffer.clear();
+			int readCount = inputChannel.read(scanBuffer, position);
+			if (readCount <= 0) {
+				break;
+			}
+			for (int index = 0; index < readCount; index++) {
+				if (scanBuffer.get(index) == '\n') {
+					return position + index + 1;
+				}
+				if (scanBuffer.get(index) == '\r') {
+					if (index + 1 < readCount) {
+						return position + index + (scanBuffer.get(index + 1) == '\n' ? 2 : 1);
+					}
+					// The "\r" is the last byte read, so look at the byte after it.
+					scanBuffer.clear().limit(1);
+					if (inputChannel.read(scanBuffer, position + index + 1) == 1 && scanBuffer.get(0) == '\n') {
+						return position + index + 2;
+					}
+					return position + index + 1;
+				}
+			}
+			position += readCount;
+		}
+		return fileSize;
+	}
+
+	/** Method parseChunk reads the bytes from start to end and parses each line. It runs on a parser thread.
+	 * 	Lines are cut with PhonebookImporter.findLineBreak, so they end where PhonebookImporter's lines do.
+	 * @param inputChannel
+	 * @param start
+	 * @param end
+	 * @return ChunkResult
+	 */
+	private static ChunkResult parseChunk(FileChannel inputChannel, long start, long end) {
+		ByteBuffer chunkBuffer = ByteBuffer.allocate((int) (end - start));
+		try {
+			while (chunkBuffer.hasRemaining()) {
+				if (inputChannel.read(chunkBuffer, start + chunkBuffer.position()) < 0) {
+					break;
+				}
+			}
+		} catch (IOException exception) {
+			throw new CompletionException(exception);
+		}
+		String chunkText = new String(chunkBuffer.array(), 0, chunkBuffer.position(), StandardCharsets.UTF_8);
+		PhonebookImporter.LineParser lineParser = new PhonebookImporter.LineParser();
+		ChunkResult chunkResult = new ChunkResult(chunkText.length() / 64 + 16);
+		int lineStart = 0;
+		while (lineStart < chunkText.length()) {
+			int lineEnd = PhonebookImporter.findLineBreak(chunkText, lineStart);
+			int nextLineStart;
+			if (lineEnd < 0) {
+				lineEnd = chunkText.length();
+				nextLineStart = lineEnd;
+			} else {
+				nextLineStart = PhonebookImporter.afterLineBreak(chunkText, lineEnd);
+			}
+			String line = chunkText.substring(lineStart, lineEnd);
+			chunkResult.lineCount++;
+			Person newPerson = lineParser.parseLine(line);
+			if (newPerson == null) {
+				chunkResult.addReject(chunkResult.lineCount, lineParser.getRejectReason(), line);
+			} else {
+				chunkResult.addPerson(newPerson);
+			}
+			lineStart = nextLineStart;
+		}
+		return chunkResult;
+	}
+
+	private static ChunkResult joinChunk(CompletableFuture<ChunkResult> pendingChunk) throws IOException {
+		try {
+			return pendingChunk.join();
+		} catch (CompletionException exception) {
+			if (exception.getCause() instanceof IOException) {
+				throw (IOException) exception.getCause();
+			}
+			throw exception;
+		}
+	}
+
+	/** This class holds the people and rejected lines of one chunk, with line numbers counted from the
+	 * 	start of the chunk.
+	 */
+	private static class ChunkResult {
+
+		private Person[] people;
+		private int personCount = 0;
+		private int lineCount = 0;
+		private int[] rejectLineNumbers = new int[4];
+		private String[] rejectReasons = new String[4];
+		private String[] rejectLines = new String[4];
+		private int rejectCount = 0;
+
+		ChunkResult(int expectedPeople) {
+			this.people = new Person[expectedPeople];
+		}
+
+		void addPerson(Person newPerson) {
+			if (personCount == people.length) {
+				Person[] grownArray = new Person[personCount * 2];
+				System.arraycopy(people, 0, grownArray, 0, personCount);
+				people = grownArray;
+			}
+			people[personCount] = newPerson;
+			personCount++;
+		}
+
+		void addReject(int lineNumber, String reason, String line) {
+			if (rejectCount == rejectLineNumbers.length) {
+				int[] grownLineNumbers = new int[rejectCount * 2];
+				String[] grownReasons = new String[rejectCount * 2];
+				String[] grownLines = new String[rejectCount * 2];
+				System.arraycopy(rejectLineNumbers, 0, grownLineNumbers, 0, rejectCount);
+				System.arraycopy(rejectReasons, 0, grownReasons, 0, rejectCount);
+				System.arraycopy(rejectLines, 0, grownLines, 0, rejectCount);
+				rejectLineNumbers = grownLineNumbers;
+				rejectReasons = grownReasons;
+				rejectLines = grownLines;
+			}
+			rejectLineNumbers[rejectCount] = lineNumber;
+			rejectReasons[rejectCount] = reason;
+			rejectLines[rejectCount] = line;
+			rejectCount++;
+		}
+	}
+}
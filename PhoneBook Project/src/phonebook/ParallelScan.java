@@ -0,0 +1,133 @@
+package phonebook;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+
+/** This class runs the searches that have to check every Person, such as a name search too short for the
+ * 	trigram index, on all processors. The positions to check, such as slots or the ranks of the people in
+ * 	PersonName order, are split in halves until each range is small enough, each range is checked by a task
+ * 	on a ForkJoinPool into its own buffer, and the buffers are joined in range order, so the matches come back
+ * 	in the same order as a sequential scan. Scans of fewer positions than the parallel threshold, or on a pool
+ * 	of one thread, run on the calling thread, since splitting would cost more than it saves.
+ * 	Each thread collects its matches into a reusable int buffer and copies them out once per range, so a scan
+ * 	allocates nothing per position checked.
+ * 	The predicate is called from several threads at once, so it must only read shared data, and must not
+ * 	start another scan.
+ */
+public class ParallelScan {
+
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
+	private static final int MIN_RANGE_SIZE = 1 << 12;
+	private static final int RANGES_PER_THREAD = 4;
+	private static final int[] NO_POSITIONS = new int[0];
+	private static final int MAX_KEPT_BUFFER_SIZE = 1 << 20;
+	private static final ThreadLocal<int[]> matchBuffer = ThreadLocal.withInitial(() -> new int[1024]);
+
+	private final ForkJoinPool scanPool;
+	private final int parallelThreshold;
+
+	/** Constructor to scan on the common ForkJoinPool once there are DEFAULT_PARALLEL_THRESHOLD positions.
+	 */
+	public ParallelScan() {
+		this(ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	/** Constructor to scan on scanPool once there are parallelThreshold positions.
+	 * @param scanPool - the pool to run the ranges on, such as a pool kept for searches
+	 * @param parallelThreshold - the smallest number of positions that is scanned in parallel
+	 */
+	public ParallelScan(ForkJoinPool scanPool, int parallelThreshold) {
+		this.scanPool = scanPool;
+		this.parallelThreshold = Math.max(1, parallelThreshold);
+	}
+
+	/** Method getParallelThreshold returns the smallest number of positions that is scanned in parallel.
+	 * @return int
+	 */
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/** Method scan returns, in ascending order, every position from 0 to size - 1 for which matches is true.
+	 * @param size - the number of positions
+	 * @param matches - the test for one position
+	 * @return int[] - the matching positions
+	 */
+	public int[] scan(int size, IntPredicate matches) {
+		int parallelism = scanPool.getParallelism();
+		if (size < parallelThreshold || parallelism < 2) {
+			return scanRange(0, size, matches);
+		}
+		int rangeSize = Math.max(MIN_RANGE_SIZE, size / (parallelism * RANGES_PER_THREAD));
+		return scanPool.invoke(new RangeTask(0, size, rangeSize, matches));
+	}
+
+	/** Method scanRange checks the positions from start to end on the calling thread.
+	 * @param start
+	 * @param end
+	 * @param matches
+	 * @return int[] - the matching positions in ascending order
+	 */
+	private static int[] scanRange(int start, int end, IntPredicate matches) {
+		int[] positions = matchBuffer.get();
+		int count = 0;
+		for (int position = start; position < end; position++) {
+			if (matches.test(position)) {
+				if (count == positions.length) {
+					positions = Arrays.copyOf(positions, count * 2);
+				}
+				positions[count] = position;
+				count++;
+			}
+		}
+		// Keep a grown buffer for the next scan on this thread, unless it would hold on to a lot of memory.
+		if (positions.length <= MAX_KEPT_BUFFER_SIZE) {
+			matchBuffer.set(positions);
+		}
+		return count == 0 ? NO_POSITIONS : Arrays.copyOf(positions, count);
+	}
+
+	/** This class checks one range of positions, splitting it in half and checking the first half in
+	 * 	another task while it is larger than rangeSize.
+	 */
+	private static class RangeTask extends RecursiveTask<int[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int start;
+		private final int end;
+		private final int rangeSize;
+		private final IntPredicate matches;
+
+		RangeTask(int start, int end, int rangeSize, IntPredicate matches) {
+			this.start = start;
+			this.end = end;
+			this.rangeSize = rangeSize;
+			this.matches = matches;
+		}
+
+		@Override
+		protected int[] compute() {
+			if (end - start <= rangeSize) {
+				return scanRange(start, end, matches);
+			}
+			int middle = (start + end) >>> 1;
+			RangeTask firstHalf = new RangeTask(start, middle, rangeSize, matches);
+			firstHalf.fork();
+			int[] secondPositions = new RangeTask(middle, end, rangeSize, matches).compute();
+			int[] firstPositions = firstHalf.join();
+			if (secondPositions.length == 0) {
+				return firstPositions;
+			}
+			if (firstPositions.length == 0) {
+				return secondPositions;
+			}
+			int[] positions = Arrays.copyOf(firstPositions, firstPositions.length + secondPositions.length);
+			System.arraycopy(secondPositions, 0, positions, firstPositions.length, secondPositions.length);
+			return positions;
+		}
+	}
+}
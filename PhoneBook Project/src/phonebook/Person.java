@@ -75,6 +75,21 @@ public class Person extends Address {
 		this.personPhone = personPhone;
 	}
 
+	/** Constructor to build a copy of sourcePerson sharing its Strings, for a holder such as QueryCache that
+	 * 	hands out people and must not see changes made to them later through the setters.
+	 * @param sourcePerson
+	 */
+	Person(Person sourcePerson) {
+		super(sourcePerson.getAddressStreet1(), sourcePerson.getAddressStreet2(), sourcePerson.getAddressCity(),
+				sourcePerson.getAddressState(), sourcePerson.getAddressZip(), sourcePerson.getAddressZipPlus4());
+		this.personID = sourcePerson.personID;
+		this.firstName = sourcePerson.firstName;
+		this.middleName = sourcePerson.middleName;
+		this.lastName = sourcePerson.lastName;
+		this.personName = sourcePerson.personName;
+		this.personPhone = sourcePerson.personPhone;
+	}
+
 	public long getPersonID() {
 		return personID;
 	}
@@ -283,7 +298,7 @@ public class Person extends Address {
 				}
 				if (inputArray[4].length() == 5 && inputArray[5].length() == 10 && 
 						super.isStateAbbreviation(inputArray[3]) && areValidNumbers) {
-					extractNames(inputArray[0]);
+					setPersonName(inputArray[0]);
 					super.setAddressStreet1(inputArray[1]);
 					super.setAddressCity(inputArray[2]);
 					super.setAddressState(inputArray[3]);
@@ -309,26 +324,42 @@ public class Person extends Address {
 	 * @return boolean - true if the person information is valid, otherwise false.
 	 */
 	public boolean isValidPerson(boolean isNewPerson) {
+		String problem = findPersonProblem(isNewPerson);
+		if (problem != null) {
+			System.out.println("isValidPerson - " + problem);
+			return false;
+		}
+//		System.out.println("isValidPerson - " + this.personName + " is valid.");
+		return true;
+	}
+	
+	/** Method findPersonProblem makes the same checks as isValidPerson without printing anything, for callers
+	 * 	that report problems themselves, such as a PhonebookBatch.
+	 * @param isNewPerson - true if the Person is new so it does not check for a person ID.
+	 * @return String - the first reason the person is invalid, or null if it is valid.
+	 */
+	public String findPersonProblem(boolean isNewPerson) {
 		if (!isNewPerson) {
 			if ((Long)this.personID == null || this.personID == 0) {
-				System.out.println("isValidPerson - existing person has no personID.");
-				return false;
+				return "existing person has no personID.";
 			}
 		}
 		if (this.personName.isBlank() || this.personName.isEmpty()) {
-			System.out.println("isValidPerson - person has no name.");
-			return false;
+			return "person has no name.";
 		}
-		
-		if (!super.isValidAddress(isNewPerson)) {
-			return false;
+		String addressProblem = super.findAddressProblem(isNewPerson);
+		if (addressProblem != null) {
+			return addressProblem;
 		}
 		if (this.personPhone == 0L || Long.toString(this.personPhone).length() > 10) {
-			System.out.println("isValidPerson - person phone number information is invalid.");
-			return false;
+			return "person phone number information is invalid.";
 		}
-//		System.out.println("isValidPerson - " + this.personName + " is valid.");
-		return true;
+		if (!PersonCodec.fitsWhole(this.personName) || !PersonCodec.fitsWhole(getAddressStreet1())
+				|| !PersonCodec.fitsWhole(getAddressStreet2()) || !PersonCodec.fitsWhole(getAddressCity())
+				|| !PersonCodec.fitsWhole(getAddressState())) {
+			return "person has a field longer than " + PersonCodec.MAX_STRING_BYTES + " bytes.";
+		}
+		return null;
 	}
 	
 	/** Method toString overrides the default Object.toString to summarize the person.
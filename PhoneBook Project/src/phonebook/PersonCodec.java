@@ -0,0 +1,162 @@
+package phonebook;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** This class is the compact binary format for a Person, shared by the write-ahead log and other binary files.
+ * 	A Person is written as personID (8 bytes), phone (8 bytes), zip (4 bytes), zip+4 (4 bytes), then the full
+ * 	name, street 1, street 2, city, and state, each as a 2 byte length followed by its UTF-8 bytes.
+ * 	Numbers are big-endian, the ByteBuffer default. A string of more than MAX_STRING_BYTES bytes is cut before the
+ * 	first character that does not fit whole, so Person.findPersonProblem rejects people with such a field.
+ * 	Strings are encoded straight into the buffer, and sizes are counted without encoding.
+ */
+public class PersonCodec {
+
+	public static final int MAX_STRING_BYTES = 0xFFFF;
+
+	/** Method encodedSize returns the number of bytes write will use for currentPerson.
+	 * @param currentPerson
+	 * @return int
+	 */
+	public static int encodedSize(Person currentPerson) {
+		return 24 + stringSize(currentPerson.getPersonName()) + stringSize(currentPerson.getAddressStreet1())
+				+ stringSize(currentPerson.getAddressStreet2()) + stringSize(currentPerson.getAddressCity())
+				+ stringSize(currentPerson.getAddressState());
+	}
+
+	/** Method write puts currentPerson into buffer at its position. The buffer must have encodedSize bytes left.
+	 * @param buffer
+	 * @param currentPerson
+	 */
+	public static void write(ByteBuffer buffer, Person currentPerson) {
+		buffer.putLong(currentPerson.getPersonID());
+		buffer.putLong(currentPerson.getPersonPhone());
+		buffer.putInt(currentPerson.getAddressZip());
+		buffer.putInt(currentPerson.getAddressZipPlus4());
+		writeString(buffer, currentPerson.getPersonName());
+		writeString(buffer, currentPerson.getAddressStreet1());
+		writeString(buffer, currentPerson.getAddressStreet2());
+		writeString(buffer, currentPerson.getAddressCity());
+		writeString(buffer, currentPerson.getAddressState());
+	}
+
+	/** Method read builds a new Person from the bytes at the buffer's position.
+	 * @param buffer
+	 * @return Person
+	 */
+	public static Person read(ByteBuffer buffer) {
+		long personID = buffer.getLong();
+		long personPhone = buffer.getLong();
+		int zip = buffer.getInt();
+		int zipPlus4 = buffer.getInt();
+		String personName = readString(buffer);
+		String street1 = readString(buffer);
+		String street2 = readString(buffer);
+		String city = readString(buffer);
+		String state = readString(buffer);
+		return new Person(personID, personName, street1, street2, city, state, zip, zipPlus4, personPhone);
+	}
+
+	/** Method writeString puts value into buffer as a 2 byte length followed by its UTF-8 bytes.
+	 * 	A null value is written as a blank String.
+	 * @param buffer
+	 * @param value
+	 */
+	public static void writeString(ByteBuffer buffer, String value) {
+		int lengthPosition = buffer.position();
+		buffer.putShort((short) 0);
+		buffer.putShort(lengthPosition, (short) utf8(value, buffer, MAX_STRING_BYTES));
+	}
+
+	/** Method readString reads a 2 byte length followed by that many UTF-8 bytes.
+	 * @param buffer
+	 * @return String
+	 */
+	public static String readString(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xFFFF;
+		if (!buffer.hasArray()) {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+		// Decode straight from the backing array, so no copy of the bytes is made for each field.
+		if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+				StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+
+	/** Method stringSize returns the number of bytes writeString will use for value.
+	 * @param value
+	 * @return int
+	 */
+	public static int stringSize(String value) {
+		return 2 + utf8(value, null, MAX_STRING_BYTES);
+	}
+
+	/** Method fitsWhole returns true if writeString writes all of value, false if it has to cut it.
+	 * @param value
+	 * @return boolean
+	 */
+	public static boolean fitsWhole(String value) {
+		return value == null || value.length() <= MAX_STRING_BYTES / 3
+				|| utf8(value, null, Integer.MAX_VALUE) <= MAX_STRING_BYTES;
+	}
+
+	/** Method utf8 puts the UTF-8 bytes of value into buffer, or only counts them if buffer is null, stopping
+	 * 	before the first character that would take the count past maxBytes. As in String.getBytes, a surrogate
+	 * 	without its pair is written as '?'.
+	 * @param value
+	 * @param buffer - null to count the bytes without writing them
+	 * @param maxBytes
+	 * @return int - the number of bytes written or counted
+	 */
+	private static int utf8(String value, ByteBuffer buffer, int maxBytes) {
+		if (value == null) {
+			return 0;
+		}
+		int byteCount = 0;
+		int length = value.length();
+		for (int index = 0; index < length; index++) {
+			int codePoint = value.charAt(index);
+			if (Character.isSurrogate((char) codePoint)) {
+				if (Character.isHighSurrogate((char) codePoint) && index + 1 < length
+						&& Character.isLowSurrogate(value.charAt(index + 1))) {
+					codePoint = Character.toCodePoint((char) codePoint, value.charAt(index + 1));
+				} else {
+					codePoint = '?';
+				}
+			}
+			int codePointBytes = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+			if (byteCount + codePointBytes > maxBytes) {
+				break;
+			}
+			if (buffer != null) {
+				if (codePointBytes == 1) {
+					buffer.put((byte) codePoint);
+				} else if (codePointBytes == 2) {
+					buffer.put((byte) (0xC0 | codePoint >> 6));
+					buffer.put((byte) (0x80 | codePoint & 0x3F));
+				} else if (codePointBytes == 3) {
+					buffer.put((byte) (0xE0 | codePoint >> 12));
+					buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+					buffer.put((byte) (0x80 | codePoint & 0x3F));
+				} else {
+					buffer.put((byte) (0xF0 | codePoint >> 18));
+					buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+					buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+					buffer.put((byte) (0x80 | codePoint & 0x3F));
+				}
+			}
+			byteCount += codePointBytes;
+			if (codePoint >= 0x10000) {
+				index++;
+			}
+		}
+		return byteCount;
+	}
+}
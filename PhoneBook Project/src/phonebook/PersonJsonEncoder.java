@@ -0,0 +1,252 @@
+package phonebook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/** This class writes people as UTF-8 JSON straight into a byte buffer, without building a String for the
+ * 	response or for any field. When the buffer fills it is written to the OutputStream and reused, so a
+ * 	response of any size takes the same memory. A Person is written as -
+ * 		{"personID":12,"name":"Dan Bradford","firstName":"Dan","middleName":"","lastName":"Bradford",
+ * 		"street1":"120 Civic Plaza","street2":"","city":"O'Fallon","state":"IL","zip":62269,"zipPlus4":0,
+ * 		"phone":6186323783}
+ * 	An encoder is used by one thread and for one response at a time, and can be reset to write the next one.
+ */
+public class PersonJsonEncoder {
+
+	public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	private static final byte[] PERSON_ID_FIELD = ascii("{\"personID\":");
+	private static final byte[] NAME_FIELD = ascii(",\"name\":");
+	private static final byte[] FIRST_NAME_FIELD = ascii(",\"firstName\":");
+	private static final byte[] MIDDLE_NAME_FIELD = ascii(",\"middleName\":");
+	private static final byte[] LAST_NAME_FIELD = ascii(",\"lastName\":");
+	private static final byte[] STREET1_FIELD = ascii(",\"street1\":");
+	private static final byte[] STREET2_FIELD = ascii(",\"street2\":");
+	private static final byte[] CITY_FIELD = ascii(",\"city\":");
+	private static final byte[] STATE_FIELD = ascii(",\"state\":");
+	private static final byte[] ZIP_FIELD = ascii(",\"zip\":");
+	private static final byte[] ZIP_PLUS4_FIELD = ascii(",\"zipPlus4\":");
+	private static final byte[] PHONE_FIELD = ascii(",\"phone\":");
+	private static final byte[] ERROR_FIELD = ascii("{\"error\":");
+	private static final byte[] HEX_DIGITS = ascii("0123456789abcdef");
+	// The longest field is a long: 20 characters with the sign.
+	private static final int LONG_DIGITS = 20;
+
+	private OutputStream outputStream;
+	private final byte[] buffer;
+	private int count = 0;
+	private boolean hasWritten = false;
+
+	/** Constructor to encode to outputStream through a buffer of DEFAULT_BUFFER_SIZE bytes.
+	 * @param outputStream
+	 */
+	public PersonJsonEncoder(OutputStream outputStream) {
+		this(outputStream, DEFAULT_BUFFER_SIZE);
+	}
+
+	/** Constructor to encode to outputStream through a buffer of bufferSize bytes.
+	 * @param outputStream
+	 * @param bufferSize - at least 64 bytes
+	 */
+	public PersonJsonEncoder(OutputStream outputStream, int bufferSize) {
+		this.outputStream = outputStream;
+		this.buffer = new byte[Math.max(64, bufferSize)];
+	}
+
+	/** Method reset starts a new response to outputStream, dropping anything still in the buffer, so one
+	 * 	encoder and its buffer can be used for response after response.
+	 * @param outputStream
+	 */
+	public void reset(OutputStream outputStream) {
+		this.outputStream = outputStream;
+		this.count = 0;
+		this.hasWritten = false;
+	}
+
+	/** Method writePeople writes people as a JSON array. The end of the array may still be in the buffer.
+	 * @param people
+	 * @throws IOException if the stream fails
+	 */
+	public void writePeople(Person[] people) throws IOException {
+		writeByte('[');
+		for (int index = 0; index < people.length; index++) {
+			if (index > 0) {
+				writeByte(',');
+			}
+			writePerson(people[index]);
+		}
+		writeByte(']');
+	}
+
+	/** Method writePerson writes currentPerson as a JSON object.
+	 * @param currentPerson
+	 * @throws IOException if the stream fails
+	 */
+	public void writePerson(Person currentPerson) throws IOException {
+		writeBytes(PERSON_ID_FIELD);
+		writeLong(currentPerson.getPersonID());
+		writeBytes(NAME_FIELD);
+		writeString(currentPerson.getPersonName());
+		writeBytes(FIRST_NAME_FIELD);
+		writeString(currentPerson.getFirstName());
+		writeBytes(MIDDLE_NAME_FIELD);
+		writeString(currentPerson.getMiddleName());
+		writeBytes(LAST_NAME_FIELD);
+		writeString(currentPerson.getLastName());
+		writeBytes(STREET1_FIELD);
+		writeString(currentPerson.getAddressStreet1());
+		writeBytes(STREET2_FIELD);
+		writeString(currentPerson.getAddressStreet2());
+		writeBytes(CITY_FIELD);
+		writeString(currentPerson.getAddressCity());
+		writeBytes(STATE_FIELD);
+		writeString(currentPerson.getAddressState());
+		writeBytes(ZIP_FIELD);
+		writeLong(currentPerson.getAddressZip());
+		writeBytes(ZIP_PLUS4_FIELD);
+		writeLong(currentPerson.getAddressZipPlus4());
+		writeBytes(PHONE_FIELD);
+		writeLong(currentPerson.getPersonPhone());
+		writeByte('}');
+	}
+
+	/** Method writeError writes {"error":message}.
+	 * @param message
+	 * @throws IOException if the stream fails
+	 */
+	public void writeError(String message) throws IOException {
+		writeBytes(ERROR_FIELD);
+		writeString(message);
+		writeByte('}');
+	}
+
+	/** Method bufferedCount returns the number of bytes waiting in the buffer. If nothing has been written to the
+	 * 	stream yet, this is the length of the whole response.
+	 * @return int
+	 */
+	public int bufferedCount() {
+		return count;
+	}
+
+	/** Method hasWritten returns true once part of the response has been written to the stream.
+	 * @return boolean
+	 */
+	public boolean hasWritten() {
+		return hasWritten;
+	}
+
+	/** Method flush writes the buffered bytes to the stream and flushes it.
+	 * @throws IOException if the stream fails
+	 */
+	public void flush() throws IOException {
+		writeBuffer();
+		outputStream.flush();
+	}
+
+	/** Method writeString writes text as a quoted JSON string. ASCII characters that need no escape are copied
+	 * 	as they are, and other characters are escaped or encoded as UTF-8 in place.
+	 * @param text - null is written as an empty string
+	 * @throws IOException if the stream fails
+	 */
+	private void writeString(String text) throws IOException {
+		writeByte('"');
+		int length = text == null ? 0 : text.length();
+		for (int index = 0; index < length; index++) {
+			// The longest a character can become is a 6 byte \\u escape, or 4 UTF-8 bytes for a surrogate pair.
+			if (buffer.length - count < 6) {
+				writeBuffer();
+			}
+			char character = text.charAt(index);
+			if (character >= 0x20 && character < 0x80 && character != '"' && character != '\\') {
+				buffer[count++] = (byte) character;
+			} else if (character == '"' || character == '\\') {
+				buffer[count++] = '\\';
+				buffer[count++] = (byte) character;
+			} else if (character < 0x20) {
+				buffer[count++] = '\\';
+				buffer[count++] = 'u';
+				buffer[count++] = '0';
+				buffer[count++] = '0';
+				buffer[count++] = HEX_DIGITS[character >>> 4];
+				buffer[count++] = HEX_DIGITS[character & 0xF];
+			} else if (character < 0x800) {
+				buffer[count++] = (byte) (0xC0 | (character >>> 6));
+				buffer[count++] = (byte) (0x80 | (character & 0x3F));
+			} else if (Character.isHighSurrogate(character) && index + 1 < length
+					&& Character.isLowSurrogate(text.charAt(index + 1))) {
+				int codePoint = Character.toCodePoint(character, text.charAt(index + 1));
+				index++;
+				buffer[count++] = (byte) (0xF0 | (codePoint >>> 18));
+				buffer[count++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3F));
+				buffer[count++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3F));
+				buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(character)) {
+				// A lone surrogate cannot be encoded, so write a replacement character as UTF-8 does.
+				buffer[count++] = (byte) 0xEF;
+				buffer[count++] = (byte) 0xBF;
+				buffer[count++] = (byte) 0xBD;
+			} else {
+				buffer[count++] = (byte) (0xE0 | (character >>> 12));
+				buffer[count++] = (byte) (0x80 | ((character >>> 6) & 0x3F));
+				buffer[count++] = (byte) (0x80 | (character & 0x3F));
+			}
+		}
+		writeByte('"');
+	}
+
+	/** Method writeLong writes number in decimal digits without building a String.
+	 * @param number
+	 * @throws IOException if the stream fails
+	 */
+	private void writeLong(long number) throws IOException {
+		if (buffer.length - count < LONG_DIGITS) {
+			writeBuffer();
+		}
+		if (number == Long.MIN_VALUE) {
+			writeBytes(ascii(Long.toString(number)));
+			return;
+		}
+		if (number < 0) {
+			buffer[count++] = '-';
+			number = -number;
+		}
+		int digitCount = 1;
+		for (long remaining = number / 10; remaining > 0; remaining /= 10) {
+			digitCount++;
+		}
+		int position = count + digitCount;
+		do {
+			buffer[--position] = (byte) ('0' + (number % 10));
+			number /= 10;
+		} while (number > 0);
+		count += digitCount;
+	}
+
+	private void writeByte(char character) throws IOException {
+		if (count == buffer.length) {
+			writeBuffer();
+		}
+		buffer[count++] = (byte) character;
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException {
+		if (buffer.length - count < bytes.length) {
+			writeBuffer();
+		}
+		System.arraycopy(bytes, 0, buffer, count, bytes.length);
+		count += bytes.length;
+	}
+
+	private void writeBuffer() throws IOException {
+		if (count > 0) {
+			hasWritten = true;
+			outputStream.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+
+	private static byte[] ascii(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,408 @@
+package phonebook;
+
+/** This class keeps the slots of a PersonStore sorted by last name, first name, and middle name.
+ * 	Each Person gets a collation key once, when it is inserted, so comparisons never build temporary Strings.
+ * 	A new or updated Person is placed by binary search, which costs O(log n) comparisons, and the
+ * 	slots after it are moved over with one System.arraycopy. Equal names are ordered the same way as by the
+ * 	stable bubble sort this replaces: a new Person goes after the people with the same name, and an updated
+ * 	Person keeps its place if its name is unchanged, goes first among its new equals if its name now sorts
+ * 	later, and last among them if it now sorts earlier.
+ * 	Each slot also gets a sequence number that orders it among the people with the same name, the way
+ * 	PhonebookSnapshot orders its entries, so two slots are compared and a slot is found in O(log n) even
+ * 	when many people share a name.
+ */
+public class PersonNameOrder {
+
+	private static final int INITIAL_CAPACITY = 16;
+	// firstSlots walks the order once the slots are at least 1 in this many people.
+	private static final int RANK_WALK_RATIO = 16;
+
+	private int[] slotsInNameOrder = new int[INITIAL_CAPACITY];
+	private int size = 0;
+	private String[] collationKeyBySlot = new String[INITIAL_CAPACITY];
+	// Among slots with equal keys, a lower sequence number comes first. A slot placed last gets nextSequence,
+	// and one placed first gets -nextSequence, so every slot in the order has a different number.
+	private long[] sequenceBySlot = new long[INITIAL_CAPACITY];
+	private long nextSequence = 1;
+
+	/** Method collationKey builds the key used to sort a Person by last name, first name, and middle name.
+	 * 	Comparing two keys with String.compareTo gives the same result as comparing the concatenated
+	 * 	names with String.compareToIgnoreCase.
+	 * @param currentPerson
+	 * @return String - the collation key
+	 */
+	public static String collationKey(Person currentPerson) {
+		String lastName = currentPerson.getLastName();
+		String firstName = currentPerson.getFirstName();
+		String middleName = currentPerson.getMiddleName();
+		StringBuilder keyBuilder = new StringBuilder(lastName.length() + firstName.length() + middleName.length());
+		appendFolded(keyBuilder, lastName);
+		appendFolded(keyBuilder, firstName);
+		appendFolded(keyBuilder, middleName);
+		return keyBuilder.toString();
+	}
+
+	/** Method insert places the Person stored in slot at its position in name order.
+	 * @param slot - the PersonStore slot of the Person
+	 * @param currentPerson - the Person stored in the slot
+	 */
+	public void insert(int slot, Person currentPerson) {
+		String key = collationKey(currentPerson);
+		ensureSlotCapacity(slot + 1);
+		collationKeyBySlot[slot] = key;
+		sequenceBySlot[slot] = nextSequence++;
+		ensureOrderCapacity(size + 1);
+		int position = upperBound(key);
+		System.arraycopy(slotsInNameOrder, position, slotsInNameOrder, position + 1, size - position);
+		slotsInNameOrder[position] = slot;
+		size++;
+	}
+
+	/** Method insertAll places the first count slots in name order with a single merge, rather than
+	 * 	moving the existing slots once per Person. People in the batch with equal names keep the batch order.
+	 * @param slots - the PersonStore slots of the people
+	 * @param people - the people stored in those slots, in the same order as slots
+	 * @param count - the number of slots to insert
+	 */
+	public void insertAll(int[] slots, Person[] people, int count) {
+		ensureOrderCapacity(size + count);
+		for (int index = 0; index < count; index++) {
+			ensureSlotCapacity(slots[index] + 1);
+			collationKeyBySlot[slots[index]] = collationKey(people[index]);
+			sequenceBySlot[slots[index]] = nextSequence++;
+		}
+		int[] batch = new int[count];
+		System.arraycopy(slots, 0, batch, 0, count);
+		sortSlots(batch, count);
+		// Merge from the back so the existing slots can be moved in place.
+		int existingIndex = size - 1;
+		int batchIndex = count - 1;
+		int outputIndex = size + count - 1;
+		while (batchIndex >= 0) {
+			if (existingIndex >= 0 && compareSlots(slotsInNameOrder[existingIndex], batch[batchIndex]) > 0) {
+				slotsInNameOrder[outputIndex] = slotsInNameOrder[existingIndex];
+				existingIndex--;
+			} else {
+				slotsInNameOrder[outputIndex] = batch[batchIndex];
+				batchIndex--;
+			}
+			outputIndex--;
+		}
+		size += count;
+	}
+
+	/** Method remove takes the slot out of the name order.
+	 * @param slot - the PersonStore slot to remove
+	 * @return boolean - true if the slot was found and removed, otherwise false.
+	 */
+	public boolean remove(int slot) {
+		int position = positionOf(slot);
+		if (position < 0) {
+			System.out.println("PersonNameOrder.remove - slot " + slot + " not found.");
+			return false;
+		}
+		System.arraycopy(slotsInNameOrder, position + 1, slotsInNameOrder, position, size - position - 1);
+		size--;
+		collationKeyBySlot[slot] = null;
+		return true;
+	}
+
+	/** Method removeAll takes the first count slots out of the name order with one pass over the order,
+	 * 	rather than moving the remaining slots once per removed slot. Slots not in the order are ignored.
+	 * @param slots - the PersonStore slots to remove
+	 * @param count - the number of slots to remove
+	 */
+	public void removeAll(int[] slots, int count) {
+		for (int index = 0; index < count; index++) {
+			if (slots[index] >= 0 && slots[index] < collationKeyBySlot.length) {
+				collationKeyBySlot[slots[index]] = null;
+			}
+		}
+		// Removed slots no longer have a collation key, so keep only the slots that still do.
+		int keptCount = 0;
+		for (int position = 0; position < size; position++) {
+			if (collationKeyBySlot[slotsInNameOrder[position]] != null) {
+				slotsInNameOrder[keptCount] = slotsInNameOrder[position];
+				keptCount++;
+			}
+		}
+		size = keptCount;
+	}
+
+	/** Method update moves the slot to the position of the updated Person's name. The bubble sort moved an
+	 * 	updated Person only as far as it had to, so it stops at the first equal name it meets: it keeps its
+	 * 	sequence number if its name is unchanged, and otherwise gets one that puts it first among its new
+	 * 	equals if the name now sorts later, or last if it now sorts earlier.
+	 * @param slot - the PersonStore slot that was updated
+	 * @param updatedPerson - the Person now stored in the slot
+	 */
+	public void update(int slot, Person updatedPerson) {
+		int oldPosition = positionOf(slot);
+		if (oldPosition < 0) {
+			System.out.println("PersonNameOrder.update - slot " + slot + " not found.");
+			return;
+		}
+		System.arraycopy(slotsInNameOrder, oldPosition + 1, slotsInNameOrder, oldPosition, size - oldPosition - 1);
+		size--;
+		String key = collationKey(updatedPerson);
+		int keyComparison = key.compareTo(collationKeyBySlot[slot]);
+		if (keyComparison != 0) {
+			sequenceBySlot[slot] = keyComparison > 0 ? -nextSequence : nextSequence;
+			nextSequence++;
+		}
+		collationKeyBySlot[slot] = key;
+		int position = rankOf(slot);
+		System.arraycopy(slotsInNameOrder, position, slotsInNameOrder, position + 1, size - position);
+		slotsInNameOrder[position] = slot;
+		size++;
+	}
+
+	/** Method slotAt returns the slot at position rank, counting from the first name alphabetically
+	 * 	if alphabeticalOrder is true, or from the last name alphabetically if it is false.
+	 * @param rank - 0 to size() - 1
+	 * @param alphabeticalOrder - true for ascending order, false for descending order
+	 * @return int - the PersonStore slot
+	 */
+	public int slotAt(int rank, boolean alphabeticalOrder) {
+		if (alphabeticalOrder) {
+			return slotsInNameOrder[rank];
+		}
+		return slotsInNameOrder[size - 1 - rank];
+	}
+
+	/** Method size returns the number of slots in the name order.
+	 * @return int
+	 */
+	public int size() {
+		return size;
+	}
+
+	/** Method compareSlots compares the names of the people in two slots.
+	 * @param firstSlot
+	 * @param secondSlot
+	 * @return int - negative, zero, or positive as the first name sorts before, with, or after the second.
+	 */
+	public int compareSlots(int firstSlot, int secondSlot) {
+		return collationKeyBySlot[firstSlot].compareTo(collationKeyBySlot[secondSlot]);
+	}
+
+	/** Method sortSlots sorts the first count elements of slots into name order with a stable merge sort.
+	 * 	People with equal names come out in the order they have in the name order, so a sorted set of slots
+	 * 	lists them the same way as the ranks do. Slots not in the name order yet keep their order in slots.
+	 * @param slots - slots currently in the name order, or about to be inserted
+	 * @param count - the number of elements to sort
+	 */
+	public void sortSlots(int[] slots, int count) {
+		if (count < 2) {
+			return;
+		}
+		int[] buffer = new int[count];
+		for (int width = 1; width < count; width = width * 2) {
+			for (int start = 0; start < count - width; start += width * 2) {
+				int middle = start + width;
+				int end = Math.min(start + width * 2, count);
+				// Runs that are already in order, such as people loaded from a snapshot, need no merge.
+				if (compareRanks(slots[middle - 1], slots[middle]) <= 0) {
+					continue;
+				}
+				int left = start;
+				int right = middle;
+				int output = start;
+				while (left < middle && right < end) {
+					if (compareRanks(slots[left], slots[right]) <= 0) {
+						buffer[output++] = slots[left++];
+					} else {
+						buffer[output++] = slots[right++];
+					}
+				}
+				while (left < middle) {
+					buffer[output++] = slots[left++];
+				}
+				while (right < end) {
+					buffer[output++] = slots[right++];
+				}
+				System.arraycopy(buffer, start, slots, start, end - start);
+			}
+		}
+	}
+
+	/** Method firstSlots returns the first limit of the first count slots in name order, without sorting the
+	 * 	rest, for a caller that shows only the top few matches, such as suggest. When the slots are a large share
+	 * 	of the order, the ranks are walked from the first, keeping the slots in the set, which takes about
+	 * 	limit * RANK_WALK_RATIO steps and no comparisons. Otherwise the first limit are picked with a bounded
+	 * 	max-heap in O(count log limit) comparisons and only those are sorted.
+	 * @param slots - distinct slots currently in the name order
+	 * @param count - the number of slots
+	 * @param limit - the most slots to return
+	 * @return int[] - up to limit slots, in name order
+	 */
+	public int[] firstSlots(int[] slots, int count, int limit) {
+		int resultCount = Math.max(0, Math.min(limit, count));
+		int[] firstSlots = new int[resultCount];
+		if (resultCount == 0) {
+			return firstSlots;
+		}
+		if ((long) count * RANK_WALK_RATIO >= size) {
+			boolean[] isWanted = new boolean[collationKeyBySlot.length];
+			for (int index = 0; index < count; index++) {
+				isWanted[slots[index]] = true;
+			}
+			int foundCount = 0;
+			for (int position = 0; position < size && foundCount < resultCount; position++) {
+				if (isWanted[slotsInNameOrder[position]]) {
+					firstSlots[foundCount] = slotsInNameOrder[position];
+					foundCount++;
+				}
+			}
+			return firstSlots;
+		}
+		// firstSlots is a max-heap of the first slots seen so far, with the last of them in name order at the top.
+		for (int index = 0; index < count; index++) {
+			if (index < resultCount) {
+				firstSlots[index] = slots[index];
+				siftUp(firstSlots, index);
+			} else if (compareRanks(slots[index], firstSlots[0]) < 0) {
+				firstSlots[0] = slots[index];
+				siftDown(firstSlots, resultCount);
+			}
+		}
+		sortSlots(firstSlots, resultCount);
+		return firstSlots;
+	}
+
+	/** Method siftUp moves the slot at position up the max-heap heap until its parent comes after it.
+	 * @param heap
+	 * @param position
+	 */
+	private void siftUp(int[] heap, int position) {
+		int slot = heap[position];
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (compareRanks(heap[parent], slot) >= 0) {
+				break;
+			}
+			heap[position] = heap[parent];
+			position = parent;
+		}
+		heap[position] = slot;
+	}
+
+	/** Method siftDown moves the slot at the top of the max-heap heap down until its children come before it.
+	 * @param heap
+	 * @param heapSize
+	 */
+	private void siftDown(int[] heap, int heapSize) {
+		int slot = heap[0];
+		int position = 0;
+		while (true) {
+			int child = position * 2 + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && compareRanks(heap[child + 1], heap[child]) > 0) {
+				child++;
+			}
+			if (compareRanks(heap[child], slot) <= 0) {
+				break;
+			}
+			heap[position] = heap[child];
+			position = child;
+		}
+		heap[position] = slot;
+	}
+
+	/** Method compareRanks compares two slots by name, and by their sequence numbers if the names are equal,
+	 * 	which is the order of their positions in the name order.
+	 * @param firstSlot
+	 * @param secondSlot
+	 * @return int - negative, zero, or positive as the first slot sorts before, with, or after the second.
+	 */
+	private int compareRanks(int firstSlot, int secondSlot) {
+		int keyComparison = compareSlots(firstSlot, secondSlot);
+		if (keyComparison != 0) {
+			return keyComparison;
+		}
+		return Long.compare(sequenceBySlot[firstSlot], sequenceBySlot[secondSlot]);
+	}
+
+	/** Method rankOf returns the position of the first slot in the name order that does not sort before slot,
+	 * 	by binary searching the name and the sequence number of slot.
+	 * @param slot - a slot with a collation key
+	 * @return int
+	 */
+	private int rankOf(int slot) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (compareRanks(slotsInNameOrder[middle], slot) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/** Method upperBound returns the position after the last slot whose key is less than or equal to key.
+	 * @param key
+	 * @return int
+	 */
+	private int upperBound(String key) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (collationKeyBySlot[slotsInNameOrder[middle]].compareTo(key) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/** Method positionOf finds the position of the slot by binary searching its key and sequence number.
+	 * 	Returns -1 if the slot is not in the name order.
+	 * @param slot
+	 * @return int
+	 */
+	private int positionOf(int slot) {
+		if (slot < 0 || slot >= collationKeyBySlot.length || collationKeyBySlot[slot] == null) {
+			return -1;
+		}
+		int position = rankOf(slot);
+		return position < size && slotsInNameOrder[position] == slot ? position : -1;
+	}
+
+	/** Method appendFolded appends the characters of name to keyBuilder folded the same way
+	 * 	String.compareToIgnoreCase folds them.
+	 * @param keyBuilder
+	 * @param name
+	 */
+	private static void appendFolded(StringBuilder keyBuilder, String name) {
+		for (int index = 0; index < name.length(); index++) {
+			keyBuilder.append(Character.toLowerCase(Character.toUpperCase(name.charAt(index))));
+		}
+	}
+
+	private void ensureOrderCapacity(int requiredSize) {
+		if (requiredSize > slotsInNameOrder.length) {
+			int[] grownArray = new int[Math.max(requiredSize, slotsInNameOrder.length * 2)];
+			System.arraycopy(slotsInNameOrder, 0, grownArray, 0, size);
+			slotsInNameOrder = grownArray;
+		}
+	}
+
+	private void ensureSlotCapacity(int requiredSlots) {
+		if (requiredSlots > collationKeyBySlot.length) {
+			int grownLength = Math.max(requiredSlots, collationKeyBySlot.length * 2);
+			String[] grownKeys = new String[grownLength];
+			System.arraycopy(collationKeyBySlot, 0, grownKeys, 0, collationKeyBySlot.length);
+			long[] grownSequences = new long[grownLength];
+			System.arraycopy(sequenceBySlot, 0, grownSequences, 0, sequenceBySlot.length);
+			collationKeyBySlot = grownKeys;
+			sequenceBySlot = grownSequences;
+		}
+	}
+}
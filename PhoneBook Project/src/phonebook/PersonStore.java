@@ -0,0 +1,201 @@
+package phonebook;
+
+/** This class is a RecordStore that holds the Person records of a Phonebook in a growable array of slots.
+ * 	Capacity doubles whenever the array is full, so appending a Person is amortized O(1) instead of
+ * 	copying the whole array on every insert. Deleting a Person leaves a tombstone (null) in its slot
+ * 	and the slot number is remembered so the next append can reuse it. Slot numbers of live records
+ * 	never change, so other structures can refer to a Person by its slot.
+ */
+public class PersonStore implements RecordStore {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private Person[] slotArray = new Person[INITIAL_CAPACITY];
+	private int slotCount = 0;
+	private int liveCount = 0;
+	private int[] freeSlotArray = new int[INITIAL_CAPACITY];
+	private int freeSlotCount = 0;
+	private Person[] liveView = null;
+
+	/** Constructor to build an empty PersonStore with the default initial capacity.
+	 */
+	public PersonStore() {
+	}
+
+	/** Constructor to build an empty PersonStore with room for initialCapacity people before it grows.
+	 * @param initialCapacity
+	 */
+	public PersonStore(int initialCapacity) {
+		this.slotArray = new Person[Math.max(initialCapacity, INITIAL_CAPACITY)];
+	}
+
+	/** Method append stores newPerson in a free slot (reusing a tombstone if there is one) and returns
+	 * 	the slot number used.
+	 * @param newPerson - the Person to store
+	 * @return int - the slot number newPerson was stored in
+	 */
+	@Override
+	public int append(Person newPerson) {
+		int slot;
+		if (freeSlotCount > 0) {
+			freeSlotCount--;
+			slot = freeSlotArray[freeSlotCount];
+		} else {
+			ensureCapacity(slotCount + 1);
+			slot = slotCount;
+			slotCount++;
+		}
+		slotArray[slot] = newPerson;
+		liveCount++;
+		liveView = null;
+		return slot;
+	}
+
+	/** Method appendAll stores the first count people from newPeople, growing the store at most once,
+	 * 	and returns the slot numbers used in the same order as newPeople.
+	 * @param newPeople - the people to store
+	 * @param count - the number of elements of newPeople to store
+	 * @return int[] - the slot number of each stored Person
+	 */
+	@Override
+	public int[] appendAll(Person[] newPeople, int count) {
+		int[] slots = new int[count];
+		ensureCapacity(slotCount + Math.max(0, count - freeSlotCount));
+		for (int index = 0; index < count; index++) {
+			slots[index] = append(newPeople[index]);
+		}
+		return slots;
+	}
+
+	/** Method set replaces the Person stored in a live slot.
+	 * @param slot - the slot number to replace
+	 * @param updatedPerson - the Person to store in the slot
+	 * @return boolean - true if the slot was live and was replaced, otherwise false.
+	 */
+	@Override
+	public boolean set(int slot, Person updatedPerson) {
+		if (!isLive(slot) || updatedPerson == null) {
+			System.out.println("PersonStore.set - slot " + slot + " is not in use.");
+			return false;
+		}
+		slotArray[slot] = updatedPerson;
+		liveView = null;
+		return true;
+	}
+
+	/** Method delete leaves a tombstone in the slot and remembers it for reuse. Nothing is copied.
+	 * @param slot - the slot number to delete
+	 * @return boolean - true if the slot was live and was deleted, otherwise false.
+	 */
+	@Override
+	public boolean delete(int slot) {
+		if (!isLive(slot)) {
+			System.out.println("PersonStore.delete - slot " + slot + " is not in use.");
+			return false;
+		}
+		slotArray[slot] = null;
+		liveCount--;
+		if (freeSlotCount == freeSlotArray.length) {
+			int[] grownArray = new int[freeSlotArray.length * 2];
+			System.arraycopy(freeSlotArray, 0, grownArray, 0, freeSlotCount);
+			freeSlotArray = grownArray;
+		}
+		freeSlotArray[freeSlotCount] = slot;
+		freeSlotCount++;
+		liveView = null;
+		return true;
+	}
+
+	/** Method get returns the Person stored in the slot, or null if the slot is a tombstone or out of range.
+	 * @param slot
+	 * @return Person
+	 */
+	@Override
+	public Person get(int slot) {
+		if (slot < 0 || slot >= slotCount) {
+			return null;
+		}
+		return slotArray[slot];
+	}
+
+	/** Method isLive returns true if the slot currently holds a Person.
+	 * @param slot
+	 * @return boolean
+	 */
+	@Override
+	public boolean isLive(int slot) {
+		return slot >= 0 && slot < slotCount && slotArray[slot] != null;
+	}
+
+	/** Method slotCount returns the number of slots handed out so far, including tombstones.
+	 * 	Valid slot numbers are 0 to slotCount() - 1.
+	 * @return int
+	 */
+	@Override
+	public int slotCount() {
+		return slotCount;
+	}
+
+	/** Method liveCount returns the number of people currently stored.
+	 * @return int
+	 */
+	@Override
+	public int liveCount() {
+		return liveCount;
+	}
+
+	@Override
+	public long getPersonID(int slot) {
+		return slotArray[slot].getPersonID();
+	}
+
+	@Override
+	public long getPersonPhone(int slot) {
+		return slotArray[slot].getPersonPhone();
+	}
+
+	@Override
+	public int getAddressZip(int slot) {
+		return slotArray[slot].getAddressZip();
+	}
+
+	@Override
+	public String getAddressState(int slot) {
+		return slotArray[slot].getAddressState();
+	}
+
+	/** Method toArray returns the live people in slot order without tombstones. The array is built once
+	 * 	and shared until the next change to the store, so callers must not modify it.
+	 * @return Person[]
+	 */
+	public Person[] toArray() {
+		if (liveView == null) {
+			Person[] outputArray = new Person[liveCount];
+			int outputIndex = 0;
+			for (int slot = 0; slot < slotCount; slot++) {
+				if (slotArray[slot] != null) {
+					outputArray[outputIndex] = slotArray[slot];
+					outputIndex++;
+				}
+			}
+			liveView = outputArray;
+		}
+		return liveView;
+	}
+
+	/** Method ensureCapacity doubles the slot array until it can hold requiredSlots slots.
+	 * @param requiredSlots
+	 */
+	private void ensureCapacity(int requiredSlots) {
+		if (requiredSlots <= slotArray.length) {
+			return;
+		}
+		int newCapacity = slotArray.length;
+		while (newCapacity < requiredSlots) {
+			newCapacity = newCapacity * 2;
+		}
+		Person[] grownArray = new Person[newCapacity];
+		System.arraycopy(slotArray, 0, grownArray, 0, slotCount);
+		slotArray = grownArray;
+	}
+}
@@ -1,10 +1,39 @@
 package phonebook;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
 public class Phonebook {
 	
+	private static final int PARALLEL_INDEX_THRESHOLD = 50000;
+	// getPeople steps through PersonName order once a set holds at least 1 in this many people.
+	private static final int NAME_ORDER_SCAN_RATIO = 16;
+	
 	private String phonebookName;
-	private Person[] phonebookPersonArray = new Person[0];
-	private long nextPersonID = 1; 
+	private RecordStore personStore = new PersonStore();
+	private PersonNameOrder personNameOrder = new PersonNameOrder();
+	private LongSlotIndex personIDIndex = new LongSlotIndex();
+	private LongSlotIndex phoneIndex = new LongSlotIndex();
+	private TrigramIndex firstNameIndex = new TrigramIndex();
+	private TrigramIndex lastNameIndex = new TrigramIndex();
+	private TrigramIndex nameIndex = new TrigramIndex();
+	private TrigramIndex street1Index = new TrigramIndex();
+	private BitmapIndex<String> cityIndex = new BitmapIndex<String>();
+	private BitmapIndex<String> stateIndex = new BitmapIndex<String>();
+	private BitmapIndex<Integer> zipIndex = new BitmapIndex<Integer>();
+	private NamePrefixIndex namePrefixIndex = new NamePrefixIndex();
+	private volatile ParallelScan parallelScan = new ParallelScan();
+	private volatile Person[] sortedPersonView = null;
+	private volatile QueryCache queryCache = null;
+	private PhonebookLog phonebookLog = null;
+	private PhonebookCheckpoint phonebookCheckpoint = null;
+	private long logEntriesPerCheckpoint = 0;
+	private long checkpointNextPersonID = 0;
+	private final AtomicLong nextPersonID = new AtomicLong(1);
 	
 	/** Constructor to build Phonebook with just the name. Initializes nextPersonID to 1.
 	 * @param phonebookName
@@ -13,20 +42,47 @@ public class Phonebook {
 		this.phonebookName = phonebookName;
 	}
 	
+	/** Constructor to build Phonebook with a name and the storage engine to keep the people in, for example
+	 * 	a ColumnarRecordStore for very large directories. Any people already in personStore are indexed.
+	 * 	Initializes nextPersonID to the highest personID in personStore + 1.
+	 * @param phonebookName
+	 * @param personStore
+	 */
+	public Phonebook(String phonebookName, RecordStore personStore) {
+		this.phonebookName = phonebookName;
+		this.personStore = personStore;
+		int[] slots = new int[personStore.liveCount()];
+		Person[] storedPeople = new Person[slots.length];
+		int storedCount = 0;
+		for (int slot = 0; slot < personStore.slotCount(); slot++) {
+			if (personStore.isLive(slot)) {
+				Person currentPerson = personStore.get(slot);
+				this.nextPersonID.accumulateAndGet(currentPerson.getPersonID() + 1, Math::max);
+				slots[storedCount] = slot;
+				storedPeople[storedCount] = currentPerson;
+				storedCount++;
+			}
+		}
+		indexPeople(slots, storedPeople, storedCount);
+	}
+	
 	/** Constructor to build Phonebook with a name and an array People. 
-	 * 	It sorts the People by personID, initializes nextPersonID to the highest personID in the array + 1.
-	 *  Then it sorts the People by PersonName.
+	 * 	It initializes nextPersonID to the highest personID in the array + 1.
+	 *  Then it merges the People into PersonName order in one pass.
 	 * @param phonebookName
 	 * @param phonebookPersonArray
 	 */
 	public Phonebook(String phonebookName, Person[] phonebookPersonArray) {
 		super();
 		this.phonebookName = phonebookName;
-		// Ensure the People added are sorted by PersonID respectively
-		this.phonebookPersonArray = bubbleSortByPersonID(phonebookPersonArray, true);
-		// Assign the nextPersonID to the last sorted PersonID + 1
-		this.nextPersonID = phonebookPersonArray[phonebookPersonArray.length - 1].getPersonID() + 1; 
-		this.phonebookPersonArray = bubbleSortByPersonName(this.phonebookPersonArray, true);
+		// Assign the nextPersonID to the highest PersonID + 1
+		long highestPersonID = 0;
+		for (Person currentPerson:phonebookPersonArray) {
+			highestPersonID = Math.max(highestPersonID, currentPerson.getPersonID());
+		}
+		this.nextPersonID.set(highestPersonID + 1);
+		this.personStore = new PersonStore(phonebookPersonArray.length);
+		storePeople(phonebookPersonArray, phonebookPersonArray.length);
 	}
 
 	public String getPhonebookName() {
@@ -37,8 +93,113 @@ public class Phonebook {
 		this.phonebookName = phonebookName;
 	}
 
+	public PhonebookLog getPhonebookLog() {
+		return phonebookLog;
+	}
+
+	/** Method setPhonebookLog attaches the write-ahead log that records every later add, update, and delete.
+	 * 	Replay the log into this phonebook before attaching it. Pass null to stop logging.
+	 * @param phonebookLog
+	 */
+	public void setPhonebookLog(PhonebookLog phonebookLog) {
+		this.phonebookLog = phonebookLog;
+	}
+
+	public PhonebookCheckpoint getPhonebookCheckpoint() {
+		return phonebookCheckpoint;
+	}
+
+	/** Method setPhonebookCheckpoint turns on log compaction: once the attached log holds logEntriesPerCheckpoint
+	 * 	entries, the next add, update, or delete writes a snapshot of the phonebook and empties the log.
+	 * 	Pass null to stop taking snapshots.
+	 * @param phonebookCheckpoint
+	 * @param logEntriesPerCheckpoint - the number of log entries that triggers a snapshot
+	 */
+	public void setPhonebookCheckpoint(PhonebookCheckpoint phonebookCheckpoint, long logEntriesPerCheckpoint) {
+		this.phonebookCheckpoint = phonebookCheckpoint;
+		this.logEntriesPerCheckpoint = logEntriesPerCheckpoint;
+	}
+
+	/** Method setParallelScan sets the scan engine used by the searches that check every Person, such as the
+	 * 	short name and street searches. Scans smaller than its threshold stay on the calling thread.
+	 * @param parallelScan - for example a ParallelScan on a dedicated ForkJoinPool, or with a different threshold
+	 */
+	public void setParallelScan(ParallelScan parallelScan) {
+		if (parallelScan == null) {
+			System.out.println("setParallelScan - the scan engine cannot be null.");
+			return;
+		}
+		this.parallelScan = parallelScan;
+	}
+
+	public QueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	/** Method setQueryCache puts a cache in front of the three findPeople searches, so a repeated search is
+	 * 	answered from the cache until a change touches a Person it matches. The cache is emptied, since it may
+	 * 	hold results of another phonebook. Pass null to stop caching.
+	 * @param queryCache - for example a new QueryCache(), or one with a different memory budget
+	 */
+	public void setQueryCache(QueryCache queryCache) {
+		if (queryCache != null) {
+			queryCache.clear();
+		}
+		this.queryCache = queryCache;
+	}
+
+	/** Method checkpoint writes a snapshot of the phonebook and then empties the attached log, since every
+	 * 	change in the log is now in the snapshot. The log is left unchanged if the snapshot cannot be written.
+	 * @return boolean - true if the snapshot was written, false if there is no checkpoint or it failed.
+	 */
+	public boolean checkpoint() {
+		if (phonebookCheckpoint == null) {
+			System.out.println("checkpoint - no checkpoint file is set.");
+			return false;
+		}
+		try {
+			phonebookCheckpoint.write(this);
+			if (phonebookLog != null) {
+				phonebookLog.truncate();
+			}
+			return true;
+		} catch (IOException exception) {
+			System.out.println("checkpoint - could not write the snapshot: " + exception.getMessage());
+			return false;
+		}
+	}
+
+	/** Method getPhonebookPersonArray returns the people in the phonebook sorted by PersonName. The array is
+	 * 	built once and shared until the next add, update, or delete, so callers must not modify it.
+	 * @return Person[]
+	 */
 	public Person[] getPhonebookPersonArray() {
-		return phonebookPersonArray;
+		if (sortedPersonView == null) {
+			sortedPersonView = getPhonebookPersonArray(true);
+		}
+		return sortedPersonView;
+	}
+	
+	/** Method getPhonebookPersonArray returns a new array of the people in the phonebook sorted by last name,
+	 * 	first name, and middle name depending on alphabeticalOrder.
+	 * @param alphabeticalOrder - true for ascending order, false for descending order
+	 * @return Person[]
+	 */
+	public Person[] getPhonebookPersonArray(boolean alphabeticalOrder) {
+		Person[] outputArray = new Person[personNameOrder.size()];
+		for (int rank = 0; rank < outputArray.length; rank++) {
+			outputArray[rank] = personStore.get(personNameOrder.slotAt(rank, alphabeticalOrder));
+		}
+		return outputArray;
+	}
+	
+	/** Method getPersonAtRank returns the Person at rank in PersonName order without building the sorted array,
+	 * 	so a caller can walk the whole phonebook holding only one Person at a time.
+	 * @param rank - 0 for the first Person in alphabetical order
+	 * @return Person
+	 */
+	Person getPersonAtRank(int rank) {
+		return personStore.get(personNameOrder.slotAt(rank, true));
 	}
 	
 	/** Method addPerson prompts the user to provide all the necessary information to create a new person
@@ -51,7 +212,7 @@ public class Phonebook {
 	 *  @return boolean - true if the person is added, false if the person was not added successfully.
 	 */
 	public boolean addPerson(boolean fromUserPrompts) {
-		Person newPerson = new Person(nextPersonID);
+		Person newPerson = new Person(nextPersonID.get());
 		boolean wasSuccessful = false;
 		if (fromUserPrompts) {
 			wasSuccessful = newPerson.promptUsertoUpdatePersonInfo();
@@ -59,20 +220,15 @@ public class Phonebook {
 			wasSuccessful = newPerson.parsePersonInputString();
 		}
 		// If wasSuccessful is true, then the new person information was valid,
-		//  so add the new person and update this.phonebookPersonArray with the new person list.
+		//  so store the new person in this.personStore.
 		if (wasSuccessful) {
-			// Set the personID and increment nextPersonID
-			newPerson.setPersonID(this.nextPersonID);
-			this.nextPersonID++;
-			// Create updatedPeople with one more element at the end and add the new Person
-			Person[] updatedPeople = resizeArray(this.phonebookPersonArray, this.phonebookPersonArray.length + 1);
-			updatedPeople[updatedPeople.length - 1] = newPerson;
-			this.phonebookPersonArray = updatedPeople;
+			if (!storeNewPerson(newPerson)) {
+				return false;
+			}
+			checkpointIfNeeded();
 		} 
-		// Ensure the people are sorted by Name in ascending order
-		this.phonebookPersonArray = bubbleSortByPersonName(phonebookPersonArray, true);
 		// If wasSuccessful is false, then the new person information was not valid,
-		//  so leave this.phonebookPersonArray array unchanged.
+		//  so leave this.personStore unchanged.
 		return wasSuccessful;
 	}
 	
@@ -85,23 +241,49 @@ public class Phonebook {
 	public boolean addPerson(Person newPerson) {
 		boolean wasSuccessful = newPerson.isValidPerson(true);
 		// If wasSuccessful is true, then the new person information was valid,
-		//  so add the new person and update this.phonebookPersonArray with the new person list.
+		//  so store the new person in this.personStore.
 		if (wasSuccessful) {
-			// Set the personID and increment nextPersonID
-			newPerson.setPersonID(this.nextPersonID);
-			this.nextPersonID++;
-			// Create updatedPeople with one more element at the end and add the new Person
-			Person[] updatedPersonArray = resizeArray(this.phonebookPersonArray, this.phonebookPersonArray.length + 1);
-			updatedPersonArray[updatedPersonArray.length - 1] = newPerson;
-			this.phonebookPersonArray = updatedPersonArray;
+			if (!storeNewPerson(newPerson)) {
+				return false;
+			}
+			checkpointIfNeeded();
 		} 
-		// Ensure the people are sorted by PersonName in ascending order
-		this.phonebookPersonArray = bubbleSortByPersonName(phonebookPersonArray, true);
 		// If wasSuccessful is false, then the new person information was not valid,
-		//  so leave this.phonebookPersonArray array unchanged.
+		//  so leave this.personStore unchanged.
 		return wasSuccessful;
 	}
 	
+	/** Method addPeople adds the first count people of newPeople in one batch: it assigns the next personIDs
+	 * 	in array order, logs them together, and merges them into PersonName order and the indexes in one pass
+	 * 	instead of once per Person. The people must already be valid, as PhonebookImporter checks them.
+	 * @param newPeople
+	 * @param count
+	 * @return boolean - true if the people were added, false if they could not be logged and were not added.
+	 */
+	boolean addPeople(Person[] newPeople, int count) {
+		if (!storeNewPeople(newPeople, count)) {
+			return false;
+		}
+		checkpointIfNeeded();
+		return true;
+	}
+	
+	/** Method applyBatch makes every change in batch without prompting the user or printing anything, for jobs
+	 * 	that run without a user at the console. The operations are made in the order they were put in the batch,
+	 * 	so a deleteByPhone followed by an add of a Person with that phone keeps the new Person. Each run of
+	 * 	operations of the same type is logged with one write before it is made, and the adds of a run are merged
+	 * 	into PersonName order and the name prefix index in one pass, as are the deletes of a run.
+	 * 	If a run cannot be logged, it and the operations after it are not made and are FAILED. An add that is not
+	 * 	made keeps the personID it had.
+	 * @param batch
+	 * @return PhonebookBatch.Result[] - the result of each operation, in the order they were put in the batch.
+	 */
+	public PhonebookBatch.Result[] applyBatch(PhonebookBatch batch) {
+		PhonebookBatch.Result[] results = storeBatch(batch);
+		checkpointIfNeeded();
+		return results;
+	}
+	
 	/** Method updatePerson takes the existing Person object, prompts the user for new data or takes a preformatted 
 	 * 	string of values, validates the information is correct and usable, then updates PhonebookPersonArray
 	 *   with the new person information.
@@ -126,23 +308,17 @@ public class Phonebook {
 		}
 		// If wasSuccessful is true, then the updated person information is valid, so update the person.
 		if (wasSuccessful) {
-			// Find the index of the existing person in the phonebookPersonArray
-			Integer indexOfExistingPerson = findPersonIndexByPersonID(existingPerson.getPersonID());
-			if (indexOfExistingPerson == null) {
-				System.out.println("updatePerson - Person not found.");
+			if (!storeUpdatedPerson(updatedPerson)) {
 				return false;
 			}
-			// Replace the existingPerson in the array with the updatedPerson
-			this.phonebookPersonArray[indexOfExistingPerson] = updatedPerson;
+			checkpointIfNeeded();
 		} 
-		// Ensure the people are sorted by PersonID in ascending order
-		this.phonebookPersonArray = bubbleSortByPersonName(phonebookPersonArray, true);
 		// If wasSuccessful is false, then the new person information was not valid,
-		//  so leave this.phonebookPersonArray array unchanged.
+		//  so leave this.personStore unchanged.
 		return wasSuccessful;
 	}
 	
-	/** Method deletePerson takes the existing Person object, finds the user in the phonebookPersonArray, 
+	/** Method deletePerson takes the existing Person object, finds the user in the personStore, 
 	 * 	displays the customer information, and prompts the user to confirm they want to delete the person.
 	 * 	Returns true if the delete is successful. Returns false if the person was not found or the user cancels.
 	 *  @param Person - the Person object to be deleted from the phonebook.
@@ -153,12 +329,6 @@ public class Phonebook {
 			System.out.println("deletePerson - PersonID was not found.");
 			return false;
 		} else {
-			// Find the index of the existing person in the phonebookPersonArray
-			Integer indexOfExistingPerson = findPersonIndexByPersonID(existingPerson.getPersonID());
-			if (indexOfExistingPerson == null) {
-				System.out.println("deletePerson - PersonID not found.");
-				return false;
-			}
 			Boolean confirmDelete = ConsoleInput.getInputBoolean("Do you want to delete the following person from the phonebook?\n" +
 					existingPerson.toString());
 			if (confirmDelete == null) {
@@ -166,9 +336,10 @@ public class Phonebook {
 				return false;
 			}
 			if (confirmDelete) {
-				// Replace the Person in the array with null, then clean all nulls out of the phonebookPersonArray
-				this.phonebookPersonArray[indexOfExistingPerson] = null;
-				this.phonebookPersonArray = cleanArray(this.phonebookPersonArray);
+				if (!storeDeletedPerson(existingPerson)) {
+					return false;
+				}
+				checkpointIfNeeded();
 				return true;
 			}
 
@@ -176,408 +347,1058 @@ public class Phonebook {
 		return false;
 	}
 	
-	/** Method isPersonInPhonebook searches the phonebook person array for the currentPerson and returns true if it is found.
-	 * @param Person currentPerson
-	 * @return boolean - true if the currentPerson is found, otherwise false.
+	/** Method getNextPersonID returns the personID the next added Person will get.
+	 * @return long
 	 */
-	public boolean isPersonInPhonebook(Person currentPerson) {
-		for (Person existingPerson:phonebookPersonArray) {
-			if (currentPerson.getPersonID() == existingPerson.getPersonID()) {
-				return true;
-			}	
+	long getNextPersonID() {
+		return nextPersonID.get();
+	}
+	
+	/** Method storeNewPerson gives a valid newPerson the next personID, logs it, and stores it.
+	 * 	The add, update, and delete methods do their checks and prompts first and then make the change through
+	 * 	storeNewPerson, storeNewPeople, storeUpdatedPerson, or storeDeletedPerson, so a subclass can guard
+	 * 	just the change, such as ConcurrentPhonebook holding its write lock.
+	 * @param newPerson
+	 * @return boolean - true if the person is added, false if it could not be logged and was not added.
+	 */
+	boolean storeNewPerson(Person newPerson) {
+		long previousPersonID = newPerson.getPersonID();
+		long newPersonID = this.nextPersonID.get();
+		newPerson.setPersonID(newPersonID);
+		// Record the new Person in the log before changing the phonebook, and only then take its personID
+		if (!logChange(PhonebookLog.ADD_ENTRY, newPerson)) {
+			newPerson.setPersonID(previousPersonID);
+			return false;
 		}
-		return false;
+		this.nextPersonID.accumulateAndGet(newPersonID + 1, Math::max);
+		storePerson(newPerson);
+		return true;
 	}
 	
-	/** Method findPeople returns an array of People based on the integer search criteria:
-	 * 		1. First Name
-	 * 		2. Last Name
-	 * 		3. Full Name
-	 * 		2. Street number and/or street name
-	 * 		3. City
-	 * 		4. State
-	 * @param String searchString
-	 * @param int searchType - specify what type of property searchString is looking for
-	 * 		
-	 * @return Person[]
+	/** Method storeNewPeople gives the first count people of newPeople the next personIDs in array order, logs
+	 * 	them together, and stores them in one batch.
+	 * @param newPeople
+	 * @param count
+	 * @return boolean - true if the people are added, false if they could not be logged and were not added.
 	 */
-	public Person[] findPeople(String searchString, int searchType) {
-		Person[] personArray = new Person[0];
-		Integer[] indices = new Integer[0];
-		switch (searchType) {
-		case 1:
-			indices = findPersonIndicesByFirstName(searchString);
-			break;
-		case 2:
-			indices = findPersonIndicesByLastName(searchString);
-			break;
-		case 3:
-			indices = findPersonIndicesByName(searchString);
-			break;
-		case 4:
-			indices = findPersonIndicesByStreet1(searchString);
-			break;
-		case 5:
-			indices = findPersonIndicesByCity(searchString);
-			break;
-		case 6:
-			indices = findPersonIndicesByState(searchString);
-			break;
-		default: 
-			System.out.println("findPerson - not a valid search type");
+	boolean storeNewPeople(Person[] newPeople, int count) {
+		long firstPersonID = this.nextPersonID.get();
+		long[] previousPersonIDs = new long[count];
+		for (int index = 0; index < count; index++) {
+			previousPersonIDs[index] = newPeople[index].getPersonID();
+			newPeople[index].setPersonID(firstPersonID + index);
 		}
-		if (indices != null) {
-			personArray = resizeArray(personArray, indices.length);
-			for (int index = 0; index < indices.length; index++) {
-				personArray[index] = phonebookPersonArray[indices[index]];
+		String failureMessage = logBatch(PhonebookLog.ADD_ENTRY, newPeople, count);
+		if (failureMessage != null) {
+			System.out.println("addPeople - " + failureMessage);
+			for (int index = 0; index < count; index++) {
+				newPeople[index].setPersonID(previousPersonIDs[index]);
 			}
-			return personArray;
+			return false;
 		}
-		return null;
+		this.nextPersonID.accumulateAndGet(firstPersonID + count, Math::max);
+		storePeople(newPeople, count);
+		return true;
 	}
 	
-	/** Method findPeople returns an array of People based on their phone number stored as a long integer.
-	 * @param long searchPhone
-	 * return Person[]
+	/** Method storeNewPersonWithID logs and stores a valid newPerson keeping the personID it already has, for a
+	 * 	caller that hands out personIDs itself, such as ShardedPhonebook. nextPersonID is moved past it.
+	 * @param newPerson
+	 * @return boolean - true if the person is added, false if its personID is taken or it could not be logged.
 	 */
-	public Person[] findPeople(long searchPhone) {
-		Person[] personArray = new Person[0];
-		Integer[] indices = new Integer[0];
-		indices = findPersonIndicesByPhone(searchPhone);
-		if (indices != null) {
-			personArray = resizeArray(personArray, indices.length);
-			for (int index = 0; index < indices.length; index++) {
-				personArray[index] = phonebookPersonArray[indices[index]];
+	boolean storeNewPersonWithID(Person newPerson) {
+		if (findPersonIndexByPersonID(newPerson.getPersonID()) != null) {
+			System.out.println("addPerson - PersonID " + newPerson.getPersonID() + " is already in the phonebook.");
+			return false;
+		}
+		if (!logChange(PhonebookLog.ADD_ENTRY, newPerson)) {
+			return false;
+		}
+		this.nextPersonID.accumulateAndGet(newPerson.getPersonID() + 1, Math::max);
+		storePerson(newPerson);
+		return true;
+	}
+	
+	/** Method storeNewPeopleWithIDs logs the first count people of newPeople together and stores them in one
+	 * 	batch, keeping the personIDs they already have, as storeNewPersonWithID does for one Person.
+	 * @param newPeople
+	 * @param count
+	 * @return boolean - true if the people are added, false if a personID is taken or they could not be logged.
+	 */
+	boolean storeNewPeopleWithIDs(Person[] newPeople, int count) {
+		long lastPersonID = 0;
+		for (int index = 0; index < count; index++) {
+			if (findPersonIndexByPersonID(newPeople[index].getPersonID()) != null) {
+				System.out.println("addPeople - PersonID " + newPeople[index].getPersonID()
+						+ " is already in the phonebook.");
+				return false;
 			}
-			return personArray;
+			lastPersonID = Math.max(lastPersonID, newPeople[index].getPersonID());
 		}
-		return null;
+		String failureMessage = logBatch(PhonebookLog.ADD_ENTRY, newPeople, count);
+		if (failureMessage != null) {
+			System.out.println("addPeople - " + failureMessage);
+			return false;
+		}
+		this.nextPersonID.accumulateAndGet(lastPersonID + 1, Math::max);
+		storePeople(newPeople, count);
+		return true;
 	}
 	
-	/** Method findPeople returns an array of People based on their zip code stored as an integer.
-	 * @param int searchZip
-	 * return Person[]
+	/** Method storeUpdatedPerson logs updatedPerson and puts it in the slot of the Person with the same personID.
+	 * @param updatedPerson
+	 * @return boolean - true if the person is updated, false if it was not found or could not be logged.
 	 */
-	public Person[] findPeople(int searchZip) {
-		Person[] personArray = new Person[0];
-		Integer[] indices = new Integer[0];
-		indices = findPersonIndicesByZip(searchZip);
-		if (indices != null) {
-			personArray = resizeArray(personArray, indices.length);
-			for (int index = 0; index < indices.length; index++) {
-				personArray[index] = phonebookPersonArray[indices[index]];
+	boolean storeUpdatedPerson(Person updatedPerson) {
+		// Find the slot of the existing person in the personStore
+		Integer indexOfExistingPerson = findPersonIndexByPersonID(updatedPerson.getPersonID());
+		if (indexOfExistingPerson == null) {
+			System.out.println("updatePerson - Person not found.");
+			return false;
+		}
+		// Record the update in the log, then replace the existingPerson in its slot with the updatedPerson
+		if (!logChange(PhonebookLog.UPDATE_ENTRY, updatedPerson)) {
+			return false;
+		}
+		replacePerson(indexOfExistingPerson, updatedPerson);
+		return true;
+	}
+	
+	/** Method storeDeletedPerson logs the delete of existingPerson and removes the Person with its personID.
+	 * @param existingPerson
+	 * @return boolean - true if the person is deleted, false if it was not found or could not be logged.
+	 */
+	boolean storeDeletedPerson(Person existingPerson) {
+		// Find the slot of the existing person in the personStore
+		Integer indexOfExistingPerson = findPersonIndexByPersonID(existingPerson.getPersonID());
+		if (indexOfExistingPerson == null) {
+			System.out.println("deletePerson - PersonID not found.");
+			return false;
+		}
+		// Record the delete in the log, then remove the Person from its slot
+		if (!logChange(PhonebookLog.DELETE_ENTRY, existingPerson)) {
+			return false;
+		}
+		removePerson(indexOfExistingPerson);
+		return true;
+	}
+	
+	/** Method storeBatch makes the changes of applyBatch. The operations are made in batch order, one run of
+	 * 	operations of the same type at a time, so the batch leaves the phonebook as making its operations one
+	 * 	by one would.
+	 * @param batch
+	 * @return PhonebookBatch.Result[] - the result of each operation, in the order they were put in the batch.
+	 */
+	PhonebookBatch.Result[] storeBatch(PhonebookBatch batch) {
+		int operationCount = batch.size();
+		PhonebookBatch.Result[] results = new PhonebookBatch.Result[operationCount];
+		String failureMessage = null;
+		int runStart = 0;
+		while (runStart < operationCount && failureMessage == null) {
+			byte operationType = batch.getOperationType(runStart);
+			int runEnd = runStart + 1;
+			while (runEnd < operationCount && batch.getOperationType(runEnd) == operationType) {
+				runEnd++;
 			}
-			return personArray;
+			if (operationType == PhonebookBatch.ADD_OPERATION) {
+				failureMessage = storeBatchAdds(batch, runStart, runEnd, results);
+			} else if (operationType == PhonebookBatch.UPDATE_OPERATION) {
+				failureMessage = storeBatchUpdates(batch, runStart, runEnd, results);
+			} else {
+				failureMessage = storeBatchDeletes(batch, runStart, runEnd, results);
+			}
+			runStart = runEnd;
 		}
-		return null;
+		// Operations of a run that could not be logged, or of a later run, were not made.
+		for (int operation = 0; operation < operationCount; operation++) {
+			if (results[operation] == null) {
+				results[operation] = PhonebookBatch.Result.problem(PhonebookBatch.Status.FAILED, failureMessage);
+			}
+		}
+		return results;
 	}
 	
-	/** Method findPersonIndexByPersonID searches the phonebookPersonArray for matching personID and returns 
-	 *   the index of the matching personID. If nothing is found, return null.
-	 * @param searchID - the long personID to search for stored as a long integer
-	 * @return Integer[] - an array of the indices of all matches
+	/** Method storeBatchAdds checks the adds from runStart to runEnd, numbers them, logs them together, then
+	 * 	stores and indexes them in one pass. The personIDs are only taken once the adds are logged, and the
+	 * 	people are given back the personIDs they had if the log cannot be written.
+	 * @param batch
+	 * @param runStart - the first operation of the run
+	 * @param runEnd - the operation after the run
+	 * @param results - filled in for each operation that is made or cannot be made
+	 * @return String - null, or why the run could not be logged and was not made
 	 */
-	private Integer findPersonIndexByPersonID(long searchID) {
-		for (int index = 0; index < this.phonebookPersonArray.length; index++) {
-			if (phonebookPersonArray[index].getPersonID() == searchID) {
-				return index;
+	private String storeBatchAdds(PhonebookBatch batch, int runStart, int runEnd, PhonebookBatch.Result[] results) {
+		int[] operations = new int[runEnd - runStart];
+		Person[] addedPeople = new Person[runEnd - runStart];
+		long[] previousPersonIDs = new long[runEnd - runStart];
+		int addCount = 0;
+		for (int operation = runStart; operation < runEnd; operation++) {
+			Person newPerson = batch.getOperationPerson(operation);
+			String problem = newPerson == null ? "no person to add." : newPerson.findPersonProblem(true);
+			if (problem != null) {
+				results[operation] = PhonebookBatch.Result.problem(PhonebookBatch.Status.INVALID, problem);
+				continue;
+			}
+			operations[addCount] = operation;
+			addedPeople[addCount] = newPerson;
+			previousPersonIDs[addCount] = newPerson.getPersonID();
+			addCount++;
+		}
+		long firstPersonID = this.nextPersonID.get();
+		for (int index = 0; index < addCount; index++) {
+			addedPeople[index].setPersonID(firstPersonID + index);
+		}
+		String failureMessage = logBatch(PhonebookLog.ADD_ENTRY, addedPeople, addCount);
+		if (failureMessage != null) {
+			for (int index = 0; index < addCount; index++) {
+				addedPeople[index].setPersonID(previousPersonIDs[index]);
 			}
+			return failureMessage;
+		}
+		this.nextPersonID.accumulateAndGet(firstPersonID + addCount, Math::max);
+		if (addCount > 0) {
+			storePeople(addedPeople, addCount);
+		}
+		for (int index = 0; index < addCount; index++) {
+			results[operations[index]] = PhonebookBatch.Result.of(PhonebookBatch.Status.ADDED,
+					addedPeople[index].getPersonID());
 		}
 		return null;
 	}
 	
-	/** Method findPersonIndicesByName searches the phonebookPersonArray for matching full name and returns 
-	 * the indices of all matches. Match is not case sensitive.
-	 * @param name - the full name to search for
-	 * @return Integer[] - an array of the indices of all matches
-	 */
-	private Integer[] findPersonIndicesByName(String name) {
-		name = name.trim().toLowerCase();
-		Integer[] indexArray = new Integer[0];
-		String tempString = "";
-		for (int index = 0; index < this.phonebookPersonArray.length; index++) {
-			tempString = phonebookPersonArray[index].getPersonName().toLowerCase();
-			if (tempString.contains(name)) {
-				indexArray = resizeArray(indexArray, indexArray.length + 1);
-				indexArray[indexArray.length - 1] = index;
+	/** Method storeBatchUpdates checks the updates from runStart to runEnd, logs them together, then makes them
+	 * 	in order, so a later update of the same personID wins as it would one at a time. Each updated Person is
+	 * 	moved in PersonName order as it is made, which keeps the order of equal names the same as one at a time,
+	 * 	but the name prefix index, whose order does not matter, is brought up to date once for the run.
+	 * @param batch
+	 * @param runStart - the first operation of the run
+	 * @param runEnd - the operation after the run
+	 * @param results - filled in for each operation that is made or cannot be made
+	 * @return String - null, or why the run could not be logged and was not made
+	 */
+	private String storeBatchUpdates(PhonebookBatch batch, int runStart, int runEnd, PhonebookBatch.Result[] results) {
+		int[] operations = new int[runEnd - runStart];
+		Person[] updatedPeople = new Person[runEnd - runStart];
+		int[] updatedSlots = new int[runEnd - runStart];
+		int updateCount = 0;
+		for (int operation = runStart; operation < runEnd; operation++) {
+			Person updatedPerson = batch.getOperationPerson(operation);
+			String problem = updatedPerson == null ? "no person to update." : updatedPerson.findPersonProblem(false);
+			if (problem != null) {
+				results[operation] = PhonebookBatch.Result.problem(PhonebookBatch.Status.INVALID, problem);
+				continue;
+			}
+			Integer indexOfExistingPerson = findPersonIndexByPersonID(updatedPerson.getPersonID());
+			if (indexOfExistingPerson == null) {
+				results[operation] = PhonebookBatch.Result.problem(PhonebookBatch.Status.NOT_FOUND,
+						"PersonID " + updatedPerson.getPersonID() + " not found.");
+				continue;
+			}
+			operations[updateCount] = operation;
+			updatedPeople[updateCount] = updatedPerson;
+			updatedSlots[updateCount] = indexOfExistingPerson;
+			updateCount++;
+		}
+		String failureMessage = logBatch(PhonebookLog.UPDATE_ENTRY, updatedPeople, updateCount);
+		if (failureMessage != null) {
+			return failureMessage;
+		}
+		if (updateCount == 0) {
+			return null;
+		}
+		startChange();
+		// changedPeople holds each Person as it was, then as it is now, for the query cache.
+		Person[] changedPeople = new Person[updateCount * 2];
+		for (int index = 0; index < updateCount; index++) {
+			int slot = updatedSlots[index];
+			changedPeople[index] = personStore.get(slot);
+			changedPeople[updateCount + index] = updatedPeople[index];
+			removeFromIndexes(slot, changedPeople[index]);
+			this.personStore.set(slot, updatedPeople[index]);
+			this.personNameOrder.update(slot, updatedPeople[index]);
+			addToIndexes(slot, updatedPeople[index]);
+			results[operations[index]] = PhonebookBatch.Result.of(PhonebookBatch.Status.UPDATED,
+					updatedPeople[index].getPersonID());
+		}
+		// Each slot goes back in the prefix index once, with the Person of its last update.
+		int[] prefixSlots = new int[updateCount];
+		Person[] prefixPeople = new Person[updateCount];
+		int prefixCount = 0;
+		boolean[] isIndexed = new boolean[personStore.slotCount()];
+		for (int index = updateCount - 1; index >= 0; index--) {
+			if (!isIndexed[updatedSlots[index]]) {
+				isIndexed[updatedSlots[index]] = true;
+				prefixSlots[prefixCount] = updatedSlots[index];
+				prefixPeople[prefixCount] = updatedPeople[index];
+				prefixCount++;
 			}
 		}
-		return indexArray;
+		this.namePrefixIndex.removeAll(prefixSlots, prefixCount);
+		this.namePrefixIndex.addAll(prefixSlots, prefixPeople, prefixCount);
+		this.sortedPersonView = null;
+		finishChange(changedPeople, changedPeople.length);
+		for (int index = 0; index < updateCount; index++) {
+			personReplaced(updatedPeople[index]);
+		}
+		return null;
 	}
 	
-	/** Method findPersonIndicesByFirstName searches the phonebookPersonArray for matching first name and returns 
-	 * the indices of all matches. Match is not case sensitive.
-	 * @param first - the first name to search for
-	 * @return Integer[] - an array of the indices of all matches
-	 */
-	private Integer[] findPersonIndicesByFirstName(String first) {
-		first = first.trim().toLowerCase();
-		Integer[] indexArray = new Integer[0];
-		String tempString = "";
-		for (int index = 0; index < this.phonebookPersonArray.length; index++) {
-			tempString = phonebookPersonArray[index].getFirstName().toLowerCase();
-			if (tempString.contains(first)) {
-				indexArray = resizeArray(indexArray, indexArray.length + 1);
-				indexArray[indexArray.length - 1] = index;
+	/** Method storeBatchDeletes finds everyone with the phone number of each delete from runStart to runEnd,
+	 * 	logs the deletes together, then removes them, taking them out of PersonName order and the name prefix
+	 * 	index in one pass each. A Person found by an earlier delete of the run is not found again.
+	 * @param batch
+	 * @param runStart - the first operation of the run
+	 * @param runEnd - the operation after the run
+	 * @param results - filled in for each operation that is made or cannot be made
+	 * @return String - null, or why the run could not be logged and was not made
+	 */
+	private String storeBatchDeletes(PhonebookBatch batch, int runStart, int runEnd, PhonebookBatch.Result[] results) {
+		Person[] deletedPeople = new Person[runEnd - runStart];
+		int[] deletedSlots = new int[runEnd - runStart];
+		int deleteCount = 0;
+		boolean[] isClaimed = new boolean[personStore.slotCount()];
+		for (int operation = runStart; operation < runEnd; operation++) {
+			long phone = batch.getOperationPhone(operation);
+			int[] phoneSlots = phoneIndex.get(phone);
+			long[] personIDs = new long[phoneSlots.length];
+			int foundCount = 0;
+			for (int slot : phoneSlots) {
+				if (isClaimed[slot]) {
+					continue;
+				}
+				isClaimed[slot] = true;
+				if (deleteCount == deletedSlots.length) {
+					deletedSlots = Arrays.copyOf(deletedSlots, deleteCount * 2);
+					deletedPeople = Arrays.copyOf(deletedPeople, deleteCount * 2);
+				}
+				deletedSlots[deleteCount] = slot;
+				deletedPeople[deleteCount] = personStore.get(slot);
+				personIDs[foundCount] = deletedPeople[deleteCount].getPersonID();
+				deleteCount++;
+				foundCount++;
+			}
+			if (foundCount == 0) {
+				results[operation] = PhonebookBatch.Result.problem(PhonebookBatch.Status.NOT_FOUND,
+						"no person has phone " + phone + ".");
+			} else {
+				results[operation] = new PhonebookBatch.Result(PhonebookBatch.Status.DELETED,
+						Arrays.copyOf(personIDs, foundCount), null);
+			}
+		}
+		String failureMessage = logBatch(PhonebookLog.DELETE_ENTRY, deletedPeople, deleteCount);
+		if (failureMessage != null) {
+			for (int operation = runStart; operation < runEnd; operation++) {
+				if (results[operation].getStatus() == PhonebookBatch.Status.DELETED) {
+					results[operation] = null;
+				}
 			}
+			return failureMessage;
 		}
-		return indexArray;
+		removePeople(deletedSlots, deletedPeople, deleteCount);
+		return null;
 	}
 	
-	/** Method findPersonIndicesByLastName searches the phonebookPersonArray for matching last name and returns 
-	 * the indices of all matches. Match is not case sensitive.
-	 * @param last - the last name to search for
-	 * @return Integer[] - an array of the indices of all matches
-	 */
-	private Integer[] findPersonIndicesByLastName(String last) {
-		last = last.trim().toLowerCase();
-		Integer[] indexArray = new Integer[0];
-		String tempString = "";
-		for (int index = 0; index < this.phonebookPersonArray.length; index++) {
-			tempString = phonebookPersonArray[index].getLastName().toLowerCase();
-			if (tempString.contains(last)) {
-				indexArray = resizeArray(indexArray, indexArray.length + 1);
-				indexArray[indexArray.length - 1] = index;
+	/** Method storeDeletedPeople logs the deletes of the first count people of existingPeople together and
+	 * 	removes them in one pass, as a run of deletes in storeBatch does, for a caller that takes back people it
+	 * 	added, such as ShardedPhonebook.
+	 * @param existingPeople - people with different personIDs
+	 * @param count
+	 * @return boolean - true if the people are deleted, false if one was not found or they could not be logged.
+	 */
+	boolean storeDeletedPeople(Person[] existingPeople, int count) {
+		int[] deletedSlots = new int[count];
+		Person[] deletedPeople = new Person[count];
+		for (int index = 0; index < count; index++) {
+			Integer indexOfExistingPerson = findPersonIndexByPersonID(existingPeople[index].getPersonID());
+			if (indexOfExistingPerson == null) {
+				System.out.println("deletePeople - PersonID " + existingPeople[index].getPersonID() + " not found.");
+				return false;
 			}
+			deletedSlots[index] = indexOfExistingPerson;
+			deletedPeople[index] = personStore.get(indexOfExistingPerson);
+		}
+		String failureMessage = logBatch(PhonebookLog.DELETE_ENTRY, deletedPeople, count);
+		if (failureMessage != null) {
+			System.out.println("deletePeople - " + failureMessage);
+			return false;
 		}
-		return indexArray;
+		removePeople(deletedSlots, deletedPeople, count);
+		return true;
 	}
 	
-	/** Method findPersonIndicesByStreet1 searches the phonebookPersonArray for matching full name and returns 
-	 * the indices of all matches. Match is not case sensitive.
-	 * @param street1 - the street number and street name to search for
-	 * @return Integer[] - an array of the indices of all matches
-	 */
-	private Integer[] findPersonIndicesByStreet1(String street1) {
-		street1 = street1.trim().toLowerCase();
-		Integer[] indexArray = new Integer[0];
-		String tempString = "";
-		for (int index = 0; index < this.phonebookPersonArray.length; index++) {
-			tempString = phonebookPersonArray[index].getAddressStreet1().toLowerCase();
-			if (tempString.contains(street1)) {
-				indexArray = resizeArray(indexArray, indexArray.length + 1);
-				indexArray[indexArray.length - 1] = index;
-			}
+	/** Method removePeople takes the first count people out of their slots, and out of PersonName order and
+	 * 	the name prefix index in one pass each.
+	 * @param deletedSlots
+	 * @param deletedPeople - the people stored in those slots, in the same order as deletedSlots
+	 * @param count
+	 */
+	private void removePeople(int[] deletedSlots, Person[] deletedPeople, int count) {
+		if (count == 0) {
+			return;
+		}
+		startChange();
+		for (int index = 0; index < count; index++) {
+			removeFromIndexes(deletedSlots[index], deletedPeople[index]);
+		}
+		this.namePrefixIndex.removeAll(deletedSlots, count);
+		this.personNameOrder.removeAll(deletedSlots, count);
+		for (int index = 0; index < count; index++) {
+			this.personStore.delete(deletedSlots[index]);
+		}
+		this.sortedPersonView = null;
+		finishChange(deletedPeople, count);
+		for (int index = 0; index < count; index++) {
+			personRemoved(deletedPeople[index]);
 		}
-		return indexArray;
 	}
 	
-	/** Method findPersonIndicesByCity searches the phonebookPersonArray for matching full name and returns 
-	 * the indices of all matches. Match is not case sensitive.
-	 * @param city - the city to search for
-	 * @return Integer[] - an array of the indices of all matches
-	 */
-	private Integer[] findPersonIndicesByCity(String city) {
-		city = city.trim().toLowerCase();
-		Integer[] indexArray = new Integer[0];
-		String tempString = "";
-		for (int index = 0; index < this.phonebookPersonArray.length; index++) {
-			tempString = phonebookPersonArray[index].getAddressCity().toLowerCase();
-			if (tempString.contains(city)) {
-				indexArray = resizeArray(indexArray, indexArray.length + 1);
-				indexArray[indexArray.length - 1] = index;
-			}
+	/** Method loadCheckpointPeople adds every Person read from a snapshot in one bulk pass, keeping their
+	 * 	personIDs, and sets nextPersonID to the value saved with them.
+	 * @param loadedPeople
+	 * @param savedNextPersonID
+	 */
+	void loadCheckpointPeople(Person[] loadedPeople, long savedNextPersonID) {
+		storePeople(loadedPeople, loadedPeople.length);
+		this.nextPersonID.accumulateAndGet(savedNextPersonID, Math::max);
+		this.checkpointNextPersonID = savedNextPersonID;
+	}
+	
+	/** Method applyLoggedAdd adds a Person read from the phonebook log, keeping its personID, without logging it again.
+	 * 	If the program stopped after a snapshot was written but before the log was emptied, the log still holds
+	 * 	adds that are in the snapshot. personIDs are handed out in order, so those are the adds with a personID
+	 * 	below the nextPersonID saved in the snapshot, and they are skipped.
+	 * @param loggedPerson
+	 */
+	void applyLoggedAdd(Person loggedPerson) {
+		if (loggedPerson.getPersonID() < checkpointNextPersonID) {
+			return;
 		}
-		return indexArray;
+		storePerson(loggedPerson);
+		this.nextPersonID.accumulateAndGet(loggedPerson.getPersonID() + 1, Math::max);
 	}
 	
-	/** Method findPersonIndicesByState searches the phonebookPersonArray for matching full name and returns 
-	 * the indices of all matches. Match is not case sensitive.
-	 * @param state - the state to search for
-	 * @return Integer[] - an array of the indices of all matches
-	 */
-	private Integer[] findPersonIndicesByState(String state) {
-		state = state.trim().toLowerCase();
-		Integer[] indexArray = new Integer[0];
-		String tempString = "";
-		for (int index = 0; index < this.phonebookPersonArray.length; index++) {
-			tempString = phonebookPersonArray[index].getAddressState().toLowerCase();
-			if (tempString.contains(state)) {
-				indexArray = resizeArray(indexArray, indexArray.length + 1);
-				indexArray[indexArray.length - 1] = index;
+	/** Method applyLoggedAdds adds the first count people read from the phonebook log in one batch, keeping
+	 * 	their personIDs, without logging them again. Adds that are already in the snapshot are skipped as in
+	 * 	applyLoggedAdd.
+	 * @param loggedPeople
+	 * @param count
+	 */
+	void applyLoggedAdds(Person[] loggedPeople, int count) {
+		Person[] newPeople = new Person[count];
+		int newCount = 0;
+		for (int index = 0; index < count; index++) {
+			if (loggedPeople[index].getPersonID() >= checkpointNextPersonID) {
+				newPeople[newCount] = loggedPeople[index];
+				newCount++;
+				this.nextPersonID.accumulateAndGet(loggedPeople[index].getPersonID() + 1, Math::max);
 			}
 		}
-		return indexArray;
+		storePeople(newPeople, newCount);
 	}
 	
-	/** Method findPersonIndicesByZip searches the phonebookPersonArray for matching zip code and returns 
-	 * the indices of all matches.
-	 * @param zip - the zip code integer to search for
-	 * @return Integer[] - an array of the indices of all matches
-	 */
-	private Integer[] findPersonIndicesByZip(int zip) {
-		Integer[] indexArray = new Integer[0];
-		for (int index = 0; index < this.phonebookPersonArray.length; index++) {
-			if (phonebookPersonArray[index].getAddressZip() == zip) {
-				indexArray = resizeArray(indexArray, indexArray.length + 1);
-				indexArray[indexArray.length - 1] = index;
-			}
+	/** Method applyLoggedUpdate replaces the Person with the same personID as loggedPerson, without logging it again.
+	 * @param loggedPerson
+	 */
+	void applyLoggedUpdate(Person loggedPerson) {
+		Integer indexOfExistingPerson = findPersonIndexByPersonID(loggedPerson.getPersonID());
+		if (indexOfExistingPerson == null) {
+			System.out.println("applyLoggedUpdate - PersonID " + loggedPerson.getPersonID() + " not found.");
+			return;
 		}
-		return indexArray;
+		replacePerson(indexOfExistingPerson, loggedPerson);
 	}
 	
-	/** Method findPersonIndicesByPhone searches the phonebookPersonArray for matching phone number and returns 
-	 * the indices of all matches.
-	 * @param searchPhone - the phone number to search for stored as a long integer
-	 * @return Integer[] - an array of the indices of all matches
-	 */
-	private Integer[] findPersonIndicesByPhone(long searchPhone) {
-		Integer[] indexArray = new Integer[0];
-		for (int index = 0; index < this.phonebookPersonArray.length; index++) {
-			if (phonebookPersonArray[index].getPersonPhone() == searchPhone) {
-				indexArray = resizeArray(indexArray, indexArray.length + 1);
-				indexArray[indexArray.length - 1] = index;
+	/** Method applyLoggedDelete removes the Person with personID, without logging it again.
+	 * @param personID
+	 */
+	void applyLoggedDelete(long personID) {
+		Integer indexOfExistingPerson = findPersonIndexByPersonID(personID);
+		if (indexOfExistingPerson == null) {
+			System.out.println("applyLoggedDelete - PersonID " + personID + " not found.");
+			return;
+		}
+		removePerson(indexOfExistingPerson);
+	}
+	
+	/** Method logChange appends an entry to the phonebook log, if one is attached, before the change is made.
+	 * @param entryType - PhonebookLog.ADD_ENTRY, UPDATE_ENTRY, or DELETE_ENTRY
+	 * @param changedPerson - the new Person, the updated Person, or the Person being deleted
+	 * @return boolean - true if there is no log or the entry was written, false if the change must not be made.
+	 */
+	private boolean logChange(byte entryType, Person changedPerson) {
+		if (phonebookLog == null) {
+			return true;
+		}
+		try {
+			long sequence;
+			if (entryType == PhonebookLog.DELETE_ENTRY) {
+				sequence = phonebookLog.appendDelete(changedPerson.getPersonID());
+			} else {
+				sequence = phonebookLog.append(entryType, changedPerson);
 			}
+			awaitLogged(phonebookLog, sequence);
+			return true;
+		} catch (IOException exception) {
+			System.out.println("logChange - could not write to the phonebook log: " + exception.getMessage());
+			return false;
 		}
-		return indexArray;
 	}
-
-	/** Method numberOfPeople searches the phonebookBookArray returns the total number of people
+	
+	/** Method logBatch appends an entry for each of the first count people to the phonebook log, if one is
+	 * 	attached, before a batch makes the changes.
+	 * @param entryType - PhonebookLog.ADD_ENTRY, UPDATE_ENTRY, or DELETE_ENTRY
+	 * @param changedPeople - the new people, the updated people, or the people being deleted
+	 * @param count
+	 * @return String - null if there is no log or the entries were written, otherwise why they were not.
 	 */
-	public Integer numberOfPeople() {
-		return phonebookPersonArray.length;
+	private String logBatch(byte entryType, Person[] changedPeople, int count) {
+		if (phonebookLog == null || count == 0) {
+			return null;
+		}
+		try {
+			awaitLogged(phonebookLog, phonebookLog.appendAll(entryType, changedPeople, count));
+			return null;
+		} catch (IOException exception) {
+			return "could not write to the phonebook log: " + exception.getMessage();
+		}
 	}
 	
-	/** Method bubbleSort sorts an array of Person by PersonID depending on leastToGreatest.
-	 * 	If leastToGreatest is true: Bubble sort from least to greatest.
-	 * 	If leastToGreatest is false: Bubble sort from greatest to least.
+	/** Method awaitLogged waits until the log entries up to sequence are forced to the disk, as the SyncPolicy
+	 * 	of the log says, before the change is made. ConcurrentPhonebook overrides it to make the change first
+	 * 	and wait once its write lock is released, so the changes made meanwhile share the force.
+	 * @param phonebookLog
+	 * @param sequence - from PhonebookLog.append, appendDelete, or appendAll
+	 * @throws IOException if the entries could not be forced
 	 */
-	private Person[] bubbleSortByPersonID(Person[] inputArray, boolean leastToGreatest) {
-
-		for (int out = 0; out < inputArray.length; out++) {
-			boolean anySwaps = false;
-			// Loop through the array and swap any elements which are out of order.
-			for (int in = 1; in < inputArray.length; in++) {
-				// Depending on direction, check to see if a swap is necessary.
-				if ( (leastToGreatest && inputArray[in-1].getPersonID() > inputArray[in].getPersonID()) || 
-						(!leastToGreatest && inputArray[in-1].getPersonID() < inputArray[in].getPersonID())) {
-					Person temp = inputArray[in-1];
-					inputArray[in-1] = inputArray[in];
-					inputArray[in] = temp;
-					anySwaps = true;
-				}
-			}
-			if (!anySwaps) {
-				// Exit the loop if the last search through the array did not result in any swaps.
-				break;
-			}
+	void awaitLogged(PhonebookLog phonebookLog, long sequence) throws IOException {
+		phonebookLog.awaitForce(sequence);
+	}
+	
+	/** Method checkpointIfNeeded writes a snapshot and empties the log once the log has grown to
+	 * 	logEntriesPerCheckpoint entries.
+	 */
+	private void checkpointIfNeeded() {
+		if (phonebookCheckpoint != null && phonebookLog != null && logEntriesPerCheckpoint > 0
+				&& phonebookLog.entryCount() >= logEntriesPerCheckpoint) {
+			checkpoint();
 		}
-		return inputArray;
 	}
 	
-	/** Method bubbleSortByPersonName sorts an array of Person last name, first name, and middle name
-	 *  depending on leastToGreatest.
-	 * 	If leastToGreatest is true: Bubble sort from least to greatest.
-	 * 	If leastToGreatest is false: Bubble sort from greatest to least.
+	/** Method storePeople puts the first count people in free slots, merges them into PersonName order in one
+	 * 	pass, and indexes them. It is much faster than calling storePerson for each Person of a large batch.
+	 * @param newPeople
+	 * @param count
+	 * @return int[] - the slot each Person was stored in, in the same order as newPeople
 	 */
-	private Person[] bubbleSortByPersonName(Person[] inputArray, boolean alphabeticalOrder) {
-
-		for (int out = 0; out < inputArray.length; out++) {
-			boolean anySwaps = false;
-			// Loop through the array and swap any elements which are out of order.
-			for (int in = 1; in < inputArray.length; in++) {
-				// Depending on direction, check to see if a swap is necessary.
-				String lastPerson = inputArray[in-1].getLastName() 
-						+ inputArray[in-1].getFirstName() + inputArray[in-1].getMiddleName();
-				String currentPerson = inputArray[in].getLastName() 
-						+ inputArray[in].getFirstName() + inputArray[in].getMiddleName();
-				if ( (alphabeticalOrder && lastPerson.compareToIgnoreCase(currentPerson) > 0) || 
-						(!alphabeticalOrder && lastPerson.compareToIgnoreCase(currentPerson) < 0) ) {
-					Person temp = inputArray[in-1];
-					inputArray[in-1] = inputArray[in];
-					inputArray[in] = temp;
-					anySwaps = true;
-				}
-			}
-			if (!anySwaps) {
-				// Exit the loop if the last search through the array did not result in any swaps.
-				break;
+	private int[] storePeople(Person[] newPeople, int count) {
+		startChange();
+		int[] slots = this.personStore.appendAll(newPeople, count);
+		indexPeople(slots, newPeople, count);
+		this.sortedPersonView = null;
+		finishChange(newPeople, count);
+		peopleStored(newPeople, count);
+		return slots;
+	}
+	
+	/** Method indexPeople merges people already stored in slots into PersonName order and the lookup indexes.
+	 * 	Each index is only touched by one task, so for a large batch, such as a snapshot being loaded,
+	 * 	the indexes are built at the same time on the common ForkJoinPool.
+	 * @param slots
+	 * @param storedPeople - the people stored in those slots, in the same order as slots
+	 * @param count
+	 */
+	private void indexPeople(int[] slots, Person[] storedPeople, int count) {
+		if (count < PARALLEL_INDEX_THRESHOLD) {
+			this.personNameOrder.insertAll(slots, storedPeople, count);
+			this.namePrefixIndex.addAll(slots, storedPeople, count);
+			for (int index = 0; index < count; index++) {
+				addToIndexes(slots[index], storedPeople[index]);
 			}
+			return;
 		}
-		return inputArray;
+		CompletableFuture.allOf(
+				CompletableFuture.runAsync(() -> personNameOrder.insertAll(slots, storedPeople, count)),
+				CompletableFuture.runAsync(() -> namePrefixIndex.addAll(slots, storedPeople, count)),
+				CompletableFuture.runAsync(() -> {
+					for (int index = 0; index < count; index++) {
+						personIDIndex.add(storedPeople[index].getPersonID(), slots[index]);
+						phoneIndex.add(storedPeople[index].getPersonPhone(), slots[index]);
+						addToAddressIndexes(slots[index], storedPeople[index]);
+					}
+				}),
+				CompletableFuture.runAsync(() -> {
+					for (int index = 0; index < count; index++) {
+						firstNameIndex.add(slots[index], storedPeople[index].getFirstName());
+						lastNameIndex.add(slots[index], storedPeople[index].getLastName());
+					}
+				}),
+				CompletableFuture.runAsync(() -> {
+					for (int index = 0; index < count; index++) {
+						nameIndex.add(slots[index], storedPeople[index].getPersonName());
+					}
+				}),
+				CompletableFuture.runAsync(() -> {
+					for (int index = 0; index < count; index++) {
+						street1Index.add(slots[index], storedPeople[index].getAddressStreet1());
+					}
+				})).join();
+	}
+	
+	/** Method storePerson puts newPerson in the next free slot, places it in PersonName order, and indexes it.
+	 * @param newPerson
+	 * @return int - the slot newPerson was stored in
+	 */
+	private int storePerson(Person newPerson) {
+		startChange();
+		int slot = this.personStore.append(newPerson);
+		this.personNameOrder.insert(slot, newPerson);
+		this.namePrefixIndex.add(slot, newPerson);
+		addToIndexes(slot, newPerson);
+		this.sortedPersonView = null;
+		finishChange(new Person[] {newPerson}, 1);
+		personStored(newPerson);
+		return slot;
+	}
+	
+	/** Method replacePerson replaces the Person in slot with updatedPerson and moves it in the order and indexes.
+	 * @param slot
+	 * @param updatedPerson
+	 */
+	private void replacePerson(int slot, Person updatedPerson) {
+		Person existingPerson = personStore.get(slot);
+		startChange();
+		removeFromIndexes(slot, existingPerson);
+		this.namePrefixIndex.remove(slot, existingPerson);
+		this.personStore.set(slot, updatedPerson);
+		this.personNameOrder.update(slot, updatedPerson);
+		this.namePrefixIndex.add(slot, updatedPerson);
+		addToIndexes(slot, updatedPerson);
+		this.sortedPersonView = null;
+		finishChange(new Person[] {existingPerson, updatedPerson}, 2);
+		personReplaced(updatedPerson);
+	}
+	
+	/** Method removePerson takes the Person in slot out of the indexes and leaves a tombstone in the slot,
+	 * 	which is reused by the next add.
+	 * @param slot
+	 */
+	private void removePerson(int slot) {
+		Person existingPerson = personStore.get(slot);
+		startChange();
+		removeFromIndexes(slot, existingPerson);
+		this.namePrefixIndex.remove(slot, existingPerson);
+		this.personStore.delete(slot);
+		this.personNameOrder.remove(slot);
+		this.sortedPersonView = null;
+		finishChange(new Person[] {existingPerson}, 1);
+		personRemoved(existingPerson);
+	}
+	
+	/** Method startChange tells the query cache, if there is one, that a change is about to be made, so that
+	 * 	no search running alongside the change keeps its result. If the change throws part way, the cache keeps
+	 * 	no new results from then on, which is safe.
+	 */
+	private void startChange() {
+		QueryCache cache = this.queryCache;
+		if (cache != null) {
+			cache.startChange();
+		}
+	}
+	
+	/** Method finishChange tells the query cache, if there is one, that a change is made, so that it drops the
+	 * 	results of the searches the changed people match.
+	 * @param changedPeople - every Person added or deleted, and each updated Person as it was and as it is now
+	 * @param count
+	 */
+	private void finishChange(Person[] changedPeople, int count) {
+		QueryCache cache = this.queryCache;
+		if (cache != null) {
+			cache.finishChange(changedPeople, count);
+		}
+	}
+	
+	/** Method personStored is called after newPerson is stored and indexed. The methods personStored,
+	 * 	peopleStored, personReplaced, and personRemoved see every change made after the constructor, including
+	 * 	those from replaying the log or loading a snapshot, so a subclass can keep another view of the people up
+	 * 	to date, such as the PhonebookSnapshot of ConcurrentPhonebook. They do nothing here.
+	 * @param newPerson
+	 */
+	void personStored(Person newPerson) {
+	}
+	
+	/** Method peopleStored is called after the first count people of newPeople are stored and indexed.
+	 * @param newPeople
+	 * @param count
+	 */
+	void peopleStored(Person[] newPeople, int count) {
+	}
+	
+	/** Method personReplaced is called after the Person with the personID of updatedPerson is replaced.
+	 * @param updatedPerson
+	 */
+	void personReplaced(Person updatedPerson) {
+	}
+	
+	/** Method personRemoved is called after existingPerson is removed.
+	 * @param existingPerson
+	 */
+	void personRemoved(Person existingPerson) {
+	}
+	
+	/** Method addToIndexes records the Person stored in slot in the lookup indexes. The namePrefixIndex is
+	 * 	kept by the callers, since a batch of people is added to it in one merge.
+	 * @param slot - the personStore slot of the Person
+	 * @param currentPerson - the Person stored in the slot
+	 */
+	private void addToIndexes(int slot, Person currentPerson) {
+		personIDIndex.add(currentPerson.getPersonID(), slot);
+		phoneIndex.add(currentPerson.getPersonPhone(), slot);
+		firstNameIndex.add(slot, currentPerson.getFirstName());
+		lastNameIndex.add(slot, currentPerson.getLastName());
+		nameIndex.add(slot, currentPerson.getPersonName());
+		street1Index.add(slot, currentPerson.getAddressStreet1());
+		addToAddressIndexes(slot, currentPerson);
+	}
+	
+	/** Method addToAddressIndexes records the city, state, and zip code of the Person stored in slot.
+	 * 	City and state are lowercased so that a search only has to lowercase the search term.
+	 * @param slot - the personStore slot of the Person
+	 * @param currentPerson - the Person stored in the slot
+	 */
+	private void addToAddressIndexes(int slot, Person currentPerson) {
+		cityIndex.add(TrigramIndex.fold(currentPerson.getAddressCity()), slot);
+		stateIndex.add(TrigramIndex.fold(currentPerson.getAddressState()), slot);
+		zipIndex.add(currentPerson.getAddressZip(), slot);
+	}
+	
+	/** Method removeFromIndexes removes the Person stored in slot from the lookup indexes.
+	 * 	It must be called before the slot is updated or deleted, while currentPerson is still stored in it.
+	 * @param slot - the personStore slot of the Person
+	 * @param currentPerson - the Person stored in the slot
+	 */
+	private void removeFromIndexes(int slot, Person currentPerson) {
+		personIDIndex.remove(currentPerson.getPersonID(), slot);
+		phoneIndex.remove(currentPerson.getPersonPhone(), slot);
+		firstNameIndex.remove(slot);
+		lastNameIndex.remove(slot);
+		nameIndex.remove(slot);
+		street1Index.remove(slot);
+		cityIndex.remove(TrigramIndex.fold(currentPerson.getAddressCity()), slot);
+		stateIndex.remove(TrigramIndex.fold(currentPerson.getAddressState()), slot);
+		zipIndex.remove(currentPerson.getAddressZip(), slot);
+	}
+	
+	/** Method isPersonInPhonebook searches the phonebook person store for the currentPerson and returns true if it is found.
+	 * @param Person currentPerson
+	 * @return boolean - true if the currentPerson is found, otherwise false.
+	 */
+	public boolean isPersonInPhonebook(Person currentPerson) {
+		return findPersonIndexByPersonID(currentPerson.getPersonID()) != null;
 	}
 	
-	/** Method resizeArray takes an array and re-sizes the array to the desiredLength.
-	 * 	It discards any elements beyond the desired length.
-	 * 
-	 * @param Person[] inputArray, int desiredLength
+	/** Method findPeople returns an array of People based on the integer search criteria:
+	 * 		1. First Name
+	 * 		2. Last Name
+	 * 		3. Full Name
+	 * 		2. Street number and/or street name
+	 * 		3. City
+	 * 		4. State
+	 * @param String searchString
+	 * @param int searchType - specify what type of property searchString is looking for
+	 * 		
 	 * @return Person[]
 	 */
-	private static Person[] resizeArray(Person[] inputArray, int desiredLength) {
-		// Create a new array of the desired length
-		Person[] resizedArray = new Person[desiredLength];
-		// Step through the input array and assign input values to the resized array.
-		for (int index = 0; index < desiredLength; index++) {
-			// If the desired length is longer than the input array, put nulls in the remaining elements of the resized array.
-			if (index < inputArray.length) {
-				resizedArray[index] = inputArray[index];
-			} else {
-				resizedArray[index] = null;
-			}
+	public Person[] findPeople(String searchString, int searchType) {
+		QueryCache cache = this.queryCache;
+		if (cache == null || searchType < 1 || searchType > 6) {
+			return runSearch(() -> getPeople(findSlots(searchString, searchType)));
+		}
+		return findPeopleCached(cache, QueryCache.key(searchString, searchType),
+				() -> runSearch(() -> getPeople(findSlots(searchString, searchType))));
+	}
+	
+	/** Method findPeople returns an array of People based on their phone number stored as a long integer.
+	 * @param long searchPhone
+	 * return Person[]
+	 */
+	public Person[] findPeople(long searchPhone) {
+		QueryCache cache = this.queryCache;
+		if (cache == null) {
+			return runLookup(() -> getPeople(findSlots(searchPhone)));
+		}
+		return findPeopleCached(cache, QueryCache.phoneKey(searchPhone),
+				() -> runLookup(() -> getPeople(findSlots(searchPhone))));
+	}
+	
+	/** Method findPeople returns an array of People based on their zip code stored as an integer.
+	 * @param int searchZip
+	 * return Person[]
+	 */
+	public Person[] findPeople(int searchZip) {
+		QueryCache cache = this.queryCache;
+		if (cache == null) {
+			return runSearch(() -> getPeople(findSlots(searchZip)));
 		}
-		return resizedArray;
+		return findPeopleCached(cache, QueryCache.zipKey(searchZip),
+				() -> runSearch(() -> getPeople(findSlots(searchZip))));
 	}
 	
-	/** Method cleanArray takes an array and searches for null elements while building a clean array, then resizes it.
-	 * 	and populates it with the remaining non-null elements.
-	 * 	It discards any elements beyond the desired length.
-	 * 
-	 * @param Person[] inputArray, int desiredLength
+	/** Method findPeopleCached returns the result kept in cache for key, or runs search and offers its result
+	 * 	to the cache. The generation is read before the search, so a result is not kept if the phonebook
+	 * 	changed while it was found.
+	 * @param cache
+	 * @param key
+	 * @param search - the uncached search, run through runSearch or runLookup
 	 * @return Person[]
 	 */
-	private static Person[] cleanArray(Person[] inputArray) {
-		int numberOfNulls = 0;
-		Person[] outputArray = new Person[inputArray.length];
-		for (int index = 0; index < inputArray.length; index++) {
-			if (inputArray[index] != null) {
-				outputArray[index - numberOfNulls] = inputArray[index];
-			} else {
-				numberOfNulls++;
+	private Person[] findPeopleCached(QueryCache cache, QueryCache.QueryKey key, Supplier<Person[]> search) {
+		long searchGeneration = cache.getGeneration();
+		Person[] peopleFound = cache.get(key);
+		if (peopleFound == null) {
+			peopleFound = search.get();
+			cache.put(key, peopleFound, searchGeneration);
+		}
+		return peopleFound;
+	}
+	
+	/** Method runSearch runs a findPeople search against the indexes and returns its result. The cache is
+	 * 	read and filled outside of it, so a subclass can run the search alone under a lock, as ConcurrentPhonebook
+	 * 	does with its read lock.
+	 * @param search
+	 * @return Person[]
+	 */
+	Person[] runSearch(Supplier<Person[]> search) {
+		return search.get();
+	}
+	
+	/** Method runLookup runs a findPeople search that probes one index for a few people, such as the phone
+	 * 	number search. It runs as runSearch does, unless a subclass has a cheaper way for such a short read,
+	 * 	as ConcurrentPhonebook does with an optimistic read.
+	 * @param lookup
+	 * @return Person[]
+	 */
+	Person[] runLookup(Supplier<Person[]> lookup) {
+		return runSearch(lookup);
+	}
+	
+	/** Method findSlots returns the set of people matching searchString, for the same search types as findPeople.
+	 * 	Sets from several searches can be combined with SlotSet.and, or, and andNot, and read with getPeople.
+	 * @param String searchString
+	 * @param int searchType - specify what type of property searchString is looking for
+	 * @return SlotSet - empty if searchType is not valid
+	 */
+	public SlotSet findSlots(String searchString, int searchType) {
+		switch (searchType) {
+		case 1:
+			return findPersonIndicesByFirstName(searchString);
+		case 2:
+			return findPersonIndicesByLastName(searchString);
+		case 3:
+			return findPersonIndicesByName(searchString);
+		case 4:
+			return findPersonIndicesByStreet1(searchString);
+		case 5:
+			return findPersonIndicesByCity(searchString);
+		case 6:
+			return findPersonIndicesByState(searchString);
+		default: 
+			System.out.println("findPerson - not a valid search type");
+			return SlotSet.EMPTY;
+		}
+	}
+	
+	/** Method findSlots returns the set of people with the phone number searchPhone.
+	 * @param long searchPhone
+	 * @return SlotSet
+	 */
+	public SlotSet findSlots(long searchPhone) {
+		return findPersonIndicesByPhone(searchPhone);
+	}
+	
+	/** Method findSlots returns the set of people with the zip code searchZip.
+	 * @param int searchZip
+	 * @return SlotSet
+	 */
+	public SlotSet findSlots(int searchZip) {
+		return findPersonIndicesByZip(searchZip);
+	}
+	
+	/** Method allSlots returns the set of every Person in the phonebook, so that NOT of a search can be
+	 * 	taken as allSlots().andNot(set).
+	 * @return SlotSet
+	 */
+	public SlotSet allSlots() {
+		int[] slots = parallelScan.scan(personStore.slotCount(), slot -> personStore.isLive(slot));
+		return SlotSet.ofSorted(slots, slots.length);
+	}
+	
+	/** Method getPeople returns the people in slots sorted by PersonName. When the set holds a large share of
+	 * 	the phonebook, PersonName order is stepped through keeping the people in the set, so the result needs
+	 * 	no sort. A smaller set is sorted by name instead. Slots that are no longer live are skipped.
+	 * @param slots - a set found by findSlots or allSlots, or combined from such sets
+	 * @return Person[]
+	 */
+	public Person[] getPeople(SlotSet slots) {
+		int personCount = personNameOrder.size();
+		int[] orderedSlots;
+		int count = 0;
+		if ((long) slots.size() * NAME_ORDER_SCAN_RATIO >= personCount) {
+			orderedSlots = parallelScan.scan(personCount, rank -> slots.contains(personNameOrder.slotAt(rank, true)));
+			for (int index = 0; index < orderedSlots.length; index++) {
+				orderedSlots[index] = personNameOrder.slotAt(orderedSlots[index], true);
+			}
+			count = orderedSlots.length;
+		} else {
+			orderedSlots = slots.toArray();
+			for (int index = 0; index < orderedSlots.length; index++) {
+				if (orderedSlots[index] < personStore.slotCount() && personStore.isLive(orderedSlots[index])) {
+					orderedSlots[count] = orderedSlots[index];
+					count++;
+				}
 			}
+			personNameOrder.sortSlots(orderedSlots, count);
 		}
-		if (numberOfNulls == 0) {
-			System.out.println("cleanArray - no null elements found");
-			return inputArray;
+		Person[] personArray = new Person[count];
+		for (int index = 0; index < count; index++) {
+			personArray[index] = personStore.get(orderedSlots[index]);
 		}
-		outputArray = resizeArray(outputArray, inputArray.length - numberOfNulls);
-		return outputArray;
+		return personArray;
 	}
 	
-	/** Method resizeArray takes an array and re-sizes the array to the desiredLength.
-	 * 	It discards any elements beyond the desired length.
-	 * 
-	 * @param int[] inputIntArray, int desiredLength
-	 * @return Integer[]
-	 */
-	private static Integer[] resizeArray(Integer[] inputIntArray, int desiredLength) {
-		// Create a new array of the desired length
-		Integer[] resizedArray = new Integer[desiredLength];
-		// Step through the input array and assign input values to the resized array.
-		for (int index = 0; index < desiredLength; index++) {
-			// If the desired length is longer than the input array, put nulls in the remaining elements of the resized array.
-			if (index < inputIntArray.length) {
-				resizedArray[index] = inputIntArray[index];
-			} else {
-				resizedArray[index] = (Integer)null;
+	/** Method suggest returns up to limit people whose first name, last name, or full name starts with prefix,
+	 * 	sorted by PersonName. Match is not case sensitive. It is meant to be called as the user types a name, 
+	 * 	so it only reads the index entries that match the prefix, and only the first limit of them are sorted.
+	 * @param prefix - the letters typed so far
+	 * @param limit - the maximum number of people to return
+	 * @return Person[]
+	 */
+	public Person[] suggest(String prefix, int limit) {
+		if (limit <= 0) {
+			return new Person[0];
+		}
+		int[] slots;
+		if (prefix == null || prefix.isBlank()) {
+			// Every name matches a blank prefix, so take the first people in PersonName order.
+			slots = new int[Math.min(limit, personNameOrder.size())];
+			for (int rank = 0; rank < slots.length; rank++) {
+				slots[rank] = personNameOrder.slotAt(rank, true);
 			}
+		} else {
+			slots = namePrefixIndex.findSlots(prefix);
+			slots = personNameOrder.firstSlots(slots, slots.length, limit);
+		}
+		Person[] personArray = new Person[Math.min(limit, slots.length)];
+		for (int index = 0; index < personArray.length; index++) {
+			personArray[index] = personStore.get(slots[index]);
+		}
+		return personArray;
+	}
+	
+	/** Method findPersonIndexByPersonID looks up the personID in the personIDIndex and returns 
+	 *   the slot of the matching personID. If nothing is found, return null.
+	 * @param searchID - the long personID to search for stored as a long integer
+	 * @return Integer - the slot of the Person, or null
+	 */
+	private Integer findPersonIndexByPersonID(long searchID) {
+		int slot = personIDIndex.firstSlot(searchID);
+		if (slot < 0) {
+			return null;
 		}
-		return resizedArray;
+		return slot;
+	}
+	
+	/** Method findPersonIndicesByName searches the nameIndex for matching full name and returns 
+	 * the set of all matches. Match is not case sensitive.
+	 * @param name - the full name to search for
+	 * @return SlotSet - the set of all matches
+	 */
+	private SlotSet findPersonIndicesByName(String name) {
+		return SlotSet.of(nameIndex.search(name, parallelScan));
+	}
+	
+	/** Method findPersonIndicesByFirstName searches the firstNameIndex for matching first name and returns 
+	 * the set of all matches. Match is not case sensitive.
+	 * @param first - the first name to search for
+	 * @return SlotSet - the set of all matches
+	 */
+	private SlotSet findPersonIndicesByFirstName(String first) {
+		return SlotSet.of(firstNameIndex.search(first, parallelScan));
+	}
+	
+	/** Method findPersonIndicesByLastName searches the lastNameIndex for matching last name and returns 
+	 * the set of all matches. Match is not case sensitive.
+	 * @param last - the last name to search for
+	 * @return SlotSet - the set of all matches
+	 */
+	private SlotSet findPersonIndicesByLastName(String last) {
+		return SlotSet.of(lastNameIndex.search(last, parallelScan));
+	}
+	
+	/** Method findPersonIndicesByStreet1 searches the street1Index for matching street and returns 
+	 * the set of all matches. Match is not case sensitive.
+	 * @param street1 - the street number and street name to search for
+	 * @return SlotSet - the set of all matches
+	 */
+	private SlotSet findPersonIndicesByStreet1(String street1) {
+		return SlotSet.of(street1Index.search(street1, parallelScan));
+	}
+	
+	/** Method findPersonIndicesByCity checks each distinct city in the cityIndex for matching city and returns 
+	 * the set of all matches. Match is not case sensitive.
+	 * @param city - the city to search for
+	 * @return SlotSet - the set of all matches
+	 */
+	private SlotSet findPersonIndicesByCity(String city) {
+		String foldedCity = TrigramIndex.fold(city.trim());
+		return cityIndex.getMatching(key -> key.contains(foldedCity));
+	}
+	
+	/** Method findPersonIndicesByState checks each distinct state in the stateIndex for matching state and returns 
+	 * the set of all matches. Match is not case sensitive.
+	 * @param state - the state to search for
+	 * @return SlotSet - the set of all matches
+	 */
+	private SlotSet findPersonIndicesByState(String state) {
+		String foldedState = TrigramIndex.fold(state.trim());
+		return stateIndex.getMatching(key -> key.contains(foldedState));
+	}
+	
+	/** Method findPersonIndicesByZip looks up the zip code in the zipIndex and returns 
+	 * the set of all matches.
+	 * @param zip - the zip code integer to search for
+	 * @return SlotSet - the set of all matches
+	 */
+	private SlotSet findPersonIndicesByZip(int zip) {
+		return zipIndex.get(zip);
+	}
+	
+	/** Method findPersonIndicesByPhone looks up the phone number in the phoneIndex and returns 
+	 * the set of all matches.
+	 * @param searchPhone - the phone number to search for stored as a long integer
+	 * @return SlotSet - the set of all matches
+	 */
+	private SlotSet findPersonIndicesByPhone(long searchPhone) {
+		return SlotSet.of(phoneIndex.get(searchPhone));
+	}
+	
+	/** Method numberOfPeople searches the phonebookBookArray returns the total number of people
+	 */
+	public Integer numberOfPeople() {
+		return personStore.liveCount();
 	}
 	
-	/** Method toString overrides the default Object.toString to summarize the phonebook.
+	/** Method toString overrides the default Object.toString to summarize the phonebook. Use PhonebookExporter
+	 * 	to write a large phonebook without building one String.
 	 * @return String with the salient details of the phonebook
 	 */
 	@Override
 	public String toString() {
-		String outputString = "";
-		if (phonebookPersonArray.length == 1) {
-			outputString = this.phonebookName + " has " + numberOfPeople() + " person:\n";
-		} else {
-			outputString = this.phonebookName + " has " + numberOfPeople() + " total people:\n";
-		}
-		for (int index = 0; index < phonebookPersonArray.length; index++) {
-			outputString += phonebookPersonArray[index].toString() + "\n";
+		StringWriter outputWriter = new StringWriter();
+		try {
+			new PhonebookExporter(this).export(outputWriter, PhonebookExporter.Format.HUMAN);
+		} catch (IOException exception) {
+			// A StringWriter does not throw.
 		}
-		return outputString;
+		return outputWriter.toString();
 	}
 }
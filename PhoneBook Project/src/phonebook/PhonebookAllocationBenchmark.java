@@ -0,0 +1,170 @@
+package phonebook;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** This class measures how many bytes the full-scan searches allocate for each record they check. A search
+ * 	term of one or two characters has no trigram to look up, and the MappedPhonebook street, city, and state
+ * 	searches have no index, so those searches check the stored text of every record. Each search is run for a
+ * 	term that matches no one on a phonebook of people and on one of twice as many people, and the bytes
+ * 	allocated by all threads are read from the ThreadMXBean. The difference between the two, divided by the
+ * 	extra people, is the number of bytes allocated per record checked, which should be 0. The bytes allocated
+ * 	per search, such as for the empty result, are printed as well.
+ * 	Usage: PhonebookAllocationBenchmark [people] [searches]
+ * 		people - the number of generated people in the smaller phonebooks, 100000 by default
+ * 		searches - the number of searches measured for each kind, 200 by default, after as many to warm up
+ */
+public class PhonebookAllocationBenchmark {
+
+	private static final int DEFAULT_PEOPLE = 100000;
+	private static final int DEFAULT_SEARCHES = 200;
+	// No generated name, street, city, or state contains these.
+	private static final String SHORT_MISSING_TERM = "qz";
+	private static final String LONG_MISSING_TERM = "qzq";
+	private static final String[] SEARCH_TYPE_NAMES = {"", "first name", "last name", "full name", "street", "city",
+			"state"};
+
+	public static void main(String[] args) {
+		int peopleCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PEOPLE;
+		int searchCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SEARCHES;
+		java.lang.management.ThreadMXBean platformBean = ManagementFactory.getThreadMXBean();
+		if (!(platformBean instanceof com.sun.management.ThreadMXBean)
+				|| !((com.sun.management.ThreadMXBean) platformBean).isThreadAllocatedMemorySupported()) {
+			System.out.println("PhonebookAllocationBenchmark - this JVM does not count the bytes allocated by threads.");
+			return;
+		}
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) platformBean;
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+		Person[] smallPeople = PhonebookLoadGenerator.generatePhonebook(peopleCount).getPhonebookPersonArray(false);
+		Person[] largePeople = PhonebookLoadGenerator.generatePhonebook(peopleCount * 2).getPhonebookPersonArray(false);
+		Path smallPath = null;
+		Path largePath = null;
+		try {
+			smallPath = Files.createTempFile("phonebook-allocation", ".pbm");
+			largePath = Files.createTempFile("phonebook-allocation", ".pbm");
+			Phonebook[] smallPhonebooks = makePhonebooks(smallPeople);
+			Phonebook[] largePhonebooks = makePhonebooks(largePeople);
+			MappedPhonebook.write(smallPhonebooks[0], smallPath);
+			MappedPhonebook.write(largePhonebooks[0], largePath);
+			MappedPhonebook smallMapped = new MappedPhonebook(smallPath);
+			MappedPhonebook largeMapped = new MappedPhonebook(largePath);
+			String[] storeNames = {"PersonStore", "ColumnarRecordStore", "OffHeapRecordStore"};
+			System.out.println(peopleCount + " and " + peopleCount * 2 + " people, " + searchCount
+					+ " searches of each kind for a term that matches no one");
+			System.out.printf("%-22s %-11s %-5s %14s %16s%n", "phonebook", "field", "term", "bytes/search",
+					"bytes/record");
+			boolean allocatesPerRecord = false;
+			for (int storeIndex = 0; storeIndex < storeNames.length; storeIndex++) {
+				Phonebook smallPhonebook = smallPhonebooks[storeIndex];
+				Phonebook largePhonebook = largePhonebooks[storeIndex];
+				for (int searchType = 1; searchType <= 6; searchType++) {
+					int type = searchType;
+					allocatesPerRecord |= report(threadBean, storeNames[storeIndex], type, SHORT_MISSING_TERM,
+							peopleCount, searchCount, () -> smallPhonebook.findPeople(SHORT_MISSING_TERM, type),
+							() -> largePhonebook.findPeople(SHORT_MISSING_TERM, type));
+				}
+			}
+			for (int searchType = 4; searchType <= 6; searchType++) {
+				int type = searchType;
+				String term = searchType == 6 ? SHORT_MISSING_TERM : LONG_MISSING_TERM;
+				allocatesPerRecord |= report(threadBean, "MappedPhonebook", type, term, peopleCount, searchCount,
+						() -> smallMapped.findPeople(term, type), () -> largeMapped.findPeople(term, type));
+			}
+			System.out.println(allocatesPerRecord ? "Some searches allocate for each record they check."
+					: "No search allocates for the records it checks.");
+		} catch (IOException exception) {
+			System.out.println("PhonebookAllocationBenchmark - could not write the mapped phonebooks: "
+					+ exception.getMessage());
+		} finally {
+			deleteFile(smallPath);
+			deleteFile(largePath);
+		}
+	}
+
+	/** Method makePhonebooks returns a Phonebook holding copies of people on each kind of RecordStore:
+	 * 	the PersonStore, a ColumnarRecordStore, and an OffHeapRecordStore.
+	 * @param people
+	 * @return Phonebook[]
+	 */
+	private static Phonebook[] makePhonebooks(Person[] people) {
+		Phonebook[] phonebooks = {new Phonebook("Allocation Test Phonebook"),
+				new Phonebook("Allocation Test Phonebook", new ColumnarRecordStore()),
+				new Phonebook("Allocation Test Phonebook", new OffHeapRecordStore())};
+		for (Phonebook phonebook : phonebooks) {
+			Person[] copies = new Person[people.length];
+			for (int index = 0; index < people.length; index++) {
+				copies[index] = new Person(people[index]);
+			}
+			phonebook.addPeople(copies, copies.length);
+		}
+		return phonebooks;
+	}
+
+	/** Method report measures one kind of search on the smaller and the larger phonebook and prints a line.
+	 * @return boolean - true if the search allocated for the extra records of the larger phonebook
+	 */
+	private static boolean report(com.sun.management.ThreadMXBean threadBean, String phonebookName, int searchType,
+			String term, int peopleCount, int searchCount, Search smallSearch, Search largeSearch) {
+		double smallBytes = bytesPerSearch(threadBean, searchCount, smallSearch);
+		double largeBytes = bytesPerSearch(threadBean, searchCount, largeSearch);
+		// The extra people of the larger phonebook are the only difference, so divide by them.
+		double bytesPerRecord = Math.max(0, largeBytes - smallBytes) / peopleCount;
+		System.out.printf("%-22s %-11s %-5s %14.0f %16.3f%n", phonebookName, SEARCH_TYPE_NAMES[searchType],
+				"\"" + term + "\"", smallBytes, bytesPerRecord);
+		return bytesPerRecord >= 0.5;
+	}
+
+	/** Method bytesPerSearch runs search searchCount times to warm it up, then searchCount more times, and
+	 * 	returns the average number of bytes all threads allocated while the second set ran. A scan can be split
+	 * 	over the threads of a ParallelScan, so their bytes are counted too.
+	 * @return double
+	 */
+	private static double bytesPerSearch(com.sun.management.ThreadMXBean threadBean, int searchCount,
+			Search search) {
+		for (int index = 0; index < searchCount; index++) {
+			search.run();
+		}
+		long startBytes = allocatedBytes(threadBean);
+		int matchCount = 0;
+		for (int index = 0; index < searchCount; index++) {
+			matchCount += search.run().length;
+		}
+		long endBytes = allocatedBytes(threadBean);
+		if (matchCount > 0) {
+			System.out.println("PhonebookAllocationBenchmark - the search matched " + matchCount + " people.");
+		}
+		return (double) (endBytes - startBytes) / searchCount;
+	}
+
+	/** Method allocatedBytes returns the number of bytes allocated so far by the threads that are alive.
+	 * @return long
+	 */
+	private static long allocatedBytes(com.sun.management.ThreadMXBean threadBean) {
+		long totalBytes = 0;
+		for (long bytes : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+			if (bytes > 0) {
+				totalBytes += bytes;
+			}
+		}
+		return totalBytes;
+	}
+
+	private static void deleteFile(Path filePath) {
+		if (filePath == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(filePath);
+		} catch (IOException exception) {
+			System.out.println("PhonebookAllocationBenchmark - could not delete " + filePath);
+		}
+	}
+
+	/** This interface is one search to measure.
+	 */
+	private interface Search {
+		Person[] run();
+	}
+}
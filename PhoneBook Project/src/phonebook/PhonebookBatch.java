@@ -0,0 +1,143 @@
+package phonebook;
+
+import java.util.Arrays;
+
+/** This class is a list of changes to make to a Phonebook in one call to Phonebook.applyBatch, for jobs that
+ * 	run without a user at the console, such as a nightly sync. A batch can add people, update people by
+ * 	personID, and delete everyone with a phone number. Nothing is printed and nothing is asked: applyBatch
+ * 	returns a Result for each operation, in the order the operations were put in the batch.
+ * 	applyBatch makes the operations in the order they were put in the batch, so a delete by phone removes
+ * 	a Person added earlier in the batch but not one added after it. Each run of operations of the same type
+ * 	is logged together, and the adds or deletes of a run are merged into PersonName order in one pass.
+ */
+public class PhonebookBatch {
+
+	public enum Status {
+		ADDED, UPDATED, DELETED, NOT_FOUND, INVALID, FAILED
+	}
+
+	static final byte ADD_OPERATION = 1;
+	static final byte UPDATE_OPERATION = 2;
+	static final byte DELETE_BY_PHONE_OPERATION = 3;
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final long[] NO_PERSON_IDS = new long[0];
+
+	private byte[] operationTypes = new byte[INITIAL_CAPACITY];
+	private Person[] operationPeople = new Person[INITIAL_CAPACITY];
+	private long[] operationPhones = new long[INITIAL_CAPACITY];
+	private int size = 0;
+
+	/** Method add puts the add of newPerson in the batch. It is given the next personID when the batch is applied.
+	 * @param newPerson
+	 */
+	public void add(Person newPerson) {
+		append(ADD_OPERATION, newPerson, 0L);
+	}
+
+	/** Method update puts the update of the Person with the personID of updatedPerson in the batch.
+	 * @param updatedPerson - the new data, with the personID of the Person to replace
+	 */
+	public void update(Person updatedPerson) {
+		append(UPDATE_OPERATION, updatedPerson, 0L);
+	}
+
+	/** Method deleteByPhone puts the delete of every Person with the phone number in the batch.
+	 * @param phone - the phone number stored as a long integer
+	 */
+	public void deleteByPhone(long phone) {
+		append(DELETE_BY_PHONE_OPERATION, null, phone);
+	}
+
+	/** Method size returns the number of operations in the batch.
+	 * @return int
+	 */
+	public int size() {
+		return size;
+	}
+
+	/** Method clear empties the batch so it can be filled again.
+	 */
+	public void clear() {
+		Arrays.fill(operationPeople, 0, size, null);
+		size = 0;
+	}
+
+	byte getOperationType(int operation) {
+		return operationTypes[operation];
+	}
+
+	Person getOperationPerson(int operation) {
+		return operationPeople[operation];
+	}
+
+	long getOperationPhone(int operation) {
+		return operationPhones[operation];
+	}
+
+	private void append(byte operationType, Person operationPerson, long operationPhone) {
+		if (size == operationTypes.length) {
+			operationTypes = Arrays.copyOf(operationTypes, size * 2);
+			operationPeople = Arrays.copyOf(operationPeople, size * 2);
+			operationPhones = Arrays.copyOf(operationPhones, size * 2);
+		}
+		operationTypes[size] = operationType;
+		operationPeople[size] = operationPerson;
+		operationPhones[size] = operationPhone;
+		size++;
+	}
+
+	/** This class is the outcome of one operation of a batch.
+	 */
+	public static final class Result {
+
+		private final Status status;
+		private final long[] personIDs;
+		private final String message;
+
+		Result(Status status, long[] personIDs, String message) {
+			this.status = status;
+			this.personIDs = personIDs;
+			this.message = message;
+		}
+
+		static Result of(Status status, long personID) {
+			return new Result(status, new long[] {personID}, null);
+		}
+
+		static Result problem(Status status, String message) {
+			return new Result(status, NO_PERSON_IDS, message);
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		/** Method isSuccessful returns true if the operation changed the phonebook.
+		 * @return boolean
+		 */
+		public boolean isSuccessful() {
+			return status == Status.ADDED || status == Status.UPDATED || status == Status.DELETED;
+		}
+
+		/** Method getPersonIDs returns the personID given to an added Person, the personID of an updated Person,
+		 * 	or the personIDs of everyone deleted. It is empty if the operation did not change the phonebook.
+		 * @return long[]
+		 */
+		public long[] getPersonIDs() {
+			return personIDs.clone();
+		}
+
+		/** Method getMessage returns why the operation did not change the phonebook, or null if it did.
+		 * @return String
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return message == null ? status + " " + Arrays.toString(personIDs) : status + " - " + message;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package phonebook;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** This class measures how many phone lookups a PhonebookBinaryServer answers per second. Each connection is
+ * 	a thread with a PhonebookBinaryClient that sends a window of pipelined lookups for random phone numbers,
+ * 	reads all of their responses, and repeats. The first fifth of the run warms up the JIT and is not counted.
+ * 	Usage: PhonebookBinaryBenchmark [connections] [seconds] [pipeline] [people] [host port]
+ * 		connections - the number of connections, 16 by default
+ * 		seconds - how long to run, 10 by default
+ * 		pipeline - the number of requests sent before reading their responses, 64 by default, 1 for none
+ * 		people - the phone numbers asked for are PhonebookLoadGenerator.FIRST_PHONE and up, 100000 by default
+ * 		host port - the server to test. Without them a PhonebookBinaryServer is started on a free port of
+ * 			localhost with one generated person for each of those phone numbers.
+ */
+public class PhonebookBinaryBenchmark {
+
+	private static final int DEFAULT_CONNECTIONS = 16;
+	private static final int DEFAULT_SECONDS = 10;
+	private static final int DEFAULT_PIPELINE = 64;
+	private static final int DEFAULT_PEOPLE = 100000;
+
+	public static void main(String[] args) {
+		int connectionCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CONNECTIONS;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+		int pipelineDepth = Math.min(PhonebookBinaryClient.MAX_PIPELINED_REQUESTS,
+				Math.max(1, args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PIPELINE));
+		int peopleCount = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_PEOPLE;
+		PhonebookBinaryServer embeddedServer = null;
+		InetSocketAddress serverAddress;
+		try {
+			if (args.length > 5) {
+				serverAddress = new InetSocketAddress(args[4], Integer.parseInt(args[5]));
+			} else {
+				embeddedServer = new PhonebookBinaryServer(PhonebookLoadGenerator.generatePhonebook(peopleCount),
+						new InetSocketAddress("127.0.0.1", 0));
+				embeddedServer.start();
+				serverAddress = new InetSocketAddress("127.0.0.1", embeddedServer.getPort());
+				System.out.println("Started a PhonebookBinaryServer with " + peopleCount + " people on port "
+						+ embeddedServer.getPort());
+			}
+		} catch (IOException exception) {
+			System.out.println("PhonebookBinaryBenchmark - could not start the server: " + exception.getMessage());
+			return;
+		}
+		long startTime = System.nanoTime();
+		long measureStart = startTime + seconds * 1_000_000_000L / 5;
+		long endTime = startTime + seconds * 1_000_000_000L;
+		BenchmarkConnection[] connections = new BenchmarkConnection[connectionCount];
+		Thread[] threads = new Thread[connectionCount];
+		for (int index = 0; index < connectionCount; index++) {
+			connections[index] = new BenchmarkConnection(serverAddress, pipelineDepth, peopleCount, measureStart, endTime);
+			threads[index] = new Thread(connections[index], "binary-load-" + index);
+			threads[index].start();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		if (embeddedServer != null) {
+			embeddedServer.stop();
+		}
+		long requestCount = 0;
+		long errorCount = 0;
+		long peopleFound = 0;
+		for (BenchmarkConnection connection : connections) {
+			requestCount += connection.requestCount;
+			errorCount += connection.errorCount;
+			peopleFound += connection.peopleFound;
+		}
+		long measuredNanos = endTime - measureStart;
+		System.out.println(connectionCount + " connections, pipeline " + pipelineDepth + ", " + requestCount
+				+ " requests in " + measuredNanos / 1_000_000 + " ms, " + errorCount + " errors, " + peopleFound
+				+ " people found");
+		System.out.printf("%.0f requests per second%n", requestCount * 1e9 / measuredNanos);
+	}
+
+	/** This class is one connection sending windows of pipelined phone lookups until the end of the run.
+	 */
+	private static final class BenchmarkConnection implements Runnable {
+
+		private final InetSocketAddress serverAddress;
+		private final int pipelineDepth;
+		private final int peopleCount;
+		private final long measureStart;
+		private final long endTime;
+		private long requestCount = 0;
+		private long errorCount = 0;
+		private long peopleFound = 0;
+
+		BenchmarkConnection(InetSocketAddress serverAddress, int pipelineDepth, int peopleCount, long measureStart,
+				long endTime) {
+			this.serverAddress = serverAddress;
+			this.pipelineDepth = pipelineDepth;
+			this.peopleCount = peopleCount;
+			this.measureStart = measureStart;
+			this.endTime = endTime;
+		}
+
+		@Override
+		public void run() {
+			try (PhonebookBinaryClient client = new PhonebookBinaryClient(serverAddress)) {
+				long now;
+				while ((now = System.nanoTime()) < endTime) {
+					for (int index = 0; index < pipelineDepth; index++) {
+						client.sendPhoneLookup(PhonebookLoadGenerator.FIRST_PHONE
+								+ ThreadLocalRandom.current().nextInt(peopleCount));
+					}
+					for (int index = 0; index < pipelineDepth; index++) {
+						PhonebookBinaryClient.Response response = client.receive();
+						if (now < measureStart) {
+							continue;
+						}
+						requestCount++;
+						if (response.isOk()) {
+							peopleFound += response.getPeople().length;
+						} else {
+							errorCount++;
+						}
+					}
+				}
+			} catch (IOException exception) {
+				System.out.println("PhonebookBinaryBenchmark - the connection failed: " + exception.getMessage());
+				errorCount++;
+			}
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package phonebook;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/** This class is a client of PhonebookBinaryServer over one connection. The findPeople methods send one
+ * 	request and wait for its response. To pipeline, call the send methods for many requests, then receive
+ * 	their responses in the same order: the requests go out in as few writes as the buffer allows, and the
+ * 	server answers them without waiting for the client between requests, for example -
+ * 		for (long phone : phones) client.sendPhoneLookup(phone);
+ * 		for (int index = 0; index < phones.length; index++) people[index] = client.receive().getPeople();
+ * 	The server stops reading a connection while many responses wait to be read, so a client should not have
+ * 	more than about MAX_PIPELINED_REQUESTS requests sent and not received, or both sides may wait on each other.
+ * 	A client is used by one thread at a time.
+ */
+public class PhonebookBinaryClient implements Closeable {
+
+	public static final int MAX_PIPELINED_REQUESTS = 1024;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final SocketChannel channel;
+	// output holds unsent request bytes from 0 to its position. input holds unread response bytes from its
+	// position to its limit.
+	private final ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+	private ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE).flip();
+	private int nextRequestID = 1;
+
+	/** Constructor to connect to the server at address.
+	 * @param address
+	 * @throws IOException if the connection cannot be made
+	 */
+	public PhonebookBinaryClient(InetSocketAddress address) throws IOException {
+		this.channel = SocketChannel.open(address);
+		this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+	}
+
+	/** Method findPeople returns the people with the phone number.
+	 * @param searchPhone
+	 * @return Person[] - the people found
+	 * @throws IOException if the connection fails or the server refused the request, with its reason
+	 */
+	public Person[] findPeople(long searchPhone) throws IOException {
+		sendPhoneLookup(searchPhone);
+		return receive().getPeopleOrThrow();
+	}
+
+	/** Method findPeople returns the people with the zip code.
+	 * @param searchZip
+	 * @return Person[] - the people found
+	 * @throws IOException if the connection fails or the server refused the request, with its reason
+	 */
+	public Person[] findPeople(int searchZip) throws IOException {
+		sendZipLookup(searchZip);
+		return receive().getPeopleOrThrow();
+	}
+
+	/** Method findPeople returns the people found by a search of the same searchType as Phonebook.findPeople.
+	 * @param searchString
+	 * @param searchType - 1 to 6: first name, last name, full name, street, city, or state
+	 * @return Person[] - the people found
+	 * @throws IOException if the connection fails or the server refused the request, with its reason
+	 */
+	public Person[] findPeople(String searchString, int searchType) throws IOException {
+		sendNameSearch(searchString, searchType);
+		return receive().getPeopleOrThrow();
+	}
+
+	/** Method findPeople looks up every phone number, pipelining up to MAX_PIPELINED_REQUESTS at a time.
+	 * @param searchPhones
+	 * @return Person[][] - the people found for each phone number, in the same order, or null for a refused request
+	 * @throws IOException if the connection fails
+	 */
+	public Person[][] findPeople(long[] searchPhones) throws IOException {
+		Person[][] peopleFound = new Person[searchPhones.length][];
+		for (int start = 0; start < searchPhones.length; start += MAX_PIPELINED_REQUESTS) {
+			int end = Math.min(searchPhones.length, start + MAX_PIPELINED_REQUESTS);
+			for (int index = start; index < end; index++) {
+				sendPhoneLookup(searchPhones[index]);
+			}
+			for (int index = start; index < end; index++) {
+				peopleFound[index] = receive().getPeople();
+			}
+		}
+		return peopleFound;
+	}
+
+	/** Method sendPhoneLookup queues a phone lookup. It is sent when the buffer fills or by flush or receive.
+	 * @param searchPhone
+	 * @return int - the request ID the response will have
+	 * @throws IOException if the connection fails
+	 */
+	public int sendPhoneLookup(long searchPhone) throws IOException {
+		int requestID = startRequest(PhonebookProtocol.PHONE_LOOKUP, 8);
+		output.putLong(searchPhone);
+		return requestID;
+	}
+
+	/** Method sendZipLookup queues a zip code lookup. It is sent when the buffer fills or by flush or receive.
+	 * @param searchZip
+	 * @return int - the request ID the response will have
+	 * @throws IOException if the connection fails
+	 */
+	public int sendZipLookup(int searchZip) throws IOException {
+		int requestID = startRequest(PhonebookProtocol.ZIP_LOOKUP, 4);
+		output.putInt(searchZip);
+		return requestID;
+	}
+
+	/** Method sendNameSearch queues a search of the same searchType as Phonebook.findPeople. It is sent when
+	 * 	the buffer fills or by flush or receive.
+	 * @param searchString
+	 * @param searchType - 1 to 6: first name, last name, full name, street, city, or state
+	 * @return int - the request ID the response will have
+	 * @throws IOException if the connection fails
+	 */
+	public int sendNameSearch(String searchString, int searchType) throws IOException {
+		int stringSize = PersonCodec.stringSize(searchString);
+		int requestID = startRequest(PhonebookProtocol.NAME_SEARCH, 1 + stringSize);
+		output.put((byte) searchType);
+		PersonCodec.writeString(output, searchString);
+		return requestID;
+	}
+
+	/** Method flush sends every queued request.
+	 * @throws IOException if the connection fails
+	 */
+	public void flush() throws IOException {
+		output.flip();
+		while (output.hasRemaining()) {
+			channel.write(output);
+		}
+		output.clear();
+	}
+
+	/** Method receive sends any queued requests, then waits for and returns the next response.
+	 * @return Response
+	 * @throws IOException if the connection fails or the server closes it
+	 */
+	public Response receive() throws IOException {
+		if (output.position() > 0) {
+			flush();
+		}
+		fill(4);
+		int frameLength = input.getInt(input.position());
+		if (frameLength < 4 + 1) {
+			throw new IOException("bad response length " + frameLength + ".");
+		}
+		fill(4 + frameLength);
+		input.position(input.position() + 4);
+		int requestID = input.getInt();
+		byte status = input.get();
+		if (status != PhonebookProtocol.OK) {
+			return new Response(requestID, null, PersonCodec.readString(input));
+		}
+		Person[] peopleFound = new Person[input.getInt()];
+		for (int index = 0; index < peopleFound.length; index++) {
+			peopleFound[index] = PersonCodec.read(input);
+		}
+		return new Response(requestID, peopleFound, null);
+	}
+
+	/** Method close closes the connection without sending queued requests.
+	 * @throws IOException if the connection fails to close
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/** Method startRequest makes room for a request of bodyLength bytes after the opcode and writes its header.
+	 * @param opcode
+	 * @param bodyLength
+	 * @return int - the request ID
+	 * @throws IOException if the connection fails
+	 */
+	private int startRequest(byte opcode, int bodyLength) throws IOException {
+		int frameLength = 4 + 1 + bodyLength;
+		if (4 + frameLength > output.capacity()) {
+			throw new IOException("the request is longer than " + output.capacity() + " bytes.");
+		}
+		if (output.remaining() < 4 + frameLength) {
+			flush();
+		}
+		int requestID = nextRequestID++;
+		output.putInt(frameLength);
+		output.putInt(requestID);
+		output.put(opcode);
+		return requestID;
+	}
+
+	/** Method fill reads until at least byteCount bytes are waiting in input.
+	 * @param byteCount
+	 * @throws IOException if the connection fails or the server closes it
+	 */
+	private void fill(int byteCount) throws IOException {
+		if (input.remaining() >= byteCount) {
+			return;
+		}
+		if (input.capacity() < byteCount) {
+			input = ByteBuffer.allocate(Math.max(byteCount, input.capacity() * 2)).put(input).flip();
+		}
+		input.compact();
+		while (input.position() < byteCount) {
+			if (channel.read(input) < 0) {
+				throw new EOFException("the server closed the connection.");
+			}
+		}
+		input.flip();
+	}
+
+	/** This class is the response to one request: the people found, or why the server refused the request.
+	 */
+	public static final class Response {
+
+		private final int requestID;
+		private final Person[] people;
+		private final String errorMessage;
+
+		Response(int requestID, Person[] people, String errorMessage) {
+			this.requestID = requestID;
+			this.people = people;
+			this.errorMessage = errorMessage;
+		}
+
+		public int getRequestID() {
+			return requestID;
+		}
+
+		/** Method isOk returns true if the server answered the request, false if it refused it.
+		 * @return boolean
+		 */
+		public boolean isOk() {
+			return errorMessage == null;
+		}
+
+		/** Method getPeople returns the people found, in PersonName order.
+		 * @return Person[] - null if the server refused the request
+		 */
+		public Person[] getPeople() {
+			return people;
+		}
+
+		/** Method getErrorMessage returns why the server refused the request.
+		 * @return String - null if the server answered it
+		 */
+		public String getErrorMessage() {
+			return errorMessage;
+		}
+
+		private Person[] getPeopleOrThrow() throws IOException {
+			if (errorMessage != null) {
+				throw new IOException("the server refused the request: " + errorMessage);
+			}
+			return people;
+		}
+	}
+}
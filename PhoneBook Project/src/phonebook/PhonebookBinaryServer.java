@@ -0,0 +1,372 @@
+package phonebook;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/** This class serves phone lookups, zip lookups, and name searches in the binary PhonebookProtocol over
+ * 	non-blocking NIO. It runs one event loop per processor, each a thread with its own Selector. The first loop
+ * 	also accepts connections and hands each one to the loops in turn, and from then on a connection is only
+ * 	touched by its own loop, so nothing is locked. When a read brings in several requests, as it does for a
+ * 	client that pipelines, they are all answered into the connection's output buffer and sent with one write.
+ * 	A connection whose client does not read its responses stops being answered and read once MAX_PENDING_OUTPUT
+ * 	bytes are waiting. Requests already read stay in its input until enough output is sent, so a slow client
+ * 	cannot use up the server's memory.
+ * 	The searches run on the event loops, so the phonebook must be a ConcurrentPhonebook if it is changed while
+ * 	the server runs.
+ */
+public class PhonebookBinaryServer {
+
+	public static final int DEFAULT_PORT = 8081;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_PENDING_OUTPUT = 1 << 20;
+	private static final int SEARCH_TYPE_COUNT = 6;
+
+	private final Phonebook phonebook;
+	private final ServerSocketChannel serverChannel;
+	private final EventLoop[] eventLoops;
+	private final Thread[] loopThreads;
+	private volatile boolean isRunning = false;
+	private int nextEventLoop = 0;
+
+	/** Constructor to serve phonebook on address with one event loop per processor.
+	 * @param phonebook - the phonebook to search
+	 * @param address - the address and port to listen on, port 0 for any free port
+	 * @throws IOException if the port cannot be opened
+	 */
+	public PhonebookBinaryServer(Phonebook phonebook, InetSocketAddress address) throws IOException {
+		this(phonebook, address, Runtime.getRuntime().availableProcessors());
+	}
+
+	/** Constructor to serve phonebook on address with eventLoopCount event loops.
+	 * @param phonebook - the phonebook to search
+	 * @param address - the address and port to listen on, port 0 for any free port
+	 * @param eventLoopCount - the number of threads answering requests
+	 * @throws IOException if the port cannot be opened
+	 */
+	public PhonebookBinaryServer(Phonebook phonebook, InetSocketAddress address, int eventLoopCount) throws IOException {
+		this.phonebook = phonebook;
+		this.serverChannel = ServerSocketChannel.open();
+		this.serverChannel.bind(address, 1024);
+		this.serverChannel.configureBlocking(false);
+		this.eventLoops = new EventLoop[Math.max(1, eventLoopCount)];
+		this.loopThreads = new Thread[eventLoops.length];
+		for (int index = 0; index < eventLoops.length; index++) {
+			eventLoops[index] = new EventLoop(Selector.open());
+		}
+		serverChannel.register(eventLoops[0].selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/** Method start begins accepting connections and answering requests.
+	 */
+	public void start() {
+		isRunning = true;
+		for (int index = 0; index < eventLoops.length; index++) {
+			loopThreads[index] = new Thread(eventLoops[index], "phonebook-binary-" + index);
+			loopThreads[index].start();
+		}
+	}
+
+	/** Method stop closes every connection and waits for the event loops to end.
+	 */
+	public void stop() {
+		isRunning = false;
+		for (int index = 0; index < eventLoops.length; index++) {
+			eventLoops[index].selector.wakeup();
+		}
+		for (Thread loopThread : loopThreads) {
+			try {
+				if (loopThread != null) {
+					loopThread.join();
+				}
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		try {
+			serverChannel.close();
+		} catch (IOException exception) {
+			System.out.println("stop - could not close the server channel: " + exception.getMessage());
+		}
+	}
+
+	/** Method getPort returns the port the server listens on, such as the free port picked for port 0.
+	 * @return int
+	 */
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/** Method accept takes every waiting connection and gives each to the next event loop. Only the first event
+	 * 	loop calls it.
+	 * @throws IOException if the server channel fails
+	 */
+	private void accept() throws IOException {
+		for (SocketChannel channel = serverChannel.accept(); channel != null; channel = serverChannel.accept()) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			EventLoop eventLoop = eventLoops[nextEventLoop];
+			nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+			eventLoop.newChannels.add(channel);
+			eventLoop.selector.wakeup();
+		}
+	}
+
+	/** Method answer writes the response to the request of requestLength bytes at the position of input, which
+	 * 	starts after the request ID, into the output of connection.
+	 * @param connection
+	 * @param requestID
+	 * @param input - positioned at the opcode, with the rest of the request after it
+	 * @param requestLength - the number of bytes from the opcode to the end of the request
+	 */
+	private void answer(Connection connection, int requestID, ByteBuffer input, int requestLength) {
+		byte opcode = input.get();
+		Person[] peopleFound;
+		if (opcode == PhonebookProtocol.PHONE_LOOKUP && requestLength == 1 + 8) {
+			peopleFound = phonebook.findPeople(input.getLong());
+		} else if (opcode == PhonebookProtocol.ZIP_LOOKUP && requestLength == 1 + 4) {
+			peopleFound = phonebook.findPeople(input.getInt());
+		} else if (opcode == PhonebookProtocol.NAME_SEARCH && requestLength >= 1 + 1 + 2) {
+			int searchType = input.get();
+			int stringLength = input.getShort() & 0xFFFF;
+			if (requestLength != 1 + 1 + 2 + stringLength) {
+				connection.writeError(requestID, "the search string length does not match the request length.");
+				return;
+			}
+			String searchString = new String(input.array(), input.arrayOffset() + input.position(), stringLength,
+					StandardCharsets.UTF_8);
+			input.position(input.position() + stringLength);
+			if (searchType < 1 || searchType > SEARCH_TYPE_COUNT) {
+				connection.writeError(requestID, "the search type must be 1 to " + SEARCH_TYPE_COUNT + ".");
+				return;
+			}
+			if (searchString.isBlank()) {
+				connection.writeError(requestID, "the search string is blank.");
+				return;
+			}
+			peopleFound = phonebook.findPeople(searchString, searchType);
+		} else {
+			connection.writeError(requestID, "unknown opcode " + opcode + " or wrong request length.");
+			return;
+		}
+		connection.writePeople(requestID, peopleFound);
+	}
+
+	/** This class is one event loop: a thread waiting on its own Selector for its connections to be readable
+	 * 	or writable.
+	 */
+	private final class EventLoop implements Runnable {
+
+		private final Selector selector;
+		private final ConcurrentLinkedQueue<SocketChannel> newChannels = new ConcurrentLinkedQueue<SocketChannel>();
+
+		EventLoop(Selector selector) {
+			this.selector = selector;
+		}
+
+		@Override
+		public void run() {
+			while (isRunning) {
+				try {
+					selector.select();
+				} catch (IOException exception) {
+					System.out.println("PhonebookBinaryServer - the selector failed: " + exception.getMessage());
+					break;
+				}
+				registerNewChannels();
+				Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+				while (selectedKeys.hasNext()) {
+					SelectionKey key = selectedKeys.next();
+					selectedKeys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						try {
+							accept();
+						} catch (IOException exception) {
+							System.out.println("PhonebookBinaryServer - could not accept a connection: " + exception.getMessage());
+						}
+						continue;
+					}
+					Connection connection = (Connection) key.attachment();
+					try {
+						if (key.isReadable()) {
+							connection.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							connection.write();
+						}
+					} catch (IOException exception) {
+						// The client went away or broke the protocol, so drop the connection.
+						connection.close();
+					}
+				}
+			}
+			for (SelectionKey key : selector.keys()) {
+				if (key.attachment() instanceof Connection) {
+					((Connection) key.attachment()).close();
+				}
+			}
+			for (SocketChannel channel = newChannels.poll(); channel != null; channel = newChannels.poll()) {
+				closeQuietly(channel);
+			}
+			try {
+				selector.close();
+			} catch (IOException exception) {
+				// Nothing is left to clean up.
+			}
+		}
+
+		private void registerNewChannels() {
+			for (SocketChannel channel = newChannels.poll(); channel != null; channel = newChannels.poll()) {
+				try {
+					Connection connection = new Connection(channel);
+					connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+				} catch (IOException exception) {
+					closeQuietly(channel);
+				}
+			}
+		}
+	}
+
+	/** This class is the state of one connection: the bytes read that do not make a whole request yet, and the
+	 * 	responses not sent yet.
+	 */
+	private final class Connection {
+
+		private final SocketChannel channel;
+		private SelectionKey key;
+		// Both buffers are kept ready to be filled: input holds unread request bytes from 0 to its position,
+		// and output holds unsent response bytes from 0 to its position.
+		private ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+		private ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/** Method read reads what the client sent, answers the whole requests in it, and sends the responses.
+		 * @throws IOException if the connection fails, is closed by the client, or a request is too long
+		 */
+		void read() throws IOException {
+			if (channel.read(input) < 0) {
+				throw new IOException("the client closed the connection.");
+			}
+			answerRequests();
+			write();
+		}
+
+		/** Method answerRequests answers the whole requests in input in order until MAX_PENDING_OUTPUT bytes of
+		 * 	output are waiting. The rest stay in input and are answered once write has sent enough output.
+		 * @return boolean - true if at least one request was answered
+		 * @throws IOException if a request is too long
+		 */
+		private boolean answerRequests() throws IOException {
+			boolean isAnswered = false;
+			input.flip();
+			while (input.remaining() >= 4 && output.position() < MAX_PENDING_OUTPUT) {
+				int frameLength = input.getInt(input.position());
+				if (frameLength < 4 + 1 || frameLength > PhonebookProtocol.MAX_REQUEST_SIZE) {
+					throw new IOException("bad request length " + frameLength + ".");
+				}
+				if (input.remaining() < 4 + frameLength) {
+					if (input.capacity() < 4 + frameLength) {
+						input = ByteBuffer.allocate(4 + frameLength).put(input).flip();
+					}
+					break;
+				}
+				int frameEnd = input.position() + 4 + frameLength;
+				input.position(input.position() + 4);
+				int requestID = input.getInt();
+				try {
+					answer(this, requestID, input, frameLength - 4);
+				} catch (RuntimeException exception) {
+					writeError(requestID, "the search failed: " + exception);
+				}
+				input.position(frameEnd);
+				isAnswered = true;
+			}
+			input.compact();
+			return isAnswered;
+		}
+
+		/** Method write sends as much of the waiting output as the connection takes, answering requests left in
+		 * 	input as the output drains, and waits to be writable if some is left. Reading stops while too much
+		 * 	output is waiting.
+		 * @throws IOException if the connection fails or a request is too long
+		 */
+		void write() throws IOException {
+			do {
+				output.flip();
+				channel.write(output);
+				output.compact();
+			} while (output.position() < MAX_PENDING_OUTPUT && input.position() > 0 && answerRequests());
+			// Let go of a buffer grown for a very large response once it has been sent.
+			if (output.position() == 0 && output.capacity() > MAX_PENDING_OUTPUT) {
+				output = ByteBuffer.allocate(BUFFER_SIZE);
+			}
+			int interest = output.position() == 0 ? SelectionKey.OP_READ
+					: output.position() < MAX_PENDING_OUTPUT ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+					: SelectionKey.OP_WRITE;
+			if (key.interestOps() != interest) {
+				key.interestOps(interest);
+			}
+		}
+
+		void writePeople(int requestID, Person[] peopleFound) {
+			int frameLength = 4 + 1 + 4;
+			for (Person currentPerson : peopleFound) {
+				frameLength += PersonCodec.encodedSize(currentPerson);
+			}
+			ensureOutput(4 + frameLength);
+			output.putInt(frameLength);
+			output.putInt(requestID);
+			output.put(PhonebookProtocol.OK);
+			output.putInt(peopleFound.length);
+			for (Person currentPerson : peopleFound) {
+				PersonCodec.write(output, currentPerson);
+			}
+		}
+
+		void writeError(int requestID, String message) {
+			int frameLength = 4 + 1 + PersonCodec.stringSize(message);
+			ensureOutput(4 + frameLength);
+			output.putInt(frameLength);
+			output.putInt(requestID);
+			output.put(PhonebookProtocol.BAD_REQUEST);
+			PersonCodec.writeString(output, message);
+		}
+
+		void close() {
+			key.cancel();
+			closeQuietly(channel);
+		}
+
+		private void ensureOutput(int byteCount) {
+			if (output.remaining() < byteCount) {
+				ByteBuffer grownBuffer = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.position() + byteCount));
+				output.flip();
+				output = grownBuffer.put(output);
+			}
+		}
+	}
+
+	private static void closeQuietly(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException exception) {
+			// The connection is being dropped anyway.
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package phonebook;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/** This class is a point-in-time snapshot of a whole Phonebook in one binary file, so a restart reads the
+ * 	people in one pass instead of replaying every change in the PhonebookLog.
+ * 	The file is a 4 byte magic number, a 4 byte version, nextPersonID (8 bytes), the number of people (4 bytes),
+ * 	the phonebook name as a 2 byte length and UTF-8 bytes, then each Person as a 4 byte length and its
+ * 	PersonCodec bytes in PersonName order, and last a 4 byte CRC32 of everything before it.
+ * 	A snapshot is written to a temporary file, forced to the disk, and then moved over the old snapshot, so a
+ * 	crash while writing leaves the previous snapshot in place.
+ */
+public class PhonebookCheckpoint {
+
+	private static final int CHECKPOINT_MAGIC = 0x5042434B;
+	private static final int CHECKPOINT_VERSION = 1;
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final int MAX_RECORD_LENGTH = 1 << 20;
+
+	private final Path checkpointPath;
+
+	/** Constructor to use the snapshot file at checkpointPath. The file is not opened until write or load.
+	 * @param checkpointPath
+	 */
+	public PhonebookCheckpoint(Path checkpointPath) {
+		this.checkpointPath = checkpointPath;
+	}
+
+	/** Method getCheckpointPath returns the path of the snapshot file.
+	 * @return Path
+	 */
+	public Path getCheckpointPath() {
+		return checkpointPath;
+	}
+
+	/** Method write saves every person in sourcePhonebook and its nextPersonID, replacing any earlier snapshot.
+	 * 	The people are read from the shared sorted array of the phonebook, which is never changed once built.
+	 * 	A ConcurrentPhonebook is written from its current PhonebookSnapshot instead, so the people and the
+	 * 	nextPersonID are from the same version even while other threads make changes.
+	 * @param sourcePhonebook
+	 * @return int - the number of people written
+	 * @throws IOException if the snapshot cannot be written; the previous snapshot is left unchanged
+	 */
+	public int write(Phonebook sourcePhonebook) throws IOException {
+		if (sourcePhonebook instanceof ConcurrentPhonebook) {
+			return write(((ConcurrentPhonebook) sourcePhonebook).getSnapshot());
+		}
+		return write(sourcePhonebook.getPhonebookName(), sourcePhonebook.getPhonebookPersonArray(),
+				sourcePhonebook.getNextPersonID());
+	}
+
+	/** Method write saves every person in sourceSnapshot and the nextPersonID it carries, replacing any earlier
+	 * 	snapshot. The PhonebookSnapshot never changes, so it is written without any lock on the phonebook.
+	 * @param sourceSnapshot
+	 * @return int - the number of people written
+	 * @throws IOException if the snapshot cannot be written; the previous snapshot is left unchanged
+	 */
+	public int write(PhonebookSnapshot sourceSnapshot) throws IOException {
+		return write(sourceSnapshot.getPhonebookName(), sourceSnapshot.toArray(), sourceSnapshot.getNextPersonID());
+	}
+
+	private int write(String phonebookName, Person[] phonebookPersonArray, long nextPersonID) throws IOException {
+		Path temporaryPath = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+		CRC32 checksum = new CRC32();
+		ByteBuffer outputBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+		try (FileChannel outputChannel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			outputBuffer.putInt(CHECKPOINT_MAGIC);
+			outputBuffer.putInt(CHECKPOINT_VERSION);
+			outputBuffer.putLong(nextPersonID);
+			outputBuffer.putInt(phonebookPersonArray.length);
+			PersonCodec.writeString(outputBuffer, phonebookName);
+			for (Person currentPerson:phonebookPersonArray) {
+				int recordLength = PersonCodec.encodedSize(currentPerson);
+				if (outputBuffer.remaining() < 4 + recordLength) {
+					flushBuffer(outputChannel, outputBuffer, checksum);
+				}
+				outputBuffer.putInt(recordLength);
+				PersonCodec.write(outputBuffer, currentPerson);
+			}
+			flushBuffer(outputChannel, outputBuffer, checksum);
+			outputBuffer.putInt((int) checksum.getValue());
+			outputBuffer.flip();
+			while (outputBuffer.hasRemaining()) {
+				outputChannel.write(outputBuffer);
+			}
+			outputChannel.force(true);
+		}
+		Files.move(temporaryPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		return phonebookPersonArray.length;
+	}
+
+	/** Method load reads the snapshot into targetPhonebook, which should be empty, and sets its nextPersonID.
+	 * 	Nothing is added unless the whole file is read and its checksum matches.
+	 * @param targetPhonebook
+	 * @return int - the number of people loaded, or -1 if there is no snapshot file or it is not usable
+	 * @throws IOException if the file exists but cannot be read
+	 */
+	public int load(Phonebook targetPhonebook) throws IOException {
+		if (!Files.exists(checkpointPath)) {
+			return -1;
+		}
+		CRC32 checksum = new CRC32();
+		ByteBuffer inputBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+		inputBuffer.flip();
+		try (FileChannel inputChannel = FileChannel.open(checkpointPath, StandardOpenOption.READ)) {
+			if (!fillBuffer(inputChannel, inputBuffer, checksum, 20)) {
+				System.out.println("PhonebookCheckpoint.load - " + checkpointPath + " is too short.");
+				return -1;
+			}
+			if (inputBuffer.getInt() != CHECKPOINT_MAGIC || inputBuffer.getInt() != CHECKPOINT_VERSION) {
+				System.out.println("PhonebookCheckpoint.load - " + checkpointPath + " is not a phonebook snapshot.");
+				return -1;
+			}
+			long nextPersonID = inputBuffer.getLong();
+			int personCount = inputBuffer.getInt();
+			if (personCount < 0 || !fillBuffer(inputChannel, inputBuffer, checksum, 2)
+					|| !fillBuffer(inputChannel, inputBuffer, checksum, 2 + (inputBuffer.getShort(
+							inputBuffer.position()) & 0xFFFF))) {
+				System.out.println("PhonebookCheckpoint.load - " + checkpointPath + " is cut short.");
+				return -1;
+			}
+			PersonCodec.readString(inputBuffer);
+			Person[] loadedPeople = new Person[personCount];
+			for (int index = 0; index < personCount; index++) {
+				if (!fillBuffer(inputChannel, inputBuffer, checksum, 4)) {
+					System.out.println("PhonebookCheckpoint.load - " + checkpointPath + " is cut short.");
+					return -1;
+				}
+				int recordLength = inputBuffer.getInt();
+				if (recordLength < 24 || recordLength > MAX_RECORD_LENGTH
+						|| !fillBuffer(inputChannel, inputBuffer, checksum, recordLength)) {
+					System.out.println("PhonebookCheckpoint.load - " + checkpointPath + " is cut short or damaged.");
+					return -1;
+				}
+				int recordEnd = inputBuffer.position() + recordLength;
+				loadedPeople[index] = PersonCodec.read(inputBuffer);
+				inputBuffer.position(recordEnd);
+			}
+			// Everything before the trailer has been read, so add the rest of it to the checksum before comparing.
+			boolean hasTrailer = fillBuffer(inputChannel, inputBuffer, checksum, 4);
+			checksum.update(inputBuffer.array(), 0, inputBuffer.position());
+			if (!hasTrailer || inputBuffer.remaining() != 4 || (int) checksum.getValue() != inputBuffer.getInt()) {
+				System.out.println("PhonebookCheckpoint.load - the checksum of " + checkpointPath + " does not match.");
+				return -1;
+			}
+			targetPhonebook.loadCheckpointPeople(loadedPeople, nextPersonID);
+			return personCount;
+		}
+	}
+
+	/** Method flushBuffer writes what is in outputBuffer to the file, adds it to the checksum, and clears it.
+	 * @param outputChannel
+	 * @param outputBuffer
+	 * @param checksum
+	 * @throws IOException
+	 */
+	private static void flushBuffer(FileChannel outputChannel, ByteBuffer outputBuffer, CRC32 checksum)
+			throws IOException {
+		checksum.update(outputBuffer.array(), 0, outputBuffer.position());
+		outputBuffer.flip();
+		while (outputBuffer.hasRemaining()) {
+			outputChannel.write(outputBuffer);
+		}
+		outputBuffer.clear();
+	}
+
+	/** Method fillBuffer makes sure at least requiredCount bytes are left to read in inputBuffer, moving the
+	 * 	unread bytes to the front and reading more from the file when needed. The bytes already read are added
+	 * 	to the checksum before they are discarded.
+	 * @param inputChannel
+	 * @param inputBuffer
+	 * @param checksum
+	 * @param requiredCount
+	 * @return boolean - true if the bytes are available, false if the file ended first
+	 * @throws IOException
+	 */
+	private static boolean fillBuffer(FileChannel inputChannel, ByteBuffer inputBuffer, CRC32 checksum,
+			int requiredCount) throws IOException {
+		if (inputBuffer.remaining() >= requiredCount) {
+			return true;
+		}
+		checksum.update(inputBuffer.array(), 0, inputBuffer.position());
+		inputBuffer.compact();
+		while (inputBuffer.position() < requiredCount) {
+			if (inputChannel.read(inputBuffer) < 0) {
+				inputBuffer.flip();
+				return false;
+			}
+		}
+		inputBuffer.flip();
+		return true;
+	}
+}
@@ -0,0 +1,268 @@
+package phonebook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/** This class writes every person in a Phonebook, sorted by PersonName, to a Writer, OutputStream, or
+ * 	WritableByteChannel one Person at a time. Only one Person and one reusable buffer are held at a time,
+ * 	so exporting a directory of any size uses the same amount of memory. The formats are -
+ * 	HUMAN - the same text as Phonebook.toString: a summary line, then Person.toString for each person.
+ * 	CSV - one line per person in the format read by Person.parsePersonInputString and PhonebookImporter:
+ * 		Full Name, Street Number and Name, City, State, 5-Digit Zip Code, 10-Digit Phone Number
+ * 		It is a lossy format, not RFC 4180 CSV: the fields are not quoted, so the personID, street2, and zipPlus4
+ * 		are left out, and the importer trims spaces around each field. A person with a comma or a line break in
+ * 		a field is written as it is and cannot be read back; export counts and reports them. Use BINARY to keep
+ * 		every field.
+ * 	BINARY - a 4 byte magic number, a 4 byte version, and the number of people (4 bytes), then each Person as
+ * 		a 4 byte length and its PersonCodec bytes. Only for an OutputStream or channel.
+ * 	Text sent to an OutputStream or channel is UTF-8. The phonebook must not be changed during an export,
+ * 	unless the export is of a PhonebookSnapshot, which never changes.
+ */
+public class PhonebookExporter {
+
+	public enum Format {
+		HUMAN, CSV, BINARY
+	}
+
+	private static final int EXPORT_MAGIC = 0x50424558;
+	private static final int EXPORT_VERSION = 1;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Phonebook sourcePhonebook;
+	private final PhonebookSnapshot sourceSnapshot;
+	private final StringBuilder lineBuilder = new StringBuilder(256);
+	private final char[] charBuffer = new char[BUFFER_SIZE];
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	private ByteBuffer byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private int unreadableCount = 0;
+
+	/** Constructor to export sourcePhonebook.
+	 * @param sourcePhonebook
+	 */
+	public PhonebookExporter(Phonebook sourcePhonebook) {
+		this.sourcePhonebook = sourcePhonebook;
+		this.sourceSnapshot = null;
+	}
+
+	/** Constructor to export sourceSnapshot, for example the snapshot of a ConcurrentPhonebook that is still
+	 * 	being changed.
+	 * @param sourceSnapshot
+	 */
+	public PhonebookExporter(PhonebookSnapshot sourceSnapshot) {
+		this.sourcePhonebook = null;
+		this.sourceSnapshot = sourceSnapshot;
+	}
+
+	/** Method export writes the phonebook to outputWriter in the HUMAN or CSV format. The writer is flushed
+	 * 	but not closed.
+	 * @param outputWriter
+	 * @param format - HUMAN or CSV
+	 * @return int - the number of people written, or -1 if the format cannot be written to a Writer
+	 * @throws IOException if the writer fails
+	 */
+	public int export(Writer outputWriter, Format format) throws IOException {
+		if (format == Format.BINARY) {
+			System.out.println("export - the binary format needs an OutputStream or a channel.");
+			return -1;
+		}
+		int personCount = numberOfPeople();
+		int pendingCount = 0;
+		unreadableCount = 0;
+		for (int rank = -1; rank < personCount; rank++) {
+			lineBuilder.setLength(0);
+			appendLine(rank, personCount, format);
+			// Copy the line into the shared char buffer so the writer sees a few large writes.
+			int lineLength = lineBuilder.length();
+			if (pendingCount + lineLength > charBuffer.length) {
+				outputWriter.write(charBuffer, 0, pendingCount);
+				pendingCount = 0;
+			}
+			if (lineLength > charBuffer.length) {
+				outputWriter.append(lineBuilder);
+			} else {
+				lineBuilder.getChars(0, lineLength, charBuffer, pendingCount);
+				pendingCount += lineLength;
+			}
+		}
+		outputWriter.write(charBuffer, 0, pendingCount);
+		outputWriter.flush();
+		reportUnreadable();
+		return personCount;
+	}
+
+	/** Method export writes the phonebook to outputStream in any format. The stream is flushed but not closed.
+	 * @param outputStream
+	 * @param format
+	 * @return int - the number of people written
+	 * @throws IOException if the stream fails
+	 */
+	public int export(OutputStream outputStream, Format format) throws IOException {
+		int personCount = export(Channels.newChannel(outputStream), format);
+		outputStream.flush();
+		return personCount;
+	}
+
+	/** Method export writes the phonebook to outputChannel in any format. The channel is not closed.
+	 * @param outputChannel
+	 * @param format
+	 * @return int - the number of people written
+	 * @throws IOException if the channel fails
+	 */
+	public int export(WritableByteChannel outputChannel, Format format) throws IOException {
+		int personCount = numberOfPeople();
+		byteBuffer.clear();
+		if (format == Format.BINARY) {
+			byteBuffer.putInt(EXPORT_MAGIC);
+			byteBuffer.putInt(EXPORT_VERSION);
+			byteBuffer.putInt(personCount);
+			for (int rank = 0; rank < personCount; rank++) {
+				Person currentPerson = getPersonAtRank(rank);
+				int recordLength = PersonCodec.encodedSize(currentPerson);
+				if (byteBuffer.remaining() < 4 + recordLength) {
+					writeBuffer(outputChannel);
+					if (byteBuffer.capacity() < 4 + recordLength) {
+						byteBuffer = ByteBuffer.allocate(4 + recordLength);
+					}
+				}
+				byteBuffer.putInt(recordLength);
+				PersonCodec.write(byteBuffer, currentPerson);
+			}
+		} else {
+			unreadableCount = 0;
+			for (int rank = -1; rank < personCount; rank++) {
+				lineBuilder.setLength(0);
+				appendLine(rank, personCount, format);
+				encodeLine(outputChannel);
+			}
+			reportUnreadable();
+		}
+		writeBuffer(outputChannel);
+		return personCount;
+	}
+
+	/** Method reportUnreadable tells the user how many CSV lines of the last export cannot be imported again.
+	 */
+	private void reportUnreadable() {
+		if (unreadableCount > 0) {
+			System.out.println("export - " + unreadableCount + (unreadableCount == 1 ? " person has" : " people have")
+					+ " a comma or line break in a field, so their CSV lines cannot be imported again.");
+		}
+	}
+
+	/** Method appendLine puts the text line for the Person at rank into lineBuilder. Rank -1 is the summary
+	 * 	line of the HUMAN format, which the CSV format does not have. A CSV line has only the fields that
+	 * 	parsePersonInputString reads, unquoted, and is counted in unreadableCount if a field would split it.
+	 * @param rank
+	 * @param personCount
+	 * @param format
+	 */
+	private void appendLine(int rank, int personCount, Format format) {
+		if (rank < 0) {
+			if (format == Format.HUMAN) {
+				lineBuilder.append(getPhonebookName()).append(" has ").append(personCount);
+				lineBuilder.append(personCount == 1 ? " person:\n" : " total people:\n");
+			}
+			return;
+		}
+		Person currentPerson = getPersonAtRank(rank);
+		if (format == Format.HUMAN) {
+			lineBuilder.append(currentPerson.toString()).append('\n');
+			return;
+		}
+		int lineStart = lineBuilder.length();
+		lineBuilder.append(currentPerson.getPersonName()).append(", ");
+		lineBuilder.append(currentPerson.getAddressStreet1()).append(", ");
+		lineBuilder.append(currentPerson.getAddressCity()).append(", ");
+		lineBuilder.append(currentPerson.getAddressState()).append(", ");
+		appendPadded(currentPerson.getAddressZip(), 5);
+		lineBuilder.append(", ");
+		appendPadded(currentPerson.getPersonPhone(), 10);
+		if (!isReadableLine(lineStart)) {
+			unreadableCount++;
+		}
+		lineBuilder.append('\n');
+	}
+
+	/** Method isReadableLine checks that the CSV line from lineStart to the end of lineBuilder has exactly the
+	 * 	five commas that separate its six fields and no line break, so the importer reads the same fields back.
+	 * @param lineStart
+	 * @return boolean
+	 */
+	private boolean isReadableLine(int lineStart) {
+		int commaCount = 0;
+		for (int index = lineStart; index < lineBuilder.length(); index++) {
+			char character = lineBuilder.charAt(index);
+			if (character == ',') {
+				commaCount++;
+			} else if (character == '\n' || character == '\r') {
+				return false;
+			}
+		}
+		return commaCount == 5;
+	}
+
+	/** Method appendPadded appends number with leading zeros to make at least width digits.
+	 * @param number
+	 * @param width
+	 */
+	private void appendPadded(long number, int width) {
+		int start = lineBuilder.length();
+		lineBuilder.append(number);
+		while (lineBuilder.length() - start < width) {
+			lineBuilder.insert(start, '0');
+		}
+	}
+
+	/** Method encodeLine encodes lineBuilder as UTF-8 into the byte buffer, writing the buffer to the channel
+	 * 	whenever it fills.
+	 * @param outputChannel
+	 * @throws IOException
+	 */
+	private void encodeLine(WritableByteChannel outputChannel) throws IOException {
+		CharBuffer lineChars = CharBuffer.wrap(lineBuilder);
+		encoder.reset();
+		while (true) {
+			CoderResult coderResult = encoder.encode(lineChars, byteBuffer, true);
+			if (coderResult.isOverflow()) {
+				writeBuffer(outputChannel);
+			} else if (coderResult.isError()) {
+				// Replace characters that cannot be encoded, such as a lone surrogate, with a question mark.
+				lineChars.position(lineChars.position() + coderResult.length());
+				if (!byteBuffer.hasRemaining()) {
+					writeBuffer(outputChannel);
+				}
+				byteBuffer.put((byte) '?');
+			} else {
+				break;
+			}
+		}
+	}
+
+	private int numberOfPeople() {
+		return sourceSnapshot != null ? sourceSnapshot.numberOfPeople() : sourcePhonebook.numberOfPeople();
+	}
+
+	private Person getPersonAtRank(int rank) {
+		return sourceSnapshot != null ? sourceSnapshot.getPersonAtRank(rank) : sourcePhonebook.getPersonAtRank(rank);
+	}
+
+	private String getPhonebookName() {
+		return sourceSnapshot != null ? sourceSnapshot.getPhonebookName() : sourcePhonebook.getPhonebookName();
+	}
+
+	private void writeBuffer(WritableByteChannel outputChannel) throws IOException {
+		byteBuffer.flip();
+		while (byteBuffer.hasRemaining()) {
+			outputChannel.write(byteBuffer);
+		}
+		byteBuffer.clear();
+	}
+}
@@ -0,0 +1,267 @@
+package phonebook;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/** This class loads people into a Phonebook from a text file with one Person per line in the format read by
+ * 	Person.parsePersonInputString -
+ * 	Full Name, Street Number and Name, City, 2 Letter State Abbreviation, 5-Digit Zip Code, 10-Digit Phone Number
+ * 	The file is streamed, so it can be much larger than memory. A line ends at "\n", "\r", or "\r\n", as for
+ * 	BufferedReader.readLine, and ParallelPhonebookImporter cuts lines with the same rule. Each line is split on its commas with indexOf
+ * 	and checked with the same rules as parsePersonInputString and Person.isValidPerson, without printing to
+ * 	the console. Valid people are handed to the Phonebook in large batches, and each batch is merged into
+ * 	PersonName order in one pass. Rejected lines are written to a side file with their line number and reason.
+ */
+public class PhonebookImporter {
+
+	public static final int DEFAULT_BATCH_SIZE = 1 << 18;
+
+	private static final int READ_BUFFER_SIZE = 1 << 16;
+
+	private final Phonebook targetPhonebook;
+	private final int batchSize;
+	private final LineParser lineParser = new LineParser();
+	private long lineCount = 0;
+	private long importedCount = 0;
+	private long rejectedCount = 0;
+
+	/** Constructor to import into targetPhonebook with the default batch size.
+	 * @param targetPhonebook
+	 */
+	public PhonebookImporter(Phonebook targetPhonebook) {
+		this(targetPhonebook, DEFAULT_BATCH_SIZE);
+	}
+
+	/** Constructor to import into targetPhonebook, handing it batchSize people at a time.
+	 * @param targetPhonebook
+	 * @param batchSize
+	 */
+	public PhonebookImporter(Phonebook targetPhonebook, int batchSize) {
+		this.targetPhonebook = targetPhonebook;
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/** Method importFile adds every valid line of inputPath to the phonebook.
+	 * @param inputPath - the file to read, UTF-8
+	 * @param rejectPath - the file to write rejected lines to, or null to only count them.
+	 * 	The file is only created if a line is rejected.
+	 * @return long - the number of people added
+	 * @throws IOException if a file cannot be read or written
+	 */
+	public long importFile(Path inputPath, Path rejectPath) throws IOException {
+		BufferedWriter rejectWriter = null;
+		long importedBefore = importedCount;
+		try (BufferedReader inputReader = new BufferedReader(new InputStreamReader(Channels.newInputStream(
+				FileChannel.open(inputPath, StandardOpenOption.READ)), StandardCharsets.UTF_8), READ_BUFFER_SIZE)) {
+			Person[] batch = new Person[batchSize];
+			int batchCount = 0;
+			String line;
+			while ((line = inputReader.readLine()) != null) {
+				lineCount++;
+				Person newPerson = lineParser.parseLine(line);
+				if (newPerson == null) {
+					rejectedCount++;
+					if (rejectPath != null) {
+						if (rejectWriter == null) {
+							rejectWriter = Files.newBufferedWriter(rejectPath, StandardCharsets.UTF_8);
+						}
+						rejectWriter.write("Line " + lineCount + ": " + lineParser.getRejectReason() + ": " + line);
+						rejectWriter.newLine();
+					}
+					continue;
+				}
+				batch[batchCount] = newPerson;
+				batchCount++;
+				if (batchCount == batch.length) {
+					addBatch(batch, batchCount);
+					batch = new Person[batchSize];
+					batchCount = 0;
+				}
+			}
+			addBatch(batch, batchCount);
+		} finally {
+			if (rejectWriter != null) {
+				rejectWriter.close();
+			}
+		}
+		return importedCount - importedBefore;
+	}
+
+	/** Method getLineCount returns the number of lines read by this importer.
+	 * @return long
+	 */
+	public long getLineCount() {
+		return lineCount;
+	}
+
+	/** Method getImportedCount returns the number of people added by this importer.
+	 * @return long
+	 */
+	public long getImportedCount() {
+		return importedCount;
+	}
+
+	/** Method getRejectedCount returns the number of lines rejected by this importer.
+	 * @return long
+	 */
+	public long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	/** Method findLineBreak returns the position of the first line break in text at or after start, or -1 if
+	 * 	there is none. A line break is "\n", "\r", or "\r\n", the same as for BufferedReader.readLine.
+	 * @param text
+	 * @param start
+	 * @return int - the position of the "\n" or "\r"
+	 */
+	static int findLineBreak(String text, int start) {
+		for (int index = start; index < text.length(); index++) {
+			char character = text.charAt(index);
+			if (character == '\n' || character == '\r') {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/** Method afterLineBreak returns the position just after the line break that starts at lineBreak, taking
+	 * 	"\r\n" as one line break.
+	 * @param text
+	 * @param lineBreak - a position returned by findLineBreak
+	 * @return int
+	 */
+	static int afterLineBreak(String text, int lineBreak) {
+		if (text.charAt(lineBreak) == '\r' && lineBreak + 1 < text.length() && text.charAt(lineBreak + 1) == '\n') {
+			return lineBreak + 2;
+		}
+		return lineBreak + 1;
+	}
+
+	private void addBatch(Person[] batch, int batchCount) throws IOException {
+		if (batchCount == 0) {
+			return;
+		}
+		if (!targetPhonebook.addPeople(batch, batchCount)) {
+			throw new IOException("the phonebook log could not be written, so the import was stopped at line "
+					+ lineCount + ".");
+		}
+		importedCount += batchCount;
+	}
+
+	/** This class checks lines against the rules of parsePersonInputString and isValidPerson. It keeps the
+	 * 	fields of the current line and the reason for the last reject, so each thread needs its own LineParser.
+	 */
+	static class LineParser {
+
+		private final HashMap<String, Boolean> stateCheckCache = new HashMap<String, Boolean>();
+		private final String[] fields = new String[6];
+		private String rejectReason = null;
+
+		/** Method getRejectReason returns why the last line passed to parseLine was rejected.
+		 * @return String
+		 */
+		String getRejectReason() {
+			return rejectReason;
+		}
+
+		/** Method parseLine checks one line against the rules of parsePersonInputString and isValidPerson.
+		 * @param line
+		 * @return Person - the new Person without a personID, or null with rejectReason set if the line is not valid
+		 */
+		Person parseLine(String line) {
+			if (!splitFields(line)) {
+				rejectReason = "did not have 6 elements separated by commas";
+				return null;
+			}
+			String zipField = fields[4];
+			String phoneField = fields[5];
+			if (zipField.length() != 5 || phoneField.length() != 10 || !isDigits(zipField) || !isDigits(phoneField)) {
+				rejectReason = "zip code must be 5 digits and phone number 10 digits";
+				return null;
+			}
+			if (!isStateAbbreviation(fields[3])) {
+				rejectReason = "not a 2 letter state abbreviation";
+				return null;
+			}
+			if (fields[0].isEmpty()) {
+				rejectReason = "person has no name";
+				return null;
+			}
+			// setAddressStreet1 and setAddressCity leave the field blank if it is too short, which isValidPerson rejects.
+			if (fields[1].length() <= 3) {
+				rejectReason = "not enough letters for the street number and name";
+				return null;
+			}
+			if (fields[2].length() <= 1) {
+				rejectReason = "not enough letters for a city";
+				return null;
+			}
+			int zip = Integer.parseInt(zipField);
+			long phone = Long.parseLong(phoneField);
+			if (zip == 0 || phone == 0L) {
+				rejectReason = "zip code and phone number cannot be zero";
+				return null;
+			}
+			return new Person(0, fields[0], fields[1], "", fields[2], fields[3], zip, 0, phone);
+		}
+
+		/** Method splitFields puts the trimmed comma separated fields of line into fields. Like String.split,
+		 * 	empty fields at the end of the line are ignored.
+		 * @param line
+		 * @return boolean - true if the line has exactly 6 fields
+		 */
+		private boolean splitFields(String line) {
+			int end = line.length();
+			while (end > 0 && (line.charAt(end - 1) == ',' || Character.isWhitespace(line.charAt(end - 1)))) {
+				end--;
+			}
+			int fieldCount = 0;
+			int start = 0;
+			while (start <= end) {
+				int comma = line.indexOf(',', start);
+				if (comma < 0 || comma > end) {
+					comma = end;
+				}
+				if (fieldCount == fields.length) {
+					return false;
+				}
+				fields[fieldCount] = line.substring(start, comma).trim();
+				fieldCount++;
+				start = comma + 1;
+			}
+			return fieldCount == fields.length;
+		}
+
+		/** Method isStateAbbreviation checks state with Address.isStateAbbreviation, remembering the answer
+		 * 	since a large file only has a few different state values.
+		 * @param state
+		 * @return boolean
+		 */
+		private boolean isStateAbbreviation(String state) {
+			Boolean isState = stateCheckCache.get(state);
+			if (isState == null) {
+				isState = Address.isStateAbbreviation(state);
+				stateCheckCache.put(state, isState);
+			}
+			return isState;
+		}
+
+		private static boolean isDigits(String field) {
+			for (int index = 0; index < field.length(); index++) {
+				if (field.charAt(index) < '0' || field.charAt(index) > '9') {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
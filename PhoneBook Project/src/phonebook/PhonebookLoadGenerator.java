@@ -0,0 +1,249 @@
+package phonebook;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** This class measures how many phone lookups a PhonebookServer answers per second. Each connection is a
+ * 	thread that sends GET /people?phone=... for a random phone number on a kept alive connection, waits for
+ * 	the whole response, and sends the next, so the rate is limited by the server and not by queued requests.
+ * 	The first fifth of the run warms up the JIT and is not counted.
+ * 	Usage: PhonebookLoadGenerator [connections] [seconds] [people] [host port]
+ * 		connections - the number of connections, 64 by default
+ * 		seconds - how long to run, 10 by default
+ * 		people - the phone numbers asked for are FIRST_PHONE to FIRST_PHONE + people - 1, 100000 by default
+ * 		host port - the server to test. Without them a PhonebookServer is started on a free port of localhost
+ * 			with people generated people, one for each of those phone numbers.
+ */
+public class PhonebookLoadGenerator {
+
+	public static final long FIRST_PHONE = 2000000000L;
+
+	private static final int DEFAULT_CONNECTIONS = 64;
+	private static final int DEFAULT_SECONDS = 10;
+	private static final int DEFAULT_PEOPLE = 100000;
+	private static final int MAX_SAMPLES_PER_CONNECTION = 1 << 18;
+	private static final String[] FIRST_NAMES = {"Dan", "Miri", "Noah", "Brandon", "Micah", "Ava", "Liam", "Emma",
+			"Olivia", "Elijah", "Sophia", "James", "Mia", "Lucas", "Grace", "Henry"};
+	private static final String[] LAST_NAMES = {"Bradford", "Belle", "June", "Owners", "Noodles", "Mook", "Smith",
+			"Jones", "Garcia", "Miller", "Davis", "Wilson", "Moore", "Taylor", "Clark", "Lewis", "Young", "Allen"};
+	private static final String[] CITIES = {"O'Fallon", "Yorkville", "Maryville", "Belleville", "St. Louis",
+			"Springfield", "Chicago", "Peoria"};
+
+	public static void main(String[] args) {
+		int connectionCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CONNECTIONS;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+		int peopleCount = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PEOPLE;
+		PhonebookServer embeddedServer = null;
+		InetSocketAddress serverAddress;
+		try {
+			if (args.length > 4) {
+				serverAddress = new InetSocketAddress(args[3], Integer.parseInt(args[4]));
+			} else {
+				embeddedServer = new PhonebookServer(generatePhonebook(peopleCount), new InetSocketAddress("127.0.0.1", 0));
+				embeddedServer.start();
+				serverAddress = new InetSocketAddress("127.0.0.1", embeddedServer.getPort());
+				System.out.println("Started a PhonebookServer with " + peopleCount + " people on port "
+						+ embeddedServer.getPort() + (embeddedServer.usesVirtualThreads() ? ", one virtual thread per request."
+								: ", on a pool of platform threads."));
+			}
+		} catch (IOException exception) {
+			System.out.println("PhonebookLoadGenerator - could not start the server: " + exception.getMessage());
+			return;
+		}
+		LoadConnection[] connections = new LoadConnection[connectionCount];
+		Thread[] threads = new Thread[connectionCount];
+		long startTime = System.nanoTime();
+		long measureStart = startTime + seconds * 1_000_000_000L / 5;
+		long endTime = startTime + seconds * 1_000_000_000L;
+		for (int index = 0; index < connectionCount; index++) {
+			connections[index] = new LoadConnection(serverAddress, peopleCount, measureStart, endTime);
+			threads[index] = new Thread(connections[index], "load-" + index);
+			threads[index].start();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		if (embeddedServer != null) {
+			embeddedServer.stop(0);
+		}
+		printResults(connections, endTime - measureStart);
+	}
+
+	/** Method generatePhonebook builds a ConcurrentPhonebook of peopleCount people whose phone numbers are
+	 * 	FIRST_PHONE to FIRST_PHONE + peopleCount - 1.
+	 * @param peopleCount
+	 * @return Phonebook
+	 */
+	static Phonebook generatePhonebook(int peopleCount) {
+		Person[] people = new Person[peopleCount];
+		for (int index = 0; index < peopleCount; index++) {
+			people[index] = new Person(FIRST_NAMES[index % FIRST_NAMES.length] + " "
+					+ LAST_NAMES[(index / FIRST_NAMES.length) % LAST_NAMES.length], (100 + index % 9900) + " Main St",
+					"", CITIES[index % CITIES.length], index % 3 == 0 ? "MO" : "IL", 62000 + index % 1000, 0,
+					FIRST_PHONE + index);
+		}
+		Phonebook phonebook = new ConcurrentPhonebook("Load Test Phonebook");
+		phonebook.addPeople(people, peopleCount);
+		return phonebook;
+	}
+
+	/** Method printResults prints the requests per second and latency percentiles of the measured part of the run.
+	 * @param connections
+	 * @param measuredNanos
+	 */
+	private static void printResults(LoadConnection[] connections, long measuredNanos) {
+		long requestCount = 0;
+		long errorCount = 0;
+		int sampleCount = 0;
+		for (LoadConnection connection : connections) {
+			requestCount += connection.requestCount;
+			errorCount += connection.errorCount;
+			sampleCount += connection.sampleCount;
+		}
+		long[] latencies = new long[sampleCount];
+		int position = 0;
+		for (LoadConnection connection : connections) {
+			System.arraycopy(connection.latencies, 0, latencies, position, connection.sampleCount);
+			position += connection.sampleCount;
+		}
+		Arrays.sort(latencies);
+		System.out.println(connections.length + " connections, " + requestCount + " requests in "
+				+ measuredNanos / 1_000_000 + " ms, " + errorCount + " errors");
+		System.out.printf("%.0f requests per second%n", requestCount * 1e9 / measuredNanos);
+		if (sampleCount > 0) {
+			System.out.printf("latency ms: p50 %.3f  p99 %.3f  p99.9 %.3f  max %.3f%n", percentile(latencies, 0.50),
+					percentile(latencies, 0.99), percentile(latencies, 0.999), latencies[sampleCount - 1] / 1e6);
+		}
+	}
+
+	private static double percentile(long[] sortedLatencies, double fraction) {
+		return sortedLatencies[(int) Math.min(sortedLatencies.length - 1, sortedLatencies.length * fraction)] / 1e6;
+	}
+
+	/** This class is one kept alive connection sending a request, reading the whole response, and repeating.
+	 */
+	private static final class LoadConnection implements Runnable {
+
+		private final InetSocketAddress serverAddress;
+		private final int peopleCount;
+		private final long measureStart;
+		private final long endTime;
+		private final long[] latencies = new long[MAX_SAMPLES_PER_CONNECTION];
+		private int sampleCount = 0;
+		private long requestCount = 0;
+		private long errorCount = 0;
+		private final byte[] lineBuffer = new byte[8192];
+
+		LoadConnection(InetSocketAddress serverAddress, int peopleCount, long measureStart, long endTime) {
+			this.serverAddress = serverAddress;
+			this.peopleCount = peopleCount;
+			this.measureStart = measureStart;
+			this.endTime = endTime;
+		}
+
+		@Override
+		public void run() {
+			String hostHeader = "\r\nHost: " + serverAddress.getHostString() + ":" + serverAddress.getPort() + "\r\n\r\n";
+			while (System.nanoTime() < endTime) {
+				try (Socket socket = new Socket(serverAddress.getAddress(), serverAddress.getPort())) {
+					socket.setTcpNoDelay(true);
+					OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+					InputStream input = new BufferedInputStream(socket.getInputStream());
+					long now;
+					while ((now = System.nanoTime()) < endTime) {
+						long phone = FIRST_PHONE + ThreadLocalRandom.current().nextInt(peopleCount);
+						output.write(("GET /people?phone=" + phone + " HTTP/1.1" + hostHeader).getBytes(StandardCharsets.US_ASCII));
+						output.flush();
+						boolean isOk = readResponse(input);
+						long finished = System.nanoTime();
+						if (now >= measureStart) {
+							requestCount++;
+							if (!isOk) {
+								errorCount++;
+							}
+							if (sampleCount < latencies.length) {
+								latencies[sampleCount++] = finished - now;
+							}
+						}
+					}
+				} catch (IOException exception) {
+					// The server closed the connection, so count it and open another.
+					if (System.nanoTime() >= measureStart) {
+						errorCount++;
+					}
+				}
+			}
+		}
+
+		/** Method readResponse reads one response to its end.
+		 * @param input
+		 * @return boolean - true if the status is 200
+		 * @throws IOException if the connection fails or closes
+		 */
+		private boolean readResponse(InputStream input) throws IOException {
+			String statusLine = readLine(input);
+			boolean isOk = statusLine.startsWith("HTTP/1.1 200");
+			long contentLength = -1;
+			boolean isChunked = false;
+			for (String header = readLine(input); !header.isEmpty(); header = readLine(input)) {
+				String lowerHeader = header.toLowerCase();
+				if (lowerHeader.startsWith("content-length:")) {
+					contentLength = Long.parseLong(lowerHeader.substring(15).trim());
+				} else if (lowerHeader.startsWith("transfer-encoding:") && lowerHeader.contains("chunked")) {
+					isChunked = true;
+				}
+			}
+			if (isChunked) {
+				for (long chunkLength = Long.parseLong(readLine(input).trim(), 16); chunkLength > 0;
+						chunkLength = Long.parseLong(readLine(input).trim(), 16)) {
+					skipFully(input, chunkLength);
+					readLine(input);
+				}
+				readLine(input);
+			} else if (contentLength > 0) {
+				skipFully(input, contentLength);
+			}
+			return isOk;
+		}
+
+		private String readLine(InputStream input) throws IOException {
+			int length = 0;
+			for (int nextByte = input.read(); nextByte != '\n'; nextByte = input.read()) {
+				if (nextByte < 0) {
+					throw new EOFException("the server closed the connection.");
+				}
+				if (nextByte != '\r' && length < lineBuffer.length) {
+					lineBuffer[length++] = (byte) nextByte;
+				}
+			}
+			return new String(lineBuffer, 0, length, StandardCharsets.US_ASCII);
+		}
+
+		private static void skipFully(InputStream input, long byteCount) throws IOException {
+			while (byteCount > 0) {
+				long skipped = input.skip(byteCount);
+				if (skipped <= 0) {
+					if (input.read() < 0) {
+						throw new EOFException("the server closed the connection.");
+					}
+					skipped = 1;
+				}
+				byteCount -= skipped;
+			}
+		}
+	}
+}
@@ -0,0 +1,550 @@
+package phonebook;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/** This class is the write-ahead log of a Phonebook. Every successful add, update, and delete is appended to the
+ * 	log file as a binary entry before the Phonebook changes, and replay applies the entries again after a restart.
+ * 	Each entry is a 4 byte length, a 1 byte entry type, the entry data, and a 4 byte CRC32 of the type and data.
+ * 	Add and update entries hold the Person in PersonCodec format; delete entries hold the personID.
+ * 	The SyncPolicy decides when entries are forced to the disk -
+ * 	EVERY_WRITE - each write forces the log before it returns, unless a force that started after its entry
+ * 		was written already covered it. Nothing acknowledged is lost, but each write waits for the disk.
+ * 	GROUP_COMMIT - a background thread forces every groupCommitMillis, so many entries share one force.
+ * 		Each write waits for the next force to cover it, up to groupCommitMillis, so nothing acknowledged is
+ * 		lost.
+ * 	OPERATING_SYSTEM - never force; the operating system writes the entries back when it chooses.
+ * 	Writes only share a force if they wait for it without holding anything that keeps the next write from
+ * 	being appended. The Phonebook appends with append or appendAll and then waits in awaitForce, which
+ * 	ConcurrentPhonebook does after its write lock is released, so the writes of many threads share a force.
+ * 	If the last entry was cut short by a crash, replay stops before it and the log continues from there.
+ */
+public class PhonebookLog implements AutoCloseable {
+
+	public enum SyncPolicy {
+		EVERY_WRITE, GROUP_COMMIT, OPERATING_SYSTEM
+	}
+
+	static final byte ADD_ENTRY = 1;
+	static final byte UPDATE_ENTRY = 2;
+	static final byte DELETE_ENTRY = 3;
+
+	private static final int MAX_ENTRY_LENGTH = 1 << 20;
+	private static final int BATCH_BUFFER_SIZE = 1 << 20;
+	private static final int REPLAY_BATCH_SIZE = 1 << 16;
+
+	private final Path logPath;
+	private final SyncPolicy syncPolicy;
+	// Only replaced by truncateBefore, holding the log and forceLock.
+	private FileChannel logChannel;
+	private final CRC32 checksum = new CRC32();
+	private ByteBuffer entryBuffer = ByteBuffer.allocate(1024);
+	private ScheduledExecutorService groupCommitter = null;
+	private long entryCount = 0;
+	// Each write gets the next sequence number once its bytes are written, and waits until forcedSequence
+	// reaches it. The counters are guarded by forceMonitor, not by the log, and only the holder of forceLock
+	// forces the file, so appends go on during a force.
+	private final Object forceMonitor = new Object();
+	private final Object forceLock = new Object();
+	private long writtenSequence = 0;
+	private long forcedSequence = 0;
+	private long failedSequence = 0;
+	private long forceCount = 0;
+
+	/** Constructor to open or create the log file at logPath, forcing writes according to syncPolicy.
+	 * 	Call replay before appending so the log position is after the last good entry.
+	 * @param logPath
+	 * @param syncPolicy
+	 * @param groupCommitMillis - how often GROUP_COMMIT forces the log, ignored by the other policies
+	 * @throws IOException if the file cannot be opened
+	 */
+	public PhonebookLog(Path logPath, SyncPolicy syncPolicy, long groupCommitMillis) throws IOException {
+		this.logPath = logPath;
+		this.syncPolicy = syncPolicy;
+		this.logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.logChannel.position(this.logChannel.size());
+		if (syncPolicy == SyncPolicy.GROUP_COMMIT) {
+			groupCommitter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "PhonebookLog group commit");
+				thread.setDaemon(true);
+				return thread;
+			});
+			groupCommitter.scheduleAtFixedRate(this::forceIfNeeded, groupCommitMillis, groupCommitMillis,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/** Method logAdd appends an entry for a new Person, which already has its personID.
+	 * @param newPerson
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void logAdd(Person newPerson) throws IOException {
+		awaitForce(append(ADD_ENTRY, newPerson));
+	}
+
+	/** Method logAddAll appends an entry for each of the first count new people, which already have their
+	 * 	personIDs, and forces them to the disk together instead of once per entry.
+	 * @param newPeople
+	 * @param count
+	 * @throws IOException if the entries cannot be written
+	 */
+	public void logAddAll(Person[] newPeople, int count) throws IOException {
+		logAll(ADD_ENTRY, newPeople, count);
+	}
+
+	/** Method logAll appends an entry of entryType for each of the first count people and forces them to the
+	 * 	disk together instead of once per entry. A DELETE_ENTRY records only the personID of the Person.
+	 * @param entryType - ADD_ENTRY, UPDATE_ENTRY, or DELETE_ENTRY
+	 * @param changedPeople - the new people, the updated people, or the people being deleted
+	 * @param count
+	 * @throws IOException if the entries cannot be written
+	 */
+	void logAll(byte entryType, Person[] changedPeople, int count) throws IOException {
+		awaitForce(appendAll(entryType, changedPeople, count));
+	}
+
+	/** Method appendAll writes the entries of logAll without waiting for them to be forced.
+	 * @param entryType
+	 * @param changedPeople
+	 * @param count
+	 * @return long - the sequence number to pass to awaitForce
+	 * @throws IOException if the entries cannot be written
+	 */
+	synchronized long appendAll(byte entryType, Person[] changedPeople, int count) throws IOException {
+		// Pack many entries into one buffer so the batch takes a few large writes.
+		ByteBuffer batchBuffer = ByteBuffer.allocate(BATCH_BUFFER_SIZE);
+		for (int index = 0; index < count; index++) {
+			int dataLength = entryType == DELETE_ENTRY ? 8 : PersonCodec.encodedSize(changedPeople[index]);
+			if (batchBuffer.remaining() < 4 + 1 + dataLength + 4) {
+				writeBuffer(batchBuffer);
+				if (batchBuffer.capacity() < 4 + 1 + dataLength + 4) {
+					batchBuffer = ByteBuffer.allocate(4 + 1 + dataLength + 4);
+				}
+			}
+			int entryStart = batchBuffer.position();
+			batchBuffer.putInt(1 + dataLength);
+			batchBuffer.put(entryType);
+			if (entryType == DELETE_ENTRY) {
+				batchBuffer.putLong(changedPeople[index].getPersonID());
+			} else {
+				PersonCodec.write(batchBuffer, changedPeople[index]);
+			}
+			checksum.reset();
+			checksum.update(batchBuffer.array(), entryStart + 4, 1 + dataLength);
+			batchBuffer.putInt((int) checksum.getValue());
+			entryCount++;
+		}
+		writeBuffer(batchBuffer);
+		return nextSequence();
+	}
+
+	/** Method logUpdate appends an entry holding the new data of an existing Person.
+	 * @param updatedPerson
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void logUpdate(Person updatedPerson) throws IOException {
+		awaitForce(append(UPDATE_ENTRY, updatedPerson));
+	}
+
+	/** Method logDelete appends an entry for the deletion of personID.
+	 * @param personID
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void logDelete(long personID) throws IOException {
+		awaitForce(appendDelete(personID));
+	}
+
+	/** Method replay reads every good entry from the start of the log and applies it to targetPhonebook without
+	 * 	logging it again. A torn or corrupt entry at the end is cut off so new entries follow the last good one.
+	 * @param targetPhonebook
+	 * @return long - the number of entries applied
+	 * @throws IOException if the file cannot be read
+	 */
+	public synchronized long replay(Phonebook targetPhonebook) throws IOException {
+		long goodPosition = 0;
+		long appliedCount = 0;
+		logChannel.position(0);
+		DataInputStream logInput = new DataInputStream(new BufferedInputStream(Channels.newInputStream(logChannel),
+				1 << 16));
+		CRC32 replayChecksum = new CRC32();
+		// Runs of adds, such as those written by an import, are applied together in one merge.
+		Person[] pendingAdds = new Person[REPLAY_BATCH_SIZE];
+		int pendingAddCount = 0;
+		while (true) {
+			byte[] entryBytes;
+			int storedChecksum;
+			try {
+				int entryLength = logInput.readInt();
+				if (entryLength < 1 || entryLength > MAX_ENTRY_LENGTH) {
+					break;
+				}
+				entryBytes = new byte[entryLength];
+				logInput.readFully(entryBytes);
+				storedChecksum = logInput.readInt();
+			} catch (EOFException exception) {
+				break;
+			}
+			replayChecksum.reset();
+			replayChecksum.update(entryBytes);
+			if ((int) replayChecksum.getValue() != storedChecksum) {
+				break;
+			}
+			ByteBuffer entry = ByteBuffer.wrap(entryBytes);
+			if (entry.get(0) == ADD_ENTRY) {
+				entry.get();
+				pendingAdds[pendingAddCount] = PersonCodec.read(entry);
+				pendingAddCount++;
+			}
+			if (pendingAddCount > 0 && (entry.get(0) != ADD_ENTRY || pendingAddCount == pendingAdds.length)) {
+				targetPhonebook.applyLoggedAdds(pendingAdds, pendingAddCount);
+				pendingAddCount = 0;
+			}
+			if (entry.get(0) != ADD_ENTRY) {
+				applyEntry(targetPhonebook, entry);
+			}
+			goodPosition += 8 + entryBytes.length;
+			appliedCount++;
+		}
+		if (pendingAddCount > 0) {
+			targetPhonebook.applyLoggedAdds(pendingAdds, pendingAddCount);
+		}
+		if (goodPosition < logChannel.size()) {
+			System.out.println("PhonebookLog.replay - discarding " + (logChannel.size() - goodPosition)
+					+ " bytes of incomplete entries at the end of " + logPath);
+			logChannel.truncate(goodPosition);
+		}
+		logChannel.position(goodPosition);
+		entryCount = appliedCount;
+		return appliedCount;
+	}
+
+	/** Method truncate discards every entry once a PhonebookCheckpoint holding their changes has been written,
+	 * 	so the log only holds the changes made since the last snapshot.
+	 * @throws IOException if the file cannot be truncated
+	 */
+	public synchronized void truncate() throws IOException {
+		logChannel.truncate(0);
+		logChannel.position(0);
+		if (syncPolicy != SyncPolicy.OPERATING_SYSTEM) {
+			logChannel.force(false);
+		}
+		markForced(true);
+		entryCount = 0;
+	}
+
+	/** Method mark returns the end of the log as it is now. A phonebook that keeps changing while a snapshot is
+	 * 	written takes a mark holding the lock it makes changes under, together with the snapshot, and passes it
+	 * 	to truncateBefore once the snapshot is on the disk.
+	 * @return Mark
+	 * @throws IOException if the log position cannot be read
+	 */
+	public synchronized Mark mark() throws IOException {
+		return new Mark(logChannel.position(), entryCount);
+	}
+
+	/** Method truncateBefore discards the entries before mark once a PhonebookCheckpoint holding their changes
+	 * 	has been written, and keeps the entries appended since. The kept entries are copied to a new file, which
+	 * 	is forced and then moved over the log, so a crash part way leaves the whole old log, whose first entries
+	 * 	replay over the snapshot as they do when a crash comes between writing a snapshot and truncate.
+	 * @param mark - from mark, taken with the snapshot
+	 * @throws IOException if the kept entries cannot be copied; the log is then left whole
+	 */
+	public synchronized void truncateBefore(Mark mark) throws IOException {
+		long keptLength = logChannel.size() - mark.position;
+		if (keptLength == 0) {
+			truncate();
+			return;
+		}
+		synchronized (forceLock) {
+			Path temporaryPath = logPath.resolveSibling(logPath.getFileName() + ".tmp");
+			try (FileChannel keptChannel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				long copiedLength = 0;
+				while (copiedLength < keptLength) {
+					copiedLength += logChannel.transferTo(mark.position + copiedLength, keptLength - copiedLength,
+							keptChannel);
+				}
+				keptChannel.force(false);
+			}
+			logChannel.close();
+			try {
+				Files.move(temporaryPath, logPath, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				logChannel = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				logChannel.position(logChannel.size());
+			}
+			// The kept entries were forced with the new file, and the others are in the snapshot.
+			markForced(true);
+			entryCount -= mark.entryCount;
+		}
+	}
+
+	/** Method entryCount returns the number of entries in the log.
+	 * @return long
+	 */
+	public synchronized long entryCount() {
+		return entryCount;
+	}
+
+	/** Method forceCount returns the number of times a write waiting in awaitForce had the log forced, so a
+	 * 	check can see how many writes shared each force.
+	 * @return long
+	 */
+	long forceCount() {
+		synchronized (forceMonitor) {
+			return forceCount;
+		}
+	}
+
+	/** Method getLogPath returns the path of the log file.
+	 * @return Path
+	 */
+	public Path getLogPath() {
+		return logPath;
+	}
+
+	/** Method close forces any remaining entries to the disk and closes the log file. Writes still waiting
+	 * 	for a group commit are released, or fail if the force fails.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (groupCommitter != null) {
+			groupCommitter.shutdown();
+		}
+		synchronized (forceLock) {
+			try {
+				if (syncPolicy != SyncPolicy.OPERATING_SYSTEM) {
+					logChannel.force(false);
+				}
+				markForced(true);
+			} catch (IOException exception) {
+				markForced(false);
+				throw exception;
+			} finally {
+				logChannel.close();
+			}
+		}
+	}
+
+	/** Method append writes an ADD_ENTRY or UPDATE_ENTRY holding currentPerson without waiting for it to be
+	 * 	forced.
+	 * @param entryType
+	 * @param currentPerson
+	 * @return long - the sequence number to pass to awaitForce
+	 * @throws IOException if the entry cannot be written
+	 */
+	synchronized long append(byte entryType, Person currentPerson) throws IOException {
+		prepareEntry(entryType, PersonCodec.encodedSize(currentPerson));
+		PersonCodec.write(entryBuffer, currentPerson);
+		return finishEntry();
+	}
+
+	/** Method appendDelete writes a DELETE_ENTRY for personID without waiting for it to be forced.
+	 * @param personID
+	 * @return long - the sequence number to pass to awaitForce
+	 * @throws IOException if the entry cannot be written
+	 */
+	synchronized long appendDelete(long personID) throws IOException {
+		prepareEntry(DELETE_ENTRY, 8);
+		entryBuffer.putLong(personID);
+		return finishEntry();
+	}
+
+	/** Method prepareEntry clears the entry buffer, making sure it can hold the entry, and writes the length
+	 * 	and the entry type.
+	 * @param entryType
+	 * @param dataLength
+	 */
+	private void prepareEntry(byte entryType, int dataLength) {
+		int requiredLength = 4 + 1 + dataLength + 4;
+		if (requiredLength > entryBuffer.capacity()) {
+			entryBuffer = ByteBuffer.allocate(Math.max(requiredLength, entryBuffer.capacity() * 2));
+		}
+		entryBuffer.clear();
+		entryBuffer.putInt(1 + dataLength);
+		entryBuffer.put(entryType);
+	}
+
+	/** Method finishEntry adds the checksum and writes the entry to the log.
+	 * @return long - the sequence number of the entry
+	 * @throws IOException
+	 */
+	private long finishEntry() throws IOException {
+		checksum.reset();
+		checksum.update(entryBuffer.array(), 4, entryBuffer.position() - 4);
+		entryBuffer.putInt((int) checksum.getValue());
+		writeBuffer(entryBuffer);
+		entryCount++;
+		return nextSequence();
+	}
+
+	/** Method writeBuffer writes everything put in buffer to the log and clears it.
+	 * @param buffer
+	 * @throws IOException
+	 */
+	private void writeBuffer(ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			logChannel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/** Method nextSequence numbers the entries just written, or returns 0 under OPERATING_SYSTEM, where no
+	 * 	write waits for a force.
+	 * @return long
+	 */
+	private long nextSequence() {
+		if (syncPolicy == SyncPolicy.OPERATING_SYSTEM) {
+			return 0;
+		}
+		synchronized (forceMonitor) {
+			writtenSequence++;
+			return writtenSequence;
+		}
+	}
+
+	/** Method awaitForce waits until the write with sequence is forced to the disk: under EVERY_WRITE by
+	 * 	forcing the log unless another write already did, and under GROUP_COMMIT by waiting for the group
+	 * 	commit thread. Call it without holding anything that keeps other writes from being appended, so they
+	 * 	can join the same force.
+	 * @param sequence - from append, appendDelete, or appendAll, 0 if there is nothing to wait for
+	 * @throws IOException if the force covering the write failed, or the wait was interrupted
+	 */
+	void awaitForce(long sequence) throws IOException {
+		if (sequence == 0) {
+			return;
+		}
+		if (syncPolicy == SyncPolicy.EVERY_WRITE) {
+			forceThrough(sequence);
+			return;
+		}
+		synchronized (forceMonitor) {
+			while (forcedSequence < sequence) {
+				if (failedSequence >= sequence) {
+					throw new IOException("the group commit could not force the entry to the disk.");
+				}
+				try {
+					forceMonitor.wait();
+				} catch (InterruptedException exception) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("interrupted before the entry was forced to the disk.");
+				}
+			}
+		}
+	}
+
+	/** Method forceThrough forces the log for an EVERY_WRITE write with sequence. Writes that wait here while
+	 * 	another write forces are often covered by that force, and the first of them to get forceLock forces
+	 * 	once for the rest.
+	 * @param sequence
+	 * @throws IOException if the log cannot be forced
+	 */
+	private void forceThrough(long sequence) throws IOException {
+		synchronized (forceLock) {
+			long lastSequence;
+			synchronized (forceMonitor) {
+				if (forcedSequence >= sequence) {
+					return;
+				}
+				lastSequence = writtenSequence;
+			}
+			logChannel.force(false);
+			synchronized (forceMonitor) {
+				forcedSequence = Math.max(forcedSequence, lastSequence);
+				forceCount++;
+			}
+		}
+	}
+
+	/** Method forceIfNeeded is run by the group commit thread to force everything written since the last run
+	 * 	and release the writes waiting for it.
+	 */
+	private void forceIfNeeded() {
+		synchronized (forceLock) {
+			long sequence;
+			synchronized (forceMonitor) {
+				sequence = writtenSequence;
+				if (sequence == forcedSequence) {
+					return;
+				}
+			}
+			try {
+				logChannel.force(false);
+			} catch (IOException exception) {
+				System.out.println("PhonebookLog - group commit failed: " + exception.getMessage());
+				synchronized (forceMonitor) {
+					failedSequence = Math.max(failedSequence, sequence);
+					forceMonitor.notifyAll();
+				}
+				return;
+			}
+			synchronized (forceMonitor) {
+				forcedSequence = Math.max(forcedSequence, sequence);
+				forceCount++;
+				forceMonitor.notifyAll();
+			}
+		}
+	}
+
+	/** Method markForced releases every write waiting for a group commit once the log is forced, truncated,
+	 * 	or closed, or fails them if that force failed.
+	 * @param isForced
+	 */
+	private void markForced(boolean isForced) {
+		synchronized (forceMonitor) {
+			if (isForced) {
+				forcedSequence = writtenSequence;
+			} else {
+				failedSequence = writtenSequence;
+			}
+			forceMonitor.notifyAll();
+		}
+	}
+
+	/** This class is a point in the log returned by mark: its length in bytes and in entries at the time.
+	 */
+	public static final class Mark {
+
+		private final long position;
+		private final long entryCount;
+
+		private Mark(long position, long entryCount) {
+			this.position = position;
+			this.entryCount = entryCount;
+		}
+	}
+
+	private static void applyEntry(Phonebook targetPhonebook, ByteBuffer entry) {
+		byte entryType = entry.get();
+		switch (entryType) {
+		case ADD_ENTRY:
+			targetPhonebook.applyLoggedAdd(PersonCodec.read(entry));
+			break;
+		case UPDATE_ENTRY:
+			targetPhonebook.applyLoggedUpdate(PersonCodec.read(entry));
+			break;
+		case DELETE_ENTRY:
+			targetPhonebook.applyLoggedDelete(entry.getLong());
+			break;
+		default:
+			System.out.println("PhonebookLog.replay - skipping unknown entry type " + entryType);
+		}
+	}
+}
@@ -1,7 +1,22 @@
 package phonebook;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 public class PhonebookMain {
 
+	private static final String PHONEBOOK_LOG_FILE = "phonebook.log";
+	private static final String PHONEBOOK_CHECKPOINT_FILE = "phonebook.snapshot";
+	private static final long LOG_ENTRIES_PER_CHECKPOINT = 10000;
+
+	/** Method main runs the phonebook at the console. With the arguments --serve [port] it also serves searches
+	 * 	over HTTP with a PhonebookServer, on DEFAULT_PORT if no port is given, until the user exits. Served
+	 * 	searches repeat often, so they go through a QueryCache, whose statistics are shown on exit.
+	 * @param args
+	 */
 	public static void main(String[] args) {
 		/* Phonebook: Write a program to simulate the actions of a phone book. 
 		 * Your program should be able to :
@@ -21,9 +36,27 @@ public class PhonebookMain {
 				
 		boolean userExit = false;
 		String phonebookName = "Bradford Virtual Phonebook";
-		// The user wants to access the phonebook, so create one
-		Phonebook ourPhonebook = new Phonebook(phonebookName);
-		ourPhonebook = setDefaultPeople(ourPhonebook);
+		boolean serveRequests = args.length > 0 && "--serve".equals(args[0]);
+		// The user wants to access the phonebook, so create one. Requests are served on other threads while
+		// the user makes changes, so a served phonebook must be a ConcurrentPhonebook.
+		Phonebook ourPhonebook = serveRequests ? new ConcurrentPhonebook(phonebookName) : new Phonebook(phonebookName);
+		// Restore the people saved by earlier runs from the last snapshot and the changes logged after it.
+		// Only start with the default people the first time.
+		PhonebookCheckpoint phonebookCheckpoint = new PhonebookCheckpoint(Paths.get(PHONEBOOK_CHECKPOINT_FILE));
+		int checkpointCount = loadPhonebookCheckpoint(ourPhonebook, phonebookCheckpoint);
+		PhonebookLog phonebookLog = openPhonebookLog(ourPhonebook, Paths.get(PHONEBOOK_LOG_FILE));
+		if (checkpointCount < 0 && (phonebookLog == null || phonebookLog.entryCount() == 0)) {
+			ourPhonebook = setDefaultPeople(ourPhonebook);
+		}
+		if (phonebookLog != null) {
+			ourPhonebook.setPhonebookCheckpoint(phonebookCheckpoint, LOG_ENTRIES_PER_CHECKPOINT);
+		}
+		PhonebookServer phonebookServer = null;
+		if (serveRequests) {
+			ourPhonebook.setQueryCache(new QueryCache());
+			phonebookServer = startPhonebookServer(ourPhonebook,
+					args.length > 1 ? Integer.parseInt(args[1]) : PhonebookServer.DEFAULT_PORT);
+		}
 		while (!userExit) {
 			// Use getInputChoice to display the main menu and have the user choose an option.
 			Integer userInputInt = ConsoleInput.getInputChoice("__________________________________________\n"
@@ -33,7 +66,8 @@ public class PhonebookMain {
 					+ "2. Search for a person and display their information.\n"
 					+ "3. Search for a person and update their information.\n"
 					+ "4. Search for a person and delete their information.\n"
-					+ "5. Show all people in the phonebook.", 5);
+					+ "5. Show all people in the phonebook.\n"
+					+ "6. Import people from a file.", 6);
 			
 			// If null is returned, skip the remaining instructions since the user wants to exit.
 			if (userInputInt != null) {
@@ -58,8 +92,12 @@ public class PhonebookMain {
 					ourPhonebook = personDeleteMenu(ourPhonebook);
 					break;	
 				case 5:
-					System.out.println(ourPhonebook.toString());
+					displayPhonebook(ourPhonebook);
 					break;	
+				case 6:
+					System.out.println("Import People");
+					ourPhonebook = personImportMenu(ourPhonebook);
+					break;
 				default:
 					System.out.println("You selected " + userInputInt + " which is not a valid menu option.");
 				}
@@ -67,9 +105,100 @@ public class PhonebookMain {
 				userExit = true;
 			}
 		}
+		if (phonebookServer != null) {
+			phonebookServer.stop(1);
+		}
+		if (ourPhonebook.getQueryCache() != null) {
+			System.out.println(ourPhonebook.getQueryCache());
+		}
+		if (phonebookLog != null) {
+			// Snapshot the changes made this run so the next start does not have to replay them.
+			if (phonebookLog.entryCount() > 0) {
+				ourPhonebook.checkpoint();
+			}
+			try {
+				phonebookLog.close();
+			} catch (IOException exception) {
+				System.out.println("Could not close the phonebook log: " + exception.getMessage());
+			}
+		}
 		System.out.println("Thank you for visiting the " + ourPhonebook.getPhonebookName());
 	}
 	
+	/** Method displayPhonebook writes every person in ourPhonebook to the console one Person at a time, so a
+	 * 	large phonebook is never held in memory as a single String.
+	 * @param ourPhonebook
+	 */
+	private static void displayPhonebook(Phonebook ourPhonebook) {
+		// System.out is flushed by the export but must stay open, so the writer is not closed.
+		OutputStreamWriter consoleWriter = new OutputStreamWriter(System.out);
+		try {
+			new PhonebookExporter(ourPhonebook).export(consoleWriter, PhonebookExporter.Format.HUMAN);
+		} catch (IOException exception) {
+			System.out.println("displayPhonebook - could not write the phonebook: " + exception.getMessage());
+		}
+		System.out.println();
+	}
+	
+	/** Method startPhonebookServer starts serving searches of ourPhonebook over HTTP on port.
+	 * @param ourPhonebook
+	 * @param port
+	 * @return PhonebookServer - the running server, or null if it could not be started
+	 */
+	private static PhonebookServer startPhonebookServer(Phonebook ourPhonebook, int port) {
+		try {
+			PhonebookServer phonebookServer = new PhonebookServer(ourPhonebook, new InetSocketAddress(port));
+			phonebookServer.start();
+			System.out.println("Serving searches at http://localhost:" + phonebookServer.getPort()
+					+ "/people?phone=6186323783 (or zip, first, last, name, street, city, state)");
+			return phonebookServer;
+		} catch (IOException exception) {
+			System.out.println("Could not start the phonebook server on port " + port + ": " + exception.getMessage());
+			return null;
+		}
+	}
+	
+	/** Method loadPhonebookCheckpoint loads the snapshot saved by an earlier run into the empty ourPhonebook.
+	 * @param ourPhonebook - the empty Phonebook to restore
+	 * @param phonebookCheckpoint - the snapshot file
+	 * @return int - the number of people loaded, or -1 if there is no usable snapshot
+	 */
+	private static int loadPhonebookCheckpoint(Phonebook ourPhonebook, PhonebookCheckpoint phonebookCheckpoint) {
+		try {
+			int personCount = phonebookCheckpoint.load(ourPhonebook);
+			if (personCount >= 0) {
+				System.out.println("Restored " + personCount + " people from " + phonebookCheckpoint.getCheckpointPath());
+			}
+			return personCount;
+		} catch (IOException exception) {
+			System.out.println("Could not read the phonebook snapshot " + phonebookCheckpoint.getCheckpointPath() + ": "
+					+ exception.getMessage());
+			return -1;
+		}
+	}
+	
+	/** Method openPhonebookLog opens the write-ahead log at logPath, replays the changes saved by earlier runs
+	 * 	into ourPhonebook, and attaches the log so every later change is saved.
+	 * @param ourPhonebook - the empty Phonebook to restore
+	 * @param logPath - the log file
+	 * @return PhonebookLog - the open log, or null if it could not be opened and changes will not be saved
+	 */
+	private static PhonebookLog openPhonebookLog(Phonebook ourPhonebook, Path logPath) {
+		try {
+			PhonebookLog phonebookLog = new PhonebookLog(logPath, PhonebookLog.SyncPolicy.EVERY_WRITE, 0);
+			long changeCount = phonebookLog.replay(ourPhonebook);
+			if (changeCount > 0) {
+				System.out.println("Restored " + ourPhonebook.numberOfPeople() + " people from " + logPath);
+			}
+			ourPhonebook.setPhonebookLog(phonebookLog);
+			return phonebookLog;
+		} catch (IOException exception) {
+			System.out.println("Could not open the phonebook log " + logPath + ", changes will not be saved: "
+					+ exception.getMessage());
+			return null;
+		}
+	}
+	
 	/** Method personAddMenu provides the user a menu to choose how they want to enter the new person information:
 	 * 	Yes to be prompted for each piece of data, no to enter a single string of pre-formatted user data.
 	 * @param currentPhonebook  - the Phonebook object to be updated
@@ -92,6 +221,36 @@ public class PhonebookMain {
 		return currentPhonebook;
 	}
 	
+	/** Method personImportMenu prompts the user for a file with one person per line in the pre-formatted
+	 * 	comma separated format and adds every valid line to the currentPhonebook. Rejected lines are written
+	 * 	to a file with the same name ending in .rejects.
+	 * @param currentPhonebook - the Phonebook object to be updated
+	 * @return Phonebook - the Phonebook object with the imported people added
+	 */
+	private static Phonebook personImportMenu(Phonebook currentPhonebook) {
+		String inputFile = ConsoleInput.getInputString("Please enter the name of the file to import.\n"
+				+ "Each line must be formatted as: Full Name, Street Number and Name, City, "
+				+ "2 Letter State Abbreviation, 5-Digit Zip Code, 10-Digit Phone Number without separators");
+		if (inputFile == null) {
+			System.out.println("Cancelled by user.");
+			return currentPhonebook;
+		}
+		Path inputPath = Paths.get(inputFile);
+		Path rejectPath = Paths.get(inputFile + ".rejects");
+		ParallelPhonebookImporter phonebookImporter = new ParallelPhonebookImporter(currentPhonebook);
+		try {
+			phonebookImporter.importFile(inputPath, rejectPath);
+		} catch (IOException exception) {
+			System.out.println("The import stopped: " + exception.getMessage());
+		}
+		System.out.println(phonebookImporter.getImportedCount() + " people imported, " 
+				+ phonebookImporter.getRejectedCount() + " lines rejected.");
+		if (phonebookImporter.getRejectedCount() > 0) {
+			System.out.println("The rejected lines are listed in " + rejectPath);
+		}
+		return currentPhonebook;
+	}
+	
 	/** Method personSearchMenu provides a common menu to be used when the user wants to search for person data for
 	 * 	the purposes of displaying people, or selecting a person to update or delete from the currentPhonebook.
 	 * 	It presents a menu of search options, prompts for the search criteria, and returns the results as an array
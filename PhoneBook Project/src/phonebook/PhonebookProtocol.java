@@ -0,0 +1,32 @@
+package phonebook;
+
+/** This class holds the constants of the binary protocol spoken by PhonebookBinaryServer and
+ * 	PhonebookBinaryClient, a cheaper alternative to the JSON of PhonebookServer for high volume callers.
+ * 	Every message is a frame: a 4 byte length of the rest of the frame, then a 4 byte request ID picked by the
+ * 	client and sent back in the response, then -
+ * 	a request: the opcode (1 byte), then
+ * 		PHONE_LOOKUP - the phone number (8 bytes)
+ * 		ZIP_LOOKUP - the zip code (4 bytes)
+ * 		NAME_SEARCH - the search type of Phonebook.findPeople (1 byte, 1 to 6), then the search string as a
+ * 			2 byte length and its UTF-8 bytes
+ * 	a response: the status (1 byte), then
+ * 		OK - the number of people (4 bytes), then each Person in PersonName order in the PersonCodec format:
+ * 			fixed width numbers followed by length prefixed UTF-8 strings
+ * 		BAD_REQUEST - the reason as a 2 byte length and its UTF-8 bytes
+ * 	Numbers are big-endian. A client may send many requests without waiting for the responses, and the
+ * 	responses to one connection come back in the order the requests were sent.
+ */
+public class PhonebookProtocol {
+
+	public static final byte PHONE_LOOKUP = 1;
+	public static final byte ZIP_LOOKUP = 2;
+	public static final byte NAME_SEARCH = 3;
+
+	public static final byte OK = 0;
+	public static final byte BAD_REQUEST = 1;
+
+	// The length field, the request ID, and the opcode or status.
+	public static final int FRAME_HEADER_SIZE = 4 + 4 + 1;
+	// A longer request is a broken or hostile client, and its connection is closed.
+	public static final int MAX_REQUEST_SIZE = 1 << 16;
+}
@@ -0,0 +1,213 @@
+package phonebook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/** This class checks that a Phonebook recovers from its PhonebookLog after a crash at any point of a write.
+ * 	It makes random adds, updates, and deletes on a phonebook with a log, including names with characters of
+ * 	two, three, and four UTF-8 bytes, and records the length of the log and a fingerprint of the phonebook after
+ * 	each change. Then it replays copies of the log -
+ * 		cut at the end of every entry, which must give the phonebook after that change,
+ * 		cut part way through random entries, which must give the phonebook before the torn entry,
+ * 		with one byte of the last entry changed, which must give the phonebook before that entry.
+ * 	After each replay the log must be cut back to the last good entry, and a change appended to it must be
+ * 	replayed with the others. It prints the number of cases checked and any that failed, and exits with
+ * 	status 1 if one did.
+ * 	Usage: PhonebookRecoveryHarness [changes] [cases] [seed]
+ * 		changes - the number of changes logged, 2000 by default
+ * 		cases - the number of torn and of corrupt entries checked, 500 of each by default
+ * 		seed - the seed of the random changes and cuts, 1 by default
+ */
+public class PhonebookRecoveryHarness {
+
+	private static final int DEFAULT_CHANGES = 2000;
+	private static final int DEFAULT_CASES = 500;
+	private static final long FIRST_PHONE = 3000000000L;
+	// Written as escapes so the source stays in its encoding: two, three, and four byte UTF-8 characters.
+	private static final String[] FIRST_NAMES = {"Dan", "Miri", "Zo\u00EB", "\u0141ukasz", "Jos\u00E9", "\u00D8rjan",
+			"Siobh\u00E1n", "Nguy\u1EC5n", "\u674E", "Ava", "Liam", "\uD83D\uDE00Emma"};
+	private static final String[] LAST_NAMES = {"Bradford", "Belle", "M\u00FCller", "\u00C7elik", "Dvo\u0159\u00E1k",
+			"O'Brien", "\u738B", "Smith", "Jones", "\u0110\u1EB7ng", "Garcia", "\uD835\uDD04lpha"};
+	private static final String[] CITIES = {"O'Fallon", "Yorkville", "Z\u00FCrich", "S\u00E3o Paulo", "Krak\u00F3w",
+			"\u6771\u4EAC", "St. Louis", "Peoria"};
+	private static final String[] STATES = {"IL", "MO", "CA", "NY"};
+
+	public static void main(String[] args) {
+		int changeCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CHANGES;
+		int caseCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CASES;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+		Random random = new Random(seed);
+		Path workDirectory;
+		try {
+			workDirectory = Files.createTempDirectory("phonebook-recovery");
+		} catch (IOException exception) {
+			System.out.println("PhonebookRecoveryHarness - could not make a work directory: " + exception.getMessage());
+			return;
+		}
+		Path logPath = workDirectory.resolve("changes.log");
+		Path replayPath = workDirectory.resolve("replay.log");
+		// entryEnds[k] is the length of the log after k changes, and fingerprints[k] the phonebook after them.
+		long[] entryEnds = new long[changeCount + 1];
+		long[] fingerprints = new long[changeCount + 1];
+		byte[] logBytes;
+		try {
+			Phonebook livePhonebook = new Phonebook("Recovery");
+			PhonebookLog phonebookLog = new PhonebookLog(logPath, PhonebookLog.SyncPolicy.OPERATING_SYSTEM, 0);
+			livePhonebook.setPhonebookLog(phonebookLog);
+			fingerprints[0] = fingerprint(livePhonebook);
+			for (int change = 1; change <= changeCount; change++) {
+				while (!makeChange(livePhonebook, random)) {
+					// A refused change writes no entry, so try another.
+				}
+				entryEnds[change] = Files.size(logPath);
+				fingerprints[change] = fingerprint(livePhonebook);
+			}
+			phonebookLog.close();
+			logBytes = Files.readAllBytes(logPath);
+		} catch (IOException exception) {
+			System.out.println("PhonebookRecoveryHarness - could not write the log: " + exception.getMessage());
+			return;
+		}
+		System.out.println("Logged " + changeCount + " changes in " + logBytes.length + " bytes");
+		int failureCount = 0;
+		PrintStream standardOutput = System.out;
+		// Replay reports every torn tail it cuts off, which is expected here thousands of times.
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		try {
+			for (int change = 0; change <= changeCount; change++) {
+				failureCount += checkReplay(standardOutput, replayPath, logBytes, (int) entryEnds[change], -1, change,
+						entryEnds, fingerprints, "the end of entry " + change);
+			}
+			for (int index = 0; index < caseCount && changeCount > 0; index++) {
+				int change = 1 + random.nextInt(changeCount);
+				int entryStart = (int) entryEnds[change - 1];
+				int cut = entryStart + 1 + random.nextInt((int) entryEnds[change] - entryStart - 1);
+				failureCount += checkReplay(standardOutput, replayPath, logBytes, cut, -1, change - 1, entryEnds,
+						fingerprints, "byte " + cut + " inside entry " + change);
+			}
+			for (int index = 0; index < caseCount && changeCount > 0; index++) {
+				int change = 1 + random.nextInt(changeCount);
+				int entryStart = (int) entryEnds[change - 1];
+				int corruptByte = entryStart + random.nextInt((int) entryEnds[change] - entryStart);
+				failureCount += checkReplay(standardOutput, replayPath, logBytes, (int) entryEnds[change], corruptByte,
+						change - 1, entryEnds, fingerprints, "byte " + corruptByte + " of entry " + change + " changed");
+			}
+		} finally {
+			System.setOut(standardOutput);
+		}
+		try {
+			Files.deleteIfExists(logPath);
+			Files.deleteIfExists(replayPath);
+			Files.deleteIfExists(workDirectory);
+		} catch (IOException exception) {
+			System.out.println("PhonebookRecoveryHarness - could not clean up " + workDirectory);
+		}
+		System.out.println("Checked " + (changeCount + 1 + 2 * caseCount) + " crash points, " + failureCount + " failed");
+		if (failureCount > 0) {
+			System.exit(1);
+		}
+	}
+
+	/** Method checkReplay writes the first length bytes of the log, with the byte at corruptByte changed if it is
+	 * 	not -1, replays them into a new Phonebook, and checks it against the phonebook after expectedChange. Then
+	 * 	it appends one more add and checks that a second replay sees it after the others.
+	 * @return int - 1 if the check failed, otherwise 0
+	 */
+	private static int checkReplay(PrintStream report, Path replayPath, byte[] logBytes, int length, int corruptByte,
+			int expectedChange, long[] entryEnds, long[] fingerprints, String crashPoint) {
+		byte[] replayBytes = Arrays.copyOf(logBytes, length);
+		if (corruptByte >= 0) {
+			replayBytes[corruptByte] ^= (byte) (1 + corruptByte % 255);
+		}
+		try {
+			Files.write(replayPath, replayBytes);
+			Phonebook recoveredPhonebook = new Phonebook("Recovery");
+			Person appendedPerson;
+			try (PhonebookLog replayLog = new PhonebookLog(replayPath, PhonebookLog.SyncPolicy.OPERATING_SYSTEM, 0)) {
+				long replayedCount = replayLog.replay(recoveredPhonebook);
+				if (replayedCount != expectedChange || fingerprint(recoveredPhonebook) != fingerprints[expectedChange]) {
+					report.println("Crash at " + crashPoint + ": replayed " + replayedCount + " entries, expected the "
+							+ "phonebook after change " + expectedChange);
+					return 1;
+				}
+				if (Files.size(replayPath) != entryEnds[expectedChange]) {
+					report.println("Crash at " + crashPoint + ": the log was left " + Files.size(replayPath)
+							+ " bytes long instead of " + entryEnds[expectedChange]);
+					return 1;
+				}
+				recoveredPhonebook.setPhonebookLog(replayLog);
+				appendedPerson = new Person("Appended After Recovery", "1 Last St", "", "Peoria", "IL", 61602, 0,
+						FIRST_PHONE - 1);
+				if (!recoveredPhonebook.addPerson(appendedPerson)) {
+					report.println("Crash at " + crashPoint + ": could not add a person after recovery");
+					return 1;
+				}
+			}
+			Phonebook rereadPhonebook = new Phonebook("Recovery");
+			try (PhonebookLog rereadLog = new PhonebookLog(replayPath, PhonebookLog.SyncPolicy.OPERATING_SYSTEM, 0)) {
+				long replayedCount = rereadLog.replay(rereadPhonebook);
+				if (replayedCount != expectedChange + 1 || fingerprint(rereadPhonebook) != fingerprint(recoveredPhonebook)) {
+					report.println("Crash at " + crashPoint + ": the change made after recovery replayed as "
+							+ replayedCount + " entries or a different phonebook");
+					return 1;
+				}
+			}
+		} catch (IOException exception) {
+			report.println("Crash at " + crashPoint + ": " + exception.getMessage());
+			return 1;
+		}
+		return 0;
+	}
+
+	/** Method makeChange adds a new Person, updates a random Person, or deletes one, each logged as one entry.
+	 * @param targetPhonebook
+	 * @param random
+	 * @return boolean - true if the change was made and logged
+	 */
+	private static boolean makeChange(Phonebook targetPhonebook, Random random) {
+		Person[] people = targetPhonebook.getPhonebookPersonArray(false);
+		int choice = people.length < 10 ? 0 : random.nextInt(4);
+		if (choice < 2) {
+			return targetPhonebook.addPerson(randomPerson(0, random));
+		} else if (choice == 2) {
+			return targetPhonebook.storeUpdatedPerson(randomPerson(people[random.nextInt(people.length)].getPersonID(),
+					random));
+		}
+		return targetPhonebook.storeDeletedPerson(people[random.nextInt(people.length)]);
+	}
+
+	private static Person randomPerson(long personID, Random random) {
+		String personName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+				+ LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+		String street2 = random.nextInt(3) == 0 ? "Apt " + (1 + random.nextInt(40)) : "";
+		return new Person(personID, personName, (1 + random.nextInt(9999)) + " Main St", street2,
+				CITIES[random.nextInt(CITIES.length)], STATES[random.nextInt(STATES.length)],
+				10000 + random.nextInt(90000), random.nextInt(3) == 0 ? 1000 + random.nextInt(9000) : 0,
+				FIRST_PHONE + random.nextInt(100000));
+	}
+
+	/** Method fingerprint returns a checksum of every Person in the phonebook in PersonName order, with every
+	 * 	field that the log keeps.
+	 * @param sourcePhonebook
+	 * @return long
+	 */
+	private static long fingerprint(Phonebook sourcePhonebook) {
+		CRC32 checksum = new CRC32();
+		for (Person currentPerson : sourcePhonebook.getPhonebookPersonArray(true)) {
+			String record = currentPerson.getPersonID() + "|" + currentPerson.getPersonName() + "|"
+					+ currentPerson.getAddressStreet1() + "|" + currentPerson.getAddressStreet2() + "|"
+					+ currentPerson.getAddressCity() + "|" + currentPerson.getAddressState() + "|"
+					+ currentPerson.getAddressZip() + "|" + currentPerson.getAddressZipPlus4() + "|"
+					+ currentPerson.getPersonPhone() + "\n";
+			checksum.update(record.getBytes(StandardCharsets.UTF_8));
+		}
+		return (sourcePhonebook.numberOfPeople().longValue() << 32) ^ checksum.getValue();
+	}
+}
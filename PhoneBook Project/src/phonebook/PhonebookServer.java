@@ -0,0 +1,306 @@
+package phonebook;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/** This class serves Phonebook.findPeople over HTTP with JSON responses, on the HTTP server built into the JDK.
+ * 	Each request is a GET of /people with one search parameter -
+ * 		/people?phone=6186323783			findPeople(long)
+ * 		/people?zip=62269					findPeople(int)
+ * 		/people?first=dan, last=, name=, street=, city=, or state=	findPeople(String, searchType 1 to 6)
+ * 	and is answered with a JSON array of the people found, in PersonName order, written by a PersonJsonEncoder.
+ * 	A bad request is answered with status 400 and {"error":"..."}, and a search that fails with status 500.
+ * 	Each request runs on a virtual thread of its own when the Java runtime has them (Java 21 and later), and
+ * 	on a pool of platform threads otherwise. Connections are kept alive between requests: a response that
+ * 	fits in the encoder's buffer is sent with a Content-Length, and a larger one is sent in chunks as it is
+ * 	encoded. The encoders and their buffers are kept for the next requests rather than made for each one.
+ * 	Searches run on many threads at once, so the phonebook must be a ConcurrentPhonebook if it is
+ * 	changed while the server runs.
+ */
+public class PhonebookServer {
+
+	public static final int DEFAULT_PORT = 8080;
+
+	private static final String PEOPLE_PATH = "/people";
+	private static final String[] SEARCH_PARAMETERS = {"first", "last", "name", "street", "city", "state"};
+	private static final int BACKLOG = 1024;
+	private static final int POOL_THREADS_PER_PROCESSOR = 4;
+	// Without TCP_NODELAY a small response on a kept alive connection can wait for the client's delayed ACK.
+	private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+	private final Phonebook phonebook;
+	private final HttpServer httpServer;
+	private final ExecutorService requestExecutor;
+	private final boolean usesVirtualThreads;
+	private final ArrayBlockingQueue<PersonJsonEncoder> idleEncoders;
+
+	/** Constructor to serve phonebook on address. The server does not accept requests until it is started.
+	 * @param phonebook - the phonebook to search
+	 * @param address - the address and port to listen on, port 0 for any free port
+	 * @throws IOException if the port cannot be opened
+	 */
+	public PhonebookServer(Phonebook phonebook, InetSocketAddress address) throws IOException {
+		this.phonebook = phonebook;
+		if (System.getProperty(NODELAY_PROPERTY) == null) {
+			System.setProperty(NODELAY_PROPERTY, "true");
+		}
+		ExecutorService virtualThreadExecutor = newVirtualThreadExecutor();
+		this.usesVirtualThreads = virtualThreadExecutor != null;
+		int poolThreads = Runtime.getRuntime().availableProcessors() * POOL_THREADS_PER_PROCESSOR;
+		this.requestExecutor = usesVirtualThreads ? virtualThreadExecutor : Executors.newFixedThreadPool(poolThreads);
+		// Keep as many idle encoders as there are pool threads; more requests at once make extra ones.
+		this.idleEncoders = new ArrayBlockingQueue<>(poolThreads);
+		this.httpServer = HttpServer.create(address, BACKLOG);
+		this.httpServer.createContext(PEOPLE_PATH, this::handlePeople);
+		this.httpServer.setExecutor(requestExecutor);
+	}
+
+	/** Method start begins accepting requests.
+	 */
+	public void start() {
+		httpServer.start();
+	}
+
+	/** Method stop stops accepting requests, waits up to delaySeconds for the requests being answered, and
+	 * 	then closes every connection.
+	 * @param delaySeconds
+	 */
+	public void stop(int delaySeconds) {
+		httpServer.stop(delaySeconds);
+		requestExecutor.shutdown();
+	}
+
+	/** Method getPort returns the port the server listens on, such as the free port picked for port 0.
+	 * @return int
+	 */
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+
+	/** Method usesVirtualThreads returns true if each request runs on a virtual thread, false if the requests
+	 * 	share a pool of platform threads.
+	 * @return boolean
+	 */
+	public boolean usesVirtualThreads() {
+		return usesVirtualThreads;
+	}
+
+	/** Method handlePeople answers one request to /people.
+	 * @param exchange
+	 * @throws IOException if the connection fails
+	 */
+	private void handlePeople(HttpExchange exchange) throws IOException {
+		ResponseStream responseStream = null;
+		try {
+			// Read any request body to its end, so the connection can be used for the next request.
+			try (InputStream requestBody = exchange.getRequestBody()) {
+				requestBody.transferTo(OutputStream.nullOutputStream());
+			}
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.getResponseHeaders().set("Allow", "GET");
+				sendError(exchange, 405, "only GET is supported.");
+				return;
+			}
+			if (!PEOPLE_PATH.equals(exchange.getRequestURI().getPath())) {
+				sendError(exchange, 404, "no such path.");
+				return;
+			}
+			String rawQuery = exchange.getRequestURI().getRawQuery();
+			if (rawQuery == null || rawQuery.isEmpty() || rawQuery.indexOf('&') >= 0 || rawQuery.indexOf('=') < 0) {
+				sendError(exchange, 400, "give one search parameter: phone, zip, first, last, name, street, city, or state.");
+				return;
+			}
+			int equalsIndex = rawQuery.indexOf('=');
+			String parameter = rawQuery.substring(0, equalsIndex);
+			String value = URLDecoder.decode(rawQuery.substring(equalsIndex + 1), StandardCharsets.UTF_8);
+			Person[] peopleFound = findPeople(parameter, value);
+			if (peopleFound == null) {
+				sendError(exchange, 400, "'" + value + "' is not a valid value for " + parameter + ".");
+				return;
+			}
+			responseStream = new ResponseStream(exchange, 200);
+			PersonJsonEncoder encoder = takeEncoder(responseStream);
+			encoder.writePeople(peopleFound);
+			send(responseStream, encoder);
+			giveBackEncoder(encoder);
+		} catch (IllegalArgumentException exception) {
+			sendError(exchange, 400, exception.getMessage());
+		} catch (RuntimeException exception) {
+			System.out.println("handlePeople - " + exchange.getRequestURI() + " failed: " + exception);
+			// Once the headers of a chunked response are out, closing the exchange is all that can be done.
+			if (responseStream == null || !responseStream.hasSentHeaders()) {
+				sendError(exchange, 500, "the search failed.");
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/** Method findPeople runs the search for one query parameter.
+	 * @param parameter - phone, zip, or one of SEARCH_PARAMETERS
+	 * @param value - the search value
+	 * @return Person[] - the people found, or null if the value is not valid for the parameter
+	 * @throws IllegalArgumentException if the parameter is not known
+	 */
+	private Person[] findPeople(String parameter, String value) {
+		if ("phone".equals(parameter)) {
+			Long searchPhone = parseNumber(value);
+			return searchPhone == null ? null : phonebook.findPeople(searchPhone.longValue());
+		}
+		if ("zip".equals(parameter)) {
+			Long searchZip = parseNumber(value);
+			if (searchZip == null || searchZip > Integer.MAX_VALUE) {
+				return null;
+			}
+			return phonebook.findPeople(searchZip.intValue());
+		}
+		for (int searchType = 1; searchType <= SEARCH_PARAMETERS.length; searchType++) {
+			if (SEARCH_PARAMETERS[searchType - 1].equals(parameter)) {
+				return value.isBlank() ? null : phonebook.findPeople(value, searchType);
+			}
+		}
+		throw new IllegalArgumentException("unknown search parameter " + parameter + ".");
+	}
+
+	/** Method parseNumber reads a phone number or zip code, ignoring separators such as "(618) 632-3783".
+	 * @param value
+	 * @return Long - the number, or null if value has no digits or too many
+	 */
+	private static Long parseNumber(String value) {
+		long number = 0;
+		int digitCount = 0;
+		for (int index = 0; index < value.length(); index++) {
+			char character = value.charAt(index);
+			if (character >= '0' && character <= '9') {
+				number = number * 10 + (character - '0');
+				digitCount++;
+			} else if (character != '(' && character != ')' && character != '-' && character != ' ' && character != '.') {
+				return null;
+			}
+		}
+		return digitCount == 0 || digitCount > 18 ? null : number;
+	}
+
+	/** Method sendError answers with status and {"error":message}.
+	 * @param exchange
+	 * @param status
+	 * @param message
+	 * @throws IOException if the connection fails
+	 */
+	private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		ResponseStream responseStream = new ResponseStream(exchange, status);
+		PersonJsonEncoder encoder = takeEncoder(responseStream);
+		encoder.writeError(message);
+		send(responseStream, encoder);
+		giveBackEncoder(encoder);
+	}
+
+	/** Method takeEncoder returns an idle encoder reset to write to responseStream, or a new one if none is idle.
+	 * 	The caller gives it back with giveBackEncoder once the response is sent. An encoder left in a failed
+	 * 	response is not given back.
+	 * @param responseStream
+	 * @return PersonJsonEncoder
+	 */
+	private PersonJsonEncoder takeEncoder(ResponseStream responseStream) {
+		PersonJsonEncoder encoder = idleEncoders.poll();
+		if (encoder == null) {
+			return new PersonJsonEncoder(responseStream);
+		}
+		encoder.reset(responseStream);
+		return encoder;
+	}
+
+	/** Method giveBackEncoder keeps encoder for a later request, unless enough encoders are idle already.
+	 * 	It is reset first so it does not hold on to the finished exchange.
+	 * @param encoder
+	 */
+	private void giveBackEncoder(PersonJsonEncoder encoder) {
+		encoder.reset(null);
+		idleEncoders.offer(encoder);
+	}
+
+	/** Method send finishes a response. If the encoder has not had to write yet, the whole response is in its
+	 * 	buffer and is sent with a Content-Length, otherwise the headers have gone out and the rest is chunked.
+	 * @param responseStream
+	 * @param encoder
+	 * @throws IOException if the connection fails
+	 */
+	private static void send(ResponseStream responseStream, PersonJsonEncoder encoder) throws IOException {
+		if (!encoder.hasWritten()) {
+			responseStream.sendHeaders(encoder.bufferedCount());
+		}
+		encoder.flush();
+	}
+
+	/** This class is the body of one response. The headers are sent just before the first bytes of the body:
+	 * 	with the length of the body if the caller knows it, otherwise for a chunked body.
+	 */
+	private static final class ResponseStream extends OutputStream {
+
+		private final HttpExchange exchange;
+		private final int status;
+		private OutputStream responseBody = null;
+
+		ResponseStream(HttpExchange exchange, int status) {
+			this.exchange = exchange;
+			this.status = status;
+		}
+
+		void sendHeaders(long contentLength) throws IOException {
+			exchange.sendResponseHeaders(status, contentLength);
+			responseBody = exchange.getResponseBody();
+		}
+
+		boolean hasSentHeaders() {
+			return responseBody != null;
+		}
+
+		@Override
+		public void write(int oneByte) throws IOException {
+			if (responseBody == null) {
+				sendHeaders(0);
+			}
+			responseBody.write(oneByte);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			if (responseBody == null) {
+				sendHeaders(0);
+			}
+			responseBody.write(bytes, offset, length);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (responseBody != null) {
+				responseBody.flush();
+			}
+		}
+	}
+
+	/** Method newVirtualThreadExecutor returns an executor that starts a virtual thread for each task. It is
+	 * 	found by reflection, since the phonebook is also built for Java runtimes that do not have it.
+	 * @return ExecutorService - the executor, or null if this Java runtime has no virtual threads
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException exception) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,840 @@
+package phonebook;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/** This class is an immutable, versioned view of every person in a Phonebook. A reader takes the current
+ * 	snapshot with one volatile read, for example ConcurrentPhonebook.getSnapshot, and can then search it or
+ * 	walk it for as long as it likes without any lock, always seeing the phonebook as it was at that version.
+ * 	A change never touches a published snapshot. Instead the writer builds the next version, which shares
+ * 	everything but the changed path with the one before, so a change copies O(log n) small nodes rather
+ * 	than the whole directory. The people are kept in -
+ * 	a persistent AVL tree in PersonName order, with the size of each subtree for lookups by rank, and
+ * 	two hash array mapped tries (HAMT), one from personID to Person and one from phone number to the people
+ * 	with that number, each node holding up to 32 children picked by 5 bits of the hash of the key.
+ * 	People with equal names are in the same order as in PersonNameOrder.
+ * 	A snapshot also carries the nextPersonID of the phonebook, so a PhonebookCheckpoint can be written from it
+ * 	alone, without any lock on the phonebook.
+ * 	The Person objects are shared with the Phonebook and must not be modified once added.
+ */
+public class PhonebookSnapshot {
+
+	// A batch of at least 1/BULK_FRACTION of the new size is merged and rebuilt in one pass.
+	private static final int BULK_FRACTION = 16;
+	// Hash bits are taken 5 at a time from the top, so the shifts run 27, 22, ..., 2, -3.
+	private static final int FIRST_SHIFT = 27;
+	private static final int LAST_SHIFT = -3;
+	private static final Person[] NO_PEOPLE = new Person[0];
+
+	private final String phonebookName;
+	private final long version;
+	private final long nextPersonID;
+	private final long nextSequence;
+	private final NameNode nameRoot;
+	private final Object idRoot;
+	private final Object phoneRoot;
+
+	private PhonebookSnapshot(String phonebookName, long version, long nextPersonID, long nextSequence,
+			NameNode nameRoot, Object idRoot, Object phoneRoot) {
+		this.phonebookName = phonebookName;
+		this.version = version;
+		this.nextPersonID = nextPersonID;
+		this.nextSequence = nextSequence;
+		this.nameRoot = nameRoot;
+		this.idRoot = idRoot;
+		this.phoneRoot = phoneRoot;
+	}
+
+	/** Method of builds version 0 of a snapshot holding sortedPeople in one pass.
+	 * @param phonebookName
+	 * @param sortedPeople - the people sorted by PersonName, as returned by Phonebook.getPhonebookPersonArray
+	 * @param nextPersonID - the personID the phonebook gives the next Person added
+	 * @return PhonebookSnapshot
+	 */
+	static PhonebookSnapshot of(String phonebookName, Person[] sortedPeople, long nextPersonID) {
+		PersonEntry[] entries = new PersonEntry[sortedPeople.length];
+		for (int rank = 0; rank < entries.length; rank++) {
+			entries[rank] = new PersonEntry(sortedPeople[rank], rank);
+		}
+		return build(phonebookName, 0, nextPersonID, entries.length, entries);
+	}
+
+	/** Method getPhonebookName returns the name of the phonebook at this version.
+	 * @return String
+	 */
+	public String getPhonebookName() {
+		return phonebookName;
+	}
+
+	/** Method getVersion returns the version of this snapshot. Every change to the phonebook makes a
+	 * 	snapshot with a higher version.
+	 * @return long
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/** Method getNextPersonID returns the personID the phonebook gave the next Person added at this version.
+	 * @return long
+	 */
+	public long getNextPersonID() {
+		return nextPersonID;
+	}
+
+	/** Method numberOfPeople returns the number of people in this snapshot.
+	 * @return int
+	 */
+	public int numberOfPeople() {
+		return NameNode.size(nameRoot);
+	}
+
+	/** Method getPerson returns the Person with personID, or null if there is none.
+	 * @param personID
+	 * @return Person
+	 */
+	public Person getPerson(long personID) {
+		PersonEntry entry = (PersonEntry) trieGet(idRoot, personID);
+		return entry == null ? null : entry.person;
+	}
+
+	/** Method getPersonAtRank returns the Person at rank in PersonName order.
+	 * @param rank - 0 to numberOfPeople() - 1
+	 * @return Person, or null if rank is out of range
+	 */
+	public Person getPersonAtRank(int rank) {
+		NameNode node = nameRoot;
+		while (node != null) {
+			int leftSize = NameNode.size(node.left);
+			if (rank < leftSize) {
+				node = node.left;
+			} else if (rank == leftSize) {
+				return node.entry.person;
+			} else {
+				rank -= leftSize + 1;
+				node = node.right;
+			}
+		}
+		return null;
+	}
+
+	/** Method findPeople returns the people with the phone number searchPhone sorted by PersonName.
+	 * @param searchPhone
+	 * @return Person[]
+	 */
+	public Person[] findPeople(long searchPhone) {
+		PersonEntry[] entries = (PersonEntry[]) trieGet(phoneRoot, searchPhone);
+		if (entries == null) {
+			return NO_PEOPLE;
+		}
+		Person[] personArray = new Person[entries.length];
+		for (int index = 0; index < entries.length; index++) {
+			personArray[index] = entries[index].person;
+		}
+		return personArray;
+	}
+
+	/** Method findPeople returns the people with the zip code searchZip sorted by PersonName.
+	 * 	It checks every Person in the snapshot.
+	 * @param searchZip
+	 * @return Person[]
+	 */
+	public Person[] findPeople(int searchZip) {
+		PersonCollector collector = new PersonCollector();
+		forEach(currentPerson -> {
+			if (currentPerson.getAddressZip() == searchZip) {
+				collector.accept(currentPerson);
+			}
+		});
+		return collector.toArray();
+	}
+
+	/** Method findPeople returns the people sorted by PersonName whose field, picked by searchType as in
+	 * 	Phonebook.findPeople, contains searchString. Match is not case sensitive. It checks every Person in
+	 * 	the snapshot, so it is meant for reports rather than interactive searches.
+	 * @param searchString
+	 * @param searchType - 1 first name, 2 last name, 3 full name, 4 street, 5 city, 6 state
+	 * @return Person[], or null if searchType is not valid
+	 */
+	public Person[] findPeople(String searchString, int searchType) {
+		if (searchType < 1 || searchType > 6) {
+			System.out.println("findPerson - not a valid search type");
+			return null;
+		}
+		String foldedTerm = searchString.trim().toLowerCase();
+		PersonCollector collector = new PersonCollector();
+		forEach(currentPerson -> {
+			String field;
+			switch (searchType) {
+			case 1:
+				field = currentPerson.getFirstName();
+				break;
+			case 2:
+				field = currentPerson.getLastName();
+				break;
+			case 3:
+				field = currentPerson.getPersonName();
+				break;
+			case 4:
+				field = currentPerson.getAddressStreet1();
+				break;
+			case 5:
+				field = currentPerson.getAddressCity();
+				break;
+			default:
+				field = currentPerson.getAddressState();
+			}
+			if (field != null && field.toLowerCase().contains(foldedTerm)) {
+				collector.accept(currentPerson);
+			}
+		});
+		return collector.toArray();
+	}
+
+	/** Method toArray returns every Person in the snapshot sorted by PersonName.
+	 * @return Person[]
+	 */
+	public Person[] toArray() {
+		Person[] personArray = new Person[numberOfPeople()];
+		int[] count = new int[1];
+		forEach(currentPerson -> personArray[count[0]++] = currentPerson);
+		return personArray;
+	}
+
+	/** Method forEach gives every Person in the snapshot to action in PersonName order.
+	 * @param action
+	 */
+	public void forEach(Consumer<Person> action) {
+		NameNode.forEachEntry(nameRoot, entry -> action.accept(entry.person));
+	}
+
+	/** Method withPhonebookName returns the next version with the phonebook renamed.
+	 * @param newPhonebookName
+	 * @return PhonebookSnapshot
+	 */
+	PhonebookSnapshot withPhonebookName(String newPhonebookName) {
+		return new PhonebookSnapshot(newPhonebookName, version + 1, nextPersonID, nextSequence, nameRoot, idRoot,
+				phoneRoot);
+	}
+
+	/** Method withNextPersonID returns the next version with the nextPersonID of the phonebook changed, such
+	 * 	as to the value saved in a PhonebookCheckpoint, which may be past the last Person added.
+	 * @param newNextPersonID
+	 * @return PhonebookSnapshot
+	 */
+	PhonebookSnapshot withNextPersonID(long newNextPersonID) {
+		return new PhonebookSnapshot(phonebookName, version + 1, newNextPersonID, nextSequence, nameRoot, idRoot,
+				phoneRoot);
+	}
+
+	/** Method withPersonAdded returns the next version with newPerson added after any people with the same name.
+	 * @param newPerson
+	 * @return PhonebookSnapshot
+	 */
+	PhonebookSnapshot withPersonAdded(Person newPerson) {
+		PersonEntry entry = new PersonEntry(newPerson, nextSequence);
+		return new PhonebookSnapshot(phonebookName, version + 1, Math.max(nextPersonID, newPerson.getPersonID() + 1),
+				nextSequence + 1, NameNode.insert(nameRoot, entry),
+				triePut(idRoot, newPerson.getPersonID(), entry, FIRST_SHIFT),
+				addPhoneEntry(phoneRoot, entry));
+	}
+
+	/** Method withPeopleAdded returns the next version with the first count people of newPeople added, in
+	 * 	array order after any people with the same name. A large batch is merged into the existing people
+	 * 	and the tree and tries are rebuilt in one pass, instead of copying a path for each Person.
+	 * @param newPeople
+	 * @param count
+	 * @return PhonebookSnapshot
+	 */
+	PhonebookSnapshot withPeopleAdded(Person[] newPeople, int count) {
+		int existingCount = numberOfPeople();
+		if ((long) count * BULK_FRACTION < existingCount + count) {
+			PhonebookSnapshot nextSnapshot = this;
+			for (int index = 0; index < count; index++) {
+				nextSnapshot = nextSnapshot.withPersonAdded(newPeople[index]);
+			}
+			return new PhonebookSnapshot(phonebookName, version + 1, nextSnapshot.nextPersonID,
+					nextSnapshot.nextSequence, nextSnapshot.nameRoot, nextSnapshot.idRoot, nextSnapshot.phoneRoot);
+		}
+		PersonEntry[] batch = new PersonEntry[count];
+		long nextBatchPersonID = nextPersonID;
+		for (int index = 0; index < count; index++) {
+			batch[index] = new PersonEntry(newPeople[index], nextSequence + index);
+			nextBatchPersonID = Math.max(nextBatchPersonID, newPeople[index].getPersonID() + 1);
+		}
+		Arrays.sort(batch);
+		// Merge the batch into the existing entries, which are already in order.
+		PersonEntry[] merged = new PersonEntry[existingCount + count];
+		int[] mergedCount = new int[1];
+		int[] batchIndex = new int[1];
+		NameNode.forEachEntry(nameRoot, existingEntry -> {
+			while (batchIndex[0] < count && batch[batchIndex[0]].compareTo(existingEntry) < 0) {
+				merged[mergedCount[0]++] = batch[batchIndex[0]++];
+			}
+			merged[mergedCount[0]++] = existingEntry;
+		});
+		while (batchIndex[0] < count) {
+			merged[mergedCount[0]++] = batch[batchIndex[0]++];
+		}
+		return build(phonebookName, version + 1, nextBatchPersonID, nextSequence + count, merged);
+	}
+
+	/** Method withPersonReplaced returns the next version with the Person that has the personID of
+	 * 	updatedPerson replaced by updatedPerson, placed among people with the same name as PersonNameOrder.update
+	 * 	places it: in its old place if the name is unchanged, first if the name now sorts later, and last if
+	 * 	it now sorts earlier. A sequence number below every one given out so far puts it first.
+	 * @param updatedPerson
+	 * @return PhonebookSnapshot - this snapshot if there is no Person with that personID
+	 */
+	PhonebookSnapshot withPersonReplaced(Person updatedPerson) {
+		PersonEntry existingEntry = (PersonEntry) trieGet(idRoot, updatedPerson.getPersonID());
+		if (existingEntry == null) {
+			return this;
+		}
+		String collationKey = PersonNameOrder.collationKey(updatedPerson);
+		int keyComparison = collationKey.compareTo(existingEntry.collationKey);
+		long sequence = keyComparison == 0 ? existingEntry.sequence
+				: keyComparison > 0 ? -nextSequence : nextSequence;
+		PersonEntry entry = new PersonEntry(updatedPerson, sequence);
+		NameNode nextNameRoot = NameNode.insert(NameNode.remove(nameRoot, existingEntry), entry);
+		Object nextPhoneRoot = addPhoneEntry(removePhoneEntry(phoneRoot, existingEntry), entry);
+		return new PhonebookSnapshot(phonebookName, version + 1, nextPersonID, nextSequence + 1, nextNameRoot,
+				triePut(idRoot, updatedPerson.getPersonID(), entry, FIRST_SHIFT), nextPhoneRoot);
+	}
+
+	/** Method withPersonRemoved returns the next version without the Person with personID.
+	 * @param personID
+	 * @return PhonebookSnapshot - this snapshot if there is no Person with that personID
+	 */
+	PhonebookSnapshot withPersonRemoved(long personID) {
+		PersonEntry existingEntry = (PersonEntry) trieGet(idRoot, personID);
+		if (existingEntry == null) {
+			return this;
+		}
+		return new PhonebookSnapshot(phonebookName, version + 1, nextPersonID, nextSequence,
+				NameNode.remove(nameRoot, existingEntry), trieRemove(idRoot, personID, LongSlotIndex.hash(personID), FIRST_SHIFT),
+				removePhoneEntry(phoneRoot, existingEntry));
+	}
+
+	/** Method build makes a snapshot from entries already in name order in O(n): the tree is built balanced
+	 * 	from the middle out and each trie is built from its keys sorted by hash.
+	 * @param phonebookName
+	 * @param version
+	 * @param nextPersonID
+	 * @param nextSequence
+	 * @param entries
+	 * @return PhonebookSnapshot
+	 */
+	private static PhonebookSnapshot build(String phonebookName, long version, long nextPersonID, long nextSequence,
+			PersonEntry[] entries) {
+		long[] personIDs = new long[entries.length];
+		long[] phones = new long[entries.length];
+		for (int index = 0; index < entries.length; index++) {
+			personIDs[index] = entries[index].person.getPersonID();
+			phones[index] = entries[index].person.getPersonPhone();
+		}
+		return new PhonebookSnapshot(phonebookName, version, nextPersonID, nextSequence,
+				NameNode.build(entries, 0, entries.length),
+				buildTrie(personIDs, entries, false), buildTrie(phones, entries, true));
+	}
+
+	private static Object addPhoneEntry(Object root, PersonEntry entry) {
+		long phone = entry.person.getPersonPhone();
+		PersonEntry[] existingEntries = (PersonEntry[]) trieGet(root, phone);
+		if (existingEntries == null) {
+			return triePut(root, phone, new PersonEntry[] {entry}, FIRST_SHIFT);
+		}
+		int position = 0;
+		while (position < existingEntries.length && existingEntries[position].compareTo(entry) < 0) {
+			position++;
+		}
+		PersonEntry[] grownEntries = new PersonEntry[existingEntries.length + 1];
+		System.arraycopy(existingEntries, 0, grownEntries, 0, position);
+		grownEntries[position] = entry;
+		System.arraycopy(existingEntries, position, grownEntries, position + 1, existingEntries.length - position);
+		return triePut(root, phone, grownEntries, FIRST_SHIFT);
+	}
+
+	private static Object removePhoneEntry(Object root, PersonEntry entry) {
+		long phone = entry.person.getPersonPhone();
+		PersonEntry[] existingEntries = (PersonEntry[]) trieGet(root, phone);
+		if (existingEntries == null) {
+			return root;
+		}
+		if (existingEntries.length == 1) {
+			return existingEntries[0] == entry ? trieRemove(root, phone, LongSlotIndex.hash(phone), FIRST_SHIFT) : root;
+		}
+		PersonEntry[] shrunkEntries = new PersonEntry[existingEntries.length - 1];
+		int shrunkCount = 0;
+		for (PersonEntry existingEntry:existingEntries) {
+			if (existingEntry != entry && shrunkCount < shrunkEntries.length) {
+				shrunkEntries[shrunkCount++] = existingEntry;
+			}
+		}
+		return triePut(root, phone, shrunkEntries, FIRST_SHIFT);
+	}
+
+	/** Method fragment returns the 5 bits of hash that pick a child at the level of shift.
+	 * @param hash
+	 * @param shift
+	 * @return int - 0 to 31
+	 */
+	private static int fragment(int hash, int shift) {
+		return shift >= 0 ? (hash >>> shift) & 31 : (hash << -shift) & 31;
+	}
+
+	/** Method trieGet returns the value stored for key in the trie at root, or null.
+	 * @param root
+	 * @param key
+	 * @return Object
+	 */
+	private static Object trieGet(Object root, long key) {
+		int hash = LongSlotIndex.hash(key);
+		Object node = root;
+		int shift = FIRST_SHIFT;
+		while (node != null) {
+			if (node instanceof TrieLeaf) {
+				TrieLeaf leaf = (TrieLeaf) node;
+				return leaf.key == key ? leaf.value : null;
+			}
+			if (node instanceof CollisionNode) {
+				for (TrieLeaf leaf:((CollisionNode) node).leaves) {
+					if (leaf.key == key) {
+						return leaf.value;
+					}
+				}
+				return null;
+			}
+			TrieNode trieNode = (TrieNode) node;
+			int bit = 1 << fragment(hash, shift);
+			if ((trieNode.bitmap & bit) == 0) {
+				return null;
+			}
+			node = trieNode.children[Integer.bitCount(trieNode.bitmap & (bit - 1))];
+			shift -= 5;
+		}
+		return null;
+	}
+
+	/** Method triePut returns a new trie with value stored for key, copying only the nodes on its path.
+	 * @param node - the root of the trie, or of the subtrie at the level of shift
+	 * @param key
+	 * @param value
+	 * @param shift
+	 * @return Object - the new root
+	 */
+	private static Object triePut(Object node, long key, Object value, int shift) {
+		return triePut(node, new TrieLeaf(key, value), shift);
+	}
+
+	private static Object triePut(Object node, TrieLeaf newLeaf, int shift) {
+		if (node == null) {
+			return newLeaf;
+		}
+		if (node instanceof TrieLeaf) {
+			TrieLeaf leaf = (TrieLeaf) node;
+			return leaf.key == newLeaf.key ? newLeaf : mergeLeaves(leaf, newLeaf, shift);
+		}
+		if (node instanceof CollisionNode) {
+			TrieLeaf[] leaves = ((CollisionNode) node).leaves;
+			for (int index = 0; index < leaves.length; index++) {
+				if (leaves[index].key == newLeaf.key) {
+					TrieLeaf[] copiedLeaves = leaves.clone();
+					copiedLeaves[index] = newLeaf;
+					return new CollisionNode(copiedLeaves);
+				}
+			}
+			TrieLeaf[] grownLeaves = Arrays.copyOf(leaves, leaves.length + 1);
+			grownLeaves[leaves.length] = newLeaf;
+			return new CollisionNode(grownLeaves);
+		}
+		TrieNode trieNode = (TrieNode) node;
+		int bit = 1 << fragment(newLeaf.hash, shift);
+		int position = Integer.bitCount(trieNode.bitmap & (bit - 1));
+		if ((trieNode.bitmap & bit) != 0) {
+			Object[] copiedChildren = trieNode.children.clone();
+			copiedChildren[position] = triePut(trieNode.children[position], newLeaf, shift - 5);
+			return new TrieNode(trieNode.bitmap, copiedChildren);
+		}
+		Object[] grownChildren = new Object[trieNode.children.length + 1];
+		System.arraycopy(trieNode.children, 0, grownChildren, 0, position);
+		grownChildren[position] = newLeaf;
+		System.arraycopy(trieNode.children, position, grownChildren, position + 1, trieNode.children.length - position);
+		return new TrieNode(trieNode.bitmap | bit, grownChildren);
+	}
+
+	/** Method mergeLeaves returns a subtrie at the level of shift holding two leaves with different keys.
+	 * @param firstLeaf
+	 * @param secondLeaf
+	 * @param shift
+	 * @return Object
+	 */
+	private static Object mergeLeaves(TrieLeaf firstLeaf, TrieLeaf secondLeaf, int shift) {
+		if (shift < LAST_SHIFT) {
+			return new CollisionNode(new TrieLeaf[] {firstLeaf, secondLeaf});
+		}
+		int firstFragment = fragment(firstLeaf.hash, shift);
+		int secondFragment = fragment(secondLeaf.hash, shift);
+		if (firstFragment == secondFragment) {
+			return new TrieNode(1 << firstFragment, new Object[] {mergeLeaves(firstLeaf, secondLeaf, shift - 5)});
+		}
+		Object[] children = firstFragment < secondFragment ? new Object[] {firstLeaf, secondLeaf}
+				: new Object[] {secondLeaf, firstLeaf};
+		return new TrieNode((1 << firstFragment) | (1 << secondFragment), children);
+	}
+
+	/** Method trieRemove returns a new trie without key, copying only the nodes on its path. A node left with
+	 * 	a single leaf is replaced by the leaf, so the trie stays as shallow as it would be if built afresh.
+	 * @param node
+	 * @param key
+	 * @param hash
+	 * @param shift
+	 * @return Object - the new root, or null if the trie is empty
+	 */
+	private static Object trieRemove(Object node, long key, int hash, int shift) {
+		if (node == null) {
+			return null;
+		}
+		if (node instanceof TrieLeaf) {
+			return ((TrieLeaf) node).key == key ? null : node;
+		}
+		if (node instanceof CollisionNode) {
+			TrieLeaf[] leaves = ((CollisionNode) node).leaves;
+			for (int index = 0; index < leaves.length; index++) {
+				if (leaves[index].key == key) {
+					if (leaves.length == 2) {
+						return leaves[1 - index];
+					}
+					TrieLeaf[] shrunkLeaves = new TrieLeaf[leaves.length - 1];
+					System.arraycopy(leaves, 0, shrunkLeaves, 0, index);
+					System.arraycopy(leaves, index + 1, shrunkLeaves, index, leaves.length - index - 1);
+					return new CollisionNode(shrunkLeaves);
+				}
+			}
+			return node;
+		}
+		TrieNode trieNode = (TrieNode) node;
+		int bit = 1 << fragment(hash, shift);
+		if ((trieNode.bitmap & bit) == 0) {
+			return node;
+		}
+		int position = Integer.bitCount(trieNode.bitmap & (bit - 1));
+		Object child = trieNode.children[position];
+		Object newChild = trieRemove(child, key, hash, shift - 5);
+		if (newChild == child) {
+			return node;
+		}
+		if (newChild == null) {
+			if (trieNode.children.length == 1) {
+				return null;
+			}
+			if (trieNode.children.length == 2 && trieNode.children[1 - position] instanceof TrieLeaf) {
+				return trieNode.children[1 - position];
+			}
+			Object[] shrunkChildren = new Object[trieNode.children.length - 1];
+			System.arraycopy(trieNode.children, 0, shrunkChildren, 0, position);
+			System.arraycopy(trieNode.children, position + 1, shrunkChildren, position,
+					trieNode.children.length - position - 1);
+			return new TrieNode(trieNode.bitmap & ~bit, shrunkChildren);
+		}
+		if (trieNode.children.length == 1 && newChild instanceof TrieLeaf) {
+			return newChild;
+		}
+		Object[] copiedChildren = trieNode.children.clone();
+		copiedChildren[position] = newChild;
+		return new TrieNode(trieNode.bitmap, copiedChildren);
+	}
+
+	/** Method buildTrie builds a trie from keys and the entries in the same positions in one pass. The keys
+	 * 	are sorted by hash, so the leaves under each node are next to each other and each node is made once.
+	 * @param keys
+	 * @param entries - in name order
+	 * @param groupEqualKeys - true to store the entries of equal keys together as a PersonEntry[] in name
+	 * 	order, false to store one PersonEntry per key
+	 * @return Object - the root
+	 */
+	private static Object buildTrie(long[] keys, PersonEntry[] entries, boolean groupEqualKeys) {
+		int count = keys.length;
+		// Sort by unsigned hash, then by position, packed into one long so the sort needs no objects.
+		long[] order = new long[count];
+		for (int index = 0; index < count; index++) {
+			order[index] = ((long) (LongSlotIndex.hash(keys[index]) ^ Integer.MIN_VALUE) << 32) | index;
+		}
+		Arrays.sort(order);
+		TrieLeaf[] leaves = new TrieLeaf[count];
+		int leafCount = 0;
+		int runStart = 0;
+		while (runStart < count) {
+			int runEnd = runStart + 1;
+			while (runEnd < count && (order[runEnd] >>> 32) == (order[runStart] >>> 32)) {
+				runEnd++;
+			}
+			long runKey = keys[(int) order[runStart]];
+			boolean sameKey = true;
+			for (int index = runStart + 1; index < runEnd && sameKey; index++) {
+				sameKey = keys[(int) order[index]] == runKey;
+			}
+			if (sameKey) {
+				PersonEntry[] runEntries = new PersonEntry[runEnd - runStart];
+				for (int index = runStart; index < runEnd; index++) {
+					runEntries[index - runStart] = entries[(int) order[index]];
+				}
+				leaves[leafCount++] = new TrieLeaf(runKey,
+						groupEqualKeys ? runEntries : runEntries[runEntries.length - 1]);
+				runStart = runEnd;
+				continue;
+			}
+			// Different keys share this hash, so group the run by key, keeping the order of positions.
+			for (int first = runStart; first < runEnd; first++) {
+				if (order[first] == -1L) {
+					continue;
+				}
+				long key = keys[(int) order[first]];
+				int sameKeyCount = 0;
+				for (int other = first; other < runEnd; other++) {
+					if (order[other] != -1L && keys[(int) order[other]] == key) {
+						sameKeyCount++;
+					}
+				}
+				PersonEntry[] sameKeyEntries = new PersonEntry[sameKeyCount];
+				sameKeyCount = 0;
+				for (int other = first; other < runEnd; other++) {
+					if (order[other] != -1L && keys[(int) order[other]] == key) {
+						sameKeyEntries[sameKeyCount++] = entries[(int) order[other]];
+						order[other] = -1L;
+					}
+				}
+				leaves[leafCount++] = new TrieLeaf(key,
+						groupEqualKeys ? sameKeyEntries : sameKeyEntries[sameKeyEntries.length - 1]);
+			}
+			runStart = runEnd;
+		}
+		return leafCount == 0 ? null : buildTrieNode(leaves, 0, leafCount, FIRST_SHIFT);
+	}
+
+	private static Object buildTrieNode(TrieLeaf[] leaves, int from, int to, int shift) {
+		if (to - from == 1) {
+			return leaves[from];
+		}
+		if (shift < LAST_SHIFT) {
+			return new CollisionNode(Arrays.copyOfRange(leaves, from, to));
+		}
+		int bitmap = 0;
+		for (int index = from; index < to; index++) {
+			bitmap |= 1 << fragment(leaves[index].hash, shift);
+		}
+		Object[] children = new Object[Integer.bitCount(bitmap)];
+		int childCount = 0;
+		int childStart = from;
+		while (childStart < to) {
+			int childFragment = fragment(leaves[childStart].hash, shift);
+			int childEnd = childStart + 1;
+			while (childEnd < to && fragment(leaves[childEnd].hash, shift) == childFragment) {
+				childEnd++;
+			}
+			children[childCount++] = buildTrieNode(leaves, childStart, childEnd, shift - 5);
+			childStart = childEnd;
+		}
+		return new TrieNode(bitmap, children);
+	}
+
+	/** This class is a Person with the collation key and the sequence number that place it in name order.
+	 * 	The sequence number orders equal names: people added later have higher numbers, and an updated Person
+	 * 	gets a number that puts it where PersonNameOrder.update puts it.
+	 */
+	private static class PersonEntry implements Comparable<PersonEntry> {
+
+		private final Person person;
+		private final String collationKey;
+		private final long sequence;
+
+		PersonEntry(Person person, long sequence) {
+			this.person = person;
+			this.collationKey = PersonNameOrder.collationKey(person);
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(PersonEntry otherEntry) {
+			int keyComparison = collationKey.compareTo(otherEntry.collationKey);
+			return keyComparison != 0 ? keyComparison : Long.compare(sequence, otherEntry.sequence);
+		}
+	}
+
+	/** This class is a node of the persistent AVL tree. Nodes are never changed, so an insert or remove
+	 * 	makes new nodes along one path and shares every other subtree with the tree before it.
+	 */
+	private static class NameNode {
+
+		private final PersonEntry entry;
+		private final NameNode left;
+		private final NameNode right;
+		private final int height;
+		private final int size;
+
+		NameNode(PersonEntry entry, NameNode left, NameNode right) {
+			this.entry = entry;
+			this.left = left;
+			this.right = right;
+			this.height = Math.max(height(left), height(right)) + 1;
+			this.size = size(left) + size(right) + 1;
+		}
+
+		static int height(NameNode node) {
+			return node == null ? 0 : node.height;
+		}
+
+		static int size(NameNode node) {
+			return node == null ? 0 : node.size;
+		}
+
+		static NameNode build(PersonEntry[] entries, int from, int to) {
+			if (from >= to) {
+				return null;
+			}
+			int middle = (from + to) >>> 1;
+			return new NameNode(entries[middle], build(entries, from, middle), build(entries, middle + 1, to));
+		}
+
+		static NameNode insert(NameNode node, PersonEntry newEntry) {
+			if (node == null) {
+				return new NameNode(newEntry, null, null);
+			}
+			if (newEntry.compareTo(node.entry) < 0) {
+				return balance(node.entry, insert(node.left, newEntry), node.right);
+			}
+			return balance(node.entry, node.left, insert(node.right, newEntry));
+		}
+
+		static NameNode remove(NameNode node, PersonEntry oldEntry) {
+			if (node == null) {
+				return null;
+			}
+			int comparison = oldEntry.compareTo(node.entry);
+			if (comparison < 0) {
+				return balance(node.entry, remove(node.left, oldEntry), node.right);
+			}
+			if (comparison > 0) {
+				return balance(node.entry, node.left, remove(node.right, oldEntry));
+			}
+			if (node.left == null) {
+				return node.right;
+			}
+			if (node.right == null) {
+				return node.left;
+			}
+			NameNode successor = node.right;
+			while (successor.left != null) {
+				successor = successor.left;
+			}
+			return balance(successor.entry, node.left, removeFirst(node.right));
+		}
+
+		static NameNode removeFirst(NameNode node) {
+			if (node.left == null) {
+				return node.right;
+			}
+			return balance(node.entry, removeFirst(node.left), node.right);
+		}
+
+		/** Method balance makes a node from entry and two subtrees whose heights differ by at most 2,
+		 * 	rotating once or twice if they differ by 2.
+		 */
+		static NameNode balance(PersonEntry entry, NameNode left, NameNode right) {
+			int leftHeight = height(left);
+			int rightHeight = height(right);
+			if (leftHeight > rightHeight + 1) {
+				if (height(left.left) >= height(left.right)) {
+					return new NameNode(left.entry, left.left, new NameNode(entry, left.right, right));
+				}
+				NameNode pivot = left.right;
+				return new NameNode(pivot.entry, new NameNode(left.entry, left.left, pivot.left),
+						new NameNode(entry, pivot.right, right));
+			}
+			if (rightHeight > leftHeight + 1) {
+				if (height(right.right) >= height(right.left)) {
+					return new NameNode(right.entry, new NameNode(entry, left, right.left), right.right);
+				}
+				NameNode pivot = right.left;
+				return new NameNode(pivot.entry, new NameNode(entry, left, pivot.left),
+						new NameNode(right.entry, pivot.right, right.right));
+			}
+			return new NameNode(entry, left, right);
+		}
+
+		static void forEachEntry(NameNode root, Consumer<PersonEntry> action) {
+			NameNode[] stack = new NameNode[height(root) + 1];
+			int depth = 0;
+			NameNode node = root;
+			while (node != null || depth > 0) {
+				while (node != null) {
+					stack[depth++] = node;
+					node = node.left;
+				}
+				node = stack[--depth];
+				action.accept(node.entry);
+				node = node.right;
+			}
+		}
+	}
+
+	/** This class is a key and its value in a trie. The hash of the key is kept so it is not worked out again
+	 * 	at each level.
+	 */
+	private static class TrieLeaf {
+
+		private final long key;
+		private final Object value;
+		private final int hash;
+
+		TrieLeaf(long key, Object value) {
+			this.key = key;
+			this.value = value;
+			this.hash = LongSlotIndex.hash(key);
+		}
+	}
+
+	/** This class is an inner node of a trie. Bit i of bitmap is set if the node has a child for fragment i,
+	 * 	and the children, each a TrieLeaf, TrieNode, or CollisionNode, are stored in fragment order.
+	 */
+	private static class TrieNode {
+
+		private final int bitmap;
+		private final Object[] children;
+
+		TrieNode(int bitmap, Object[] children) {
+			this.bitmap = bitmap;
+			this.children = children;
+		}
+	}
+
+	/** This class holds the leaves of keys whose hashes are equal in all 32 bits.
+	 */
+	private static class CollisionNode {
+
+		private final TrieLeaf[] leaves;
+
+		CollisionNode(TrieLeaf[] leaves) {
+			this.leaves = leaves;
+		}
+	}
+
+	/** This class gathers search matches into a Person array that grows as needed.
+	 */
+	private static class PersonCollector implements Consumer<Person> {
+
+		private Person[] people = new Person[16];
+		private int count = 0;
+
+		@Override
+		public void accept(Person currentPerson) {
+			if (count == people.length) {
+				people = Arrays.copyOf(people, count * 2);
+			}
+			people[count++] = currentPerson;
+		}
+
+		Person[] toArray() {
+			return Arrays.copyOf(people, count);
+		}
+	}
+}
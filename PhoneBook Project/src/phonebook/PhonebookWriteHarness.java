@@ -0,0 +1,187 @@
+package phonebook;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** This class checks the write paths that several threads share. Many threads add people one at a time to a
+ * 	ConcurrentPhonebook whose PhonebookLog uses GROUP_COMMIT, and the adds must share forces of the log: each
+ * 	writer waits for its force after the write lock is released, so the writes made meanwhile join the same
+ * 	force. The check fails if there are more than a quarter as many forces as writes, or a person is missing.
+ * 	Then a batch is added to a ShardedPhonebook in which one shard cannot store its part, and the shards that
+ * 	stored theirs must take them back, so no one is added and the people keep the personIDs they had.
+ * 	It prints each check and exits with status 1 if one failed.
+ * 	Usage: PhonebookWriteHarness [threads] [writes] [groupCommitMillis]
+ * 		threads - the number of writing threads, 16 by default
+ * 		writes - the number of adds each thread makes, 50 by default
+ * 		groupCommitMillis - how often the log is forced, 10 by default
+ */
+public class PhonebookWriteHarness {
+
+	private static final int DEFAULT_THREADS = 16;
+	private static final int DEFAULT_WRITES = 50;
+	private static final long DEFAULT_GROUP_COMMIT_MILLIS = 10;
+	private static final long FIRST_PHONE = 3000000000L;
+	private static final int SHARD_COUNT = 4;
+	private static final int SHARD_BATCH_SIZE = 1000;
+
+	public static void main(String[] args) {
+		int threadCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+		int writeCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WRITES;
+		long groupCommitMillis = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_GROUP_COMMIT_MILLIS;
+		Path workDirectory;
+		try {
+			workDirectory = Files.createTempDirectory("phonebook-write");
+		} catch (IOException exception) {
+			System.out.println("PhonebookWriteHarness - could not make a work directory: " + exception.getMessage());
+			return;
+		}
+		int failureCount = 0;
+		try {
+			failureCount += checkGroupCommit(workDirectory.resolve("group.log"), threadCount, writeCount,
+					groupCommitMillis);
+		} catch (IOException exception) {
+			System.out.println("PhonebookWriteHarness - could not use the log: " + exception.getMessage());
+			failureCount++;
+		} finally {
+			deleteDirectory(workDirectory);
+		}
+		failureCount += checkShardRollback();
+		System.out.println(failureCount == 0 ? "All checks passed" : failureCount + " checks failed");
+		if (failureCount > 0) {
+			System.exit(1);
+		}
+	}
+
+	/** Method checkGroupCommit has threadCount threads each add writeCount people to a ConcurrentPhonebook logged
+	 * 	with GROUP_COMMIT, and checks that every person was added and that the adds shared forces.
+	 * @return int - 1 if the check failed, otherwise 0
+	 * @throws IOException if the log cannot be opened
+	 */
+	private static int checkGroupCommit(Path logPath, int threadCount, int writeCount, long groupCommitMillis)
+			throws IOException {
+		ConcurrentPhonebook targetPhonebook = new ConcurrentPhonebook("Group Commit");
+		int[] failedAdds = new int[threadCount];
+		long startNanos;
+		long elapsedNanos;
+		long forceCount;
+		try (PhonebookLog phonebookLog = new PhonebookLog(logPath, PhonebookLog.SyncPolicy.GROUP_COMMIT,
+				groupCommitMillis)) {
+			targetPhonebook.setPhonebookLog(phonebookLog);
+			Thread[] writers = new Thread[threadCount];
+			for (int thread = 0; thread < threadCount; thread++) {
+				int writer = thread;
+				writers[thread] = new Thread(() -> {
+					for (int write = 0; write < writeCount; write++) {
+						Person newPerson = new Person(0, "Writer" + writer + " Number" + write, write + " Main St", "",
+								"Peoria", "IL", 61602, 0, FIRST_PHONE + writer * writeCount + write);
+						if (!targetPhonebook.addPerson(newPerson)) {
+							failedAdds[writer]++;
+						}
+					}
+				});
+			}
+			startNanos = System.nanoTime();
+			for (Thread writer : writers) {
+				writer.start();
+			}
+			for (Thread writer : writers) {
+				try {
+					writer.join();
+				} catch (InterruptedException exception) {
+					Thread.currentThread().interrupt();
+					System.out.println("PhonebookWriteHarness - interrupted while the writers ran.");
+					return 1;
+				}
+			}
+			elapsedNanos = System.nanoTime() - startNanos;
+			forceCount = phonebookLog.forceCount();
+		}
+		int totalWrites = threadCount * writeCount;
+		int failedCount = 0;
+		for (int count : failedAdds) {
+			failedCount += count;
+		}
+		System.out.printf("Group commit: %d adds from %d threads in %.2f s, %d forces of the log%n", totalWrites,
+				threadCount, elapsedNanos / 1e9, forceCount);
+		if (failedCount > 0 || targetPhonebook.numberOfPeople() != totalWrites) {
+			System.out.println("  FAILED: " + failedCount + " adds failed and " + targetPhonebook.numberOfPeople()
+					+ " people are in the phonebook");
+			return 1;
+		}
+		if (forceCount * 4 > totalWrites) {
+			System.out.println("  FAILED: the adds did not share forces of the log");
+			return 1;
+		}
+		return 0;
+	}
+
+	/** Method checkShardRollback adds a batch to a ShardedPhonebook, then a second batch while the store of
+	 * 	one shard refuses every batch, and checks that the second batch left no one behind in the other shards.
+	 * @return int - 1 if the check failed, otherwise 0
+	 */
+	private static int checkShardRollback() {
+		boolean[] isFailing = new boolean[1];
+		int[] storeCount = new int[1];
+		ShardedPhonebook targetPhonebook = new ShardedPhonebook("Shard Rollback", SHARD_COUNT, () -> {
+			storeCount[0]++;
+			if (storeCount[0] != 2) {
+				return new PersonStore();
+			}
+			return new PersonStore() {
+				@Override
+				public int[] appendAll(Person[] newPeople, int count) {
+					if (isFailing[0]) {
+						throw new IllegalStateException("the store of this shard refuses the batch");
+					}
+					return super.appendAll(newPeople, count);
+				}
+			};
+		});
+		Person[] firstBatch = makeBatch(FIRST_PHONE);
+		Person[] secondBatch = makeBatch(FIRST_PHONE + SHARD_BATCH_SIZE);
+		boolean isFirstAdded = targetPhonebook.addPeople(firstBatch, firstBatch.length);
+		isFailing[0] = true;
+		boolean isSecondAdded = targetPhonebook.addPeople(secondBatch, secondBatch.length);
+		int secondBatchFound = 0;
+		int secondBatchNumbered = 0;
+		for (Person newPerson : secondBatch) {
+			secondBatchFound += targetPhonebook.findPeople(newPerson.getPersonPhone()).length;
+			if (newPerson.getPersonID() != 0) {
+				secondBatchNumbered++;
+			}
+		}
+		System.out.println("Shard rollback: " + targetPhonebook.numberOfPeople() + " people after a batch of "
+				+ SHARD_BATCH_SIZE + " and a batch that one of " + SHARD_COUNT + " shards refused");
+		if (!isFirstAdded || isSecondAdded || targetPhonebook.numberOfPeople() != SHARD_BATCH_SIZE
+				|| secondBatchFound > 0 || secondBatchNumbered > 0) {
+			System.out.println("  FAILED: the refused batch " + (isSecondAdded ? "was reported added, " : "")
+					+ "left " + secondBatchFound + " people in the other shards, and " + secondBatchNumbered
+					+ " with new personIDs");
+			return 1;
+		}
+		return 0;
+	}
+
+	private static Person[] makeBatch(long firstPhone) {
+		Person[] batch = new Person[SHARD_BATCH_SIZE];
+		for (int index = 0; index < batch.length; index++) {
+			batch[index] = new Person(0, "Batch Member", index + " Main St", "", "Peoria", "IL", 61602, 0,
+					firstPhone + index);
+		}
+		return batch;
+	}
+
+	private static void deleteDirectory(Path directory) {
+		try {
+			try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+				for (Path file : (Iterable<Path>) files::iterator) {
+					Files.deleteIfExists(file);
+				}
+			}
+			Files.deleteIfExists(directory);
+		} catch (IOException exception) {
+			System.out.println("PhonebookWriteHarness - could not clean up " + directory);
+		}
+	}
+}
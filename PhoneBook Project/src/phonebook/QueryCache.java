@@ -0,0 +1,383 @@
+package phonebook;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** This class keeps the results of recent Phonebook.findPeople searches, so that a search repeated before the
+ * 	phonebook changes, such as "Smith" or "St. Louis", is answered without searching the indexes again.
+ * 	A result is kept under its search type and the search term folded the same way the searches fold it,
+ * 	so "Smith", " smith" and "SMITH" share one result. The results are kept in least recently used order,
+ * 	and the least recently used are dropped once the estimated memory of all results passes maxBytes.
+ * 	The estimate counts each Person of a result as if only the cache kept it, so it is an upper bound for any
+ * 	RecordStore. A result larger than a quarter of maxBytes is not kept, so one broad search cannot push
+ * 	out every other result.
+ * 	The phonebook tells the cache about each change: startChange before it changes anything, and finishChange
+ * 	with every Person added, deleted, or updated, both before and after the update, once it is done.
+ * 	finishChange drops only the results of searches those people match: the phone and zip results of their
+ * 	phone numbers and zip codes, and the name, street, city, and state results whose term is part of the
+ * 	matching field. A change of many people drops every name, street, city, and state result instead, and
+ * 	if it also touched more people than there are results, every result.
+ * 	Person has public setters, so the cache keeps its own copy of each Person it is given and hands out new
+ * 	copies, and a caller that changes a Person it found does not change what later searches find.
+ * 	The generation guards against a search that ran while a change was made: it is odd while a change is
+ * 	being made, and a result is only kept if the generation is even and the same as when its search started.
+ * 	One cache serves one phonebook. It is safe to use from many threads.
+ */
+public class QueryCache {
+
+	public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+	// The search types of findPeople(long) and findPeople(int), after the 1 to 6 of findPeople(String, int).
+	static final int PHONE_SEARCH = 7;
+	static final int ZIP_SEARCH = 8;
+
+	// Rough sizes on a 64-bit JVM: a map entry with its key and result, an array reference, and a Person
+	// apart from the characters of its strings.
+	private static final int ENTRY_SIZE = 128;
+	private static final int REFERENCE_SIZE = 8;
+	private static final int PERSON_SIZE = 160;
+	private static final int MAX_RESULT_SHARE = 4;
+	// A change of more people than this drops the text results instead of checking each against every Person.
+	private static final int MAX_PEOPLE_CHECKED = 256;
+
+	private final long maxBytes;
+	// In access order, so iteration starts at the least recently used result.
+	private final LinkedHashMap<QueryKey, Person[]> results = new LinkedHashMap<QueryKey, Person[]>(16, 0.75f, true);
+	private long cachedBytes = 0;
+	private int textResultCount = 0;
+	private long generation = 0;
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+	private long invalidationCount = 0;
+
+	/** Constructor to build an empty QueryCache of DEFAULT_MAX_BYTES.
+	 */
+	public QueryCache() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	/** Constructor to build an empty QueryCache that keeps results of up to about maxBytes of memory.
+	 * @param maxBytes
+	 */
+	public QueryCache(long maxBytes) {
+		this.maxBytes = Math.max(0, maxBytes);
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/** Method key returns the key of a findPeople(String, int) search.
+	 * @param searchString
+	 * @param searchType - 1 to 6
+	 * @return QueryKey
+	 */
+	static QueryKey key(String searchString, int searchType) {
+		return new QueryKey(searchType, TrigramIndex.fold(searchString.trim()), 0);
+	}
+
+	/** Method phoneKey returns the key of a findPeople(long) search.
+	 * @param searchPhone
+	 * @return QueryKey
+	 */
+	static QueryKey phoneKey(long searchPhone) {
+		return new QueryKey(PHONE_SEARCH, null, searchPhone);
+	}
+
+	/** Method zipKey returns the key of a findPeople(int) search.
+	 * @param searchZip
+	 * @return QueryKey
+	 */
+	static QueryKey zipKey(int searchZip) {
+		return new QueryKey(ZIP_SEARCH, null, searchZip);
+	}
+
+	/** Method getGeneration returns the generation to pass to put for a search that starts now.
+	 * @return long
+	 */
+	synchronized long getGeneration() {
+		return generation;
+	}
+
+	/** Method get returns a copy of the result kept for key, with a copy of each Person, and makes it the most
+	 * 	recently used.
+	 * @param key
+	 * @return Person[] - the people found by the search, or null if no result is kept for it
+	 */
+	Person[] get(QueryKey key) {
+		Person[] peopleFound;
+		synchronized (this) {
+			peopleFound = results.get(key);
+			if (peopleFound == null) {
+				missCount++;
+				return null;
+			}
+			hitCount++;
+		}
+		// A kept result is never changed, only replaced, so it is copied outside the lock.
+		return copyPeople(peopleFound);
+	}
+
+	/** Method put keeps a copy of the result of the search for key, with a copy of each Person, unless the
+	 * 	phonebook changed since searchGeneration or the result is too large, and then drops the least recently
+	 * 	used results until the cache fits in maxBytes.
+	 * @param key
+	 * @param peopleFound
+	 * @param searchGeneration - the generation when the search started
+	 */
+	void put(QueryKey key, Person[] peopleFound, long searchGeneration) {
+		long resultBytes = estimateBytes(key, peopleFound);
+		if (resultBytes > maxBytes / MAX_RESULT_SHARE) {
+			return;
+		}
+		Person[] keptPeople = copyPeople(peopleFound);
+		synchronized (this) {
+			if (searchGeneration != generation || (generation & 1) != 0) {
+				return;
+			}
+			Person[] replacedResult = results.put(key, keptPeople);
+			if (replacedResult != null) {
+				cachedBytes -= estimateBytes(key, replacedResult);
+			} else if (key.term != null) {
+				textResultCount++;
+			}
+			cachedBytes += resultBytes;
+			Iterator<Map.Entry<QueryKey, Person[]>> leastRecentlyUsed = results.entrySet().iterator();
+			while (cachedBytes > maxBytes && leastRecentlyUsed.hasNext()) {
+				Map.Entry<QueryKey, Person[]> eldest = leastRecentlyUsed.next();
+				leastRecentlyUsed.remove();
+				forget(eldest.getKey(), eldest.getValue());
+				evictionCount++;
+			}
+		}
+	}
+
+	/** Method startChange is called before the phonebook changes anything. Results of searches that started
+	 * 	before it are not kept, and neither are results of searches that start before finishChange.
+	 */
+	synchronized void startChange() {
+		if ((generation & 1) == 0) {
+			generation++;
+		}
+	}
+
+	/** Method finishChange is called once a change is made, with every Person it touched: each Person added
+	 * 	or deleted, and each updated Person both as it was and as it is now. It drops the results of the
+	 * 	searches those people match, and results are kept again.
+	 * @param changedPeople
+	 * @param count
+	 */
+	synchronized void finishChange(Person[] changedPeople, int count) {
+		if (!results.isEmpty() && count > 0) {
+			if (count > MAX_PEOPLE_CHECKED && count >= results.size()) {
+				invalidationCount += results.size();
+				clearResults();
+			} else {
+				dropMatchingResults(changedPeople, count);
+			}
+		}
+		if ((generation & 1) != 0) {
+			generation++;
+		}
+	}
+
+	/** Method clear drops every result. Searches running now do not keep theirs. The statistics are kept.
+	 */
+	public synchronized void clear() {
+		clearResults();
+		generation += 2;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/** Method getEvictionCount returns the number of results dropped to keep the cache within maxBytes.
+	 * @return long
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/** Method getInvalidationCount returns the number of results dropped because the phonebook changed.
+	 * @return long
+	 */
+	public synchronized long getInvalidationCount() {
+		return invalidationCount;
+	}
+
+	/** Method getHitRate returns the share of searches answered from the cache.
+	 * @return double - from 0 to 1, 0 before the first search
+	 */
+	public synchronized double getHitRate() {
+		long searchCount = hitCount + missCount;
+		return searchCount == 0 ? 0 : (double) hitCount / searchCount;
+	}
+
+	/** Method size returns the number of results kept.
+	 * @return int
+	 */
+	public synchronized int size() {
+		return results.size();
+	}
+
+	/** Method getCachedBytes returns the estimated memory of the results kept.
+	 * @return long
+	 */
+	public synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	/** Method resetStatistics sets the hit, miss, eviction, and invalidation counts back to 0.
+	 */
+	public synchronized void resetStatistics() {
+		hitCount = 0;
+		missCount = 0;
+		evictionCount = 0;
+		invalidationCount = 0;
+	}
+
+	/** Method toString overrides the default Object.toString to summarize the cache and its statistics.
+	 * @return String
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format("QueryCache: %d results, %d of %d bytes, %d hits, %d misses (%.1f%% hits), "
+				+ "%d evictions, %d invalidations", results.size(), cachedBytes, maxBytes, hitCount, missCount,
+				getHitRate() * 100, evictionCount, invalidationCount);
+	}
+
+	/** Method dropMatchingResults drops the phone and zip results of each changed Person by key, then checks
+	 * 	each name, street, city, and state result against the changed people in one pass over the results.
+	 * @param changedPeople
+	 * @param count
+	 */
+	private void dropMatchingResults(Person[] changedPeople, int count) {
+		for (int index = 0; index < count; index++) {
+			dropResult(phoneKey(changedPeople[index].getPersonPhone()));
+			dropResult(zipKey(changedPeople[index].getAddressZip()));
+		}
+		if (textResultCount == 0) {
+			return;
+		}
+		boolean dropsAllText = count > MAX_PEOPLE_CHECKED;
+		// The fields each search type looks in, folded as the indexes fold them: foldedFields[person][type - 1].
+		String[][] foldedFields = new String[dropsAllText ? 0 : count][];
+		for (int index = 0; index < foldedFields.length; index++) {
+			Person changedPerson = changedPeople[index];
+			foldedFields[index] = new String[] {TrigramIndex.fold(changedPerson.getFirstName()),
+					TrigramIndex.fold(changedPerson.getLastName()), TrigramIndex.fold(changedPerson.getPersonName()),
+					TrigramIndex.fold(changedPerson.getAddressStreet1()), TrigramIndex.fold(changedPerson.getAddressCity()),
+					TrigramIndex.fold(changedPerson.getAddressState())};
+		}
+		Iterator<Map.Entry<QueryKey, Person[]>> resultIterator = results.entrySet().iterator();
+		while (resultIterator.hasNext() && textResultCount > 0) {
+			Map.Entry<QueryKey, Person[]> result = resultIterator.next();
+			QueryKey key = result.getKey();
+			if (key.term == null) {
+				continue;
+			}
+			boolean isMatched = dropsAllText;
+			for (int index = 0; index < foldedFields.length && !isMatched; index++) {
+				isMatched = foldedFields[index][key.searchType - 1].contains(key.term);
+			}
+			if (isMatched) {
+				resultIterator.remove();
+				forget(key, result.getValue());
+				invalidationCount++;
+			}
+		}
+	}
+
+	/** Method dropResult drops the result kept for key, if there is one.
+	 * @param key
+	 */
+	private void dropResult(QueryKey key) {
+		Person[] droppedResult = results.remove(key);
+		if (droppedResult != null) {
+			forget(key, droppedResult);
+			invalidationCount++;
+		}
+	}
+
+	/** Method forget takes a result that was just removed from results out of the totals.
+	 * @param key
+	 * @param droppedResult
+	 */
+	private void forget(QueryKey key, Person[] droppedResult) {
+		cachedBytes -= estimateBytes(key, droppedResult);
+		if (key.term != null) {
+			textResultCount--;
+		}
+	}
+
+	private static Person[] copyPeople(Person[] people) {
+		Person[] copiedPeople = new Person[people.length];
+		for (int index = 0; index < people.length; index++) {
+			copiedPeople[index] = new Person(people[index]);
+		}
+		return copiedPeople;
+	}
+
+	private void clearResults() {
+		results.clear();
+		cachedBytes = 0;
+		textResultCount = 0;
+	}
+
+	/** Method estimateBytes returns the estimated memory of a result and its key.
+	 * @param key
+	 * @param peopleFound
+	 * @return long
+	 */
+	private static long estimateBytes(QueryKey key, Person[] peopleFound) {
+		long resultBytes = ENTRY_SIZE + (key.term == null ? 0 : 2L * key.term.length())
+				+ (long) REFERENCE_SIZE * peopleFound.length;
+		for (Person foundPerson : peopleFound) {
+			resultBytes += PERSON_SIZE + 2L * (length(foundPerson.getPersonName())
+					+ length(foundPerson.getAddressStreet1()) + length(foundPerson.getAddressStreet2())
+					+ length(foundPerson.getAddressCity()) + length(foundPerson.getAddressState()));
+		}
+		return resultBytes;
+	}
+
+	private static int length(String text) {
+		return text == null ? 0 : text.length();
+	}
+
+	/** This class is the key of one search: its search type and either its folded term or its number.
+	 */
+	static final class QueryKey {
+
+		private final int searchType;
+		private final String term;
+		private final long number;
+
+		QueryKey(int searchType, String term, long number) {
+			this.searchType = searchType;
+			this.term = term;
+			this.number = number;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof QueryKey)) {
+				return false;
+			}
+			QueryKey otherKey = (QueryKey) other;
+			return searchType == otherKey.searchType && number == otherKey.number
+					&& (term == null ? otherKey.term == null : term.equals(otherKey.term));
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * searchType + Long.hashCode(number)) + (term == null ? 0 : term.hashCode());
+		}
+	}
+}
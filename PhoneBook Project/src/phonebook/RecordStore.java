@@ -0,0 +1,86 @@
+package phonebook;
+
+/** This interface is the storage engine behind a Phonebook. A store hands out a slot number for each Person it
+ * 	holds, and the slot never changes while the Person is stored, so the Phonebook indexes refer to people
+ * 	by slot. Deleted slots may be reused by later appends.
+ * 	The numeric and state accessors let the Phonebook scan a field without building a Person for every slot.
+ * 	Implementations -
+ * 	PersonStore - keeps each Person object on the heap.
+ * 	ColumnarRecordStore - keeps each field in its own primitive or dictionary-encoded column and builds a
+ * 		Person only when get is called.
+ */
+public interface RecordStore {
+
+	/** Method append stores newPerson and returns the slot number used.
+	 * @param newPerson
+	 * @return int - the slot number
+	 */
+	int append(Person newPerson);
+
+	/** Method appendAll stores the first count people from newPeople and returns the slot numbers used
+	 * 	in the same order as newPeople.
+	 * @param newPeople
+	 * @param count
+	 * @return int[] - the slot number of each stored Person
+	 */
+	int[] appendAll(Person[] newPeople, int count);
+
+	/** Method set replaces the Person stored in a live slot.
+	 * @param slot
+	 * @param updatedPerson
+	 * @return boolean - true if the slot was live and was replaced, otherwise false.
+	 */
+	boolean set(int slot, Person updatedPerson);
+
+	/** Method delete removes the Person stored in a live slot.
+	 * @param slot
+	 * @return boolean - true if the slot was live and was deleted, otherwise false.
+	 */
+	boolean delete(int slot);
+
+	/** Method get returns the Person stored in the slot, or null if the slot is not live.
+	 * @param slot
+	 * @return Person
+	 */
+	Person get(int slot);
+
+	/** Method isLive returns true if the slot currently holds a Person.
+	 * @param slot
+	 * @return boolean
+	 */
+	boolean isLive(int slot);
+
+	/** Method slotCount returns the number of slots handed out so far. Valid slots are 0 to slotCount() - 1.
+	 * @return int
+	 */
+	int slotCount();
+
+	/** Method liveCount returns the number of people currently stored.
+	 * @return int
+	 */
+	int liveCount();
+
+	/** Method getPersonID returns the personID stored in a live slot.
+	 * @param slot
+	 * @return long
+	 */
+	long getPersonID(int slot);
+
+	/** Method getPersonPhone returns the phone number stored in a live slot.
+	 * @param slot
+	 * @return long
+	 */
+	long getPersonPhone(int slot);
+
+	/** Method getAddressZip returns the zip code stored in a live slot.
+	 * @param slot
+	 * @return int
+	 */
+	int getAddressZip(int slot);
+
+	/** Method getAddressState returns the state abbreviation stored in a live slot.
+	 * @param slot
+	 * @return String
+	 */
+	String getAddressState(int slot);
+}
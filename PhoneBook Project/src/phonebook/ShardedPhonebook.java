@@ -0,0 +1,335 @@
+package phonebook;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/** This class spreads the people of one phonebook over several shards so that changes to different shards
+ * 	run fully in parallel. Each shard is a ConcurrentPhonebook with its own storage, indexes, and lock, and
+ * 	a Person always lives in shard personID mod the number of shards. personIDs are handed out by one
+ * 	AtomicLong, so they are unique and in order across the whole phonebook, and sequential personIDs spread
+ * 	the people evenly over the shards. A shard stores each new Person with the personID it is given.
+ * 	A search runs on every shard at the same time, on the common ForkJoinPool, and the sorted results of
+ * 	the shards are merged into PersonName order. People with equal names keep the order of their shard, and
+ * 	those of a lower shard come first. The results are exact for each shard, but a change made while a
+ * 	search runs may be seen by some shards and not others.
+ * 	The shards keep no log or snapshot file, so a ShardedPhonebook lives in memory only.
+ */
+public class ShardedPhonebook {
+
+	private final String phonebookName;
+	private final ConcurrentPhonebook[] shards;
+	private final AtomicLong nextPersonID = new AtomicLong(1);
+
+	/** Constructor to build an empty ShardedPhonebook with shardCount shards that keep their people in a
+	 * 	PersonStore.
+	 * @param phonebookName
+	 * @param shardCount
+	 */
+	public ShardedPhonebook(String phonebookName, int shardCount) {
+		this(phonebookName, shardCount, PersonStore::new);
+	}
+
+	/** Constructor to build an empty ShardedPhonebook with shardCount shards, each keeping its people in its
+	 * 	own storage engine made by storeFactory, for example ColumnarRecordStore::new.
+	 * @param phonebookName
+	 * @param shardCount
+	 * @param storeFactory
+	 */
+	public ShardedPhonebook(String phonebookName, int shardCount, Supplier<RecordStore> storeFactory) {
+		this.phonebookName = phonebookName;
+		this.shards = new ConcurrentPhonebook[Math.max(1, shardCount)];
+		for (int index = 0; index < shards.length; index++) {
+			shards[index] = new ConcurrentPhonebook(phonebookName, storeFactory.get());
+		}
+	}
+
+	public String getPhonebookName() {
+		return phonebookName;
+	}
+
+	/** Method getShardCount returns the number of shards.
+	 * @return int
+	 */
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	/** Method addPerson prompts the user for a new person, or reads a pre-formatted string of person data,
+	 * 	and adds the person as in Phonebook.addPerson.
+	 * @param fromUserPrompts - true - prompt the user for person data. false - get pre-formatted input string.
+	 * @return boolean - true if the person is added, false if the person was not added successfully.
+	 */
+	public boolean addPerson(boolean fromUserPrompts) {
+		Person newPerson = new Person(nextPersonID.get());
+		boolean wasSuccessful;
+		if (fromUserPrompts) {
+			wasSuccessful = newPerson.promptUsertoUpdatePersonInfo();
+		} else {
+			wasSuccessful = newPerson.parsePersonInputString();
+		}
+		return wasSuccessful && storeNewPerson(newPerson);
+	}
+
+	/** Method addPerson validates newPerson, gives it the next personID, and stores it in its shard.
+	 * @param newPerson
+	 * @return boolean - true if the person is added, false if the person was not added successfully.
+	 */
+	public boolean addPerson(Person newPerson) {
+		return newPerson.isValidPerson(true) && storeNewPerson(newPerson);
+	}
+
+	/** Method addPeople gives the first count people of newPeople the next personIDs in array order and adds
+	 * 	them, each shard taking its part of the batch in one merge at the same time as the other shards.
+	 * 	The people must already be valid, as PhonebookImporter checks them. If a shard cannot add its part,
+	 * 	the parts the other shards added are deleted again, so the batch adds no one, and the people get back
+	 * 	the personIDs they had. A search made meanwhile may see part of the batch. The personIDs handed out
+	 * 	are not used again, as in storeNewPerson.
+	 * @param newPeople
+	 * @param count
+	 * @return boolean - true if every shard added its people, false if a shard could not and no one was added.
+	 */
+	boolean addPeople(Person[] newPeople, int count) {
+		long firstPersonID = nextPersonID.getAndAdd(count);
+		long[] previousPersonIDs = new long[count];
+		int[] shardCounts = new int[shards.length];
+		for (int index = 0; index < count; index++) {
+			previousPersonIDs[index] = newPeople[index].getPersonID();
+			newPeople[index].setPersonID(firstPersonID + index);
+			shardCounts[shardIndex(firstPersonID + index)]++;
+		}
+		Person[][] shardPeople = new Person[shards.length][];
+		for (int shard = 0; shard < shards.length; shard++) {
+			shardPeople[shard] = new Person[shardCounts[shard]];
+			shardCounts[shard] = 0;
+		}
+		for (int index = 0; index < count; index++) {
+			int shard = shardIndex(newPeople[index].getPersonID());
+			shardPeople[shard][shardCounts[shard]++] = newPeople[index];
+		}
+		CompletableFuture<?>[] pendingShards = new CompletableFuture<?>[shards.length];
+		for (int shard = 0; shard < shards.length; shard++) {
+			ConcurrentPhonebook targetShard = shards[shard];
+			Person[] people = shardPeople[shard];
+			pendingShards[shard] = CompletableFuture.supplyAsync(
+					() -> targetShard.storeNewPeopleWithIDs(people, people.length));
+		}
+		boolean[] isStored = new boolean[shards.length];
+		boolean wasSuccessful = true;
+		for (int shard = 0; shard < shards.length; shard++) {
+			try {
+				isStored[shard] = (Boolean) pendingShards[shard].join();
+			} catch (CompletionException exception) {
+				System.out.println("addPeople - shard " + shard + " failed: " + exception.getCause());
+			}
+			wasSuccessful &= isStored[shard];
+		}
+		if (wasSuccessful) {
+			return true;
+		}
+		// Take back the parts the other shards added, so the caller is not left with part of the batch.
+		for (int shard = 0; shard < shards.length; shard++) {
+			if (isStored[shard] && !shards[shard].storeDeletedPeople(shardPeople[shard], shardPeople[shard].length)) {
+				System.out.println("addPeople - could not take back the people added to shard " + shard + ".");
+			}
+		}
+		for (int index = 0; index < count; index++) {
+			newPeople[index].setPersonID(previousPersonIDs[index]);
+		}
+		return false;
+	}
+
+	/** Method updatePerson updates existingPerson in its shard as in Phonebook.updatePerson.
+	 * @param existingPerson
+	 * @param fromUserPrompts - true - prompt the user for updates. false - get pre-formatted input string.
+	 * @return boolean - true if the person is updated, false if the person was not updated successfully.
+	 */
+	public boolean updatePerson(Person existingPerson, boolean fromUserPrompts) {
+		return shardOf(existingPerson.getPersonID()).updatePerson(existingPerson, fromUserPrompts);
+	}
+
+	/** Method deletePerson deletes existingPerson from its shard as in Phonebook.deletePerson.
+	 * @param existingPerson
+	 * @return boolean - true if the person is deleted, false if the person was not found or the user cancels.
+	 */
+	public boolean deletePerson(Person existingPerson) {
+		return shardOf(existingPerson.getPersonID()).deletePerson(existingPerson);
+	}
+
+	/** Method isPersonInPhonebook returns true if the Person with the personID of currentPerson is stored.
+	 * @param currentPerson
+	 * @return boolean
+	 */
+	public boolean isPersonInPhonebook(Person currentPerson) {
+		return shardOf(currentPerson.getPersonID()).isPersonInPhonebook(currentPerson);
+	}
+
+	/** Method findPeople searches every shard as in Phonebook.findPeople and merges the results.
+	 * @param searchString
+	 * @param searchType - 1 first name, 2 last name, 3 full name, 4 street, 5 city, 6 state
+	 * @return Person[] sorted by PersonName, or null if searchType is not valid
+	 */
+	public Person[] findPeople(String searchString, int searchType) {
+		if (searchType < 1 || searchType > 6) {
+			System.out.println("findPerson - not a valid search type");
+			return null;
+		}
+		return fanOut(shard -> shard.findPeople(searchString, searchType), Integer.MAX_VALUE);
+	}
+
+	/** Method findPeople returns the people with the phone number searchPhone from every shard.
+	 * @param searchPhone
+	 * @return Person[] sorted by PersonName
+	 */
+	public Person[] findPeople(long searchPhone) {
+		return fanOut(shard -> shard.findPeople(searchPhone), Integer.MAX_VALUE);
+	}
+
+	/** Method findPeople returns the people with the zip code searchZip from every shard.
+	 * @param searchZip
+	 * @return Person[] sorted by PersonName
+	 */
+	public Person[] findPeople(int searchZip) {
+		return fanOut(shard -> shard.findPeople(searchZip), Integer.MAX_VALUE);
+	}
+
+	/** Method suggest returns up to limit people whose first name, last name, or full name starts with prefix,
+	 * 	taking the first limit matches of each shard and merging them.
+	 * @param prefix - the letters typed so far
+	 * @param limit - the maximum number of people to return
+	 * @return Person[] sorted by PersonName
+	 */
+	public Person[] suggest(String prefix, int limit) {
+		if (limit <= 0) {
+			return new Person[0];
+		}
+		return fanOut(shard -> shard.suggest(prefix, limit), limit);
+	}
+
+	/** Method numberOfPeople returns the total number of people in all shards.
+	 * @return Integer
+	 */
+	public Integer numberOfPeople() {
+		int total = 0;
+		for (ConcurrentPhonebook shard:shards) {
+			total += shard.numberOfPeople();
+		}
+		return total;
+	}
+
+	/** Method getPhonebookPersonArray returns the people of every shard merged into PersonName order.
+	 * @return Person[]
+	 */
+	public Person[] getPhonebookPersonArray() {
+		return fanOut(shard -> shard.getSnapshot().toArray(), Integer.MAX_VALUE);
+	}
+
+	/** Method toString summarizes the phonebook in the same format as Phonebook.toString.
+	 * @return String with the salient details of the phonebook
+	 */
+	@Override
+	public String toString() {
+		Person[] phonebookPersonArray = getPhonebookPersonArray();
+		StringBuilder outputBuilder = new StringBuilder();
+		outputBuilder.append(phonebookName).append(" has ").append(phonebookPersonArray.length);
+		outputBuilder.append(phonebookPersonArray.length == 1 ? " person:\n" : " total people:\n");
+		for (Person currentPerson:phonebookPersonArray) {
+			outputBuilder.append(currentPerson.toString()).append('\n');
+		}
+		return outputBuilder.toString();
+	}
+
+	/** Method storeNewPerson gives newPerson the next personID and stores it in its shard. If the shard does not
+	 * 	add it, newPerson gets back its previous personID, and the one handed out is not used again.
+	 * @param newPerson
+	 * @return boolean - true if the person is added
+	 */
+	private boolean storeNewPerson(Person newPerson) {
+		long previousPersonID = newPerson.getPersonID();
+		newPerson.setPersonID(nextPersonID.getAndIncrement());
+		if (!shardOf(newPerson.getPersonID()).storeNewPersonWithID(newPerson)) {
+			newPerson.setPersonID(previousPersonID);
+			return false;
+		}
+		return true;
+	}
+
+	private int shardIndex(long personID) {
+		return (int) Math.floorMod(personID, (long) shards.length);
+	}
+
+	private ConcurrentPhonebook shardOf(long personID) {
+		return shards[shardIndex(personID)];
+	}
+
+	/** Method fanOut runs query on every shard at the same time, the first shard on the calling thread and
+	 * 	the others on the common ForkJoinPool, and merges the sorted results.
+	 * @param query
+	 * @param limit - the maximum number of people to return
+	 * @return Person[] sorted by PersonName
+	 */
+	private Person[] fanOut(Function<ConcurrentPhonebook, Person[]> query, int limit) {
+		CompletableFuture<?>[] pendingResults = new CompletableFuture<?>[shards.length];
+		for (int shard = 1; shard < shards.length; shard++) {
+			ConcurrentPhonebook targetShard = shards[shard];
+			pendingResults[shard] = CompletableFuture.supplyAsync(() -> query.apply(targetShard));
+		}
+		Person[][] shardResults = new Person[shards.length][];
+		shardResults[0] = query.apply(shards[0]);
+		for (int shard = 1; shard < shards.length; shard++) {
+			shardResults[shard] = (Person[]) pendingResults[shard].join();
+		}
+		return mergeByName(shardResults, limit);
+	}
+
+	/** Method mergeByName merges arrays that are each sorted by PersonName into one sorted array, comparing
+	 * 	only collation keys as PersonNameOrder does. The merge is stable: people with equal names keep their
+	 * 	order within an array, and those of a lower array come first.
+	 * @param sortedArrays
+	 * @param limit - the maximum number of people to return
+	 * @return Person[]
+	 */
+	private static Person[] mergeByName(Person[][] sortedArrays, int limit) {
+		int total = 0;
+		String[][] collationKeys = new String[sortedArrays.length][];
+		for (int array = 0; array < sortedArrays.length; array++) {
+			if (sortedArrays[array] == null) {
+				sortedArrays[array] = new Person[0];
+			}
+			total += sortedArrays[array].length;
+			collationKeys[array] = new String[sortedArrays[array].length];
+		}
+		Person[] mergedArray = new Person[Math.min(total, limit)];
+		int[] positions = new int[sortedArrays.length];
+		for (int merged = 0; merged < mergedArray.length; merged++) {
+			int best = -1;
+			for (int array = 0; array < sortedArrays.length; array++) {
+				if (positions[array] < sortedArrays[array].length
+						&& (best < 0 || compareHeads(sortedArrays, collationKeys, positions, array, best) < 0)) {
+					best = array;
+				}
+			}
+			mergedArray[merged] = sortedArrays[best][positions[best]];
+			positions[best]++;
+		}
+		return mergedArray;
+	}
+
+	private static int compareHeads(Person[][] sortedArrays, String[][] collationKeys, int[] positions,
+			int firstArray, int secondArray) {
+		return headKey(sortedArrays, collationKeys, positions, firstArray)
+				.compareTo(headKey(sortedArrays, collationKeys, positions, secondArray));
+	}
+
+	/** Method headKey returns the collation key of the next Person of an array, working it out only once.
+	 */
+	private static String headKey(Person[][] sortedArrays, String[][] collationKeys, int[] positions, int array) {
+		int position = positions[array];
+		if (collationKeys[array][position] == null) {
+			collationKeys[array][position] = PersonNameOrder.collationKey(sortedArrays[array][position]);
+		}
+		return collationKeys[array][position];
+	}
+}
@@ -0,0 +1,290 @@
+package phonebook;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/** This class is the set of PersonStore slots matched by a Phonebook search, kept as primitive ints so that
+ * 	a search matching many people boxes and copies nothing per match. Sets from several searches can be
+ * 	combined with and, or, and andNot before any Person is built, for example the people in state IL whose
+ * 	city contains "spring" but whose street does not contain "main":
+ * 		phonebook.getPeople(phonebook.findSlots("IL", 6).and(phonebook.findSlots("spring", 5))
+ * 				.andNot(phonebook.findSlots("main", 4)))
+ * 	NOT of a set is phonebook.allSlots().andNot(set).
+ * 	A set with few slots for the range it covers is kept as a sorted int array, and a set with many is kept as
+ * 	a bitmap of one bit per slot, whichever is smaller. Sets never change once built, so they can be shared
+ * 	between threads. A set refers to the phonebook as it was when it was found, since a deleted slot may be
+ * 	reused, so combine and read sets before the phonebook is next changed.
+ */
+public final class SlotSet {
+
+	public static final SlotSet EMPTY = new SlotSet(new int[0], null, 0);
+
+	// One of sortedSlots and slotWords is null.
+	private final int[] sortedSlots;
+	private final long[] slotWords;
+	private final int cardinality;
+
+	private SlotSet(int[] sortedSlots, long[] slotWords, int cardinality) {
+		this.sortedSlots = sortedSlots;
+		this.slotWords = slotWords;
+		this.cardinality = cardinality;
+	}
+
+	/** Method of builds a set from slots in any order. The array may be changed.
+	 * @param slots
+	 * @return SlotSet
+	 */
+	static SlotSet of(int[] slots) {
+		boolean isSorted = true;
+		for (int index = 1; index < slots.length && isSorted; index++) {
+			isSorted = slots[index - 1] < slots[index];
+		}
+		if (!isSorted) {
+			Arrays.sort(slots);
+			int count = 0;
+			for (int index = 0; index < slots.length; index++) {
+				if (count == 0 || slots[count - 1] != slots[index]) {
+					slots[count] = slots[index];
+					count++;
+				}
+			}
+			slots = Arrays.copyOf(slots, count);
+		}
+		return ofSorted(slots, slots.length);
+	}
+
+	/** Method ofSorted builds a set from the first count elements of slots, which are in ascending order
+	 * 	with no repeats, such as the result of a ParallelScan. The array is kept if it is stored sparse.
+	 * @param slots
+	 * @param count
+	 * @return SlotSet
+	 */
+	static SlotSet ofSorted(int[] slots, int count) {
+		if (count == 0) {
+			return EMPTY;
+		}
+		int wordCount = (slots[count - 1] >>> 6) + 1;
+		if (!isDense(count, wordCount)) {
+			return new SlotSet(count == slots.length ? slots : Arrays.copyOf(slots, count), null, count);
+		}
+		long[] words = new long[wordCount];
+		for (int index = 0; index < count; index++) {
+			words[slots[index] >>> 6] |= 1L << slots[index];
+		}
+		return new SlotSet(null, words, count);
+	}
+
+	/** Method ofWords builds a set from a bitmap, switching to a sorted array if few bits are set.
+	 * @param words
+	 * @return SlotSet
+	 */
+	static SlotSet ofWords(long[] words) {
+		int count = 0;
+		int wordCount = 0;
+		for (int index = 0; index < words.length; index++) {
+			if (words[index] != 0L) {
+				count += Long.bitCount(words[index]);
+				wordCount = index + 1;
+			}
+		}
+		if (count == 0) {
+			return EMPTY;
+		}
+		if (isDense(count, wordCount)) {
+			return new SlotSet(null, wordCount == words.length ? words : Arrays.copyOf(words, wordCount), count);
+		}
+		int[] slots = new int[count];
+		int output = 0;
+		for (int index = 0; index < wordCount; index++) {
+			for (long word = words[index]; word != 0L; word &= word - 1) {
+				slots[output++] = (index << 6) + Long.numberOfTrailingZeros(word);
+			}
+		}
+		return new SlotSet(slots, null, count);
+	}
+
+	/** Method isDense returns true if count slots cost less as a bitmap of wordCount longs than as ints.
+	 * @param count
+	 * @param wordCount
+	 * @return boolean
+	 */
+	private static boolean isDense(int count, int wordCount) {
+		return count >= wordCount * 2;
+	}
+
+	/** Method size returns the number of slots in the set.
+	 * @return int
+	 */
+	public int size() {
+		return cardinality;
+	}
+
+	/** Method isEmpty returns true if the set has no slots.
+	 * @return boolean
+	 */
+	public boolean isEmpty() {
+		return cardinality == 0;
+	}
+
+	/** Method contains returns true if slot is in the set.
+	 * @param slot
+	 * @return boolean
+	 */
+	public boolean contains(int slot) {
+		if (slot < 0) {
+			return false;
+		}
+		if (slotWords != null) {
+			return (slot >>> 6) < slotWords.length && (slotWords[slot >>> 6] & (1L << slot)) != 0L;
+		}
+		return Arrays.binarySearch(sortedSlots, slot) >= 0;
+	}
+
+	/** Method and returns the slots in both this set and other.
+	 * @param other
+	 * @return SlotSet
+	 */
+	public SlotSet and(SlotSet other) {
+		if (slotWords != null && other.slotWords != null) {
+			long[] words = new long[Math.min(slotWords.length, other.slotWords.length)];
+			for (int index = 0; index < words.length; index++) {
+				words[index] = slotWords[index] & other.slotWords[index];
+			}
+			return ofWords(words);
+		}
+		// At least one side is a sorted array, so keep the slots of that side that the other contains.
+		SlotSet sparseSet = sortedSlots != null ? this : other;
+		SlotSet otherSet = sparseSet == this ? other : this;
+		return sparseSet.filter(otherSet, true);
+	}
+
+	/** Method or returns the slots in this set, other, or both.
+	 * @param other
+	 * @return SlotSet
+	 */
+	public SlotSet or(SlotSet other) {
+		if (isEmpty()) {
+			return other;
+		}
+		if (other.isEmpty()) {
+			return this;
+		}
+		if (sortedSlots != null && other.sortedSlots != null) {
+			int[] slots = new int[cardinality + other.cardinality];
+			int count = 0;
+			int left = 0;
+			int right = 0;
+			while (left < cardinality || right < other.cardinality) {
+				if (right == other.cardinality
+						|| (left < cardinality && sortedSlots[left] < other.sortedSlots[right])) {
+					slots[count++] = sortedSlots[left++];
+				} else if (left == cardinality || other.sortedSlots[right] < sortedSlots[left]) {
+					slots[count++] = other.sortedSlots[right++];
+				} else {
+					slots[count++] = sortedSlots[left++];
+					right++;
+				}
+			}
+			return ofSorted(slots, count);
+		}
+		long[] words = new long[Math.max(wordLength(), other.wordLength())];
+		orInto(words);
+		other.orInto(words);
+		return ofWords(words);
+	}
+
+	/** Method andNot returns the slots in this set that are not in other.
+	 * @param other
+	 * @return SlotSet
+	 */
+	public SlotSet andNot(SlotSet other) {
+		if (isEmpty() || other.isEmpty()) {
+			return this;
+		}
+		if (sortedSlots != null) {
+			return filter(other, false);
+		}
+		long[] words = slotWords.clone();
+		if (other.slotWords != null) {
+			for (int index = 0; index < Math.min(words.length, other.slotWords.length); index++) {
+				words[index] &= ~other.slotWords[index];
+			}
+		} else {
+			for (int index = 0; index < other.cardinality && (other.sortedSlots[index] >>> 6) < words.length; index++) {
+				words[other.sortedSlots[index] >>> 6] &= ~(1L << other.sortedSlots[index]);
+			}
+		}
+		return ofWords(words);
+	}
+
+	/** Method toArray returns the slots in ascending order.
+	 * @return int[]
+	 */
+	public int[] toArray() {
+		if (sortedSlots != null) {
+			return sortedSlots.clone();
+		}
+		int[] slots = new int[cardinality];
+		int output = 0;
+		for (int index = 0; index < slotWords.length; index++) {
+			for (long word = slotWords[index]; word != 0L; word &= word - 1) {
+				slots[output++] = (index << 6) + Long.numberOfTrailingZeros(word);
+			}
+		}
+		return slots;
+	}
+
+	/** Method forEach passes each slot to action in ascending order.
+	 * @param action
+	 */
+	public void forEach(IntConsumer action) {
+		if (sortedSlots != null) {
+			for (int index = 0; index < cardinality; index++) {
+				action.accept(sortedSlots[index]);
+			}
+			return;
+		}
+		for (int index = 0; index < slotWords.length; index++) {
+			for (long word = slotWords[index]; word != 0L; word &= word - 1) {
+				action.accept((index << 6) + Long.numberOfTrailingZeros(word));
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SlotSet of " + cardinality + (slotWords != null ? " slots (bitmap)" : " slots");
+	}
+
+	/** Method filter keeps the slots of this sorted array set that other contains, or does not contain.
+	 * @param other
+	 * @param keepContained - true to keep the slots in other, false to keep the slots not in other
+	 * @return SlotSet
+	 */
+	private SlotSet filter(SlotSet other, boolean keepContained) {
+		int[] slots = new int[cardinality];
+		int count = 0;
+		for (int index = 0; index < cardinality; index++) {
+			if (other.contains(sortedSlots[index]) == keepContained) {
+				slots[count++] = sortedSlots[index];
+			}
+		}
+		return count == cardinality ? this : ofSorted(slots, count);
+	}
+
+	private int wordLength() {
+		return slotWords != null ? slotWords.length : (sortedSlots[cardinality - 1] >>> 6) + 1;
+	}
+
+	private void orInto(long[] words) {
+		if (slotWords != null) {
+			for (int index = 0; index < slotWords.length; index++) {
+				words[index] |= slotWords[index];
+			}
+			return;
+		}
+		for (int index = 0; index < cardinality; index++) {
+			words[sortedSlots[index] >>> 6] |= 1L << sortedSlots[index];
+		}
+	}
+}
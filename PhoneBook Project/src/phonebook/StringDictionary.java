@@ -0,0 +1,100 @@
+package phonebook;
+
+import java.util.HashMap;
+
+/** This class gives each distinct String an int code so a column can store codes instead of String references.
+ * 	Many people share a city, state, or street, so each of those Strings is stored once. Codes are reference
+ * 	counted, and a code is reused once nothing refers to its String any more.
+ */
+public class StringDictionary {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private HashMap<String, Integer> codeByString = new HashMap<String, Integer>();
+	private String[] stringByCode = new String[INITIAL_CAPACITY];
+	private int[] referenceCountByCode = new int[INITIAL_CAPACITY];
+	private int codeCount = 0;
+	private int[] freeCodeArray = new int[INITIAL_CAPACITY];
+	private int freeCodeCount = 0;
+
+	/** Method acquire returns the code for value, adding value to the dictionary if needed, and counts
+	 * 	one more reference to it. A null value is stored as a blank String.
+	 * @param value
+	 * @return int - the code for value
+	 */
+	public int acquire(String value) {
+		if (value == null) {
+			value = "";
+		}
+		Integer existingCode = codeByString.get(value);
+		if (existingCode != null) {
+			referenceCountByCode[existingCode]++;
+			return existingCode;
+		}
+		int code;
+		if (freeCodeCount > 0) {
+			freeCodeCount--;
+			code = freeCodeArray[freeCodeCount];
+		} else {
+			if (codeCount == stringByCode.length) {
+				String[] grownStringArray = new String[codeCount * 2];
+				int[] grownCountArray = new int[codeCount * 2];
+				System.arraycopy(stringByCode, 0, grownStringArray, 0, codeCount);
+				System.arraycopy(referenceCountByCode, 0, grownCountArray, 0, codeCount);
+				stringByCode = grownStringArray;
+				referenceCountByCode = grownCountArray;
+			}
+			code = codeCount;
+			codeCount++;
+		}
+		stringByCode[code] = value;
+		referenceCountByCode[code] = 1;
+		codeByString.put(value, code);
+		return code;
+	}
+
+	/** Method release counts one less reference to the code and frees it when none are left.
+	 * @param code
+	 */
+	public void release(int code) {
+		referenceCountByCode[code]--;
+		if (referenceCountByCode[code] == 0) {
+			codeByString.remove(stringByCode[code]);
+			stringByCode[code] = null;
+			if (freeCodeCount == freeCodeArray.length) {
+				int[] grownArray = new int[freeCodeCount * 2];
+				System.arraycopy(freeCodeArray, 0, grownArray, 0, freeCodeCount);
+				freeCodeArray = grownArray;
+			}
+			freeCodeArray[freeCodeCount] = code;
+			freeCodeCount++;
+		}
+	}
+
+	/** Method lookup returns the String for a code that is in use.
+	 * @param code
+	 * @return String
+	 */
+	public String lookup(int code) {
+		return stringByCode[code];
+	}
+
+	/** Method codeOf returns the code for value, or -1 if value is not in the dictionary.
+	 * @param value
+	 * @return int
+	 */
+	public int codeOf(String value) {
+		Integer existingCode = codeByString.get(value);
+		if (existingCode == null) {
+			return -1;
+		}
+		return existingCode;
+	}
+
+	/** Method size returns the number of distinct Strings in the dictionary.
+	 * @return int
+	 */
+	public int size() {
+		return codeByString.size();
+	}
+}
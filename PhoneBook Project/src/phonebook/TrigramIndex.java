@@ -0,0 +1,131 @@
+package phonebook;
+
+import java.util.concurrent.ForkJoinPool;
+
+/** This class answers case-insensitive "contains" searches on one text field of the people in a PersonStore.
+ * 	The field is lowercased once when a Person is added, and every three-character sequence (trigram) of
+ * 	the lowercased text is recorded in a posting list of slots. A search term of three or more characters
+ * 	can only match slots that appear in the posting list of every trigram in the term, so the search starts
+ * 	from the shortest posting list and only checks those candidates. Shorter terms have no trigram to
+ * 	look up, so they are checked against the stored lowercase text of every slot. Since the text is lowercased
+ * 	when it is added, checking a slot allocates nothing.
+ */
+public class TrigramIndex {
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int[] NO_SLOTS = new int[0];
+	private static final ParallelScan SEQUENTIAL_SCAN = new ParallelScan(ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+
+	private LongSlotIndex postingLists = new LongSlotIndex();
+	private String[] foldedTextBySlot = new String[INITIAL_CAPACITY];
+	private int slotLimit = 0;
+
+	/** Method add records the text of the field for the Person stored in slot.
+	 * @param slot - the PersonStore slot of the Person
+	 * @param text - the value of the field, such as the first name
+	 */
+	public void add(int slot, String text) {
+		String foldedText = fold(text);
+		if (slot >= foldedTextBySlot.length) {
+			String[] grownArray = new String[Math.max(slot + 1, foldedTextBySlot.length * 2)];
+			System.arraycopy(foldedTextBySlot, 0, grownArray, 0, foldedTextBySlot.length);
+			foldedTextBySlot = grownArray;
+		}
+		foldedTextBySlot[slot] = foldedText;
+		slotLimit = Math.max(slotLimit, slot + 1);
+		for (int index = 0; index + 3 <= foldedText.length(); index++) {
+			postingLists.add(trigramKey(foldedText, index), slot);
+		}
+	}
+
+	/** Method remove forgets the text recorded for slot.
+	 * @param slot - the PersonStore slot of the Person
+	 */
+	public void remove(int slot) {
+		if (slot < 0 || slot >= slotLimit || foldedTextBySlot[slot] == null) {
+			return;
+		}
+		String foldedText = foldedTextBySlot[slot];
+		for (int index = 0; index + 3 <= foldedText.length(); index++) {
+			postingLists.remove(trigramKey(foldedText, index), slot);
+		}
+		foldedTextBySlot[slot] = null;
+	}
+
+	/** Method search returns the slots whose field contains searchString, ignoring case and the
+	 * 	whitespace around searchString. This matches the original findPersonIndicesBy* scans.
+	 * @param searchString
+	 * @return int[] - the matching slots in ascending slot order
+	 */
+	public int[] search(String searchString) {
+		return search(searchString, SEQUENTIAL_SCAN);
+	}
+
+	/** Method search returns the slots whose field contains searchString, checking terms too short to have
+	 * 	a trigram on parallelScan.
+	 * @param searchString
+	 * @param parallelScan - the scan engine for short terms
+	 * @return int[] - the matching slots in ascending slot order
+	 */
+	public int[] search(String searchString, ParallelScan parallelScan) {
+		String foldedTerm = fold(searchString.trim());
+		if (foldedTerm.length() < 3) {
+			String[] foldedText = foldedTextBySlot;
+			return parallelScan.scan(Math.min(slotLimit, foldedText.length),
+					slot -> foldedText[slot] != null && foldedText[slot].contains(foldedTerm));
+		}
+		// Start from the trigram with the fewest slots.
+		long rarestKey = trigramKey(foldedTerm, 0);
+		int rarestCount = postingLists.count(rarestKey);
+		for (int index = 1; index + 3 <= foldedTerm.length() && rarestCount > 0; index++) {
+			long key = trigramKey(foldedTerm, index);
+			int count = postingLists.count(key);
+			if (count < rarestCount) {
+				rarestKey = key;
+				rarestCount = count;
+			}
+		}
+		if (rarestCount == 0) {
+			return NO_SLOTS;
+		}
+		int[] candidates = postingLists.get(rarestKey);
+		int matchCount = 0;
+		for (int index = 0; index < candidates.length; index++) {
+			if (foldedTextBySlot[candidates[index]].contains(foldedTerm)) {
+				candidates[matchCount] = candidates[index];
+				matchCount++;
+			}
+		}
+		return trim(candidates, matchCount);
+	}
+
+	/** Method fold lowercases text the same way the original searches did, treating null as blank.
+	 * @param text
+	 * @return String
+	 */
+	static String fold(String text) {
+		if (text == null) {
+			return "";
+		}
+		return text.toLowerCase();
+	}
+
+	/** Method trigramKey packs the three characters starting at index into one long.
+	 * @param foldedText
+	 * @param index
+	 * @return long
+	 */
+	static long trigramKey(String foldedText, int index) {
+		return ((long) foldedText.charAt(index) << 32) | ((long) foldedText.charAt(index + 1) << 16)
+				| foldedText.charAt(index + 2);
+	}
+
+	private static int[] trim(int[] slots, int count) {
+		if (count == slots.length) {
+			return slots;
+		}
+		int[] trimmedArray = new int[count];
+		System.arraycopy(slots, 0, trimmedArray, 0, count);
+		return trimmedArray;
+	}
+}